@@ -3,6 +3,7 @@ package io.github.drompincen.javaclawv1.gateway;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
+import org.springframework.data.mongodb.repository.config.EnableReactiveMongoRepositories;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication(
@@ -12,6 +13,7 @@ import org.springframework.scheduling.annotation.EnableScheduling;
         }
 )
 @EnableMongoRepositories(basePackages = "io.github.drompincen.javaclawv1.persistence.repository")
+@EnableReactiveMongoRepositories(basePackages = "io.github.drompincen.javaclawv1.persistence.repository.reactive")
 @EnableScheduling
 public class JavaClawApplication {
 
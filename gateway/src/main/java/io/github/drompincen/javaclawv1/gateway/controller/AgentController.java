@@ -3,11 +3,13 @@ package io.github.drompincen.javaclawv1.gateway.controller;
 import io.github.drompincen.javaclawv1.persistence.document.AgentDocument;
 import io.github.drompincen.javaclawv1.persistence.repository.AgentRepository;
 import io.github.drompincen.javaclawv1.protocol.api.AgentRole;
+import io.github.drompincen.javaclawv1.runtime.agent.AgentRegistry;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @RestController
@@ -15,9 +17,11 @@ import java.util.UUID;
 public class AgentController {
 
     private final AgentRepository agentRepository;
+    private final AgentRegistry agentRegistry;
 
-    public AgentController(AgentRepository agentRepository) {
+    public AgentController(AgentRepository agentRepository, AgentRegistry agentRegistry) {
         this.agentRepository = agentRepository;
+        this.agentRegistry = agentRegistry;
     }
 
     @GetMapping
@@ -40,6 +44,7 @@ public class AgentController {
         if (agent.getRole() == null) agent.setRole(AgentRole.SPECIALIST);
         agent.setEnabled(true);
         agentRepository.save(agent);
+        agentRegistry.invalidate();
         return ResponseEntity.ok(agent);
     }
 
@@ -54,14 +59,22 @@ public class AgentController {
             if (updates.getRole() != null) existing.setRole(updates.getRole());
             existing.setUpdatedAt(Instant.now());
             agentRepository.save(existing);
+            agentRegistry.invalidate();
             return ResponseEntity.ok(existing);
         }).orElse(ResponseEntity.notFound().build());
     }
 
+    /** Force the runtime agent registry to reload (normally kept in sync by change stream). */
+    @PostMapping("/refresh")
+    public Map<String, Object> refresh() {
+        return Map.of("enabledAgents", agentRegistry.refresh());
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> delete(@PathVariable String id) {
         if (agentRepository.existsById(id)) {
             agentRepository.deleteById(id);
+            agentRegistry.invalidate();
             return ResponseEntity.noContent().build();
         }
         return ResponseEntity.notFound().build();
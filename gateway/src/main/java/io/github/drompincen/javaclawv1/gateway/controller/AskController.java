@@ -102,7 +102,7 @@ public class AskController {
 
         Map<ThingCategory, List<ThingDocument>> grouped = thingService.findByProjectGrouped(projectId);
         Map<String, List<String>> removed = new LinkedHashMap<>();
-        int totalRemoved = 0;
+        List<String> duplicateIds = new ArrayList<>();
 
         // Category -> identity field mapping
         Map<ThingCategory, String> identityFields = Map.of(
@@ -136,10 +136,9 @@ public class AskController {
                         t -> t.getCreateDate() != null ? t.getCreateDate() : Instant.MAX));
                 for (int i = 1; i < group.size(); i++) {
                     ThingDocument dup = group.get(i);
-                    thingService.deleteById(dup.getId());
+                    duplicateIds.add(dup.getId());
                     Object idVal = dup.getPayload().get(field);
                     categoryRemoved.add(dup.getId() + " (" + (idVal != null ? idVal : "?") + ")");
-                    totalRemoved++;
                 }
             }
             if (!categoryRemoved.isEmpty()) {
@@ -147,6 +146,8 @@ public class AskController {
             }
         }
 
+        long totalRemoved = thingService.deleteAllByIds(duplicateIds);
+
         return ResponseEntity.ok(Map.of(
                 "projectId", projectId,
                 "totalRemoved", totalRemoved,
@@ -0,0 +1,83 @@
+package io.github.drompincen.javaclawv1.gateway.controller;
+
+import io.github.drompincen.javaclawv1.runtime.jfr.JfrRecordingService;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/api/diagnostics")
+public class DiagnosticsController {
+
+    private final JfrRecordingService jfrRecordingService;
+
+    public DiagnosticsController(JfrRecordingService jfrRecordingService) {
+        this.jfrRecordingService = jfrRecordingService;
+    }
+
+    /** Start a time-boxed Flight Recorder recording with the JavaClaw profile. */
+    @PostMapping("/jfr")
+    public ResponseEntity<?> startRecording(@RequestParam(defaultValue = "60") long seconds) {
+        try {
+            return ResponseEntity.ok(jfrRecordingService.start(Duration.ofSeconds(seconds)));
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    @GetMapping("/jfr")
+    public List<JfrRecordingService.RecordingInfo> listRecordings() {
+        return jfrRecordingService.list();
+    }
+
+    @GetMapping("/jfr/{id}")
+    public ResponseEntity<JfrRecordingService.RecordingInfo> getRecording(@PathVariable long id) {
+        return jfrRecordingService.get(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /** Download the recording; a running recording is snapshotted first. */
+    @GetMapping("/jfr/{id}/file")
+    public ResponseEntity<?> downloadRecording(@PathVariable long id) {
+        try {
+            Optional<Path> file = jfrRecordingService.dump(id);
+            if (file.isEmpty()) return ResponseEntity.notFound().build();
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .header(HttpHeaders.CONTENT_DISPOSITION,
+                            "attachment; filename=\"" + file.get().getFileName() + "\"")
+                    .body(new FileSystemResource(file.get()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    @PostMapping("/jfr/{id}/stop")
+    public ResponseEntity<JfrRecordingService.RecordingInfo> stopRecording(@PathVariable long id) {
+        return jfrRecordingService.stop(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @DeleteMapping("/jfr/{id}")
+    public ResponseEntity<Void> deleteRecording(@PathVariable long id) {
+        try {
+            return jfrRecordingService.delete(id)
+                    ? ResponseEntity.noContent().build()
+                    : ResponseEntity.notFound().build();
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package io.github.drompincen.javaclawv1.gateway.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.drompincen.javaclawv1.persistence.document.EventDocument;
+import io.github.drompincen.javaclawv1.persistence.repository.reactive.ReactiveEventRepository;
+import io.github.drompincen.javaclawv1.protocol.event.Event;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import reactor.core.publisher.Flux;
+
+@RestController
+@RequestMapping("/api/sessions/{sessionId}/events")
+public class EventController {
+
+    private final ReactiveEventRepository reactiveEventRepository;
+    private final ObjectMapper objectMapper;
+    private final StreamResponses streamResponses;
+
+    public EventController(ReactiveEventRepository reactiveEventRepository, ObjectMapper objectMapper,
+                           StreamResponses streamResponses) {
+        this.reactiveEventRepository = reactiveEventRepository;
+        this.objectMapper = objectMapper;
+        this.streamResponses = streamResponses;
+    }
+
+    /**
+     * Replays the session's event log in order, as NDJSON or SSE, starting after {@code afterSeq}.
+     * Events are streamed from the cursor rather than collected, so long logs stay out of heap;
+     * live events keep arriving over the WebSocket.
+     */
+    @GetMapping(value = "/stream", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public ResponseEntity<ResponseBodyEmitter> stream(@PathVariable String sessionId,
+                                                      @RequestParam(defaultValue = "0") long afterSeq,
+                                                      @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return streamResponses.emit(events(sessionId, afterSeq), accept);
+    }
+
+    Flux<Event> events(String sessionId, long afterSeq) {
+        return reactiveEventRepository.findBySessionIdAndSeqGreaterThanOrderBySeqAsc(sessionId, afterSeq)
+                .map(this::toEvent);
+    }
+
+    private Event toEvent(EventDocument doc) {
+        return new Event(doc.getEventId(), doc.getSessionId(), doc.getSeq(), doc.getType(),
+                doc.getPayload() != null ? objectMapper.valueToTree(doc.getPayload()) : null,
+                doc.getTimestamp());
+    }
+}
@@ -2,6 +2,8 @@ package io.github.drompincen.javaclawv1.gateway.controller;
 
 import io.github.drompincen.javaclawv1.persistence.document.MessageDocument;
 import io.github.drompincen.javaclawv1.persistence.document.SessionDocument;
+import io.github.drompincen.javaclawv1.persistence.document.ThingDocument;
+import io.github.drompincen.javaclawv1.persistence.document.UploadSessionDocument;
 import io.github.drompincen.javaclawv1.persistence.repository.MessageRepository;
 import io.github.drompincen.javaclawv1.persistence.repository.SessionRepository;
 import io.github.drompincen.javaclawv1.protocol.api.IntakePipelineRequest;
@@ -11,15 +13,16 @@ import io.github.drompincen.javaclawv1.protocol.api.ThingCategory;
 import io.github.drompincen.javaclawv1.protocol.api.UploadStatus;
 import io.github.drompincen.javaclawv1.runtime.agent.IntakePipelineService;
 import io.github.drompincen.javaclawv1.runtime.thing.ThingService;
+import io.github.drompincen.javaclawv1.runtime.upload.BlobStore;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.InputStream;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.time.Instant;
 import java.util.*;
 
@@ -31,15 +34,18 @@ public class IntakeController {
     private final SessionRepository sessionRepository;
     private final MessageRepository messageRepository;
     private final ThingService thingService;
+    private final BlobStore blobStore;
 
     public IntakeController(IntakePipelineService pipelineService,
                             SessionRepository sessionRepository,
                             MessageRepository messageRepository,
-                            ThingService thingService) {
+                            ThingService thingService,
+                            BlobStore blobStore) {
         this.pipelineService = pipelineService;
         this.sessionRepository = sessionRepository;
         this.messageRepository = messageRepository;
         this.thingService = thingService;
+        this.blobStore = blobStore;
     }
 
     @PostMapping("/pipeline")
@@ -90,30 +96,138 @@ public class IntakeController {
             return ResponseEntity.badRequest().build();
         }
 
-        Path uploadDir = Paths.get(System.getProperty("user.dir"), "uploads", projectId);
-        Files.createDirectories(uploadDir);
-
         List<UploadInfo> results = new ArrayList<>();
         for (MultipartFile file : files) {
             String originalName = file.getOriginalFilename() != null ? file.getOriginalFilename() : "unnamed";
-            String savedName = UUID.randomUUID() + "-" + originalName;
-            Path dest = uploadDir.resolve(savedName);
-            file.transferTo(dest.toFile());
+            BlobStore.StoredBlob blob;
+            try (InputStream in = file.getInputStream()) {
+                blob = blobStore.store(in);
+            }
+            results.add(register(projectId, originalName, file.getContentType(), blob.sha256()));
+        }
 
-            Map<String, Object> payload = new LinkedHashMap<>();
-            payload.put("source", "file_upload");
-            payload.put("title", originalName);
-            payload.put("contentType", file.getContentType());
-            payload.put("binaryRef", dest.toAbsolutePath().toString());
-            payload.put("status", UploadStatus.INBOX.name());
+        return ResponseEntity.ok(results);
+    }
 
-            var thing = thingService.createThing(projectId, ThingCategory.UPLOAD, payload);
+    // ---- Chunked, resumable uploads ----
+    // POST /uploads starts a session (or returns the existing upload when the client's sha256 is
+    // already stored), PUT /uploads/{id}?offset=N appends a chunk, GET /uploads/{id} reports the
+    // offset to resume from. The upload is registered when the last byte arrives.
 
-            String detectedType = detectContentType(originalName);
-            results.add(new UploadInfo(thing.getId(), originalName, dest.toAbsolutePath().toString(), detectedType));
+    @PostMapping("/uploads")
+    public ResponseEntity<UploadProgress> beginUpload(@RequestBody UploadInitRequest request) throws IOException {
+        if (request.projectId() == null || request.projectId().isBlank()
+                || request.fileName() == null || request.fileName().isBlank() || request.size() < 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        // Only content this project already holds skips the transfer: knowing a hash is not proof of having the bytes
+        if (request.sha256() != null && !thingService.findByProjectCategoryAndPayload(request.projectId(),
+                ThingCategory.UPLOAD, "blobId", request.sha256().toLowerCase()).isEmpty()) {
+            UploadInfo upload = register(request.projectId(), request.fileName(), request.contentType(),
+                    request.sha256().toLowerCase());
+            return ResponseEntity.ok(new UploadProgress(null, "COMPLETE", request.size(), request.size(), upload));
         }
+        UploadSessionDocument session = blobStore.begin(request.projectId(), request.fileName(),
+                request.contentType(), request.size(), request.sha256());
+        if (request.size() == 0) {
+            return finish(session);
+        }
+        return ResponseEntity.status(HttpStatus.CREATED).body(progress(session, 0));
+    }
 
-        return ResponseEntity.ok(results);
+    @GetMapping("/uploads/{uploadSessionId}")
+    public ResponseEntity<UploadProgress> uploadStatus(@PathVariable String uploadSessionId) {
+        return blobStore.session(uploadSessionId)
+                .map(s -> ResponseEntity.ok(progress(s, s.getReceivedBytes())))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @PutMapping(value = "/uploads/{uploadSessionId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<UploadProgress> uploadChunk(@PathVariable String uploadSessionId,
+                                                      @RequestParam long offset,
+                                                      InputStream body) throws IOException {
+        Optional<UploadSessionDocument> found = blobStore.session(uploadSessionId);
+        if (found.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        UploadSessionDocument session = found.get();
+        long next;
+        try {
+            next = blobStore.append(uploadSessionId, offset, body);
+        } catch (BlobStore.OffsetMismatchException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(progress(session, e.expectedOffset()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (next < session.getSize()) {
+            return ResponseEntity.ok(progress(session, next));
+        }
+        return finish(session);
+    }
+
+    @DeleteMapping("/uploads/{uploadSessionId}")
+    public ResponseEntity<Void> abortUpload(@PathVariable String uploadSessionId) throws IOException {
+        blobStore.abort(uploadSessionId);
+        return ResponseEntity.noContent().build();
+    }
+
+    @DeleteMapping("/upload/{uploadId}")
+    public ResponseEntity<Void> deleteUpload(@PathVariable String uploadId) throws IOException {
+        Optional<ThingDocument> upload = thingService.findById(uploadId, ThingCategory.UPLOAD);
+        if (upload.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        thingService.deleteById(uploadId);
+        Object blobId = upload.get().getPayload().get("blobId");
+        if (blobId != null) {
+            blobStore.detach(blobId.toString(), (String) upload.get().getPayload().get("binaryRef"));
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    private ResponseEntity<UploadProgress> finish(UploadSessionDocument session) throws IOException {
+        BlobStore.StoredBlob blob;
+        try {
+            blob = blobStore.complete(session.getUploadSessionId());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.unprocessableEntity().build();
+        }
+        UploadInfo upload = register(session.getProjectId(), session.getFileName(), session.getContentType(), blob.sha256());
+        return ResponseEntity.ok(new UploadProgress(session.getUploadSessionId(), "COMPLETE",
+                session.getSize(), session.getSize(), upload));
+    }
+
+    private static UploadProgress progress(UploadSessionDocument session, long offset) {
+        return new UploadProgress(session.getUploadSessionId(), "IN_PROGRESS", offset, session.getSize(), null);
+    }
+
+    /**
+     * Records an UPLOAD thing for a stored blob. The same content uploaded again to the same
+     * project returns the existing upload instead of creating another.
+     */
+    private UploadInfo register(String projectId, String originalName, String contentType, String sha256)
+            throws IOException {
+        List<ThingDocument> existing = thingService.findByProjectCategoryAndPayload(
+                projectId, ThingCategory.UPLOAD, "blobId", sha256);
+        if (!existing.isEmpty()) {
+            Map<String, Object> payload = existing.get(0).getPayload();
+            String name = String.valueOf(payload.get("title"));
+            return new UploadInfo(existing.get(0).getId(), name, (String) payload.get("binaryRef"),
+                    detectContentType(name), sha256, true);
+        }
+
+        Path file = blobStore.attach(sha256, projectId, originalName);
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("source", "file_upload");
+        payload.put("title", originalName);
+        payload.put("contentType", contentType);
+        payload.put("binaryRef", file.toAbsolutePath().toString());
+        payload.put("blobId", sha256);
+        payload.put("status", UploadStatus.INBOX.name());
+
+        var thing = thingService.createThing(projectId, ThingCategory.UPLOAD, payload);
+        return new UploadInfo(thing.getId(), originalName, file.toAbsolutePath().toString(),
+                detectContentType(originalName), sha256, false);
     }
 
     private String detectContentType(String fileName) {
@@ -127,5 +241,10 @@ public class IntakeController {
         return "unknown";
     }
 
-    record UploadInfo(String uploadId, String fileName, String filePath, String contentType) {}
+    record UploadInfo(String uploadId, String fileName, String filePath, String contentType,
+                      String sha256, boolean existing) {}
+
+    record UploadInitRequest(String projectId, String fileName, String contentType, long size, String sha256) {}
+
+    record UploadProgress(String uploadSessionId, String status, long offset, long size, UploadInfo upload) {}
 }
@@ -0,0 +1,79 @@
+package io.github.drompincen.javaclawv1.gateway.controller;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Opaque position in a newest-first list ordered by {@code (updatedAt, _id)}, or by another
+ * time field via {@link #sortBy}/{@link #after(String)}. Each page starts strictly after the
+ * last row of the previous one, so the query seeks on the index instead of skipping earlier
+ * pages, and rows inserted meanwhile do not shift the page boundaries. Rows without a time sort
+ * last, as MongoDB orders null below every date, and are paged by {@code _id} alone.
+ */
+record KeysetCursor(Instant updatedAt, String id) {
+
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final Sort SORT = sortBy("updatedAt");
+
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 500;
+    private static final String NO_TIME = "-";
+
+    static int limit(Integer requested) {
+        return requested == null ? DEFAULT_LIMIT : Math.max(1, Math.min(requested, MAX_LIMIT));
+    }
+
+    /** @throws IllegalArgumentException if the value was not produced by {@link #encode()} */
+    static KeysetCursor decode(String cursor) {
+        String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        int sep = raw.indexOf(':');
+        if (sep <= 0) throw new IllegalArgumentException("Malformed cursor");
+        String time = raw.substring(0, sep);
+        return new KeysetCursor(time.equals(NO_TIME) ? null : Instant.ofEpochMilli(Long.parseLong(time)),
+                raw.substring(sep + 1));
+    }
+
+    static Sort sortBy(String timeField) {
+        return Sort.by(Sort.Direction.DESC, timeField, "_id");
+    }
+
+    String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(((updatedAt != null ? String.valueOf(updatedAt.toEpochMilli()) : NO_TIME) + ":" + id)
+                        .getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Rows that come after this position in {@link #SORT} order. */
+    Criteria after() {
+        return after("updatedAt");
+    }
+
+    /** Rows that come after this position in {@link #sortBy sortBy(timeField)} order. */
+    Criteria after(String timeField) {
+        if (updatedAt == null) return Criteria.where(timeField).is(null).and("_id").lt(id);
+        // A Date rather than the Instant, so raw aggregation pipelines encode it without a mapping context
+        Date at = Date.from(updatedAt);
+        return new Criteria().orOperator(
+                Criteria.where(timeField).lt(at),
+                Criteria.where(timeField).is(at).and("_id").lt(id),
+                Criteria.where(timeField).is(null));
+    }
+
+    /**
+     * Builds the response for rows fetched with {@code limit + 1}: the extra row only signals that
+     * another page exists, and is replaced by a cursor header pointing past the last row returned.
+     */
+    static <T> ResponseEntity<List<T>> page(List<T> rows, int limit, Function<T, String> cursorOf) {
+        if (rows.size() <= limit) return ResponseEntity.ok(rows);
+        List<T> page = rows.subList(0, limit);
+        return ResponseEntity.ok().header(NEXT_CURSOR_HEADER, cursorOf.apply(page.get(limit - 1))).body(page);
+    }
+}
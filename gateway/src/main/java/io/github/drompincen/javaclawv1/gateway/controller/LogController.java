@@ -2,76 +2,208 @@ package io.github.drompincen.javaclawv1.gateway.controller;
 
 import io.github.drompincen.javaclawv1.persistence.document.LogDocument;
 import io.github.drompincen.javaclawv1.persistence.document.LlmInteractionDocument;
-import io.github.drompincen.javaclawv1.persistence.repository.LogRepository;
-import io.github.drompincen.javaclawv1.persistence.repository.LlmInteractionRepository;
-import io.github.drompincen.javaclawv1.persistence.repository.MessageRepository;
+import io.github.drompincen.javaclawv1.persistence.document.MessageDocument;
+import io.github.drompincen.javaclawv1.persistence.repository.LlmUsageRollup;
+import io.github.drompincen.javaclawv1.runtime.agent.llm.AdaptiveConcurrencyLimiter;
+import io.github.drompincen.javaclawv1.runtime.agent.llm.LlmConcurrencyLimiter;
+import io.github.drompincen.javaclawv1.runtime.agent.llm.LlmProviderHealth;
+import io.github.drompincen.javaclawv1.runtime.agent.llm.LlmRouter;
+import io.github.drompincen.javaclawv1.runtime.metrics.LlmUsageRollupService;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.Instant;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
 
 @RestController
 @RequestMapping("/api/logs")
 public class LogController {
 
-    private final LogRepository logRepository;
-    private final LlmInteractionRepository llmInteractionRepository;
-    private final MessageRepository messageRepository;
+    private final LlmUsageRollupService usageRollups;
+    private final MongoTemplate mongoTemplate;
+    private final LlmConcurrencyLimiter concurrencyLimiter;
+    private final LlmRouter llmRouter;
 
-    public LogController(LogRepository logRepository, LlmInteractionRepository llmInteractionRepository,
-                         MessageRepository messageRepository) {
-        this.logRepository = logRepository;
-        this.llmInteractionRepository = llmInteractionRepository;
-        this.messageRepository = messageRepository;
+    public LogController(LlmUsageRollupService usageRollups, MongoTemplate mongoTemplate,
+                         LlmConcurrencyLimiter concurrencyLimiter,
+                         LlmRouter llmRouter) {
+        this.usageRollups = usageRollups;
+        this.mongoTemplate = mongoTemplate;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.llmRouter = llmRouter;
     }
 
+    /**
+     * Newest first, filtered by session or level. Pages are {@code limit} rows (default 100,
+     * at most 500); when more remain, the {@code X-Next-Cursor} header holds the {@code cursor}
+     * for the next page.
+     */
     @GetMapping
-    public List<LogDocument> listLogs(@RequestParam(required = false) String level,
-                                       @RequestParam(required = false) String sessionId,
-                                       @RequestParam(required = false, defaultValue = "100") int limit) {
-        if (sessionId != null) return logRepository.findBySessionId(sessionId);
+    public ResponseEntity<?> listLogs(@RequestParam(required = false) String level,
+                                      @RequestParam(required = false) String sessionId,
+                                      @RequestParam(required = false) Integer limit,
+                                      @RequestParam(required = false) String cursor) {
+        if (sessionId != null) return newestFirst(Criteria.where("sessionId").is(sessionId), limit, cursor,
+                LogDocument.class, d -> new KeysetCursor(d.getTimestamp(), d.getLogId()));
         if (level != null) {
-            LogDocument.LogLevel l = LogDocument.LogLevel.valueOf(level.toUpperCase());
-            return logRepository.findByLevel(l);
+            LogDocument.LogLevel l;
+            try {
+                l = LogDocument.LogLevel.valueOf(level.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Unknown level: " + level));
+            }
+            return listByLevel(l, limit, cursor);
         }
-        return logRepository.findTop100ByOrderByTimestampDesc();
+        return newestFirst(new Criteria(), limit, cursor,
+                LogDocument.class, d -> new KeysetCursor(d.getTimestamp(), d.getLogId()));
     }
 
     @GetMapping("/errors")
-    public List<LogDocument> listErrors() {
-        return logRepository.findByLevel(LogDocument.LogLevel.ERROR);
+    public ResponseEntity<?> listErrors(@RequestParam(required = false) Integer limit,
+                                        @RequestParam(required = false) String cursor) {
+        return listByLevel(LogDocument.LogLevel.ERROR, limit, cursor);
     }
 
     @GetMapping("/llm-interactions")
-    public List<LlmInteractionDocument> listLlmInteractions(
+    public ResponseEntity<?> listLlmInteractions(
             @RequestParam(required = false) String sessionId,
-            @RequestParam(required = false) String agentId) {
-        if (sessionId != null) return llmInteractionRepository.findBySessionId(sessionId);
-        if (agentId != null) return llmInteractionRepository.findByAgentId(agentId);
-        return llmInteractionRepository.findTop100ByOrderByTimestampDesc();
+            @RequestParam(required = false) String agentId,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor) {
+        Criteria filter = sessionId != null ? Criteria.where("sessionId").is(sessionId)
+                : agentId != null ? Criteria.where("agentId").is(agentId)
+                : new Criteria();
+        return newestFirst(filter, limit, cursor,
+                LlmInteractionDocument.class, d -> new KeysetCursor(d.getTimestamp(), d.getInteractionId()));
     }
 
+    private ResponseEntity<?> listByLevel(LogDocument.LogLevel level, Integer limit, String cursor) {
+        return newestFirst(Criteria.where("level").is(level.name()), limit, cursor,
+                LogDocument.class, d -> new KeysetCursor(d.getTimestamp(), d.getLogId()));
+    }
+
+    /** One page by {@code (timestamp, _id)}, served by the session/level/agent time indexes. */
+    private <T> ResponseEntity<?> newestFirst(Criteria filter, Integer limit, String cursor, Class<T> type,
+                                             Function<T, KeysetCursor> positionOf) {
+        int pageSize = KeysetCursor.limit(limit);
+        Query query = new Query(filter);
+        if (cursor != null) {
+            try {
+                query.addCriteria(KeysetCursor.decode(cursor).after("timestamp"));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Invalid cursor"));
+            }
+        }
+        query.with(KeysetCursor.sortBy("timestamp")).limit(pageSize + 1);
+        return KeysetCursor.page(mongoTemplate.find(query, type), pageSize, row -> positionOf.apply(row).encode());
+    }
+
+    /**
+     * Totals for the header token counter over {@code [from, to)}, or the last {@code hours}
+     * (default 24) when no range is given. Read from the usage buckets only; the ETag lets
+     * pollers revalidate and get a 304 while nothing has changed.
+     */
     @GetMapping("/llm-interactions/metrics")
-    public ResponseEntity<Map<String, Object>> llmMetrics() {
-        long totalInteractions = llmInteractionRepository.count();
-        List<LlmInteractionDocument> recent = llmInteractionRepository.findTop100ByOrderByTimestampDesc();
-
-        long totalTokens = recent.stream().mapToLong(d -> d.getPromptTokens() + d.getCompletionTokens()).sum();
-        long totalDuration = recent.stream().mapToLong(LlmInteractionDocument::getDurationMs).sum();
-        long errors = recent.stream().filter(d -> !d.isSuccess()).count();
-
-        long totalMessages = messageRepository.count();
-
-        Map<String, Object> metrics = new HashMap<>();
-        metrics.put("totalInteractions", totalInteractions);
-        metrics.put("recentTokens", totalTokens);
-        metrics.put("recentDurationMs", totalDuration);
-        metrics.put("recentErrors", errors);
-        metrics.put("avgDurationMs", recent.isEmpty() ? 0 : totalDuration / recent.size());
-        metrics.put("totalMessages", totalMessages);
-        return ResponseEntity.ok(metrics);
+    public ResponseEntity<Map<String, Object>> llmMetrics(
+            @RequestParam(required = false, defaultValue = "24") long hours,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(Duration.ofHours(Math.max(1, hours)));
+        if (!start.isBefore(end)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "from must be before to"));
+        }
+        LlmUsageRollup total = total(usageRollups.rollup(start, end, LlmUsageRollupService.GroupBy.TOTAL));
+        LlmUsageRollup allTime = total(usageRollups.rollup(Instant.EPOCH, end, LlmUsageRollupService.GroupBy.TOTAL));
+
+        // Sorted so the rendered body, and with it the ETag, is stable
+        Map<String, Object> metrics = new TreeMap<>();
+        metrics.put("totalInteractions", allTime.calls());
+        if (from != null) metrics.put("from", from.toString());
+        if (to != null) metrics.put("to", to.toString());
+        if (from == null) metrics.put("windowHours", hours);
+        metrics.put("recentCalls", total.calls());
+        metrics.put("recentTokens", total.totalTokens());
+        metrics.put("recentPromptTokens", total.promptTokens());
+        metrics.put("recentCompletionTokens", total.completionTokens());
+        metrics.put("recentCachedTokens", total.cachedTokens());
+        metrics.put("recentEstimatedCalls", total.estimatedCalls());
+        metrics.put("recentDurationMs", total.totalDurationMs());
+        metrics.put("recentErrors", total.errors());
+        metrics.put("avgDurationMs", total.calls() == 0 ? 0 : total.totalDurationMs() / total.calls());
+        metrics.put("avgTimeToFirstTokenMs", total.avgTimeToFirstTokenMs());
+        metrics.put("avgTokensPerSecond", total.avgTokensPerSecond());
+        metrics.put("totalMessages", mongoTemplate.estimatedCount(MessageDocument.class));
+
+        String etag = "\"" + DigestUtils.md5DigestAsHex(metrics.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+        if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(metrics);
+    }
+
+    /** Token usage, errors and latency per agent over the last {@code hours}. */
+    @GetMapping("/llm-interactions/rollup/agents")
+    public List<LlmUsageRollup> llmRollupByAgent(
+            @RequestParam(required = false, defaultValue = "24") long hours) {
+        return rollup(hours, LlmUsageRollupService.GroupBy.AGENT);
+    }
+
+    /** Token usage, errors and latency per project over the last {@code hours}. */
+    @GetMapping("/llm-interactions/rollup/projects")
+    public List<LlmUsageRollup> llmRollupByProject(
+            @RequestParam(required = false, defaultValue = "24") long hours) {
+        return rollup(hours, LlmUsageRollupService.GroupBy.PROJECT);
+    }
+
+    /** Token usage, errors and latency per provider over the last {@code hours}. */
+    @GetMapping("/llm-interactions/rollup/providers")
+    public List<LlmUsageRollup> llmRollupByProvider(
+            @RequestParam(required = false, defaultValue = "24") long hours) {
+        return rollup(hours, LlmUsageRollupService.GroupBy.PROVIDER);
+    }
+
+    /** Token usage, errors and latency per model over the last {@code hours}. */
+    @GetMapping("/llm-interactions/rollup/models")
+    public List<LlmUsageRollup> llmRollupByModel(
+            @RequestParam(required = false, defaultValue = "24") long hours) {
+        return rollup(hours, LlmUsageRollupService.GroupBy.MODEL);
+    }
+
+    private List<LlmUsageRollup> rollup(long hours, LlmUsageRollupService.GroupBy groupBy) {
+        Instant now = Instant.now();
+        return usageRollups.rollup(now.minus(Duration.ofHours(Math.max(1, hours))), now, groupBy);
+    }
+
+    private static LlmUsageRollup total(List<LlmUsageRollup> rollup) {
+        return rollup.isEmpty()
+                ? new LlmUsageRollup(null, 0, 0, 0, 0, 0, 0, 0, null, null)
+                : rollup.get(0);
+    }
+
+    /** Live per-provider concurrency limit, in-flight calls and queue depth by priority. */
+    @GetMapping("/llm-limiter")
+    public List<AdaptiveConcurrencyLimiter.Stats> llmLimiter() {
+        return concurrencyLimiter.stats();
+    }
+
+    /** Rolling error rate and time-to-first-token per provider/model, as seen by the router. */
+    @GetMapping("/llm-routing")
+    public List<LlmProviderHealth.Stats> llmRouting() {
+        return llmRouter.stats();
     }
 }
@@ -2,6 +2,10 @@ package io.github.drompincen.javaclawv1.gateway.controller;
 
 import io.github.drompincen.javaclawv1.persistence.document.MemoryDocument;
 import io.github.drompincen.javaclawv1.persistence.repository.MemoryRepository;
+import io.github.drompincen.javaclawv1.protocol.api.MemorySummaryDto;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -16,28 +20,47 @@ import java.util.UUID;
 public class MemoryController {
 
     private final MemoryRepository memoryRepository;
+    private final MongoTemplate mongoTemplate;
 
-    public MemoryController(MemoryRepository memoryRepository) {
+    public MemoryController(MemoryRepository memoryRepository, MongoTemplate mongoTemplate) {
         this.memoryRepository = memoryRepository;
+        this.mongoTemplate = mongoTemplate;
     }
 
+    /** Memory summaries without content, most recently updated first, one page at a time. */
     @GetMapping
-    public List<MemoryDocument> list(
+    public ResponseEntity<?> list(
             @RequestParam(required = false) String scope,
             @RequestParam(required = false) String projectId,
-            @RequestParam(required = false) String query) {
+            @RequestParam(required = false) String query,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor) {
 
-        if (query != null && !query.isBlank()) {
-            return memoryRepository.searchContent(query);
+        int pageSize = KeysetCursor.limit(limit);
+        Query q = new Query();
+        try {
+            if (query != null && !query.isBlank()) {
+                q.addCriteria(Criteria.where("content").regex(query, "i"));
+            } else if (scope != null) {
+                q.addCriteria(Criteria.where("scope").is(MemoryDocument.MemoryScope.valueOf(scope.toUpperCase())));
+                if (projectId != null) q.addCriteria(Criteria.where("projectId").is(projectId));
+            }
+            if (cursor != null) q.addCriteria(KeysetCursor.decode(cursor).after());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
-        if (scope != null && projectId != null) {
-            MemoryDocument.MemoryScope s = MemoryDocument.MemoryScope.valueOf(scope.toUpperCase());
-            return memoryRepository.findByScopeAndProjectId(s, projectId);
-        }
-        if (scope != null) {
-            return memoryRepository.findByScope(MemoryDocument.MemoryScope.valueOf(scope.toUpperCase()));
-        }
-        return memoryRepository.findAll();
+        q.with(KeysetCursor.SORT).limit(pageSize + 1);
+        q.fields().exclude("content");
+        List<MemorySummaryDto> memories = mongoTemplate.find(q, MemoryDocument.class).stream()
+                .map(MemoryController::toSummary).toList();
+        return KeysetCursor.page(memories, pageSize,
+                m -> new KeysetCursor(m.updatedAt(), m.memoryId()).encode());
+    }
+
+    private static MemorySummaryDto toSummary(MemoryDocument doc) {
+        return new MemorySummaryDto(doc.getMemoryId(), doc.getScope() != null ? doc.getScope().name() : null,
+                doc.getProjectId(), doc.getSessionId(), doc.getThreadId(), doc.getKey(), doc.getTags(),
+                doc.getCreatedBy(), doc.getCreatedAt(), doc.getUpdatedAt(), doc.getExpiresAt());
     }
 
     @GetMapping("/{id}")
@@ -26,7 +26,7 @@ public class ReminderController {
         Map<String, Object> payload = new LinkedHashMap<>();
         payload.put("message", req.message());
         payload.put("type", req.type() != null ? req.type().name() : ReminderDto.ReminderType.TIME_BASED.name());
-        if (req.triggerAt() != null) payload.put("triggerAt", req.triggerAt().toString());
+        if (req.triggerAt() != null) payload.put("triggerAt", req.triggerAt());
         payload.put("triggered", false);
         payload.put("recurring", req.recurring());
         if (req.intervalSeconds() != null) payload.put("intervalSeconds", req.intervalSeconds());
@@ -67,17 +67,12 @@ public class ReminderController {
             try { type = ReminderDto.ReminderType.valueOf(p.get("type").toString()); }
             catch (IllegalArgumentException ignored) {}
         }
-        java.time.Instant triggerAt = null;
-        if (p.get("triggerAt") != null) {
-            try { triggerAt = java.time.Instant.parse(p.get("triggerAt").toString()); }
-            catch (Exception ignored) {}
-        }
         return new ReminderDto(
                 thing.getId(),
                 thing.getProjectId(),
                 (String) p.get("message"),
                 type,
-                triggerAt,
+                thing.payloadInstant("triggerAt"),
                 (String) p.get("condition"),
                 Boolean.TRUE.equals(p.get("triggered")),
                 Boolean.TRUE.equals(p.get("recurring")),
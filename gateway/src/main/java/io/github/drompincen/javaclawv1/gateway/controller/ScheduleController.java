@@ -117,6 +117,7 @@ public class ScheduleController {
                     scheduleId, List.of(ExecStatus.RUNNING));
             items.forEach(item -> {
                 item.setExecStatus(ExecStatus.CANCELLED);
+                item.setSlot(null);
                 item.setLastUpdatedAt(Instant.now());
                 futureExecutionRepository.save(item);
             });
@@ -152,6 +153,7 @@ public class ScheduleController {
                 return ResponseEntity.status(HttpStatus.CONFLICT).body(toExecResponse(exec));
             }
             exec.setExecStatus(ExecStatus.CANCELLED);
+            exec.setSlot(null);
             exec.setLastUpdatedAt(Instant.now());
             futureExecutionRepository.save(exec);
             return ResponseEntity.ok(toExecResponse(exec));
@@ -8,6 +8,11 @@ import io.github.drompincen.javaclawv1.protocol.api.*;
 import io.github.drompincen.javaclawv1.protocol.event.EventType;
 import io.github.drompincen.javaclawv1.runtime.agent.AgentLoop;
 import io.github.drompincen.javaclawv1.runtime.agent.EventService;
+import io.github.drompincen.javaclawv1.runtime.upload.ImagePartStore;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -26,15 +31,21 @@ public class SessionController {
     private final MessageRepository messageRepository;
     private final AgentLoop agentLoop;
     private final EventService eventService;
+    private final MongoTemplate mongoTemplate;
+    private final ImagePartStore imagePartStore;
 
     public SessionController(SessionRepository sessionRepository,
                              MessageRepository messageRepository,
                              AgentLoop agentLoop,
-                             EventService eventService) {
+                             EventService eventService,
+                             MongoTemplate mongoTemplate,
+                             ImagePartStore imagePartStore) {
         this.sessionRepository = sessionRepository;
         this.messageRepository = messageRepository;
         this.agentLoop = agentLoop;
         this.eventService = eventService;
+        this.mongoTemplate = mongoTemplate;
+        this.imagePartStore = imagePartStore;
     }
 
     @PostMapping
@@ -60,17 +71,48 @@ public class SessionController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    /** Most recently updated first; pass the {@code X-Next-Cursor} header back as {@code cursor} for the next page. */
     @GetMapping
-    public List<SessionDto> list() {
-        return sessionRepository.findAllByOrderByUpdatedAtDesc().stream()
+    public ResponseEntity<?> list(@RequestParam(required = false) Integer limit,
+                                  @RequestParam(required = false) String cursor) {
+        int pageSize = KeysetCursor.limit(limit);
+        Query query = new Query();
+        if (cursor != null) {
+            try {
+                query.addCriteria(KeysetCursor.decode(cursor).after());
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Invalid cursor"));
+            }
+        }
+        query.with(KeysetCursor.SORT).limit(pageSize + 1);
+        List<SessionDto> sessions = mongoTemplate.find(query, SessionDocument.class).stream()
                 .map(this::toDto).collect(Collectors.toList());
+        return KeysetCursor.page(sessions, pageSize,
+                s -> new KeysetCursor(s.updatedAt(), s.sessionId()).encode());
     }
 
+    /**
+     * Messages in sequence order, without multimodal parts; {@code cursor} is the last
+     * {@code seq} already received.
+     */
     @GetMapping("/{id}/messages")
-    public ResponseEntity<?> getMessages(@PathVariable String id) {
+    public ResponseEntity<?> getMessages(@PathVariable String id,
+                                         @RequestParam(required = false) Integer limit,
+                                         @RequestParam(required = false) String cursor) {
+        long afterSeq;
+        try {
+            afterSeq = cursor != null ? Long.parseLong(cursor) : 0;
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid cursor"));
+        }
         if (sessionRepository.findById(id).isEmpty()) return ResponseEntity.notFound().build();
-        List<MessageDocument> messages = messageRepository.findBySessionIdOrderBySeqAsc(id);
-        return ResponseEntity.ok(messages.stream().map(m -> {
+        int pageSize = KeysetCursor.limit(limit);
+        Query query = new Query(Criteria.where("sessionId").is(id).and("seq").gt(afterSeq))
+                .with(Sort.by(Sort.Direction.ASC, "seq"))
+                .limit(pageSize + 1);
+        query.fields().exclude("parts");
+        List<MessageDocument> messages = mongoTemplate.find(query, MessageDocument.class);
+        return KeysetCursor.page(messages.stream().map(m -> {
             Map<String, Object> map = new LinkedHashMap<>();
             map.put("messageId", m.getMessageId());
             map.put("role", m.getRole());
@@ -83,7 +125,7 @@ public class SessionController {
             if (m.getDurationMs() != null) map.put("durationMs", m.getDurationMs());
             map.put("mocked", m.isMocked());
             return map;
-        }).collect(Collectors.toList()));
+        }).collect(Collectors.toList()), pageSize, m -> String.valueOf(m.get("seq")));
     }
 
     @PostMapping("/{id}/messages")
@@ -100,14 +142,11 @@ public class SessionController {
 
         // Handle multimodal parts
         if (req.parts() != null && !req.parts().isEmpty()) {
-            msg.setParts(req.parts().stream().map(p -> {
-                var part = new MessageDocument.ContentPart();
-                part.setType(p.type());
-                part.setText(p.text());
-                part.setMediaType(p.mediaType());
-                part.setData(p.data());
-                return part;
-            }).toList());
+            try {
+                msg.setParts(imagePartStore.store(req.parts()));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+            }
         }
 
         messageRepository.save(msg);
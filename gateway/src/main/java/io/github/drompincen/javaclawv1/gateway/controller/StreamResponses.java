@@ -0,0 +1,97 @@
+package io.github.drompincen.javaclawv1.gateway.controller;
+
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes a {@link Flux} as NDJSON or SSE, whichever the client asked for, through an emitter
+ * that gives up after {@code javaclaw.streams.timeout-ms}. Spring never times out a streamed
+ * Flux on its own, and the container-wide async timeout would apply to every other async
+ * request as well. The next element is requested only once the previous one is written, so a
+ * slow client holds back the cursor rather than filling the heap.
+ */
+@Component
+class StreamResponses {
+
+    private static final Logger log = LoggerFactory.getLogger(StreamResponses.class);
+
+    private final long timeoutMs;
+
+    StreamResponses(Environment env) {
+        this.timeoutMs = env.getProperty("javaclaw.streams.timeout-ms", Long.class, 600_000L);
+    }
+
+    ResponseEntity<ResponseBodyEmitter> emit(Flux<?> items, String accept) {
+        boolean sse = wantsEventStream(accept);
+        ResponseBodyEmitter emitter = sse ? new SseEmitter(timeoutMs) : new ResponseBodyEmitter(timeoutMs);
+        BaseSubscriber<Object> writer = new BaseSubscriber<>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                request(1);
+            }
+
+            @Override
+            protected void hookOnNext(Object item) {
+                try {
+                    if (sse) {
+                        ((SseEmitter) emitter).send(SseEmitter.event().data(item, MediaType.APPLICATION_JSON));
+                    } else {
+                        emitter.send(item, MediaType.APPLICATION_JSON);
+                        emitter.send("\n", MediaType.TEXT_PLAIN);
+                    }
+                    request(1);
+                } catch (IOException | IllegalStateException e) {
+                    log.debug("Stream client went away: {}", e.getMessage());
+                    cancel();
+                }
+            }
+
+            @Override
+            protected void hookOnComplete() {
+                emitter.complete();
+            }
+
+            @Override
+            protected void hookOnError(Throwable e) {
+                emitter.completeWithError(e);
+            }
+        };
+        emitter.onTimeout(() -> {
+            log.debug("Stream timed out after {} ms", timeoutMs);
+            writer.dispose();
+            emitter.complete();
+        });
+        emitter.onError(e -> writer.dispose());
+        emitter.onCompletion(writer::dispose);
+        items.publishOn(Schedulers.boundedElastic(), 1).subscribe(writer);
+        return ResponseEntity.ok()
+                .contentType(sse ? MediaType.TEXT_EVENT_STREAM : MediaType.APPLICATION_NDJSON)
+                .body(emitter);
+    }
+
+    /** SSE only when the client prefers it over NDJSON; wildcards and a missing header get NDJSON. */
+    static boolean wantsEventStream(String accept) {
+        if (accept == null || accept.isBlank()) return false;
+        List<MediaType> accepted = MediaType.parseMediaTypes(accept);
+        MimeTypeUtils.sortBySpecificity(accepted);
+        for (MediaType type : accepted) {
+            if (type.equalsTypeAndSubtype(MediaType.TEXT_EVENT_STREAM)) return true;
+            if (type.equalsTypeAndSubtype(MediaType.APPLICATION_NDJSON)) return false;
+        }
+        return false;
+    }
+}
@@ -4,36 +4,67 @@ import io.github.drompincen.javaclawv1.persistence.document.MessageDocument;
 import io.github.drompincen.javaclawv1.persistence.document.ThreadDocument;
 import io.github.drompincen.javaclawv1.persistence.repository.MessageRepository;
 import io.github.drompincen.javaclawv1.persistence.repository.ThreadRepository;
+import io.github.drompincen.javaclawv1.persistence.repository.reactive.ReactiveThreadRepository;
 import io.github.drompincen.javaclawv1.protocol.api.*;
 import io.github.drompincen.javaclawv1.protocol.event.EventType;
 import io.github.drompincen.javaclawv1.runtime.agent.AgentLoop;
 import io.github.drompincen.javaclawv1.runtime.agent.EventService;
+import io.github.drompincen.javaclawv1.runtime.upload.ImagePartStore;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.StringOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import reactor.core.publisher.Flux;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/projects/{projectId}/threads")
 public class ThreadController {
 
+    private static final int PREVIEW_CHARS = 200;
+
     private final ThreadRepository threadRepository;
     private final MessageRepository messageRepository;
     private final AgentLoop agentLoop;
     private final EventService eventService;
+    private final MongoTemplate mongoTemplate;
+    private final ReactiveThreadRepository reactiveThreadRepository;
+    private final ImagePartStore imagePartStore;
+    private final StreamResponses streamResponses;
 
     public ThreadController(ThreadRepository threadRepository,
                             MessageRepository messageRepository,
                             AgentLoop agentLoop,
-                            EventService eventService) {
+                            EventService eventService,
+                            MongoTemplate mongoTemplate,
+                            ReactiveThreadRepository reactiveThreadRepository,
+                            ImagePartStore imagePartStore,
+                            StreamResponses streamResponses) {
         this.threadRepository = threadRepository;
         this.messageRepository = messageRepository;
         this.agentLoop = agentLoop;
         this.eventService = eventService;
+        this.mongoTemplate = mongoTemplate;
+        this.reactiveThreadRepository = reactiveThreadRepository;
+        this.imagePartStore = imagePartStore;
+        this.streamResponses = streamResponses;
     }
 
     @PostMapping
@@ -50,10 +81,92 @@ public class ThreadController {
         return ResponseEntity.status(201).body(toDto(doc));
     }
 
+    /**
+     * Thread summaries, most recently updated first. The preview and counts are computed in the
+     * database so content, decisions and actions never leave it; the detail endpoint returns them.
+     * {@code q} keeps threads whose title, content or summary contains any of its words.
+     */
     @GetMapping
-    public List<ThreadDto> list(@PathVariable String projectId) {
-        return threadRepository.findByProjectIdsOrderByUpdatedAtDesc(projectId).stream()
-                .map(this::toDto).collect(Collectors.toList());
+    public ResponseEntity<?> list(@PathVariable String projectId,
+                                  @RequestParam(required = false) Integer limit,
+                                  @RequestParam(required = false) String cursor,
+                                  @RequestParam(required = false) String q) {
+        int pageSize = KeysetCursor.limit(limit);
+        Criteria criteria = Criteria.where("projectIds").is(projectId);
+        if (q != null && !q.isBlank()) {
+            criteria = new Criteria().andOperator(criteria, matchingAnyWord(q));
+        }
+        if (cursor != null) {
+            try {
+                criteria = new Criteria().andOperator(criteria, KeysetCursor.decode(cursor).after());
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Invalid cursor"));
+            }
+        }
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(criteria),
+                Aggregation.sort(KeysetCursor.SORT),
+                Aggregation.limit(pageSize + 1),
+                Aggregation.project("projectIds", "title", "status", "lifecycle", "createdAt", "updatedAt",
+                                "objectiveIds", "mergedFromThreadIds", "mergedIntoThreadId")
+                        .and(StringOperators.valueOf(ConditionalOperators.ifNull("content")
+                                        .thenValueOf(ConditionalOperators.ifNull("summary").then("")))
+                                .substringCP(0, PREVIEW_CHARS)).as("preview")
+                        .and(count("decisions")).as("decisionCount")
+                        .and(count("actions")).as("actionCount")
+                        .and(count("evidence")).as("evidenceCount"));
+        List<ThreadSummaryDto> threads = mongoTemplate.aggregate(aggregation, "threads", Document.class)
+                .getMappedResults().stream().map(ThreadController::toSummary).collect(Collectors.toList());
+        return KeysetCursor.page(threads, pageSize,
+                t -> new KeysetCursor(t.updatedAt(), t.threadId()).encode());
+    }
+
+    /**
+     * Every thread of the project in full, newest first, as NDJSON or SSE. Rows are written as the
+     * cursor yields them and the next one is only requested once the client has taken the last,
+     * so an export never holds the whole project in memory.
+     */
+    @GetMapping(value = "/stream", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public ResponseEntity<ResponseBodyEmitter> stream(@PathVariable String projectId,
+                                                      @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return streamResponses.emit(threads(projectId), accept);
+    }
+
+    Flux<ThreadDto> threads(String projectId) {
+        return reactiveThreadRepository.findByProjectIdsOrderByUpdatedAtDesc(projectId).map(this::toDto);
+    }
+
+    private static Criteria matchingAnyWord(String q) {
+        List<Criteria> matches = new ArrayList<>();
+        for (String word : q.trim().split("\\s+")) {
+            Pattern pattern = Pattern.compile(Pattern.quote(word), Pattern.CASE_INSENSITIVE);
+            for (String field : List.of("title", "content", "summary")) {
+                matches.add(Criteria.where(field).regex(pattern));
+            }
+        }
+        return new Criteria().orOperator(matches);
+    }
+
+    private static ArrayOperators.Size count(String arrayField) {
+        return ArrayOperators.Size.lengthOfArray(ConditionalOperators.ifNull(arrayField).then(List.of()));
+    }
+
+    private static ThreadSummaryDto toSummary(Document row) {
+        String status = row.getString("status");
+        Date createdAt = row.getDate("createdAt");
+        Date updatedAt = row.getDate("updatedAt");
+        List<String> objectiveIds = row.getList("objectiveIds", String.class);
+        return new ThreadSummaryDto(row.getString("_id"), row.getList("projectIds", String.class),
+                row.getString("title"), status != null ? SessionStatus.valueOf(status) : null,
+                row.getString("lifecycle"),
+                createdAt != null ? createdAt.toInstant() : null,
+                updatedAt != null ? updatedAt.toInstant() : null,
+                row.getString("preview"),
+                row.getInteger("decisionCount", 0), row.getInteger("actionCount", 0),
+                row.getInteger("evidenceCount", 0),
+                objectiveIds != null ? objectiveIds : List.of(),
+                row.getList("mergedFromThreadIds", String.class),
+                row.getString("mergedIntoThreadId"));
     }
 
     @GetMapping("/{threadId}")
@@ -80,14 +193,11 @@ public class ThreadController {
         msg.setTimestamp(Instant.now());
 
         if (req.parts() != null && !req.parts().isEmpty()) {
-            msg.setParts(req.parts().stream().map(p -> {
-                var part = new MessageDocument.ContentPart();
-                part.setType(p.type());
-                part.setText(p.text());
-                part.setMediaType(p.mediaType());
-                part.setData(p.data());
-                return part;
-            }).toList());
+            try {
+                msg.setParts(imagePartStore.store(req.parts()));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+            }
         }
 
         messageRepository.save(msg);
@@ -110,7 +220,11 @@ public class ThreadController {
                 .filter(t -> t.getEffectiveProjectIds().contains(projectId))
                 .map(t -> {
                     agentLoop.stop(threadId);
+                    Query withImages = Query.query(Criteria.where("sessionId").is(threadId).and("parts.blobId").exists(true));
+                    withImages.fields().include("parts.blobId");
+                    List<MessageDocument> imageMessages = mongoTemplate.find(withImages, MessageDocument.class);
                     messageRepository.deleteBySessionId(threadId);
+                    imagePartStore.release(imageMessages);
                     threadRepository.deleteById(threadId);
                     return ResponseEntity.noContent().<Void>build();
                 })
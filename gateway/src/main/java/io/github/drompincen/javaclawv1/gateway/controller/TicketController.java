@@ -1,13 +1,18 @@
 package io.github.drompincen.javaclawv1.gateway.controller;
 
 import io.github.drompincen.javaclawv1.persistence.document.ThingDocument;
+import io.github.drompincen.javaclawv1.persistence.repository.reactive.ReactiveThingRepository;
 import io.github.drompincen.javaclawv1.protocol.api.CreateTicketRequest;
 import io.github.drompincen.javaclawv1.protocol.api.ThingCategory;
 import io.github.drompincen.javaclawv1.protocol.api.TicketDto;
 import io.github.drompincen.javaclawv1.protocol.api.TicketType;
 import io.github.drompincen.javaclawv1.runtime.thing.ThingService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import reactor.core.publisher.Flux;
 
 import java.time.Instant;
 import java.util.LinkedHashMap;
@@ -20,9 +25,14 @@ import java.util.stream.Collectors;
 public class TicketController {
 
     private final ThingService thingService;
+    private final ReactiveThingRepository reactiveThingRepository;
+    private final StreamResponses streamResponses;
 
-    public TicketController(ThingService thingService) {
+    public TicketController(ThingService thingService, ReactiveThingRepository reactiveThingRepository,
+                            StreamResponses streamResponses) {
         this.thingService = thingService;
+        this.reactiveThingRepository = reactiveThingRepository;
+        this.streamResponses = streamResponses;
     }
 
     @PostMapping
@@ -52,6 +62,22 @@ public class TicketController {
         return docs.stream().map(this::toDto).collect(Collectors.toList());
     }
 
+    /** Streaming counterpart of {@link #list}: tickets are written one per line as they are read. */
+    @GetMapping(value = "/stream", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public ResponseEntity<ResponseBodyEmitter> stream(@PathVariable String projectId,
+                                                      @RequestParam(required = false) TicketDto.TicketStatus status,
+                                                      @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return streamResponses.emit(tickets(projectId, status), accept);
+    }
+
+    Flux<TicketDto> tickets(String projectId, TicketDto.TicketStatus status) {
+        Flux<ThingDocument> things = (status != null)
+                ? reactiveThingRepository.findByProjectIdAndThingCategoryAndStatus(projectId, ThingCategory.TICKET,
+                        status.name())
+                : reactiveThingRepository.findByProjectIdAndThingCategory(projectId, ThingCategory.TICKET);
+        return things.map(this::toDto);
+    }
+
     @GetMapping("/{ticketId}")
     public ResponseEntity<TicketDto> get(@PathVariable String projectId, @PathVariable String ticketId) {
         return thingService.findById(ticketId, ThingCategory.TICKET)
@@ -0,0 +1,62 @@
+package io.github.drompincen.javaclawv1.gateway.controller;
+
+import io.github.drompincen.javaclawv1.persistence.document.SpanDocument;
+import io.github.drompincen.javaclawv1.persistence.repository.SpanRepository;
+import io.github.drompincen.javaclawv1.runtime.trace.OtlpJson;
+import io.github.drompincen.javaclawv1.runtime.trace.TraceWaterfall;
+import io.github.drompincen.javaclawv1.runtime.trace.Tracer;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trace lookup. An intake pipeline's trace id is its pipeline id, so
+ * {@code GET /api/traces/{pipelineId}} is the pipeline waterfall.
+ */
+@RestController
+@RequestMapping("/api/traces")
+public class TraceController {
+
+    private final SpanRepository spanRepository;
+    private final Tracer tracer;
+
+    public TraceController(SpanRepository spanRepository, Tracer tracer) {
+        this.spanRepository = spanRepository;
+        this.tracer = tracer;
+    }
+
+    /** Most recent root spans (pipelines and standalone agent runs). */
+    @GetMapping
+    public List<SpanDocument> recentTraces() {
+        return spanRepository.findTop50ByParentSpanIdIsNullOrderByStartTimeDesc();
+    }
+
+    @GetMapping("/{traceId}")
+    public ResponseEntity<TraceWaterfall.View> waterfall(@PathVariable String traceId) {
+        List<SpanDocument> spans = load(traceId);
+        if (spans.isEmpty()) return ResponseEntity.notFound().build();
+        return ResponseEntity.ok(TraceWaterfall.build(traceId, spans));
+    }
+
+    /** The trace as an OTLP/JSON export request, for loading into an OTLP-compatible viewer. */
+    @GetMapping("/{traceId}/otlp")
+    public ResponseEntity<Map<String, Object>> otlp(@PathVariable String traceId) {
+        List<SpanDocument> spans = load(traceId);
+        if (spans.isEmpty()) return ResponseEntity.notFound().build();
+        return ResponseEntity.ok(OtlpJson.export(spans));
+    }
+
+    @GetMapping("/session/{sessionId}")
+    public List<SpanDocument> sessionSpans(@PathVariable String sessionId) {
+        tracer.flush();
+        return spanRepository.findBySessionIdOrderByStartTimeAsc(sessionId);
+    }
+
+    private List<SpanDocument> load(String traceId) {
+        // Write spans finished in the last flush interval so the view is current
+        tracer.flush();
+        return spanRepository.findByTraceIdOrderByStartTimeAsc(traceId);
+    }
+}
@@ -1,11 +1,12 @@
 package io.github.drompincen.javaclawv1.gateway.websocket;
 
 import io.github.drompincen.javaclawv1.persistence.document.EventDocument;
-import io.github.drompincen.javaclawv1.persistence.repository.SessionRepository;
 import io.github.drompincen.javaclawv1.persistence.stream.EventChangeStreamTailer;
 import io.github.drompincen.javaclawv1.persistence.stream.EventStreamListener;
 import io.github.drompincen.javaclawv1.protocol.ws.WsMessage;
 import io.github.drompincen.javaclawv1.protocol.ws.WsMessageType;
+import io.github.drompincen.javaclawv1.runtime.cache.EntityCacheService;
+import io.github.drompincen.javaclawv1.runtime.metrics.JavaClawMetrics;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,6 +18,8 @@ import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 import jakarta.annotation.PostConstruct;
 import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -29,16 +32,27 @@ public class JavaClawWebSocketHandler extends TextWebSocketHandler implements Ev
 
     private final ObjectMapper objectMapper;
     private final EventChangeStreamTailer tailer;
-    private final SessionRepository sessionRepository;
+    private final EntityCacheService entityCache;
+    private final JavaClawMetrics metrics;
     private final Map<String, Set<WebSocketSession>> sessionSubscriptions = new ConcurrentHashMap<>();
     private final Map<String, Set<WebSocketSession>> projectSubscriptions = new ConcurrentHashMap<>();
     private final Set<WebSocketSession> allSessions = new CopyOnWriteArraySet<>();
 
     public JavaClawWebSocketHandler(ObjectMapper objectMapper, EventChangeStreamTailer tailer,
-                                     SessionRepository sessionRepository) {
+                                     EntityCacheService entityCache, JavaClawMetrics metrics) {
         this.objectMapper = objectMapper;
         this.tailer = tailer;
-        this.sessionRepository = sessionRepository;
+        this.entityCache = entityCache;
+        this.metrics = metrics;
+        metrics.gauge("javaclaw.websocket.sessions", "Open WebSocket connections", allSessions::size);
+        metrics.gauge("javaclaw.websocket.subscriptions", "Session and project subscriptions across connections",
+                () -> count(sessionSubscriptions) + count(projectSubscriptions));
+    }
+
+    private static int count(Map<String, Set<WebSocketSession>> subscriptions) {
+        int n = 0;
+        for (Set<WebSocketSession> set : subscriptions.values()) n += set.size();
+        return n;
     }
 
     @PostConstruct
@@ -97,21 +111,17 @@ public class JavaClawWebSocketHandler extends TextWebSocketHandler implements Ev
             var sessionSubs = sessionSubscriptions.get(event.getSessionId());
             if (sessionSubs != null) {
                 for (var ws : sessionSubs) {
-                    if (ws.isOpen()) {
-                        try { ws.sendMessage(tm); } catch (IOException ignored) {}
-                    }
+                    send(ws, tm, event);
                 }
             }
 
             // Broadcast to project subscribers
-            sessionRepository.findById(event.getSessionId()).ifPresent(sess -> {
+            entityCache.session(event.getSessionId()).ifPresent(sess -> {
                 if (sess.getProjectId() != null) {
                     var projectSubs = projectSubscriptions.get(sess.getProjectId());
                     if (projectSubs != null) {
                         for (var ws : projectSubs) {
-                            if (ws.isOpen()) {
-                                try { ws.sendMessage(tm); } catch (IOException ignored) {}
-                            }
+                            send(ws, tm, event);
                         }
                     }
                 }
@@ -121,6 +131,18 @@ public class JavaClawWebSocketHandler extends TextWebSocketHandler implements Ev
         }
     }
 
+    private void send(WebSocketSession ws, TextMessage tm, EventDocument event) {
+        if (!ws.isOpen()) return;
+        try {
+            ws.sendMessage(tm);
+            if (event.getTimestamp() != null) {
+                metrics.recordWebSocketSendLag(Duration.between(event.getTimestamp(), Instant.now()));
+            }
+        } catch (IOException e) {
+            metrics.recordWebSocketSendFailure();
+        }
+    }
+
     @Override
     public void onError(Throwable t) {
         log.error("Event stream error in WebSocket handler", t);
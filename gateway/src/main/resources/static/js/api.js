@@ -5,6 +5,20 @@ async function get(path) {
   if (!res.ok) throw new Error(`GET ${path} → ${res.status}`);
   return res.json();
 }
+// Follows X-Next-Cursor until the keyset-paginated list is exhausted
+async function getAll(path) {
+  const items = [];
+  let cursor = null;
+  do {
+    const sep = path.includes('?') ? '&' : '?';
+    const url = cursor ? `${path}${sep}cursor=${encodeURIComponent(cursor)}` : path;
+    const res = await fetch(BASE + url);
+    if (!res.ok) throw new Error(`GET ${url} → ${res.status}`);
+    items.push(...await res.json());
+    cursor = res.headers.get('X-Next-Cursor');
+  } while (cursor);
+  return items;
+}
 async function post(path, body) {
   const res = await fetch(BASE + path, {
     method: 'POST', headers: { 'Content-Type': 'application/json' },
@@ -39,7 +53,8 @@ export const projects = {
 };
 
 export const threads = {
-  list:   (pid)        => get(`${projectPath(pid)}/threads`),
+  list:   (pid)        => getAll(`${projectPath(pid)}/threads?limit=500`),
+  search: (pid, q)     => getAll(`${projectPath(pid)}/threads?limit=500&q=${encodeURIComponent(q)}`),
   get:    (pid, id)    => get(`${projectPath(pid)}/threads/${id}`),
   update: (pid, id, d) => put(`${projectPath(pid)}/threads/${id}`, d),
   delete: (pid, id)    => del(`${projectPath(pid)}/threads/${id}`),
@@ -166,13 +181,13 @@ export const executions = {
 };
 
 export const sessions = {
-  list:   ()           => get('/api/sessions'),
+  list:   ()           => getAll('/api/sessions?limit=500'),
   get:    (id)         => get(`/api/sessions/${id}`),
   create: (data)       => post('/api/sessions', data || {}),
   run:    (id)         => post(`/api/sessions/${id}/run`),
   pause:  (id)         => post(`/api/sessions/${id}/pause`),
   resume: (id)         => post(`/api/sessions/${id}/resume`),
-  messages: (id)       => get(`/api/sessions/${id}/messages`),
+  messages: (id)       => getAll(`/api/sessions/${id}/messages?limit=500`),
   sendMessage: (id, d) => post(`/api/sessions/${id}/messages`, d),
 };
 
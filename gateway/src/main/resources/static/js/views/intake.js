@@ -225,13 +225,6 @@ export async function render() {
 
     // Client-side keyword search fallback
     try {
-      const [threads, objectives, tickets, blindspots] = await Promise.all([
-        api.threads.list(pid).catch(() => []),
-        api.objectives.list(pid).catch(() => []),
-        api.tickets.list(pid).catch(() => []),
-        api.blindspots.list(pid).catch(() => [])
-      ]);
-
       const keywords = extractKeywords(question);
       if (keywords.length === 0) {
         responseDiv.innerHTML = '';
@@ -240,12 +233,20 @@ export async function render() {
         return;
       }
 
+      // Thread summaries carry only a preview, so the full content is matched server-side
+      const [threads, objectives, tickets, blindspots] = await Promise.all([
+        api.threads.search(pid, keywords.join(' ')).catch(() => []),
+        api.objectives.list(pid).catch(() => []),
+        api.tickets.list(pid).catch(() => []),
+        api.blindspots.list(pid).catch(() => [])
+      ]);
+
       responseDiv.innerHTML = '';
       responseDiv.appendChild(askLogLine('ask', question));
       responseDiv.appendChild(askLogLine('sys', `local search — keywords: ${keywords.join(', ')}`));
 
       const scored = [
-        ...threads.map(t => ({ score: scoreItem(keywords, t.title||'', t.content||'', t.summary||''), label: t.title||'Untitled', type: 'thread', id: t.threadId, data: t })),
+        ...threads.map(t => ({ score: Math.max(1, scoreItem(keywords, t.title||'', t.preview||'')), label: t.title||'Untitled', type: 'thread', id: t.threadId, data: t })),
         ...objectives.map(o => ({ score: scoreItem(keywords, o.outcome||'', o.sprintName||''), label: `${o.sprintName||''} — ${o.outcome||''}`, type: 'objective', id: o.objectiveId, data: o })),
         ...tickets.map(t => ({ score: scoreItem(keywords, t.title||'', t.description||'', t.summary||''), label: t.title||t.key||'Untitled', type: 'ticket', id: t.ticketId, data: t })),
         ...blindspots.map(b => ({ score: scoreItem(keywords, b.title||'', b.description||''), label: b.title||'Untitled', type: 'blindspot', id: b.blindspotId, data: b })),
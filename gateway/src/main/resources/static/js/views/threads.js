@@ -74,9 +74,9 @@ export async function render() {
       el.dataset.threadId = t.threadId;
       if (isMerged) el.style.opacity = '0.4';
 
-      const decCount = (t.decisions || []).length;
-      const actCount = (t.actions || []).length;
-      const preview = (t.content || t.summary || '').substring(0, 150) || 'No content yet';
+      const decCount = t.decisionCount || 0;
+      const actCount = t.actionCount || 0;
+      const preview = (t.preview || '').substring(0, 150) || 'No content yet';
       const statusLabel = t.lifecycle === 'MERGED' ? 'MERGED' : (t.status || t.lifecycle || 'DRAFT');
 
       el.innerHTML = `
@@ -121,8 +121,12 @@ export async function render() {
           container.querySelectorAll('.thread-row.active').forEach(r => r.classList.remove('active'));
           selectedThreadId = t.threadId;
           el.classList.add('active');
-          setSelected({ type: 'thread', id: t.threadId, data: t });
-          renderReadingPane(pid, t);
+          // The list only carries summaries; content, decisions and actions come from the detail endpoint
+          api.threads.get(pid, t.threadId).then(full => {
+            if (selectedThreadId !== t.threadId) return;
+            setSelected({ type: 'thread', id: t.threadId, data: full });
+            renderReadingPane(pid, full);
+          }).catch(err => toast('could not load thread: ' + err.message));
         }
       });
 
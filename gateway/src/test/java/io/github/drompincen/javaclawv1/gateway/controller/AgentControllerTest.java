@@ -3,6 +3,7 @@ package io.github.drompincen.javaclawv1.gateway.controller;
 import io.github.drompincen.javaclawv1.persistence.document.AgentDocument;
 import io.github.drompincen.javaclawv1.persistence.repository.AgentRepository;
 import io.github.drompincen.javaclawv1.protocol.api.AgentRole;
+import io.github.drompincen.javaclawv1.runtime.agent.AgentRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -22,12 +23,13 @@ import static org.mockito.Mockito.*;
 class AgentControllerTest {
 
     @Mock private AgentRepository agentRepository;
+    @Mock private AgentRegistry agentRegistry;
 
     private AgentController controller;
 
     @BeforeEach
     void setUp() {
-        controller = new AgentController(agentRepository);
+        controller = new AgentController(agentRepository, agentRegistry);
     }
 
     @Test
@@ -76,6 +78,7 @@ class AgentControllerTest {
 
         assertThat(response.getStatusCode().value()).isEqualTo(204);
         verify(agentRepository).deleteById("old");
+        verify(agentRegistry).invalidate();
     }
 
     @Test
@@ -0,0 +1,114 @@
+package io.github.drompincen.javaclawv1.gateway.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.drompincen.javaclawv1.persistence.document.EventDocument;
+import io.github.drompincen.javaclawv1.persistence.repository.reactive.ReactiveEventRepository;
+import io.github.drompincen.javaclawv1.protocol.event.Event;
+import io.github.drompincen.javaclawv1.protocol.event.EventType;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+class EventControllerTest {
+
+    private final ReactiveEventRepository repository = mock(ReactiveEventRepository.class);
+    private final EventController controller = new EventController(repository, new ObjectMapper(),
+            new StreamResponses(new MockEnvironment()));
+    private final MockMvc mvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+    @Test
+    void streamReplaysEventsAfterTheRequestedSeq() {
+        when(repository.findBySessionIdAndSeqGreaterThanOrderBySeqAsc("s1", 1))
+                .thenReturn(Flux.just(event(2, Map.of("content", "hi")), event(3, null)));
+
+        List<Event> events = controller.events("s1", 1).collectList().block();
+
+        assertThat(events).extracting(Event::seq).containsExactly(2L, 3L);
+        assertThat(events.get(0).payload().get("content").asText()).isEqualTo("hi");
+        assertThat(events.get(1).payload()).isNull();
+    }
+
+    @Test
+    void streamOnlyPullsWhatTheSubscriberRequests() {
+        AtomicLong requested = new AtomicLong();
+        when(repository.findBySessionIdAndSeqGreaterThanOrderBySeqAsc("s1", 0))
+                .thenReturn(Flux.range(1, 10_000).map(i -> event(i, null)).doOnRequest(requested::addAndGet));
+
+        controller.events("s1", 0).limitRate(8).take(5).blockLast();
+
+        assertThat(requested.get()).isLessThan(10_000);
+    }
+
+    @Test
+    void streamWritesOneJsonEventPerLineForNdjson() throws Exception {
+        when(repository.findBySessionIdAndSeqGreaterThanOrderBySeqAsc("s1", 1))
+                .thenReturn(Flux.just(event(2, Map.of("content", "hi")), event(3, null)));
+
+        MvcResult result = mvc.perform(get("/api/sessions/s1/events/stream").param("afterSeq", "1")
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult(5_000);
+
+        assertThat(result.getResponse().getContentType()).startsWith(MediaType.APPLICATION_NDJSON_VALUE);
+        String[] lines = result.getResponse().getContentAsString().split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).contains("\"seq\":2", "\"content\":\"hi\"");
+        assertThat(lines[1]).contains("\"seq\":3");
+    }
+
+    @Test
+    void streamWritesServerSentEventsWhenAskedFor() throws Exception {
+        when(repository.findBySessionIdAndSeqGreaterThanOrderBySeqAsc("s1", 0))
+                .thenReturn(Flux.just(event(1, null), event(2, null)));
+
+        MvcResult result = mvc.perform(get("/api/sessions/s1/events/stream").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult(5_000);
+
+        assertThat(result.getResponse().getContentType()).startsWith(MediaType.TEXT_EVENT_STREAM_VALUE);
+        assertThat(result.getResponse().getContentAsString())
+                .containsPattern("(?m)^data:\\{.*\"seq\":1.*$")
+                .containsPattern("(?m)^data:\\{.*\"seq\":2.*$");
+    }
+
+    @Test
+    void streamTimesOutAfterTheConfiguredStreamTimeout() throws Exception {
+        EventController timed = new EventController(repository, new ObjectMapper(),
+                new StreamResponses(new MockEnvironment().withProperty("javaclaw.streams.timeout-ms", "1500")));
+        when(repository.findBySessionIdAndSeqGreaterThanOrderBySeqAsc("s1", 0)).thenReturn(Flux.never());
+
+        MvcResult result = MockMvcBuilders.standaloneSetup(timed).build()
+                .perform(get("/api/sessions/s1/events/stream").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        assertThat(result.getRequest().getAsyncContext().getTimeout()).isEqualTo(1500);
+    }
+
+    private static EventDocument event(long seq, Object payload) {
+        EventDocument doc = new EventDocument();
+        doc.setEventId("e" + seq);
+        doc.setSessionId("s1");
+        doc.setSeq(seq);
+        doc.setType(EventType.USER_MESSAGE_RECEIVED);
+        doc.setPayload(payload);
+        doc.setTimestamp(Instant.EPOCH);
+        return doc;
+    }
+}
@@ -0,0 +1,135 @@
+package io.github.drompincen.javaclawv1.gateway.controller;
+
+import io.github.drompincen.javaclawv1.persistence.document.LlmInteractionDocument;
+import io.github.drompincen.javaclawv1.persistence.document.LogDocument;
+import io.github.drompincen.javaclawv1.persistence.document.MessageDocument;
+import io.github.drompincen.javaclawv1.persistence.repository.LlmUsageRollup;
+import io.github.drompincen.javaclawv1.runtime.agent.llm.LlmConcurrencyLimiter;
+import io.github.drompincen.javaclawv1.runtime.agent.llm.LlmRouter;
+import io.github.drompincen.javaclawv1.runtime.metrics.LlmUsageRollupService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class LogControllerTest {
+
+    @Mock private LlmUsageRollupService usageRollups;
+    @Mock private MongoTemplate mongoTemplate;
+    @Mock private LlmConcurrencyLimiter concurrencyLimiter;
+    @Mock private LlmRouter llmRouter;
+
+    private LogController controller;
+
+    @BeforeEach
+    void setUp() {
+        controller = new LogController(usageRollups, mongoTemplate, concurrencyLimiter, llmRouter);
+        when(usageRollups.rollup(any(), any(), eq(LlmUsageRollupService.GroupBy.TOTAL)))
+                .thenReturn(List.of(new LlmUsageRollup(null, 4, 1, 1000, 200, 0, 0, 8000, 450.0, 30.0)));
+        when(mongoTemplate.estimatedCount(MessageDocument.class)).thenReturn(12L);
+    }
+
+    @Test
+    void metricsAreReadFromUsageBuckets() {
+        ResponseEntity<Map<String, Object>> response = controller.llmMetrics(24, null, null, null);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody())
+                .containsEntry("recentTokens", 1200L)
+                .containsEntry("recentCalls", 4L)
+                .containsEntry("avgDurationMs", 2000L)
+                .containsEntry("totalMessages", 12L);
+        verify(mongoTemplate, never()).find(any(Query.class), eq(LlmInteractionDocument.class));
+    }
+
+    @Test
+    void unchangedMetricsRevalidateWithNotModified() {
+        String etag = controller.llmMetrics(24, null, null, null).getHeaders().getETag();
+
+        ResponseEntity<Map<String, Object>> response = controller.llmMetrics(24, null, null, etag);
+
+        assertThat(etag).isNotBlank();
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(response.getBody()).isNull();
+
+        when(mongoTemplate.estimatedCount(MessageDocument.class)).thenReturn(13L);
+        assertThat(controller.llmMetrics(24, null, null, etag).getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    void emptyRangeIsRejected() {
+        Instant t = Instant.parse("2026-03-01T00:00:00Z");
+
+        ResponseEntity<Map<String, Object>> response = controller.llmMetrics(24, t, t, null);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    void errorsAreAnArrayPagedByCursorHeader() {
+        Instant t = Instant.parse("2026-03-01T00:00:00Z");
+        when(mongoTemplate.find(any(Query.class), eq(LogDocument.class)))
+                .thenReturn(List.of(log("l3", t.plusSeconds(2)), log("l2", t.plusSeconds(1)), log("l1", t)));
+
+        ResponseEntity<?> first = controller.listErrors(2, null);
+
+        assertThat((List<?>) first.getBody()).hasSize(2);
+        String cursor = first.getHeaders().getFirst(KeysetCursor.NEXT_CURSOR_HEADER);
+        assertThat(KeysetCursor.decode(cursor)).isEqualTo(new KeysetCursor(t.plusSeconds(1), "l2"));
+
+        controller.listErrors(2, cursor);
+
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).find(captor.capture(), eq(LogDocument.class));
+        Query second = captor.getAllValues().get(1);
+        assertThat(second.getQueryObject().toJson()).contains("ERROR", "timestamp", "l2");
+        assertThat(second.getSortObject().toJson()).contains("timestamp", "_id");
+        assertThat(second.getLimit()).isEqualTo(3);
+    }
+
+    @Test
+    void llmInteractionsAreAnArrayWithoutCursorOnTheLastPage() {
+        LlmInteractionDocument doc = new LlmInteractionDocument();
+        doc.setInteractionId("i1");
+        doc.setTimestamp(Instant.parse("2026-03-01T00:00:00Z"));
+        when(mongoTemplate.find(any(Query.class), eq(LlmInteractionDocument.class))).thenReturn(List.of(doc));
+
+        ResponseEntity<?> response = controller.listLlmInteractions("s1", null, null, null);
+
+        assertThat(response.getBody()).isEqualTo(List.of(doc));
+        assertThat(response.getHeaders().containsKey(KeysetCursor.NEXT_CURSOR_HEADER)).isFalse();
+    }
+
+    @Test
+    void malformedCursorAndUnknownLevelAreRejected() {
+        assertThat(controller.listLogs(null, null, null, "not a cursor!").getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(controller.listLogs("LOUD", null, null, null).getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    private static LogDocument log(String id, Instant timestamp) {
+        LogDocument doc = new LogDocument();
+        doc.setLogId(id);
+        doc.setLevel(LogDocument.LogLevel.ERROR);
+        doc.setTimestamp(timestamp);
+        return doc;
+    }
+}
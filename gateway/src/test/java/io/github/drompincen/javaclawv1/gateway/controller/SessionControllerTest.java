@@ -5,15 +5,20 @@ import io.github.drompincen.javaclawv1.persistence.document.SessionDocument;
 import io.github.drompincen.javaclawv1.persistence.repository.MessageRepository;
 import io.github.drompincen.javaclawv1.persistence.repository.SessionRepository;
 import io.github.drompincen.javaclawv1.protocol.api.ModelConfig;
+import io.github.drompincen.javaclawv1.protocol.api.SendMessageRequest;
 import io.github.drompincen.javaclawv1.protocol.api.SessionStatus;
 import io.github.drompincen.javaclawv1.protocol.api.ToolPolicy;
 import io.github.drompincen.javaclawv1.runtime.agent.AgentLoop;
 import io.github.drompincen.javaclawv1.runtime.agent.EventService;
+import io.github.drompincen.javaclawv1.runtime.upload.ImagePartStore;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.http.ResponseEntity;
 
 import java.time.Instant;
@@ -23,6 +28,7 @@ import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -32,12 +38,15 @@ class SessionControllerTest {
     @Mock private MessageRepository messageRepository;
     @Mock private AgentLoop agentLoop;
     @Mock private EventService eventService;
+    @Mock private MongoTemplate mongoTemplate;
+    @Mock private ImagePartStore imagePartStore;
 
     private SessionController controller;
 
     @BeforeEach
     void setUp() {
-        controller = new SessionController(sessionRepository, messageRepository, agentLoop, eventService);
+        controller = new SessionController(sessionRepository, messageRepository, agentLoop, eventService, mongoTemplate,
+                imagePartStore);
     }
 
     @Test
@@ -77,12 +86,88 @@ class SessionControllerTest {
     }
 
     @Test
-    void listSessionsReturnsAll() {
-        when(sessionRepository.findAllByOrderByUpdatedAtDesc()).thenReturn(List.of());
+    void listSessionsReturnsEmptyPageWithoutCursor() {
+        when(mongoTemplate.find(any(Query.class), eq(SessionDocument.class))).thenReturn(List.of());
 
-        var result = controller.list();
+        ResponseEntity<?> response = controller.list(null, null);
 
-        assertThat(result).isEmpty();
+        assertThat((List<?>) response.getBody()).isEmpty();
+        assertThat(response.getHeaders().containsKey(KeysetCursor.NEXT_CURSOR_HEADER)).isFalse();
+    }
+
+    @Test
+    void listSessionsSeeksPastTheCursorOfAFullPage() {
+        Instant t = Instant.parse("2026-01-01T00:00:00Z");
+        when(mongoTemplate.find(any(Query.class), eq(SessionDocument.class)))
+                .thenReturn(List.of(session("s3", t.plusSeconds(2)), session("s2", t.plusSeconds(1)), session("s1", t)));
+
+        ResponseEntity<?> first = controller.list(2, null);
+
+        assertThat((List<?>) first.getBody()).hasSize(2);
+        String cursor = first.getHeaders().getFirst(KeysetCursor.NEXT_CURSOR_HEADER);
+        assertThat(KeysetCursor.decode(cursor)).isEqualTo(new KeysetCursor(t.plusSeconds(1), "s2"));
+
+        controller.list(2, cursor);
+
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).find(captor.capture(), eq(SessionDocument.class));
+        Query second = captor.getAllValues().get(1);
+        assertThat(second.getQueryObject().toJson()).contains("$or", "s2");
+        assertThat(second.getLimit()).isEqualTo(3);
+    }
+
+    @Test
+    void listSessionsRejectsMalformedCursor() {
+        assertThat(controller.list(null, "not a cursor!").getStatusCode().value()).isEqualTo(400);
+    }
+
+    @Test
+    void messagesArePagedBySeqWithoutParts() {
+        when(sessionRepository.findById("s1")).thenReturn(Optional.of(new SessionDocument()));
+        MessageDocument m1 = message(1);
+        MessageDocument m2 = message(2);
+        when(mongoTemplate.find(any(Query.class), eq(MessageDocument.class))).thenReturn(List.of(m1, m2));
+
+        ResponseEntity<?> response = controller.getMessages("s1", 1, "0");
+
+        assertThat((List<?>) response.getBody()).hasSize(1);
+        assertThat(response.getHeaders().getFirst(KeysetCursor.NEXT_CURSOR_HEADER)).isEqualTo("1");
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(captor.capture(), eq(MessageDocument.class));
+        assertThat(captor.getValue().getFieldsObject().get("parts")).isEqualTo(0);
+    }
+
+    @Test
+    void sendMessageStoresImagePartsByReference() {
+        when(sessionRepository.findById("s1")).thenReturn(Optional.of(new SessionDocument()));
+        var image = new SendMessageRequest.ContentPart("image", null, "image/png", "iVBORw0KGgo=");
+        MessageDocument.ContentPart stored = new MessageDocument.ContentPart();
+        stored.setType("image");
+        stored.setBlobId("abc123");
+        when(imagePartStore.store(List.of(image))).thenReturn(List.of(stored));
+
+        ResponseEntity<?> response = controller.sendMessage("s1",
+                new SendMessageRequest("look at this", "user", List.of(image)));
+
+        assertThat(response.getStatusCode().value()).isEqualTo(202);
+        ArgumentCaptor<MessageDocument> captor = ArgumentCaptor.forClass(MessageDocument.class);
+        verify(messageRepository).save(captor.capture());
+        assertThat(captor.getValue().getParts()).singleElement().satisfies(p -> {
+            assertThat(p.getBlobId()).isEqualTo("abc123");
+            assertThat(p.getData()).isNull();
+        });
+    }
+
+    @Test
+    void sendMessageRejectsMalformedImageData() {
+        when(sessionRepository.findById("s1")).thenReturn(Optional.of(new SessionDocument()));
+        when(imagePartStore.store(any())).thenThrow(new IllegalArgumentException("Illegal base64 character"));
+
+        ResponseEntity<?> response = controller.sendMessage("s1", new SendMessageRequest(null, "user",
+                List.of(new SendMessageRequest.ContentPart("image", null, "image/png", "not base64!"))));
+
+        assertThat(response.getStatusCode().value()).isEqualTo(400);
+        verify(messageRepository, never()).save(any());
     }
 
     @Test
@@ -105,4 +190,20 @@ class SessionControllerTest {
 
         assertThat(response.getStatusCode().value()).isEqualTo(404);
     }
+
+    private static SessionDocument session(String id, Instant updatedAt) {
+        SessionDocument doc = new SessionDocument();
+        doc.setSessionId(id);
+        doc.setUpdatedAt(updatedAt);
+        return doc;
+    }
+
+    private static MessageDocument message(long seq) {
+        MessageDocument doc = new MessageDocument();
+        doc.setMessageId("m" + seq);
+        doc.setSeq(seq);
+        doc.setRole("user");
+        doc.setContent("hello " + seq);
+        return doc;
+    }
 }
@@ -0,0 +1,202 @@
+package io.github.drompincen.javaclawv1.gateway.controller;
+
+import io.github.drompincen.javaclawv1.persistence.document.MessageDocument;
+import io.github.drompincen.javaclawv1.persistence.document.ThreadDocument;
+import io.github.drompincen.javaclawv1.persistence.repository.MessageRepository;
+import io.github.drompincen.javaclawv1.persistence.repository.ThreadRepository;
+import io.github.drompincen.javaclawv1.persistence.repository.reactive.ReactiveThreadRepository;
+import io.github.drompincen.javaclawv1.protocol.api.ThreadDto;
+import io.github.drompincen.javaclawv1.protocol.api.ThreadSummaryDto;
+import io.github.drompincen.javaclawv1.runtime.agent.AgentLoop;
+import io.github.drompincen.javaclawv1.runtime.agent.EventService;
+import io.github.drompincen.javaclawv1.runtime.upload.ImagePartStore;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+@ExtendWith(MockitoExtension.class)
+class ThreadControllerTest {
+
+    @Mock private ThreadRepository threadRepository;
+    @Mock private MessageRepository messageRepository;
+    @Mock private AgentLoop agentLoop;
+    @Mock private EventService eventService;
+    @Mock private MongoTemplate mongoTemplate;
+    @Mock private ReactiveThreadRepository reactiveThreadRepository;
+    @Mock private ImagePartStore imagePartStore;
+
+    private ThreadController controller;
+
+    @BeforeEach
+    void setUp() {
+        controller = new ThreadController(threadRepository, messageRepository, agentLoop, eventService, mongoTemplate,
+                reactiveThreadRepository, imagePartStore, new StreamResponses(new MockEnvironment()));
+    }
+
+    @Test
+    void listReturnsSummariesComputedInTheDatabase() {
+        Instant updated = Instant.parse("2026-03-01T10:00:00Z");
+        Document row = new Document("_id", "t1")
+                .append("projectIds", List.of("p1"))
+                .append("title", "Release plan")
+                .append("status", "IDLE")
+                .append("lifecycle", "ACTIVE")
+                .append("updatedAt", Date.from(updated))
+                .append("preview", "Ship on Friday")
+                .append("decisionCount", 2)
+                .append("actionCount", 3)
+                .append("evidenceCount", 1);
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq("threads"), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(row), new Document()));
+
+        ResponseEntity<?> response = controller.list("p1", null, null, null);
+
+        @SuppressWarnings("unchecked")
+        List<ThreadSummaryDto> threads = (List<ThreadSummaryDto>) response.getBody();
+        assertThat(threads).singleElement().satisfies(t -> {
+            assertThat(t.threadId()).isEqualTo("t1");
+            assertThat(t.preview()).isEqualTo("Ship on Friday");
+            assertThat(t.decisionCount()).isEqualTo(2);
+            assertThat(t.actionCount()).isEqualTo(3);
+            assertThat(t.updatedAt()).isEqualTo(updated);
+            assertThat(t.objectiveIds()).isEmpty();
+        });
+        assertThat(response.getHeaders().containsKey(KeysetCursor.NEXT_CURSOR_HEADER)).isFalse();
+    }
+
+    @Test
+    void listNeverProjectsContentDecisionsOrActions() {
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq("threads"), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(), new Document()));
+        String cursor = new KeysetCursor(Instant.parse("2026-03-01T10:00:00Z"), "t9").encode();
+
+        controller.list("p1", 50, cursor, null);
+
+        ArgumentCaptor<Aggregation> captor = ArgumentCaptor.forClass(Aggregation.class);
+        verify(mongoTemplate).aggregate(captor.capture(), eq("threads"), eq(Document.class));
+        List<Document> stages = captor.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT);
+        assertThat(stages.get(0).toJson()).contains("p1", "$or", "t9");
+        assertThat(((Number) stages.get(2).get("$limit")).intValue()).isEqualTo(51);
+        Document projection = stages.get(3).get("$project", Document.class);
+        assertThat(projection).containsKeys("preview", "decisionCount", "actionCount")
+                .doesNotContainKeys("content", "decisions", "actions", "summary");
+    }
+
+    @Test
+    void listSearchesTitleContentAndSummaryForAnyWord() {
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq("threads"), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(), new Document()));
+
+        controller.list("p1", null, null, "release a.b");
+
+        ArgumentCaptor<Aggregation> captor = ArgumentCaptor.forClass(Aggregation.class);
+        verify(mongoTemplate).aggregate(captor.capture(), eq("threads"), eq(Document.class));
+        String match = captor.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT).get(0).toJson();
+        assertThat(match).contains("\"title\"", "\"content\"", "\"summary\"", "release", "\\\\Qa.b\\\\E");
+    }
+
+    @Test
+    void cursorPastUndatedRowsPagesByIdAlone() {
+        KeysetCursor undated = KeysetCursor.decode(new KeysetCursor(null, "t5").encode());
+        assertThat(undated).isEqualTo(new KeysetCursor(null, "t5"));
+        assertThat(undated.after().getCriteriaObject().toJson()).contains("\"updatedAt\": null", "t5");
+        // Dated positions still reach the undated rows, which sort after every date
+        assertThat(new KeysetCursor(Instant.EPOCH, "t1").after().getCriteriaObject().toJson())
+                .contains("\"updatedAt\": null");
+    }
+
+    @Test
+    void listRejectsMalformedCursor() {
+        assertThat(controller.list("p1", null, "%%%", null).getStatusCode().value()).isEqualTo(400);
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void streamEmitsFullThreadsOnDemand() {
+        ThreadDocument first = new ThreadDocument();
+        first.setThreadId("t1");
+        first.setProjectIds(List.of("p1"));
+        first.setContent("full content");
+        ThreadDocument second = new ThreadDocument();
+        second.setThreadId("t2");
+        second.setProjectIds(List.of("p1"));
+        when(reactiveThreadRepository.findByProjectIdsOrderByUpdatedAtDesc("p1")).thenReturn(Flux.just(first, second));
+
+        List<ThreadDto> firstOnly = controller.threads("p1").take(1).collectList().block();
+        assertThat(firstOnly).extracting(ThreadDto::content).containsExactly("full content");
+        assertThat(controller.threads("p1").map(ThreadDto::threadId).collectList().block()).containsExactly("t1", "t2");
+        verifyNoInteractions(mongoTemplate, threadRepository);
+    }
+
+    @Test
+    void deleteReleasesTheImageReferencesOfItsMessages() {
+        ThreadDocument thread = new ThreadDocument();
+        thread.setThreadId("t1");
+        thread.setProjectIds(List.of("p1"));
+        when(threadRepository.findById("t1")).thenReturn(Optional.of(thread));
+        MessageDocument withImage = new MessageDocument();
+        when(mongoTemplate.find(any(Query.class), eq(MessageDocument.class))).thenReturn(List.of(withImage));
+
+        assertThat(controller.delete("p1", "t1").getStatusCode().value()).isEqualTo(204);
+
+        InOrder order = inOrder(messageRepository, imagePartStore);
+        order.verify(messageRepository).deleteBySessionId("t1");
+        order.verify(imagePartStore).release(List.of(withImage));
+    }
+
+    @Test
+    void streamEndpointWritesThreadsAsNdjsonOrServerSentEvents() throws Exception {
+        ThreadDocument thread = new ThreadDocument();
+        thread.setThreadId("t1");
+        thread.setProjectIds(List.of("p1"));
+        thread.setContent("full content");
+        when(reactiveThreadRepository.findByProjectIdsOrderByUpdatedAtDesc("p1"))
+                .thenAnswer(inv -> Flux.just(thread, thread));
+        var mvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        MvcResult ndjson = mvc.perform(get("/api/projects/p1/threads/stream").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        ndjson.getAsyncResult(5_000);
+        assertThat(ndjson.getResponse().getContentType()).startsWith(MediaType.APPLICATION_NDJSON_VALUE);
+        assertThat(ndjson.getResponse().getContentAsString().split("\n"))
+                .hasSize(2)
+                .allSatisfy(line -> assertThat(line).startsWith("{").contains("\"threadId\":\"t1\"", "full content"));
+
+        MvcResult sse = mvc.perform(get("/api/projects/p1/threads/stream").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        sse.getAsyncResult(5_000);
+        assertThat(sse.getResponse().getContentType()).startsWith(MediaType.TEXT_EVENT_STREAM_VALUE);
+        assertThat(sse.getResponse().getContentAsString().split("\n\n"))
+                .hasSize(2)
+                .allSatisfy(event -> assertThat(event).startsWith("data:{").contains("\"threadId\":\"t1\""));
+    }
+}
@@ -0,0 +1,85 @@
+package io.github.drompincen.javaclawv1.gateway.controller;
+
+import io.github.drompincen.javaclawv1.persistence.document.ThingDocument;
+import io.github.drompincen.javaclawv1.persistence.repository.reactive.ReactiveThingRepository;
+import io.github.drompincen.javaclawv1.protocol.api.ThingCategory;
+import io.github.drompincen.javaclawv1.runtime.thing.ThingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+class TicketControllerTest {
+
+    private final ThingService thingService = mock(ThingService.class);
+    private final ReactiveThingRepository repository = mock(ReactiveThingRepository.class);
+    private final MockMvc mvc = MockMvcBuilders.standaloneSetup(
+            new TicketController(thingService, repository, new StreamResponses(new MockEnvironment()))).build();
+
+    @Test
+    void streamWritesOneTicketPerLineForNdjson() throws Exception {
+        when(repository.findByProjectIdAndThingCategory("p1", ThingCategory.TICKET))
+                .thenReturn(Flux.just(ticket("k1", "TODO"), ticket("k2", "DONE")));
+
+        MvcResult result = mvc.perform(get("/api/projects/p1/tickets/stream").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult(5_000);
+
+        assertThat(result.getResponse().getContentType()).startsWith(MediaType.APPLICATION_NDJSON_VALUE);
+        String[] lines = result.getResponse().getContentAsString().split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).contains("\"ticketId\":\"k1\"", "\"status\":\"TODO\"");
+        assertThat(lines[1]).contains("\"ticketId\":\"k2\"", "\"status\":\"DONE\"");
+        verifyNoInteractions(thingService);
+    }
+
+    @Test
+    void streamFiltersByStatusAndWritesServerSentEvents() throws Exception {
+        when(repository.findByProjectIdAndThingCategoryAndStatus("p1", ThingCategory.TICKET, "BLOCKED"))
+                .thenReturn(Flux.just(ticket("k3", "BLOCKED")));
+
+        MvcResult result = mvc.perform(get("/api/projects/p1/tickets/stream").param("status", "BLOCKED")
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult(5_000);
+
+        assertThat(result.getResponse().getContentType()).startsWith(MediaType.TEXT_EVENT_STREAM_VALUE);
+        assertThat(result.getResponse().getContentAsString())
+                .startsWith("data:{")
+                .contains("\"ticketId\":\"k3\"", "\"status\":\"BLOCKED\"")
+                .endsWith("\n\n");
+        verify(repository, never()).findByProjectIdAndThingCategory(any(), any());
+    }
+
+    @Test
+    void clientsPreferringEventStreamGetSse() {
+        assertThat(StreamResponses.wantsEventStream("text/event-stream")).isTrue();
+        assertThat(StreamResponses.wantsEventStream("application/x-ndjson;q=0.5, text/event-stream")).isTrue();
+        assertThat(StreamResponses.wantsEventStream("application/x-ndjson, text/event-stream;q=0.5")).isFalse();
+        assertThat(StreamResponses.wantsEventStream("*/*")).isFalse();
+        assertThat(StreamResponses.wantsEventStream(null)).isFalse();
+    }
+
+    private static ThingDocument ticket(String id, String status) {
+        ThingDocument doc = new ThingDocument();
+        doc.setId(id);
+        doc.setProjectId("p1");
+        doc.setThingCategory(ThingCategory.TICKET);
+        doc.setPayload(Map.of("title", "Ticket " + id, "status", status));
+        doc.setCreateDate(Instant.EPOCH);
+        return doc;
+    }
+}
@@ -2,9 +2,11 @@ package io.github.drompincen.javaclawv1.gateway.websocket;
 
 import io.github.drompincen.javaclawv1.persistence.document.EventDocument;
 import io.github.drompincen.javaclawv1.persistence.document.SessionDocument;
-import io.github.drompincen.javaclawv1.persistence.repository.SessionRepository;
 import io.github.drompincen.javaclawv1.persistence.stream.EventChangeStreamTailer;
 import io.github.drompincen.javaclawv1.protocol.event.EventType;
+import io.github.drompincen.javaclawv1.runtime.cache.EntityCacheService;
+import io.github.drompincen.javaclawv1.runtime.metrics.JavaClawMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -26,7 +28,7 @@ import static org.mockito.Mockito.*;
 class JavaClawWebSocketHandlerTest {
 
     @Mock private EventChangeStreamTailer tailer;
-    @Mock private SessionRepository sessionRepository;
+    @Mock private EntityCacheService entityCache;
     @Mock private WebSocketSession wsSession;
     @Mock private WebSocketSession wsSession2;
 
@@ -36,7 +38,8 @@ class JavaClawWebSocketHandlerTest {
     @BeforeEach
     void setUp() {
         objectMapper = new ObjectMapper();
-        handler = new JavaClawWebSocketHandler(objectMapper, tailer, sessionRepository);
+        handler = new JavaClawWebSocketHandler(objectMapper, tailer, entityCache,
+                new JavaClawMetrics(new SimpleMeterRegistry()));
     }
 
     private EventDocument makeEvent(String sessionId) {
@@ -133,7 +136,7 @@ class JavaClawWebSocketHandlerTest {
         SessionDocument sess = new SessionDocument();
         sess.setSessionId("s1");
         sess.setProjectId("p1");
-        when(sessionRepository.findById("s1")).thenReturn(Optional.of(sess));
+        when(entityCache.session("s1")).thenReturn(Optional.of(sess));
 
         handler.onEvent(makeEvent("s1"));
 
@@ -155,7 +158,7 @@ class JavaClawWebSocketHandlerTest {
         SessionDocument sess = new SessionDocument();
         sess.setSessionId("s1");
         sess.setProjectId("p2");
-        when(sessionRepository.findById("s1")).thenReturn(Optional.of(sess));
+        when(entityCache.session("s1")).thenReturn(Optional.of(sess));
 
         handler.onEvent(makeEvent("s1"));
 
@@ -238,7 +241,7 @@ class JavaClawWebSocketHandlerTest {
         SessionDocument sess = new SessionDocument();
         sess.setSessionId("s1");
         sess.setProjectId("p1");
-        when(sessionRepository.findById("s1")).thenReturn(Optional.of(sess));
+        when(entityCache.session("s1")).thenReturn(Optional.of(sess));
 
         handler.onEvent(makeEvent("s1"));
 
@@ -12,21 +12,23 @@ db.events.createIndex({ sessionId: 1, seq: 1 }, { unique: true });
 // Checkpoints: session + step descending
 db.checkpoints.createIndex({ sessionId: 1, stepNo: -1 });
 
-// Sessions: updated descending for listing
-db.sessions.createIndex({ updatedAt: -1 });
+// Sessions: keyset pagination, newest first
+db.sessions.createIndex({ updatedAt: -1, _id: -1 });
 
 // Messages: session + seq
 db.messages.createIndex({ sessionId: 1, seq: 1 }, { unique: true });
+db.messages.createIndex({ 'parts.blobId': 1 }, { sparse: true });
 
-// Locks: TTL index for auto-expiry
-db.locks.createIndex({ expiresAt: 1 }, { expireAfterSeconds: 0 });
+// Locks: one document per session, kept after expiry so fencing tokens keep increasing
+db.locks.createIndex({ sessionId: 1 }, { unique: true });
 
 // Projects
 db.projects.createIndex({ updatedAt: -1 });
 db.projects.createIndex({ status: 1 });
 
-// Threads: project + updated descending
+// Threads: project + updated descending; keyset pagination of the project thread list
 db.threads.createIndex({ projectId: 1, updatedAt: -1 });
+db.threads.createIndex({ projectIds: 1, updatedAt: -1, _id: -1 });
 
 // Approvals: thread + status
 db.approvals.createIndex({ threadId: 1, status: 1 });
@@ -38,6 +40,8 @@ db.memories.createIndex({ projectId: 1, scope: 1 });
 db.memories.createIndex({ sessionId: 1, scope: 1 });
 db.memories.createIndex({ content: "text", key: "text" });
 db.memories.createIndex({ tags: 1 });
+db.memories.createIndex({ scope: 1, projectId: 1, updatedAt: -1, _id: -1 });
+db.memories.createIndex({ updatedAt: -1, _id: -1 });
 
 // Agents
 db.agents.createIndex({ role: 1 });
@@ -47,16 +51,48 @@ db.agents.createIndex({ enabled: 1 });
 db.agent_schedules.createIndex({ agentId: 1, enabled: 1 });
 
 // Future executions
+db.future_executions.createIndex({ idempotencyKey: 1 }, { unique: true });
 db.future_executions.createIndex({ scheduledAt: 1 });
+db.future_executions.createIndex({ execStatus: 1, scheduledAt: 1 }, { name: "exec_pickup_idx" });
+db.future_executions.createIndex({ execStatus: 1, agentId: 1 }, { name: "status_agent_idx" });
+db.future_executions.createIndex({ execStatus: 1, partition: 1, scheduledAt: 1 }, { name: "partition_pickup_idx" });
+db.future_executions.createIndex({ scheduleId: 1, execStatus: 1, scheduledAt: 1 }, { name: "schedule_prune_idx" });
+// One slot per claimed/running execution: the unique index caps each agent at maxConcurrent
+db.future_executions.createIndex({ agentId: 1, slot: 1 }, { name: "agent_slot_idx", unique: true, partialFilterExpression: { slot: { $exists: true } } });
+
+// Scheduler membership: live-node scan, TTL for nodes that died without leaving
+db.scheduler_nodes.createIndex({ heartbeatAt: 1 });
+db.scheduler_nodes.createIndex({ expiresAt: 1 }, { expireAfterSeconds: 0 });
+
+// Upload blobs: GC scan for unreferenced blobs; chunked upload sessions expire via TTL
+db.blobs.createIndex({ refCount: 1, updatedAt: 1 }, { name: "blob_gc_idx" });
+db.upload_sessions.createIndex({ expiresAt: 1 }, { expireAfterSeconds: 0 });
 
 // Past executions
 db.past_executions.createIndex({ executedAt: -1 });
 
-// LLM interactions
+// LLM interactions: per session/agent/project listings, newest first, TTL
 db.llm_interactions.createIndex({ sessionId: 1, timestamp: -1 });
+db.llm_interactions.createIndex({ agentId: 1, timestamp: -1 });
+db.llm_interactions.createIndex({ projectId: 1, timestamp: -1 });
+db.llm_interactions.createIndex({ timestamp: -1 });
+db.llm_interactions.createIndex({ expiresAt: 1 }, { expireAfterSeconds: 0 });
+
+// LLM usage buckets: range scans per granularity, TTL
+db.llm_usage_buckets.createIndex({ granularity: 1, bucketStart: 1 });
+db.llm_usage_buckets.createIndex({ expiresAt: 1 }, { expireAfterSeconds: 0 });
 
-// Logs
+// Logs: paged listings by level/session, newest first, per-level TTL via expiresAt
 db.logs.createIndex({ level: 1, timestamp: -1 });
+db.logs.createIndex({ sessionId: 1, timestamp: -1 });
+db.logs.createIndex({ timestamp: -1 });
+db.logs.createIndex({ expiresAt: 1 }, { expireAfterSeconds: 0 });
+
+// Trace spans: waterfall by trace, spans by session, recent root spans, TTL
+db.traces.createIndex({ traceId: 1, startTime: 1 });
+db.traces.createIndex({ sessionId: 1, startTime: 1 });
+db.traces.createIndex({ parentSpanId: 1, startTime: -1 });
+db.traces.createIndex({ expiresAt: 1 }, { expireAfterSeconds: 0 });
 
 // ---- Things: unified domain collection ----
 // All domain entities (tickets, objectives, resources, phases, etc.)
@@ -64,6 +100,7 @@ db.logs.createIndex({ level: 1, timestamp: -1 });
 // Universal indexes
 db.things.createIndex({ projectId: 1, thingCategory: 1 });
 db.things.createIndex({ projectId: 1, thingCategory: 1, "payload.status": 1 });
+db.things.createIndex({ projectId: 1, thingCategory: 1, identityKeys: 1 }, { name: "project_category_identity" });
 
 // Category-specific partial filter indexes
 db.things.createIndex({ projectId: 1, "payload.sprintName": 1 },
@@ -82,6 +119,8 @@ db.things.createIndex({ "payload.triggered": 1, "payload.triggerAt": 1 },
     { partialFilterExpression: { thingCategory: "REMINDER" } });
 db.things.createIndex({ "payload.title": "text", "payload.content": "text" },
     { partialFilterExpression: { thingCategory: "UPLOAD" } });
+db.things.createIndex({ "payload.blobId": 1, projectId: 1 },
+    { partialFilterExpression: { thingCategory: "UPLOAD" } });
 db.things.createIndex({ "payload.parentTicketId": 1 },
     { partialFilterExpression: { thingCategory: "TICKET" } });
 db.things.createIndex({ projectId: 1, "payload.tags": 1 },
@@ -0,0 +1,60 @@
+package io.github.drompincen.javaclawv1.persistence.document;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One stored upload blob, keyed by the SHA-256 of its bytes. {@code refCount} counts the
+ * UPLOAD things pointing at it; each of those reaches the bytes through a per-upload file
+ * listed in {@code links}. Blobs left at zero references are garbage collected; while that
+ * runs {@code collectingAt} is set and the blob takes no new references.
+ */
+@Document(collection = "blobs")
+@CompoundIndex(name = "blob_gc_idx", def = "{'refCount': 1, 'updatedAt': 1}")
+public class BlobDocument {
+
+    @Id
+    private String sha256;
+    private long size;
+    private String path;
+    private long refCount;
+    private List<String> links;
+    private Map<String, String> extractions;   // extracted text by file extension
+    private Instant createdAt;
+    private Instant updatedAt;
+    private Instant collectingAt;
+
+    public BlobDocument() {}
+
+    public String getSha256() { return sha256; }
+    public void setSha256(String sha256) { this.sha256 = sha256; }
+
+    public long getSize() { return size; }
+    public void setSize(long size) { this.size = size; }
+
+    public String getPath() { return path; }
+    public void setPath(String path) { this.path = path; }
+
+    public long getRefCount() { return refCount; }
+    public void setRefCount(long refCount) { this.refCount = refCount; }
+
+    public List<String> getLinks() { return links; }
+    public void setLinks(List<String> links) { this.links = links; }
+
+    public Map<String, String> getExtractions() { return extractions; }
+    public void setExtractions(Map<String, String> extractions) { this.extractions = extractions; }
+
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+
+    public Instant getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Instant updatedAt) { this.updatedAt = updatedAt; }
+
+    public Instant getCollectingAt() { return collectingAt; }
+    public void setCollectingAt(Instant collectingAt) { this.collectingAt = collectingAt; }
+}
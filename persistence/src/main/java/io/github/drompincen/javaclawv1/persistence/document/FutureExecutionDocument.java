@@ -11,6 +11,11 @@ import java.time.Instant;
 @Document(collection = "future_executions")
 @CompoundIndex(name = "exec_pickup_idx", def = "{'execStatus': 1, 'scheduledAt': 1}")
 @CompoundIndex(name = "date_agent_idx", def = "{'dateKey': 1, 'agentId': 1, 'projectId': 1}")
+@CompoundIndex(name = "status_agent_idx", def = "{'execStatus': 1, 'agentId': 1}")
+@CompoundIndex(name = "partition_pickup_idx", def = "{'execStatus': 1, 'partition': 1, 'scheduledAt': 1}")
+@CompoundIndex(name = "schedule_prune_idx", def = "{'scheduleId': 1, 'execStatus': 1, 'scheduledAt': 1}")
+@CompoundIndex(name = "agent_slot_idx", def = "{'agentId': 1, 'slot': 1}", unique = true,
+        partialFilter = "{'slot': {$exists: true}}")
 public class FutureExecutionDocument {
 
     @Id
@@ -20,6 +25,8 @@ public class FutureExecutionDocument {
     private String dateKey;
     private String agentId;
     private String projectId;
+    /** Scheduler partition of agentId|projectId; the owning node plans and dispatches it. */
+    private int partition;
     private String timezone;
     private Instant scheduledAt;
     private int plannedHour;
@@ -27,7 +34,13 @@ public class FutureExecutionDocument {
     private boolean immediate;
     private ExecStatus execStatus = ExecStatus.READY;
     private int priority = 5;
+    /** Copied from the schedule's executor policy: how many executions of this agent may be active at once. */
+    private int maxConcurrent = 1;
+    /** Which of the agent's maxConcurrent slots a claimed or running execution holds; unset otherwise. */
+    private Integer slot;
     private String lockOwner;
+    /** Fencing token issued by each claim; a run may only write while the document still carries its token. */
+    private String claimToken;
     private Instant lockedAt;
     private Instant leaseUntil;
     private int attempt;
@@ -50,6 +63,8 @@ public class FutureExecutionDocument {
     public void setAgentId(String agentId) { this.agentId = agentId; }
     public String getProjectId() { return projectId; }
     public void setProjectId(String projectId) { this.projectId = projectId; }
+    public int getPartition() { return partition; }
+    public void setPartition(int partition) { this.partition = partition; }
     public String getTimezone() { return timezone; }
     public void setTimezone(String timezone) { this.timezone = timezone; }
     public Instant getScheduledAt() { return scheduledAt; }
@@ -64,8 +79,14 @@ public class FutureExecutionDocument {
     public void setExecStatus(ExecStatus execStatus) { this.execStatus = execStatus; }
     public int getPriority() { return priority; }
     public void setPriority(int priority) { this.priority = priority; }
+    public int getMaxConcurrent() { return maxConcurrent; }
+    public void setMaxConcurrent(int maxConcurrent) { this.maxConcurrent = maxConcurrent; }
+    public Integer getSlot() { return slot; }
+    public void setSlot(Integer slot) { this.slot = slot; }
     public String getLockOwner() { return lockOwner; }
     public void setLockOwner(String lockOwner) { this.lockOwner = lockOwner; }
+    public String getClaimToken() { return claimToken; }
+    public void setClaimToken(String claimToken) { this.claimToken = claimToken; }
     public Instant getLockedAt() { return lockedAt; }
     public void setLockedAt(Instant lockedAt) { this.lockedAt = lockedAt; }
     public Instant getLeaseUntil() { return leaseUntil; }
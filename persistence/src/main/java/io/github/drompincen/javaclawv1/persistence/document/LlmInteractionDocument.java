@@ -9,27 +9,42 @@ import java.time.Instant;
 import java.util.Map;
 
 /**
- * Logs every LLM interaction for metrics, cost tracking, and debugging.
+ * Logs every LLM interaction for metrics, cost tracking, and debugging. Entries expire at
+ * {@code expiresAt}.
  */
 @Document(collection = "llm_interactions")
 @CompoundIndex(name = "session_time", def = "{'sessionId': 1, 'timestamp': -1}")
+@CompoundIndex(name = "agent_time", def = "{'agentId': 1, 'timestamp': -1}")
+@CompoundIndex(name = "project_time", def = "{'projectId': 1, 'timestamp': -1}")
 public class LlmInteractionDocument {
 
     @Id
     private String interactionId;
     private String sessionId;
+    private String projectId;
     private String agentId;          // which agent made the call
     private String provider;         // "anthropic" or "openai"
     private String model;            // e.g., "claude-sonnet-4-5-20250929"
     private int messageCount;        // number of messages in prompt
-    private int promptTokens;        // estimated input tokens
-    private int completionTokens;    // estimated output tokens
+    private int promptTokens;        // input tokens as reported by the provider
+    private int completionTokens;    // output tokens as reported by the provider
+    private int cachedTokens;        // input tokens served from the provider's prompt cache
+    private boolean tokensEstimated; // provider reported no usage; token counts are chars/4 estimates
+    private long timeToFirstTokenMs; // -1 when no token was produced
+    private double tokensPerSecond;  // output tokens per second after the first token
     private long durationMs;         // wall-clock time
     private boolean success;
     private String errorMessage;     // if failed
+    private String routingReason;    // "preferred", "only-provider", "failover:error-rate:anthropic", ...
+    private String failedOverFrom;   // preferred provider when another one served the call
+    private boolean hedged;          // a hedged second request was started
+    private String hedgeWinner;      // "primary" or "hedge" when hedged
+    private int attempts;            // provider requests made, across retries, failover and hedging
     private Map<String, Object> metadata;
     @Indexed(direction = org.springframework.data.mongodb.core.index.IndexDirection.DESCENDING)
     private Instant timestamp;
+    @Indexed(expireAfterSeconds = 0)
+    private Instant expiresAt;
 
     public LlmInteractionDocument() {}
 
@@ -39,6 +54,9 @@ public class LlmInteractionDocument {
     public String getSessionId() { return sessionId; }
     public void setSessionId(String sessionId) { this.sessionId = sessionId; }
 
+    public String getProjectId() { return projectId; }
+    public void setProjectId(String projectId) { this.projectId = projectId; }
+
     public String getAgentId() { return agentId; }
     public void setAgentId(String agentId) { this.agentId = agentId; }
 
@@ -57,6 +75,18 @@ public class LlmInteractionDocument {
     public int getCompletionTokens() { return completionTokens; }
     public void setCompletionTokens(int completionTokens) { this.completionTokens = completionTokens; }
 
+    public int getCachedTokens() { return cachedTokens; }
+    public void setCachedTokens(int cachedTokens) { this.cachedTokens = cachedTokens; }
+
+    public boolean isTokensEstimated() { return tokensEstimated; }
+    public void setTokensEstimated(boolean tokensEstimated) { this.tokensEstimated = tokensEstimated; }
+
+    public long getTimeToFirstTokenMs() { return timeToFirstTokenMs; }
+    public void setTimeToFirstTokenMs(long timeToFirstTokenMs) { this.timeToFirstTokenMs = timeToFirstTokenMs; }
+
+    public double getTokensPerSecond() { return tokensPerSecond; }
+    public void setTokensPerSecond(double tokensPerSecond) { this.tokensPerSecond = tokensPerSecond; }
+
     public long getDurationMs() { return durationMs; }
     public void setDurationMs(long durationMs) { this.durationMs = durationMs; }
 
@@ -66,9 +96,27 @@ public class LlmInteractionDocument {
     public String getErrorMessage() { return errorMessage; }
     public void setErrorMessage(String errorMessage) { this.errorMessage = errorMessage; }
 
+    public String getRoutingReason() { return routingReason; }
+    public void setRoutingReason(String routingReason) { this.routingReason = routingReason; }
+
+    public String getFailedOverFrom() { return failedOverFrom; }
+    public void setFailedOverFrom(String failedOverFrom) { this.failedOverFrom = failedOverFrom; }
+
+    public boolean isHedged() { return hedged; }
+    public void setHedged(boolean hedged) { this.hedged = hedged; }
+
+    public String getHedgeWinner() { return hedgeWinner; }
+    public void setHedgeWinner(String hedgeWinner) { this.hedgeWinner = hedgeWinner; }
+
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+
     public Map<String, Object> getMetadata() { return metadata; }
     public void setMetadata(Map<String, Object> metadata) { this.metadata = metadata; }
 
     public Instant getTimestamp() { return timestamp; }
     public void setTimestamp(Instant timestamp) { this.timestamp = timestamp; }
+
+    public Instant getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(Instant expiresAt) { this.expiresAt = expiresAt; }
 }
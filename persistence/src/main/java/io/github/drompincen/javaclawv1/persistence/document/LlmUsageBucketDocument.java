@@ -0,0 +1,102 @@
+package io.github.drompincen.javaclawv1.persistence.document;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Pre-aggregated LLM usage for one time bucket and one (agent, project, provider, model)
+ * combination. Buckets are upserted with {@code $inc} as interactions are written, so usage
+ * over any range is a sum over a handful of documents instead of a scan of
+ * {@code llm_interactions}. Averages are kept as sum/count pairs so buckets can be added up.
+ */
+@Document(collection = "llm_usage_buckets")
+@CompoundIndex(name = "granularity_start", def = "{'granularity': 1, 'bucketStart': 1}")
+public class LlmUsageBucketDocument {
+
+    public enum Granularity { MINUTE, HOUR, DAY }
+
+    @Id
+    private String id;               // granularity|bucketStart|agentId|projectId|provider|model
+    private Granularity granularity;
+    private Instant bucketStart;
+    private String agentId;
+    private String projectId;
+    private String provider;
+    private String model;
+    private long calls;
+    private long errors;
+    private long promptTokens;
+    private long completionTokens;
+    private long cachedTokens;
+    private long estimatedCalls;
+    private long totalDurationMs;
+    private long timeToFirstTokenSumMs;
+    private long timeToFirstTokenCount;
+    private double tokensPerSecondSum;
+    private long tokensPerSecondCount;
+    @Indexed(expireAfterSeconds = 0)
+    private Instant expiresAt;
+
+    public LlmUsageBucketDocument() {}
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public Granularity getGranularity() { return granularity; }
+    public void setGranularity(Granularity granularity) { this.granularity = granularity; }
+
+    public Instant getBucketStart() { return bucketStart; }
+    public void setBucketStart(Instant bucketStart) { this.bucketStart = bucketStart; }
+
+    public String getAgentId() { return agentId; }
+    public void setAgentId(String agentId) { this.agentId = agentId; }
+
+    public String getProjectId() { return projectId; }
+    public void setProjectId(String projectId) { this.projectId = projectId; }
+
+    public String getProvider() { return provider; }
+    public void setProvider(String provider) { this.provider = provider; }
+
+    public String getModel() { return model; }
+    public void setModel(String model) { this.model = model; }
+
+    public long getCalls() { return calls; }
+    public void setCalls(long calls) { this.calls = calls; }
+
+    public long getErrors() { return errors; }
+    public void setErrors(long errors) { this.errors = errors; }
+
+    public long getPromptTokens() { return promptTokens; }
+    public void setPromptTokens(long promptTokens) { this.promptTokens = promptTokens; }
+
+    public long getCompletionTokens() { return completionTokens; }
+    public void setCompletionTokens(long completionTokens) { this.completionTokens = completionTokens; }
+
+    public long getCachedTokens() { return cachedTokens; }
+    public void setCachedTokens(long cachedTokens) { this.cachedTokens = cachedTokens; }
+
+    public long getEstimatedCalls() { return estimatedCalls; }
+    public void setEstimatedCalls(long estimatedCalls) { this.estimatedCalls = estimatedCalls; }
+
+    public long getTotalDurationMs() { return totalDurationMs; }
+    public void setTotalDurationMs(long totalDurationMs) { this.totalDurationMs = totalDurationMs; }
+
+    public long getTimeToFirstTokenSumMs() { return timeToFirstTokenSumMs; }
+    public void setTimeToFirstTokenSumMs(long timeToFirstTokenSumMs) { this.timeToFirstTokenSumMs = timeToFirstTokenSumMs; }
+
+    public long getTimeToFirstTokenCount() { return timeToFirstTokenCount; }
+    public void setTimeToFirstTokenCount(long timeToFirstTokenCount) { this.timeToFirstTokenCount = timeToFirstTokenCount; }
+
+    public double getTokensPerSecondSum() { return tokensPerSecondSum; }
+    public void setTokensPerSecondSum(double tokensPerSecondSum) { this.tokensPerSecondSum = tokensPerSecondSum; }
+
+    public long getTokensPerSecondCount() { return tokensPerSecondCount; }
+    public void setTokensPerSecondCount(long tokensPerSecondCount) { this.tokensPerSecondCount = tokensPerSecondCount; }
+
+    public Instant getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(Instant expiresAt) { this.expiresAt = expiresAt; }
+}
@@ -6,17 +6,24 @@ import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
 
+/**
+ * One document per session, claimed and released in place. The document is kept after the
+ * lock expires or is released (no TTL) so {@code fencingToken} keeps increasing across
+ * acquisitions.
+ */
 @Document(collection = "locks")
 public class LockDocument {
 
     @Id
     private String lockId;
+    @Indexed(unique = true)
     private String sessionId;
     private String owner;
+    private long fencingToken;       // incremented on every acquisition
 
-    @Indexed(expireAfterSeconds = 60)
-    private Instant expiresAt;
+    private Instant expiresAt;       // lock is free once this has passed
     private Instant acquiredAt;
+    private Instant renewedAt;
 
     public LockDocument() {}
 
@@ -29,9 +36,15 @@ public class LockDocument {
     public String getOwner() { return owner; }
     public void setOwner(String owner) { this.owner = owner; }
 
+    public long getFencingToken() { return fencingToken; }
+    public void setFencingToken(long fencingToken) { this.fencingToken = fencingToken; }
+
     public Instant getExpiresAt() { return expiresAt; }
     public void setExpiresAt(Instant expiresAt) { this.expiresAt = expiresAt; }
 
     public Instant getAcquiredAt() { return acquiredAt; }
     public void setAcquiredAt(Instant acquiredAt) { this.acquiredAt = acquiredAt; }
+
+    public Instant getRenewedAt() { return renewedAt; }
+    public void setRenewedAt(Instant renewedAt) { this.renewedAt = renewedAt; }
 }
@@ -9,10 +9,12 @@ import java.time.Instant;
 import java.util.Map;
 
 /**
- * Stores system logs, errors, and issues in MongoDB for visibility and debugging.
+ * Stores system logs, errors, and issues in MongoDB for visibility and debugging. Entries
+ * expire at {@code expiresAt}, which the writer sets per level.
  */
 @Document(collection = "logs")
 @CompoundIndex(name = "level_time", def = "{'level': 1, 'timestamp': -1}")
+@CompoundIndex(name = "session_time", def = "{'sessionId': 1, 'timestamp': -1}")
 public class LogDocument {
 
     public enum LogLevel { DEBUG, INFO, WARN, ERROR }
@@ -27,6 +29,8 @@ public class LogDocument {
     private Map<String, Object> metadata;  // additional context
     @Indexed(direction = org.springframework.data.mongodb.core.index.IndexDirection.DESCENDING)
     private Instant timestamp;
+    @Indexed(expireAfterSeconds = 0)
+    private Instant expiresAt;
 
     public LogDocument() {}
 
@@ -53,4 +57,7 @@ public class LogDocument {
 
     public Instant getTimestamp() { return timestamp; }
     public void setTimestamp(Instant timestamp) { this.timestamp = timestamp; }
+
+    public Instant getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(Instant expiresAt) { this.expiresAt = expiresAt; }
 }
@@ -12,6 +12,8 @@ import java.util.List;
 @CompoundIndex(name = "scope_key", def = "{'scope': 1, 'key': 1}")
 @CompoundIndex(name = "project_scope", def = "{'projectId': 1, 'scope': 1}")
 @CompoundIndex(name = "thread_scope", def = "{'threadId': 1, 'scope': 1}")
+@CompoundIndex(name = "scope_project_updated_id", def = "{'scope': 1, 'projectId': 1, 'updatedAt': -1, '_id': -1}")
+@CompoundIndex(name = "updated_id", def = "{'updatedAt': -1, '_id': -1}")
 public class MemoryDocument {
 
     @Id
@@ -9,6 +9,7 @@ import java.util.List;
 
 @Document(collection = "messages")
 @CompoundIndex(name = "session_seq", def = "{'sessionId': 1, 'seq': 1}", unique = true)
+@CompoundIndex(name = "parts_blob", def = "{'parts.blobId': 1}", sparse = true)
 public class MessageDocument {
 
     @Id
@@ -31,7 +32,8 @@ public class MessageDocument {
         private String type;      // "text" or "image"
         private String text;      // for type="text"
         private String mediaType; // for type="image", e.g. "image/png"
-        private String data;      // for type="image", base64 encoded
+        private String data;      // for type="image", base64 encoded (messages stored before blob offload)
+        private String blobId;    // for type="image", SHA-256 of the image in the blob store
 
         public ContentPart() {}
 
@@ -46,6 +48,9 @@ public class MessageDocument {
 
         public String getData() { return data; }
         public void setData(String data) { this.data = data; }
+
+        public String getBlobId() { return blobId; }
+        public void setBlobId(String blobId) { this.blobId = blobId; }
     }
 
     public String getMessageId() { return messageId; }
@@ -0,0 +1,37 @@
+package io.github.drompincen.javaclawv1.persistence.document;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Membership row for one scheduler node. A node is live while its {@code heartbeatAt} is
+ * recent; rows of nodes that died without leaving are removed by the {@code expiresAt} TTL.
+ */
+@Document(collection = "scheduler_nodes")
+public class SchedulerNodeDocument {
+
+    @Id
+    private String nodeId;
+    private String hostname;
+    private Instant startedAt;
+    @Indexed
+    private Instant heartbeatAt;
+    @Indexed(expireAfterSeconds = 0)
+    private Instant expiresAt;
+
+    public SchedulerNodeDocument() {}
+
+    public String getNodeId() { return nodeId; }
+    public void setNodeId(String nodeId) { this.nodeId = nodeId; }
+    public String getHostname() { return hostname; }
+    public void setHostname(String hostname) { this.hostname = hostname; }
+    public Instant getStartedAt() { return startedAt; }
+    public void setStartedAt(Instant startedAt) { this.startedAt = startedAt; }
+    public Instant getHeartbeatAt() { return heartbeatAt; }
+    public void setHeartbeatAt(Instant heartbeatAt) { this.heartbeatAt = heartbeatAt; }
+    public Instant getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(Instant expiresAt) { this.expiresAt = expiresAt; }
+}
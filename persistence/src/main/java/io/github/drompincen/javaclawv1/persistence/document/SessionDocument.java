@@ -4,6 +4,7 @@ import io.github.drompincen.javaclawv1.protocol.api.ModelConfig;
 import io.github.drompincen.javaclawv1.protocol.api.SessionStatus;
 import io.github.drompincen.javaclawv1.protocol.api.ToolPolicy;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -11,6 +12,7 @@ import java.time.Instant;
 import java.util.Map;
 
 @Document(collection = "sessions")
+@CompoundIndex(name = "updated_id", def = "{'updatedAt': -1, '_id': -1}")
 public class SessionDocument {
 
     @Id
@@ -24,7 +26,6 @@ public class SessionDocument {
 
     private Instant createdAt;
 
-    @Indexed(direction = org.springframework.data.mongodb.core.index.IndexDirection.DESCENDING)
     private Instant updatedAt;
 
     private SessionStatus status;
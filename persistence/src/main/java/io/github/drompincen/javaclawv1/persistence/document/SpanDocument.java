@@ -0,0 +1,84 @@
+package io.github.drompincen.javaclawv1.persistence.document;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * One timed span of work in a trace: an intake pipeline, one of its phases, an agent run,
+ * a controller/specialist/checker turn, an LLM call or a tool call. Spans expire via a
+ * TTL index on {@code expiresAt} so the collection stays bounded.
+ */
+@Document(collection = "traces")
+@CompoundIndex(name = "trace_start", def = "{'traceId': 1, 'startTime': 1}")
+public class SpanDocument {
+
+    @Id
+    private String spanId;
+    private String traceId;
+    private String parentSpanId;     // null for the root span
+    private String name;             // e.g. "phase triage", "agent generalist", "tool read_file"
+    private String kind;             // pipeline, phase, agent_run, agent, llm, tool
+    private String sessionId;
+    private String projectId;
+    private String agentId;
+    private Instant startTime;
+    private Instant endTime;
+    private long durationMs;
+    private boolean error;
+    private String errorMessage;
+    private Map<String, String> attributes;
+    @Indexed(expireAfterSeconds = 0)
+    private Instant expiresAt;
+
+    public SpanDocument() {}
+
+    public String getSpanId() { return spanId; }
+    public void setSpanId(String spanId) { this.spanId = spanId; }
+
+    public String getTraceId() { return traceId; }
+    public void setTraceId(String traceId) { this.traceId = traceId; }
+
+    public String getParentSpanId() { return parentSpanId; }
+    public void setParentSpanId(String parentSpanId) { this.parentSpanId = parentSpanId; }
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public String getKind() { return kind; }
+    public void setKind(String kind) { this.kind = kind; }
+
+    public String getSessionId() { return sessionId; }
+    public void setSessionId(String sessionId) { this.sessionId = sessionId; }
+
+    public String getProjectId() { return projectId; }
+    public void setProjectId(String projectId) { this.projectId = projectId; }
+
+    public String getAgentId() { return agentId; }
+    public void setAgentId(String agentId) { this.agentId = agentId; }
+
+    public Instant getStartTime() { return startTime; }
+    public void setStartTime(Instant startTime) { this.startTime = startTime; }
+
+    public Instant getEndTime() { return endTime; }
+    public void setEndTime(Instant endTime) { this.endTime = endTime; }
+
+    public long getDurationMs() { return durationMs; }
+    public void setDurationMs(long durationMs) { this.durationMs = durationMs; }
+
+    public boolean isError() { return error; }
+    public void setError(boolean error) { this.error = error; }
+
+    public String getErrorMessage() { return errorMessage; }
+    public void setErrorMessage(String errorMessage) { this.errorMessage = errorMessage; }
+
+    public Map<String, String> getAttributes() { return attributes; }
+    public void setAttributes(Map<String, String> attributes) { this.attributes = attributes; }
+
+    public Instant getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(Instant expiresAt) { this.expiresAt = expiresAt; }
+}
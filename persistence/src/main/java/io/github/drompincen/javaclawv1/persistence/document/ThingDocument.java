@@ -7,21 +7,34 @@ import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 @Document(collection = "things")
 @CompoundIndexes({
         @CompoundIndex(name = "project_category", def = "{'projectId': 1, 'thingCategory': 1}"),
-        @CompoundIndex(name = "project_category_status", def = "{'projectId': 1, 'thingCategory': 1, 'payload.status': 1}")
+        @CompoundIndex(name = "project_category_status", def = "{'projectId': 1, 'thingCategory': 1, 'payload.status': 1}"),
+        @CompoundIndex(name = "project_category_identity", def = "{'projectId': 1, 'thingCategory': 1, 'identityKeys': 1}")
 })
 public class ThingDocument {
 
+    /** Payload fields that identify a thing within its project and category (used for dedup lookups). */
+    public static final Set<String> IDENTITY_FIELDS = Set.of("title", "name", "message", "outcome", "externalRef");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
     @Id
     private String id;
     private String projectId;
     private String projectName;
     private ThingCategory thingCategory;
     private Map<String, Object> payload;
+    /** Normalized {@code field:value} keys for {@link #IDENTITY_FIELDS}; see {@link #refreshIdentityKeys()}. */
+    private List<String> identityKeys;
     private Instant createDate;
     private Instant updateDate;
 
@@ -42,6 +55,9 @@ public class ThingDocument {
     public Map<String, Object> getPayload() { return payload; }
     public void setPayload(Map<String, Object> payload) { this.payload = payload; }
 
+    public List<String> getIdentityKeys() { return identityKeys; }
+    public void setIdentityKeys(List<String> identityKeys) { this.identityKeys = identityKeys; }
+
     public Instant getCreateDate() { return createDate; }
     public void setCreateDate(Instant createDate) { this.createDate = createDate; }
 
@@ -62,4 +78,36 @@ public class ThingDocument {
         Object val = payload.get(key);
         return val != null ? val.toString() : null;
     }
+
+    /** Convenience: get a payload timestamp, whether stored as a BSON date or an ISO-8601 string. */
+    public Instant payloadInstant(String key) {
+        if (payload == null) return null;
+        Object val = payload.get(key);
+        if (val instanceof Instant instant) return instant;
+        if (val instanceof Date date) return date.toInstant();
+        if (val == null) return null;
+        try {
+            return Instant.parse(val.toString());
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /** Recompute {@link #identityKeys} from the current payload. */
+    public void refreshIdentityKeys() {
+        List<String> keys = new ArrayList<>();
+        if (payload != null) {
+            for (String field : IDENTITY_FIELDS) {
+                Object val = payload.get(field);
+                if (val instanceof String text && !text.isBlank()) keys.add(identityKey(field, text));
+            }
+            keys.sort(null);
+        }
+        this.identityKeys = keys;
+    }
+
+    /** Lookup key for a field value: lower-cased, trimmed, inner whitespace collapsed. */
+    public static String identityKey(String field, String value) {
+        return field + ":" + WHITESPACE.matcher(value.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
 }
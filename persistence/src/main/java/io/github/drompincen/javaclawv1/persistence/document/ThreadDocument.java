@@ -12,7 +12,7 @@ import java.time.Instant;
 import java.util.List;
 
 @Document(collection = "threads")
-@CompoundIndex(name = "project_updated", def = "{'projectIds': 1, 'updatedAt': -1}")
+@CompoundIndex(name = "project_updated_id", def = "{'projectIds': 1, 'updatedAt': -1, '_id': -1}")
 public class ThreadDocument {
 
     @Id
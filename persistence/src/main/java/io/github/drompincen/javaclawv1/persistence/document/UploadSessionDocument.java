@@ -0,0 +1,61 @@
+package io.github.drompincen.javaclawv1.persistence.document;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * An in-progress chunked upload. Chunks are appended in order to a part file and
+ * {@code receivedBytes} is the offset the next chunk must start at, so a client can resume
+ * after a failure. Abandoned sessions are removed by the {@code expiresAt} TTL.
+ */
+@Document(collection = "upload_sessions")
+public class UploadSessionDocument {
+
+    @Id
+    private String uploadSessionId;
+    private String projectId;
+    private String fileName;
+    private String contentType;
+    private long size;
+    private String sha256;          // optional, verified on completion
+    private long receivedBytes;
+    private Instant createdAt;
+    private Instant updatedAt;
+    @Indexed(expireAfterSeconds = 0)
+    private Instant expiresAt;
+
+    public UploadSessionDocument() {}
+
+    public String getUploadSessionId() { return uploadSessionId; }
+    public void setUploadSessionId(String uploadSessionId) { this.uploadSessionId = uploadSessionId; }
+
+    public String getProjectId() { return projectId; }
+    public void setProjectId(String projectId) { this.projectId = projectId; }
+
+    public String getFileName() { return fileName; }
+    public void setFileName(String fileName) { this.fileName = fileName; }
+
+    public String getContentType() { return contentType; }
+    public void setContentType(String contentType) { this.contentType = contentType; }
+
+    public long getSize() { return size; }
+    public void setSize(long size) { this.size = size; }
+
+    public String getSha256() { return sha256; }
+    public void setSha256(String sha256) { this.sha256 = sha256; }
+
+    public long getReceivedBytes() { return receivedBytes; }
+    public void setReceivedBytes(long receivedBytes) { this.receivedBytes = receivedBytes; }
+
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+
+    public Instant getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Instant updatedAt) { this.updatedAt = updatedAt; }
+
+    public Instant getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(Instant expiresAt) { this.expiresAt = expiresAt; }
+}
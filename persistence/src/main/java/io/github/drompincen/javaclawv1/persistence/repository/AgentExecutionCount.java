@@ -0,0 +1,4 @@
+package io.github.drompincen.javaclawv1.persistence.repository;
+
+/** Number of active (claimed or running) future executions for one agent id. */
+public record AgentExecutionCount(String id, long count) {}
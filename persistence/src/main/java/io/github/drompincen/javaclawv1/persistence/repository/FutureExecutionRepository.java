@@ -2,14 +2,18 @@ package io.github.drompincen.javaclawv1.persistence.repository;
 
 import io.github.drompincen.javaclawv1.persistence.document.FutureExecutionDocument;
 import io.github.drompincen.javaclawv1.protocol.api.ExecStatus;
+import org.springframework.data.mongodb.repository.Aggregation;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 public interface FutureExecutionRepository extends MongoRepository<FutureExecutionDocument, String> {
     List<FutureExecutionDocument> findByExecStatusAndScheduledAtLessThanEqualOrderByPriorityDescScheduledAtAsc(
             ExecStatus status, Instant now);
+    List<FutureExecutionDocument> findByExecStatusAndPartitionInAndScheduledAtLessThanEqualOrderByPriorityDescScheduledAtAsc(
+            ExecStatus status, Collection<Integer> partitions, Instant now);
     List<FutureExecutionDocument> findByDateKeyAndAgentIdAndProjectId(
             String dateKey, String agentId, String projectId);
     List<FutureExecutionDocument> findByDateKeyAndExecStatusNotIn(
@@ -17,8 +21,19 @@ public interface FutureExecutionRepository extends MongoRepository<FutureExecuti
     void deleteByDateKeyAndExecStatusIn(String dateKey, List<ExecStatus> statuses);
     boolean existsByIdempotencyKey(String key);
     List<FutureExecutionDocument> findByAgentIdAndExecStatus(String agentId, ExecStatus status);
+    List<FutureExecutionDocument> findByAgentIdAndExecStatusAndScheduledAtLessThanEqualOrderByPriorityDescScheduledAtAsc(
+            String agentId, ExecStatus status, Instant now);
+
+    /** Claimed (PENDING) plus RUNNING executions per agent, in one pass over the status index. */
+    @Aggregation(pipeline = {
+            "{ $match: { execStatus: { $in: ['PENDING', 'RUNNING'] } } }",
+            "{ $group: { _id: '$agentId', count: { $sum: 1 } } }"
+    })
+    List<AgentExecutionCount> countActiveByAgent();
     List<FutureExecutionDocument> findByLeaseUntilLessThanAndExecStatusIn(
             Instant threshold, List<ExecStatus> statuses);
+    List<FutureExecutionDocument> findByLeaseUntilLessThanAndExecStatusInAndPartitionIn(
+            Instant threshold, List<ExecStatus> statuses, Collection<Integer> partitions);
     List<FutureExecutionDocument> findByScheduleIdAndExecStatusNotIn(
             String scheduleId, List<ExecStatus> exclude);
     List<FutureExecutionDocument> findByExecStatus(ExecStatus status);
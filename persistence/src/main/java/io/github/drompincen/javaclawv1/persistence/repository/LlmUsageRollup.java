@@ -0,0 +1,21 @@
+package io.github.drompincen.javaclawv1.persistence.repository;
+
+/**
+ * Aggregated LLM usage for one group key (agentId, projectId, provider, model, or null for the
+ * overall total) over a time window. Averages ignore interactions that did not record the measurement.
+ */
+public record LlmUsageRollup(String id,
+                             long calls,
+                             long errors,
+                             long promptTokens,
+                             long completionTokens,
+                             long cachedTokens,
+                             long estimatedCalls,
+                             long totalDurationMs,
+                             Double avgTimeToFirstTokenMs,
+                             Double avgTokensPerSecond) {
+
+    public long totalTokens() {
+        return promptTokens + completionTokens;
+    }
+}
@@ -0,0 +1,12 @@
+package io.github.drompincen.javaclawv1.persistence.repository;
+
+import io.github.drompincen.javaclawv1.persistence.document.SpanDocument;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.List;
+
+public interface SpanRepository extends MongoRepository<SpanDocument, String> {
+    List<SpanDocument> findByTraceIdOrderByStartTimeAsc(String traceId);
+    List<SpanDocument> findBySessionIdOrderByStartTimeAsc(String sessionId);
+    List<SpanDocument> findTop50ByParentSpanIdIsNullOrderByStartTimeDesc();
+}
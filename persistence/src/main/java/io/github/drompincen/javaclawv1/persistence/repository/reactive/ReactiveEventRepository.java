@@ -2,6 +2,8 @@ package io.github.drompincen.javaclawv1.persistence.repository.reactive;
 
 import io.github.drompincen.javaclawv1.persistence.document.EventDocument;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
 
 public interface ReactiveEventRepository extends ReactiveMongoRepository<EventDocument, String> {
+    Flux<EventDocument> findBySessionIdAndSeqGreaterThanOrderBySeqAsc(String sessionId, long seq);
 }
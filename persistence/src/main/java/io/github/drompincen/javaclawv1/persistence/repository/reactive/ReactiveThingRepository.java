@@ -0,0 +1,17 @@
+package io.github.drompincen.javaclawv1.persistence.repository.reactive;
+
+import io.github.drompincen.javaclawv1.persistence.document.ThingDocument;
+import io.github.drompincen.javaclawv1.protocol.api.ThingCategory;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+
+/** Streaming reads over {@code things}; tickets and the other categories live here, not in their legacy collections. */
+public interface ReactiveThingRepository extends ReactiveMongoRepository<ThingDocument, String> {
+
+    Flux<ThingDocument> findByProjectIdAndThingCategory(String projectId, ThingCategory thingCategory);
+
+    @Query("{'projectId': ?0, 'thingCategory': ?1, 'payload.status': ?2}")
+    Flux<ThingDocument> findByProjectIdAndThingCategoryAndStatus(String projectId, ThingCategory thingCategory,
+                                                                String status);
+}
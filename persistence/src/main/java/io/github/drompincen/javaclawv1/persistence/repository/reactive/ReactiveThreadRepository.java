@@ -2,6 +2,8 @@ package io.github.drompincen.javaclawv1.persistence.repository.reactive;
 
 import io.github.drompincen.javaclawv1.persistence.document.ThreadDocument;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
 
 public interface ReactiveThreadRepository extends ReactiveMongoRepository<ThreadDocument, String> {
+    Flux<ThreadDocument> findByProjectIdsOrderByUpdatedAtDesc(String projectId);
 }
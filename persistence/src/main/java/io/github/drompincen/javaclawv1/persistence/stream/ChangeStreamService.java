@@ -2,12 +2,19 @@ package io.github.drompincen.javaclawv1.persistence.stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.mongodb.client.model.changestream.FullDocument;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
 import org.springframework.data.mongodb.core.ChangeStreamOptions;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 
 import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
 import static org.springframework.data.mongodb.core.query.Criteria.where;
 
@@ -49,6 +56,68 @@ public class ChangeStreamService {
                 .doOnError(e -> log.warn("Change stream error on {}: {}", collection, e.getMessage()));
     }
 
+    /**
+     * Watch every change (insert, update, replace, delete) on a collection. Updates carry the
+     * looked-up full document; deletes only carry the document key in {@code getRaw()}.
+     */
+    public <T> Flux<ChangeStreamEvent<T>> watchAllChanges(String collection, Class<T> type) {
+        return reactiveMongoTemplate.changeStream(collection,
+                        ChangeStreamOptions.builder()
+                                .fullDocumentLookup(FullDocument.UPDATE_LOOKUP)
+                                .build(),
+                        type)
+                .doOnError(e -> log.warn("Change stream error on {}: {}", collection, e.getMessage()));
+    }
+
+    /**
+     * Like {@link #watchAllChanges(String, Class)} but updates only pass when they set one of
+     * {@code fields}, so frequent writes to other fields never trigger a full-document lookup.
+     */
+    public <T> Flux<ChangeStreamEvent<T>> watchChangesTo(String collection, Class<T> type, String... fields) {
+        List<Criteria> passes = new ArrayList<>();
+        passes.add(where("operationType").in("insert", "replace", "delete"));
+        for (String field : fields) {
+            passes.add(where("operationType").is("update").and("updateDescription.updatedFields." + field).exists(true));
+        }
+        return reactiveMongoTemplate.changeStream(collection,
+                        ChangeStreamOptions.builder()
+                                .filter(Aggregation.newAggregation(match(new Criteria().orOperator(passes))))
+                                .fullDocumentLookup(FullDocument.UPDATE_LOOKUP)
+                                .build(),
+                        type)
+                .doOnError(e -> log.warn("Change stream error on {}: {}", collection, e.getMessage()));
+    }
+
+    /**
+     * Every change on a collection reduced to its {@code operationType} and {@code documentKey}:
+     * no full document is looked up or shipped, for watchers that only need to know which id
+     * changed. Drops and invalidations arrive without a key.
+     */
+    public Flux<ChangeStreamEvent<Document>> watchKeys(String collection) {
+        return reactiveMongoTemplate.changeStream(collection,
+                        ChangeStreamOptions.builder()
+                                .filter(new Document("$project", new Document("operationType", 1).append("documentKey", 1)))
+                                .build(),
+                        Document.class)
+                .doOnError(e -> log.warn("Change stream error on {}: {}", collection, e.getMessage()));
+    }
+
+    /**
+     * Like {@link #watchAllChanges(String, Class)} but only for documents whose {@code field}
+     * equals {@code value}. Deletes are always passed through since they carry no document.
+     */
+    public <T> Flux<ChangeStreamEvent<T>> watchAllChanges(String collection, Class<T> type, String field, Object value) {
+        return reactiveMongoTemplate.changeStream(collection,
+                        ChangeStreamOptions.builder()
+                                .filter(Aggregation.newAggregation(match(new Criteria().orOperator(
+                                        where("fullDocument." + field).is(value),
+                                        where("operationType").is("delete")))))
+                                .fullDocumentLookup(FullDocument.UPDATE_LOOKUP)
+                                .build(),
+                        type)
+                .doOnError(e -> log.warn("Change stream error on {}: {}", collection, e.getMessage()));
+    }
+
     public <T> Flux<T> watchBySessionId(String collection, Class<T> type, String sessionId) {
         return watchByField(collection, type, "sessionId", sessionId);
     }
@@ -3,10 +3,12 @@ package io.github.drompincen.javaclawv1.persistence;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
+import org.springframework.data.mongodb.repository.config.EnableReactiveMongoRepositories;
 
 @Configuration
 @EnableAutoConfiguration
 @EnableMongoRepositories(basePackages = "io.github.drompincen.javaclawv1.persistence.repository")
+@EnableReactiveMongoRepositories(basePackages = "io.github.drompincen.javaclawv1.persistence.repository.reactive")
 public class TestMongoConfiguration {
 
     static {
@@ -0,0 +1,171 @@
+package io.github.drompincen.javaclawv1.persistence.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.github.drompincen.javaclawv1.persistence.AbstractMongoIntegrationTest;
+import io.github.drompincen.javaclawv1.persistence.document.ThingDocument;
+import io.github.drompincen.javaclawv1.persistence.repository.reactive.ReactiveThingRepository;
+import io.github.drompincen.javaclawv1.protocol.api.ThingCategory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Export benchmark against a real (embedded) MongoDB: a 50k-ticket project is written out as
+ * NDJSON by several concurrent clients, once through the blocking repository (the whole list is
+ * materialized, then serialized) and once through the reactive one (each document is serialized
+ * as the cursor yields it). Logs p99 export latency and peak heap growth for both paths; heap
+ * samples depend on GC timing, so they are reported rather than asserted. Runs with {@code -Pperf}.
+ */
+@Tag("perf")
+class ThingExportBenchmarkTest extends AbstractMongoIntegrationTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ThingExportBenchmarkTest.class);
+
+    private static final int TICKETS = 50_000;
+    private static final int CLIENTS = 4;
+    private static final int ROUNDS = 5;
+    private static final String PROJECT = "bench-project";
+
+    private record Result(long rows, long p99Ms, long peakHeapBytes) {}
+
+    @Autowired
+    private ThingRepository thingRepository;
+
+    @Autowired
+    private ReactiveThingRepository reactiveThingRepository;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @BeforeEach
+    void seed() {
+        String description = "Steps to reproduce, expected and actual behaviour. ".repeat(8);
+        List<ThingDocument> batch = new ArrayList<>();
+        for (int i = 0; i < TICKETS; i++) {
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("title", "Ticket " + i);
+            payload.put("description", description);
+            payload.put("status", i % 3 == 0 ? "DONE" : "TODO");
+            payload.put("priority", "MEDIUM");
+            ThingDocument thing = new ThingDocument();
+            thing.setId("ticket-" + i);
+            thing.setProjectId(PROJECT);
+            thing.setThingCategory(ThingCategory.TICKET);
+            thing.setPayload(payload);
+            thing.setCreateDate(Instant.now());
+            thing.setUpdateDate(Instant.now());
+            batch.add(thing);
+            if (batch.size() == 5_000) {
+                mongoTemplate.insert(batch, ThingDocument.class);
+                batch.clear();
+            }
+        }
+    }
+
+    @Test
+    void blockingAndStreamingExportsUnderConcurrentClients() throws Exception {
+        Result blocking = measure(() -> {
+            List<ThingDocument> all = thingRepository.findByProjectIdAndThingCategory(PROJECT, ThingCategory.TICKET);
+            CountingSink out = new CountingSink();
+            all.forEach(out::write);
+            return out.rows;
+        });
+        Result streaming = measure(() -> {
+            CountingSink out = new CountingSink();
+            reactiveThingRepository.findByProjectIdAndThingCategory(PROJECT, ThingCategory.TICKET)
+                    .limitRate(256)
+                    .doOnNext(out::write)
+                    .blockLast();
+            return out.rows;
+        });
+
+        log.info("{}-ticket export x {} clients x {} rounds: blocking p99 {} ms, peak heap +{} MB; "
+                        + "streaming p99 {} ms, peak heap +{} MB",
+                TICKETS, CLIENTS, ROUNDS, blocking.p99Ms(), blocking.peakHeapBytes() >> 20,
+                streaming.p99Ms(), streaming.peakHeapBytes() >> 20);
+        assertThat(blocking.rows()).isEqualTo((long) TICKETS * CLIENTS * ROUNDS);
+        assertThat(streaming.rows()).isEqualTo(blocking.rows());
+    }
+
+    /** Runs {@link #ROUNDS} rounds of {@link #CLIENTS} concurrent exports while sampling heap use. */
+    private Result measure(Callable<Long> export) throws Exception {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long baseline = memory.getHeapMemoryUsage().getUsed();
+        AtomicLong peak = new AtomicLong(baseline);
+        AtomicBoolean sampling = new AtomicBoolean(true);
+        Thread sampler = Thread.ofPlatform().daemon().start(() -> {
+            while (sampling.get()) {
+                peak.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+
+        List<Long> latenciesMs = Collections.synchronizedList(new ArrayList<>());
+        long rows = 0;
+        try (ExecutorService clients = Executors.newFixedThreadPool(CLIENTS)) {
+            for (int round = 0; round < ROUNDS; round++) {
+                List<Future<Long>> exports = new ArrayList<>();
+                for (int c = 0; c < CLIENTS; c++) {
+                    exports.add(clients.submit(() -> {
+                        long t0 = System.nanoTime();
+                        long n = export.call();
+                        latenciesMs.add((System.nanoTime() - t0) / 1_000_000);
+                        return n;
+                    }));
+                }
+                for (Future<Long> f : exports) rows += f.get();
+            }
+        } finally {
+            sampling.set(false);
+            sampler.join();
+        }
+
+        List<Long> sorted = latenciesMs.stream().sorted().toList();
+        long p99 = sorted.get(Math.max(0, (int) Math.ceil(sorted.size() * 0.99) - 1));
+        return new Result(rows, p99, peak.get() - baseline);
+    }
+
+    /** Stands in for the servlet response: serializes each row as an NDJSON line and discards it. */
+    private final class CountingSink {
+        private final OutputStream out = OutputStream.nullOutputStream();
+        private long rows;
+
+        void write(ThingDocument thing) {
+            try {
+                out.write(objectMapper.writeValueAsBytes(thing));
+                out.write('\n');
+                rows++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package io.github.drompincen.javaclawv1.protocol.api;
+
+import java.time.Instant;
+import java.util.List;
+
+/** List view of a memory entry; the content comes from the detail endpoint. */
+public record MemorySummaryDto(
+        String memoryId,
+        String scope,
+        String projectId,
+        String sessionId,
+        String threadId,
+        String key,
+        List<String> tags,
+        String createdBy,
+        Instant createdAt,
+        Instant updatedAt,
+        Instant expiresAt
+) {}
@@ -0,0 +1,22 @@
+package io.github.drompincen.javaclawv1.protocol.api;
+
+import java.time.Instant;
+import java.util.List;
+
+/** List view of a thread: a short preview and counts in place of content, decisions and actions. */
+public record ThreadSummaryDto(
+        String threadId,
+        List<String> projectIds,
+        String title,
+        SessionStatus status,
+        String lifecycle,
+        Instant createdAt,
+        Instant updatedAt,
+        String preview,
+        int decisionCount,
+        int actionCount,
+        int evidenceCount,
+        List<String> objectiveIds,
+        List<String> mergedFromThreadIds,
+        String mergedIntoThreadId
+) {}
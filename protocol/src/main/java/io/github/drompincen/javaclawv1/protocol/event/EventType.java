@@ -79,6 +79,7 @@ public enum EventType {
 
     // Intake pipeline events
     INTAKE_PIPELINE_STARTED,
+    INTAKE_EXTRACTION_PROGRESS,
     INTAKE_PIPELINE_COMPLETED,
 
     // Checklist agent events
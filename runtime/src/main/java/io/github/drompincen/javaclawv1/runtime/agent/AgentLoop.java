@@ -4,17 +4,26 @@ import io.github.drompincen.javaclawv1.persistence.document.MessageDocument;
 import io.github.drompincen.javaclawv1.persistence.document.SessionDocument;
 import io.github.drompincen.javaclawv1.persistence.document.ThreadDocument;
 import io.github.drompincen.javaclawv1.persistence.repository.MessageRepository;
-import io.github.drompincen.javaclawv1.persistence.repository.SessionRepository;
-import io.github.drompincen.javaclawv1.persistence.repository.ThreadRepository;
 import io.github.drompincen.javaclawv1.protocol.api.SessionStatus;
 import io.github.drompincen.javaclawv1.protocol.event.EventType;
 import io.github.drompincen.javaclawv1.runtime.agent.graph.AgentGraphBuilder;
 import io.github.drompincen.javaclawv1.runtime.agent.graph.AgentState;
 import io.github.drompincen.javaclawv1.runtime.agent.graph.MongoCheckpointSaver;
+import io.github.drompincen.javaclawv1.runtime.agent.llm.LlmPriority;
+import io.github.drompincen.javaclawv1.runtime.cache.EntityCacheService;
+import io.github.drompincen.javaclawv1.runtime.lock.SessionLock;
 import io.github.drompincen.javaclawv1.runtime.lock.SessionLockService;
+import io.github.drompincen.javaclawv1.runtime.metrics.JavaClawMetrics;
+import io.github.drompincen.javaclawv1.runtime.trace.Span;
+import io.github.drompincen.javaclawv1.runtime.trace.SpanKind;
+import io.github.drompincen.javaclawv1.runtime.trace.Tracer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Component;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -31,14 +40,15 @@ public class AgentLoop {
 
     private static final Logger log = LoggerFactory.getLogger(AgentLoop.class);
 
-    private final SessionRepository sessionRepository;
-    private final ThreadRepository threadRepository;
+    private final EntityCacheService entityCache;
+    private final MongoTemplate mongoTemplate;
     private final MessageRepository messageRepository;
     private final EventService eventService;
     private final SessionLockService lockService;
     private final AgentGraphBuilder graphBuilder;
     private final MongoCheckpointSaver checkpointSaver;
     private final ContextCommandService contextCommandService;
+    private final Tracer tracer;
     private DistillerService distillerService;
     private final ObjectMapper objectMapper = new ObjectMapper();
     private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
@@ -48,22 +58,27 @@ public class AgentLoop {
     });
     private final ConcurrentHashMap<String, Future<?>> runningLoops = new ConcurrentHashMap<>();
 
-    public AgentLoop(SessionRepository sessionRepository,
-                     ThreadRepository threadRepository,
+    public AgentLoop(EntityCacheService entityCache,
+                     MongoTemplate mongoTemplate,
                      MessageRepository messageRepository,
                      EventService eventService,
                      SessionLockService lockService,
                      AgentGraphBuilder graphBuilder,
                      MongoCheckpointSaver checkpointSaver,
-                     ContextCommandService contextCommandService) {
-        this.sessionRepository = sessionRepository;
-        this.threadRepository = threadRepository;
+                     ContextCommandService contextCommandService,
+                     JavaClawMetrics metrics,
+                     Tracer tracer) {
+        this.entityCache = entityCache;
+        this.mongoTemplate = mongoTemplate;
         this.messageRepository = messageRepository;
         this.eventService = eventService;
         this.lockService = lockService;
         this.graphBuilder = graphBuilder;
         this.checkpointSaver = checkpointSaver;
         this.contextCommandService = contextCommandService;
+        this.tracer = tracer;
+        metrics.gauge("javaclaw.agent.loops.running", "Agent loops currently running on this node",
+                runningLoops::size);
     }
 
     @Autowired
@@ -86,26 +101,37 @@ public class AgentLoop {
     }
 
     private void run(String sessionId) {
-        Optional<String> lockOwner = lockService.tryAcquire(sessionId);
-        if (lockOwner.isEmpty()) {
+        Optional<SessionLock> acquired = lockService.tryAcquire(sessionId);
+        if (acquired.isEmpty()) {
             log.error("Cannot acquire lock for session {}", sessionId);
             return;
         }
-        String owner = lockOwner.get();
+        SessionLock lock = acquired.get();
 
+        Span runSpan = null;
         try {
             // Dual-lookup: try sessions first, then threads
             boolean isThread = false;
-            SessionDocument session = sessionRepository.findById(sessionId).orElse(null);
+            SessionDocument session = entityCache.session(sessionId).orElse(null);
             ThreadDocument thread = null;
             if (session == null) {
-                thread = threadRepository.findById(sessionId).orElse(null);
+                thread = entityCache.threadHeader(sessionId).orElse(null);
                 if (thread == null) {
                     throw new IllegalStateException("No session or thread found for id: " + sessionId);
                 }
                 isThread = true;
             }
 
+            // Continue the caller's trace (intake pipeline phase) when the session carries one
+            Map<String, String> metadata = session != null ? session.getMetadata() : null;
+            String runAgent = metadata != null ? metadata.get("agentId") : null;
+            runSpan = tracer.continueTrace(metadata, "agent run" + (runAgent != null ? " " + runAgent : ""),
+                            SpanKind.AGENT_RUN)
+                    .session(sessionId)
+                    .project(session != null ? session.getProjectId() : null)
+                    .agent(runAgent)
+                    .attr("thread", isThread ? "true" : null);
+
             // Update status to RUNNING
             updateStatus(sessionId, SessionStatus.RUNNING, isThread);
 
@@ -133,12 +159,13 @@ public class AgentLoop {
                 }
             }
 
-            // Set forced agent routing from session metadata
+            // Set forced agent routing and LLM scheduling priority from session metadata
             if (session != null && session.getMetadata() != null) {
                 String forcedAgent = session.getMetadata().get("agentId");
                 if (forcedAgent != null) {
                     state.setForcedAgentId(forcedAgent);
                 }
+                state.setLlmPriority(LlmPriority.forSessionType(session.getMetadata().get("type")));
             }
 
             // Check for context commands (use project, use thread, whereami) before running graph
@@ -149,6 +176,7 @@ public class AgentLoop {
                 if (cmdResponse != null) {
                     log.info("Context command handled for session {}: {}", sessionId,
                             lastUserMsg.trim().length() > 50 ? lastUserMsg.trim().substring(0, 50) : lastUserMsg.trim());
+                    lockService.checkFencingToken(lock);
                     persistCommandResponse(sessionId, messages.size(), cmdResponse);
                     eventService.emit(sessionId, EventType.AGENT_RESPONSE,
                             Map.of("agentId", "system", "response", cmdResponse));
@@ -161,7 +189,7 @@ public class AgentLoop {
             AgentState finalState = graphBuilder.runGraph(state);
 
             // Persist new messages (assistant/tool) back to MongoDB
-            persistNewMessages(sessionId, messages.size(), finalState);
+            persistNewMessages(sessionId, messages.size(), finalState, lock);
 
             updateStatus(sessionId, SessionStatus.COMPLETED, isThread);
 
@@ -174,22 +202,31 @@ public class AgentLoop {
             }
         } catch (Exception e) {
             log.error("Agent loop error for session {}", sessionId, e);
-            boolean failThread = sessionRepository.findById(sessionId).isEmpty();
+            if (runSpan != null) runSpan.fail(e);
+            boolean failThread = entityCache.session(sessionId).isEmpty();
             updateStatus(sessionId, SessionStatus.FAILED, failThread);
             eventService.emit(sessionId, EventType.ERROR,
                     Map.of("message", e.getMessage() != null ? e.getMessage() : "Unknown error"));
         } finally {
-            lockService.release(sessionId, owner);
+            if (runSpan != null) runSpan.close();
+            try {
+                lockService.release(lock);
+            } catch (Exception e) {
+                log.warn("Failed to release lock for session {}: {}", sessionId, e.getMessage());
+            }
             runningLoops.remove(sessionId);
         }
     }
 
     /**
      * Persist messages generated during graph execution (assistant, tool, system)
-     * back to the messages collection so they're visible via the API and UI.
+     * back to the messages collection so they're visible via the API and UI. Refused if the
+     * session lock has been taken over during the run.
      */
     private void persistNewMessages(String sessionId, int existingCount,
-                                     io.github.drompincen.javaclawv1.runtime.agent.graph.AgentState finalState) {
+                                     io.github.drompincen.javaclawv1.runtime.agent.graph.AgentState finalState,
+                                     SessionLock lock) {
+        lockService.checkFencingToken(lock);
         List<Map<String, String>> allMsgs = finalState.getMessages();
         // Skip messages we already loaded (the first existingCount were from DB)
         long nextSeq = existingCount + 1;
@@ -241,19 +278,16 @@ public class AgentLoop {
         messageRepository.save(doc);
     }
 
+    /** Targeted update rather than read-then-save, so fields written meanwhile by others survive. */
     private void updateStatus(String sessionId, SessionStatus status, boolean isThread) {
+        Query query = Query.query(Criteria.where("_id").is(sessionId));
+        Update update = new Update().set("status", status).set("updatedAt", Instant.now());
         if (isThread) {
-            threadRepository.findById(sessionId).ifPresent(t -> {
-                t.setStatus(status);
-                t.setUpdatedAt(Instant.now());
-                threadRepository.save(t);
-            });
+            mongoTemplate.updateFirst(query, update, ThreadDocument.class);
+            entityCache.evictThread(sessionId);
         } else {
-            sessionRepository.findById(sessionId).ifPresent(s -> {
-                s.setStatus(status);
-                s.setUpdatedAt(Instant.now());
-                sessionRepository.save(s);
-            });
+            mongoTemplate.updateFirst(query, update, SessionDocument.class);
+            entityCache.evictSession(sessionId);
         }
         eventService.emit(sessionId, EventType.SESSION_STATUS_CHANGED,
                 Map.of("status", status));
@@ -0,0 +1,141 @@
+package io.github.drompincen.javaclawv1.runtime.agent;
+
+import io.github.drompincen.javaclawv1.persistence.document.AgentDocument;
+import io.github.drompincen.javaclawv1.persistence.repository.AgentRepository;
+import io.github.drompincen.javaclawv1.persistence.stream.ChangeStreamService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory registry of enabled agents, replacing the per-run {@code findByEnabledTrue()}
+ * and per-tool-call {@code findById()} lookups in the graph engine.
+ *
+ * The snapshot is loaded lazily and dropped whenever the {@code agents} collection changes
+ * (change stream) or {@link #refresh()} is called. If the change stream is unavailable
+ * (e.g. standalone Mongo without a replica set) snapshots expire after {@link #FALLBACK_TTL}.
+ */
+@Component
+public class AgentRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(AgentRegistry.class);
+    private static final String COLLECTION = "agents";
+    static final Duration FALLBACK_TTL = Duration.ofSeconds(30);
+
+    private final AgentRepository agentRepository;
+    private final ChangeStreamService changeStreamService;
+
+    /** {@code others} memoizes by-id lookups of disabled or unknown agents until the snapshot is dropped. */
+    private record Snapshot(List<AgentSnapshot> agents, Map<String, AgentSnapshot> byId,
+                            Map<String, Optional<AgentSnapshot>> others, long loadedAtNanos) {}
+
+    private volatile Snapshot snapshot;
+    private volatile boolean streamActive;
+    private final AtomicLong generation = new AtomicLong();
+    private Disposable subscription;
+
+    public AgentRegistry(AgentRepository agentRepository,
+                         @Autowired(required = false) ChangeStreamService changeStreamService) {
+        this.agentRepository = agentRepository;
+        this.changeStreamService = changeStreamService;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (changeStreamService == null) return;
+        subscription = changeStreamService.watchKeys(COLLECTION)
+                .doOnSubscribe(s -> streamActive = true)
+                .doOnError(e -> {
+                    streamActive = false;
+                    invalidate();
+                })
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofMinutes(1)))
+                .subscribe(event -> invalidate(),
+                        e -> log.warn("Agent registry change stream stopped: {}", e.getMessage()));
+        log.info("Agent registry watching '{}' for changes", COLLECTION);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (subscription != null) subscription.dispose();
+    }
+
+    /** Enabled agents in repository order. */
+    public List<AgentSnapshot> enabledAgents() {
+        return current().agents();
+    }
+
+    /** Look up an enabled agent by id. */
+    public Optional<AgentSnapshot> find(String agentId) {
+        if (agentId == null) return Optional.empty();
+        return Optional.ofNullable(current().byId().get(agentId));
+    }
+
+    /**
+     * Check an agent's allowedTools. Unknown or disabled agents are looked up by id once per
+     * snapshot, so they keep the same enforcement as before without a query per tool call.
+     */
+    public boolean isToolAllowed(String agentId, String toolName) {
+        if (agentId == null) return true;
+        Snapshot s = current();
+        AgentSnapshot agent = s.byId().get(agentId);
+        if (agent == null) {
+            agent = s.others().computeIfAbsent(agentId,
+                    id -> agentRepository.findById(id).map(AgentSnapshot::of)).orElse(null);
+        }
+        return agent == null || agent.allowsTool(toolName);
+    }
+
+    /** Drop the current snapshot; the next lookup reloads from Mongo. */
+    public void invalidate() {
+        generation.incrementAndGet();
+        snapshot = null;
+    }
+
+    /** Manual refresh hook: reload immediately and return the number of enabled agents. */
+    public int refresh() {
+        invalidate();
+        return current().agents().size();
+    }
+
+    private Snapshot current() {
+        Snapshot s = snapshot;
+        if (isFresh(s)) return s;
+        return load();
+    }
+
+    private boolean isFresh(Snapshot s) {
+        return s != null && (streamActive || System.nanoTime() - s.loadedAtNanos() < FALLBACK_TTL.toNanos());
+    }
+
+    private synchronized Snapshot load() {
+        Snapshot s = snapshot;
+        if (isFresh(s)) return s;
+        long gen = generation.get();
+        Map<String, AgentSnapshot> byId = new LinkedHashMap<>();
+        for (AgentDocument doc : agentRepository.findByEnabledTrue()) {
+            if (doc.getAgentId() != null) byId.put(doc.getAgentId(), AgentSnapshot.of(doc));
+        }
+        Snapshot loaded = new Snapshot(List.copyOf(byId.values()), Map.copyOf(byId), new ConcurrentHashMap<>(),
+                System.nanoTime());
+        // Only publish if no invalidation raced with the read; the caller still gets fresh data
+        if (generation.get() == gen) {
+            snapshot = loaded;
+        }
+        log.debug("Agent registry loaded {} enabled agents", loaded.agents().size());
+        return loaded;
+    }
+}
@@ -0,0 +1,37 @@
+package io.github.drompincen.javaclawv1.runtime.agent;
+
+import io.github.drompincen.javaclawv1.persistence.document.AgentDocument;
+import io.github.drompincen.javaclawv1.protocol.api.AgentRole;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable, read-only view of an {@link AgentDocument} as held by {@link AgentRegistry}.
+ * The allowed-tool list is precomputed into a set so tool-permission checks are O(1).
+ */
+public record AgentSnapshot(String agentId,
+                            String name,
+                            String description,
+                            String systemPrompt,
+                            AgentRole role,
+                            List<String> allowedTools,
+                            Set<String> allowedToolSet,
+                            boolean allowsAllTools) {
+
+    public static AgentSnapshot of(AgentDocument doc) {
+        List<String> tools = doc.getAllowedTools() == null ? List.of()
+                : doc.getAllowedTools().stream().filter(Objects::nonNull).toList();
+        return new AgentSnapshot(doc.getAgentId(), doc.getName(), doc.getDescription(),
+                doc.getSystemPrompt(), doc.getRole(), tools,
+                tools.stream().collect(Collectors.toUnmodifiableSet()),
+                tools.isEmpty() || tools.contains("*"));
+    }
+
+    /** Same semantics as the old repository check: an empty list or "*" allows everything. */
+    public boolean allowsTool(String toolName) {
+        return allowsAllTools || allowedToolSet.contains(toolName);
+    }
+}
@@ -1,73 +1,269 @@
 package io.github.drompincen.javaclawv1.runtime.agent;
 
+import io.github.drompincen.javaclawv1.runtime.upload.BlobStore;
+import jakarta.annotation.PreDestroy;
 import org.apache.poi.ss.usermodel.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
 
 import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Extracts text content from uploaded files based on extension.
  * Supports Excel (.xlsx/.xls), CSV, XML, JSON, TXT, MD, and HTML.
+ *
+ * <p>Files are extracted concurrently on virtual threads and each is read as a stream of rows
+ * through a {@link RowSampler}, so a large file contributes a bounded, deterministic sample
+ * instead of being rejected or pasted whole into prompts. Results are cached by content hash,
+ * in memory and on the file's {@link BlobStore} blob when it came through the upload store.
  */
 @Service
 public class ContentExtractorService {
 
     private static final Logger log = LoggerFactory.getLogger(ContentExtractorService.class);
-    private static final int MAX_FILE_SIZE = 5 * 1024 * 1024; // 5 MB
 
-    public String extractContent(java.util.List<String> filePaths) {
-        StringBuilder sb = new StringBuilder();
+    /** Called as each file finishes, from the extracting thread. */
+    @FunctionalInterface
+    public interface ExtractionListener {
+        ExtractionListener NONE = (fileName, completed, total, cached) -> {};
+
+        void fileExtracted(String fileName, int completed, int total, boolean cached);
+    }
+
+    private record Extraction(String text, boolean cached) {}
+
+    private final BlobStore blobStore;
+    private final int maxRowsPerFile;
+    private final int maxCharsPerFile;
+    private final Semaphore permits;
+    private final Map<String, String> cache;
+    private final ExecutorService extractors = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ContentExtractorService(BlobStore blobStore, Environment env) {
+        this.blobStore = blobStore;
+        this.maxRowsPerFile = env.getProperty("javaclaw.extraction.max-rows-per-file", Integer.class, 2000);
+        this.maxCharsPerFile = env.getProperty("javaclaw.extraction.max-chars-per-file", Integer.class, 200_000);
+        this.permits = new Semaphore(env.getProperty("javaclaw.extraction.max-parallel", Integer.class, 4));
+        int cacheEntries = env.getProperty("javaclaw.extraction.cache-entries", Integer.class, 64);
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > cacheEntries;
+            }
+        });
+    }
+
+    /** Interrupts extractions still running so their virtual threads do not outlive the context. */
+    @PreDestroy
+    public void shutdown() {
+        extractors.shutdownNow();
+    }
+
+    public String extractContent(List<String> filePaths) {
+        return extractContent(filePaths, ExtractionListener.NONE);
+    }
+
+    /** Extracts all files in parallel; the combined text keeps the order of {@code filePaths}. */
+    public String extractContent(List<String> filePaths, ExtractionListener listener) {
+        AtomicInteger completed = new AtomicInteger();
+        List<Future<Extraction>> futures = new ArrayList<>();
         for (String path : filePaths) {
-            String ext = getExtension(path).toLowerCase();
-            String fileName = fileName(path);
-            sb.append("\n--- FILE: ").append(fileName)
-              .append(" (").append(ext).append(") ---\n");
+            futures.add(extractors.submit(() -> {
+                Extraction extraction = extractFile(path);
+                listener.fileExtracted(fileName(path), completed.incrementAndGet(), filePaths.size(),
+                        extraction.cached());
+                return extraction;
+            }));
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < filePaths.size(); i++) {
+            String path = filePaths.get(i);
+            sb.append("\n--- FILE: ").append(fileName(path))
+              .append(" (").append(getExtension(path).toLowerCase()).append(") ---\n");
             try {
-                switch (ext) {
-                    case "xlsx", "xls" -> sb.append(extractExcel(path));
-                    case "csv", "xml", "json", "txt", "md" -> sb.append(readTextFile(path));
-                    case "html", "htm" -> sb.append(stripHtmlTags(readTextFile(path)));
-                    default -> sb.append("[unsupported format: ").append(ext).append("]");
-                }
-            } catch (Exception e) {
-                log.warn("Failed to extract content from {}: {}", path, e.getMessage());
-                sb.append("[error reading file: ").append(e.getMessage()).append("]");
+                sb.append(futures.get(i).get().text());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true));
+                sb.append("[extraction interrupted]");
+                break;
+            } catch (ExecutionException e) {
+                sb.append("[error reading file: ").append(e.getCause().getMessage()).append("]");
             }
         }
         return sb.toString();
     }
 
-    private String extractExcel(String filePath) throws Exception {
+    private Extraction extractFile(String filePath) throws InterruptedException {
+        String ext = getExtension(filePath).toLowerCase();
+        if (!List.of("xlsx", "xls", "csv", "xml", "json", "txt", "md", "html", "htm").contains(ext)) {
+            return new Extraction("[unsupported format: " + ext + "]", false);
+        }
+        permits.acquire();
+        try {
+            Path path = Path.of(filePath);
+            String hash = contentHash(path);
+            String key = hash + "." + ext;
+            String cached = cache.get(key);
+            if (cached == null && (cached = storedExtraction(hash, ext)) != null) {
+                cache.put(key, cached);
+            }
+            if (cached != null) {
+                return new Extraction(cached, true);
+            }
+            String text = switch (ext) {
+                case "xlsx" -> extractXlsx(path);
+                case "xls" -> extractXls(path);
+                case "html", "htm" -> stripHtmlTags(extractText(path));
+                default -> extractText(path);
+            };
+            cache.put(key, text);
+            try {
+                blobStore.saveExtraction(hash, ext, text);
+            } catch (Exception e) {
+                log.debug("Could not record extraction on blob {}: {}", hash, e.getMessage());
+            }
+            return new Extraction(text, false);
+        } catch (Exception e) {
+            log.warn("Failed to extract content from {}: {}", filePath, e.getMessage());
+            return new Extraction("[error reading file: " + e.getMessage() + "]", false);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private String storedExtraction(String hash, String ext) {
+        try {
+            return blobStore.extraction(hash, ext).orElse(null);
+        } catch (Exception e) {
+            log.debug("Could not read extraction for blob {}: {}", hash, e.getMessage());
+            return null;
+        }
+    }
+
+    private String extractXlsx(Path path) throws Exception {
         StringBuilder sb = new StringBuilder();
-        try (FileInputStream fis = new FileInputStream(filePath);
+        RowSampler[] sheet = {null};
+        StreamingXlsxReader.readAll(path, new StreamingXlsxReader.SheetSink() {
+            @Override
+            public void sheet(String name) {
+                appendSheet(sb, sheet[0]);
+                sb.append("\n[Sheet: ").append(name).append("]\n");
+                sheet[0] = new RowSampler(maxRowsPerFile);
+            }
+
+            @Override
+            public void row(int row, String[] cols) {
+                sheet[0].add(String.join("\t", cols));
+            }
+        });
+        appendSheet(sb, sheet[0]);
+        return capped(sb);
+    }
+
+    private String extractXls(Path path) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        try (FileInputStream fis = new FileInputStream(path.toFile());
              Workbook workbook = WorkbookFactory.create(fis)) {
             for (int s = 0; s < workbook.getNumberOfSheets(); s++) {
                 Sheet sheet = workbook.getSheetAt(s);
                 sb.append("\n[Sheet: ").append(sheet.getSheetName()).append("]\n");
+                RowSampler sampler = new RowSampler(maxRowsPerFile);
                 for (Row row : sheet) {
+                    StringBuilder line = new StringBuilder();
                     for (int c = 0; c < row.getLastCellNum(); c++) {
-                        if (c > 0) sb.append('\t');
+                        if (c > 0) line.append('\t');
                         Cell cell = row.getCell(c, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK);
-                        sb.append(getCellValue(cell));
+                        line.append(getCellValue(cell));
                     }
-                    sb.append('\n');
+                    sampler.add(line.toString());
                 }
+                appendSheet(sb, sampler);
             }
         }
-        return sb.toString();
+        return capped(sb);
+    }
+
+    private void appendSheet(StringBuilder sb, RowSampler sheet) {
+        if (sheet == null || sb.length() >= maxCharsPerFile) return;
+        if (sheet.sampled()) sb.append(sampleNote(sheet));
+        sheet.render(sb);
+    }
+
+    /** Reads line by line; memory is bounded by the sampler even for a single enormous line. */
+    private String extractText(Path path) throws IOException {
+        RowSampler sampler = new RowSampler(maxRowsPerFile);
+        try (Reader reader = new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8)) {
+            char[] buf = new char[8192];
+            StringBuilder line = new StringBuilder();
+            boolean pending = false;
+            int n;
+            while ((n = reader.read(buf)) > 0) {
+                for (int i = 0; i < n; i++) {
+                    char c = buf[i];
+                    if (c == '\n') {
+                        int end = line.length();
+                        if (end > 0 && line.charAt(end - 1) == '\r') line.setLength(end - 1);
+                        sampler.add(line.toString());
+                        line.setLength(0);
+                        pending = false;
+                    } else {
+                        if (line.length() <= RowSampler.MAX_ROW_CHARS) line.append(c);
+                        pending = true;
+                    }
+                }
+            }
+            if (pending) sampler.add(line.toString());
+        }
+        StringBuilder sb = new StringBuilder();
+        if (sampler.sampled()) sb.append(sampleNote(sampler));
+        sampler.render(sb);
+        return capped(sb);
+    }
+
+    private static String sampleNote(RowSampler sampler) {
+        return "[large file: " + sampler.rows() + " rows, showing the first, last and an even sample between]\n";
+    }
+
+    private String capped(StringBuilder sb) {
+        if (sb.length() <= maxCharsPerFile) return sb.toString();
+        return sb.substring(0, maxCharsPerFile) + "\n[truncated at " + maxCharsPerFile + " chars]";
     }
 
-    private String readTextFile(String filePath) throws Exception {
-        Path path = Path.of(filePath);
-        long size = Files.size(path);
-        if (size > MAX_FILE_SIZE) {
-            return "[file too large: " + (size / 1024) + " KB, max " + (MAX_FILE_SIZE / 1024) + " KB]";
+    private static String contentHash(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buf = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buf)) > 0) digest.update(buf, 0, n);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
         }
-        return Files.readString(path);
     }
 
     private String stripHtmlTags(String content) {
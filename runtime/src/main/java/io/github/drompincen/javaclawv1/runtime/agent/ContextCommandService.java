@@ -8,6 +8,7 @@ import io.github.drompincen.javaclawv1.persistence.repository.ProjectRepository;
 import io.github.drompincen.javaclawv1.persistence.repository.SessionRepository;
 import io.github.drompincen.javaclawv1.persistence.repository.ThreadRepository;
 import io.github.drompincen.javaclawv1.protocol.api.SessionStatus;
+import io.github.drompincen.javaclawv1.runtime.cache.EntityCacheService;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
@@ -19,6 +20,9 @@ import java.util.UUID;
  * Handles context commands such as "whereami", "use project X", and "use thread Y".
  * Extracted from the monolith AgentLoop to provide a clean, testable service for
  * managing session/thread/project context navigation.
+ *
+ * Lookups that only read go through {@link EntityCacheService}; the commands that attach a
+ * session or thread re-read it from the repository and evict the cached copy after saving.
  */
 @Service
 public class ContextCommandService {
@@ -27,15 +31,18 @@ public class ContextCommandService {
     private final ThreadRepository threadRepository;
     private final ProjectRepository projectRepository;
     private final MessageRepository messageRepository;
+    private final EntityCacheService entityCache;
 
     public ContextCommandService(SessionRepository sessionRepository,
                                  ThreadRepository threadRepository,
                                  ProjectRepository projectRepository,
-                                 MessageRepository messageRepository) {
+                                 MessageRepository messageRepository,
+                                 EntityCacheService entityCache) {
         this.sessionRepository = sessionRepository;
         this.threadRepository = threadRepository;
         this.projectRepository = projectRepository;
         this.messageRepository = messageRepository;
+        this.entityCache = entityCache;
     }
 
     /**
@@ -79,15 +86,15 @@ public class ContextCommandService {
      */
     public String resolveProjectId(String sessionId) {
         // Check if it's a thread with project IDs
-        ThreadDocument thread = threadRepository.findById(sessionId).orElse(null);
+        ThreadDocument thread = entityCache.threadHeader(sessionId).orElse(null);
         if (thread != null) {
             List<String> pids = thread.getEffectiveProjectIds();
             return pids.isEmpty() ? null : pids.get(0);
         }
         // Check if it's a session linked to a thread
-        SessionDocument session = sessionRepository.findById(sessionId).orElse(null);
+        SessionDocument session = entityCache.session(sessionId).orElse(null);
         if (session != null && session.getThreadId() != null) {
-            ThreadDocument t = threadRepository.findById(session.getThreadId()).orElse(null);
+            ThreadDocument t = entityCache.threadHeader(session.getThreadId()).orElse(null);
             if (t != null) {
                 List<String> pids = t.getEffectiveProjectIds();
                 return pids.isEmpty() ? null : pids.get(0);
@@ -103,14 +110,14 @@ public class ContextCommandService {
         StringBuilder sb = new StringBuilder("**Current Context**\n\n");
 
         if (isThread) {
-            ThreadDocument thread = threadRepository.findById(sessionId).orElse(null);
+            ThreadDocument thread = entityCache.threadHeader(sessionId).orElse(null);
             if (thread != null) {
                 sb.append("- **Thread:** ").append(thread.getTitle())
                   .append(" (`").append(thread.getThreadId(), 0, 8).append("...`)\n");
                 List<String> pids = thread.getEffectiveProjectIds();
                 if (!pids.isEmpty()) {
                     for (String pid : pids) {
-                        ProjectDocument proj = projectRepository.findById(pid).orElse(null);
+                        ProjectDocument proj = entityCache.project(pid).orElse(null);
                         sb.append("- **Project:** ")
                           .append(proj != null ? proj.getName() : "unknown")
                           .append(" (`").append(pid, 0, Math.min(8, pid.length())).append("...`)\n");
@@ -122,17 +129,17 @@ public class ContextCommandService {
                 sb.append("- **Thread:** not found\n");
             }
         } else {
-            SessionDocument session = sessionRepository.findById(sessionId).orElse(null);
+            SessionDocument session = entityCache.session(sessionId).orElse(null);
             if (session != null) {
                 sb.append("- **Session:** `").append(sessionId, 0, 8).append("...`\n");
                 if (session.getThreadId() != null) {
-                    ThreadDocument thread = threadRepository.findById(session.getThreadId()).orElse(null);
+                    ThreadDocument thread = entityCache.threadHeader(session.getThreadId()).orElse(null);
                     sb.append("- **Thread:** ")
                       .append(thread != null ? thread.getTitle() : session.getThreadId()).append("\n");
                     if (thread != null) {
                         List<String> pids = thread.getEffectiveProjectIds();
                         for (String pid : pids) {
-                            ProjectDocument proj = projectRepository.findById(pid).orElse(null);
+                            ProjectDocument proj = entityCache.project(pid).orElse(null);
                             sb.append("- **Project:** ")
                               .append(proj != null ? proj.getName() : pid).append("\n");
                         }
@@ -187,6 +194,7 @@ public class ContextCommandService {
                     thread.setProjectIds(pids);
                     thread.setUpdatedAt(Instant.now());
                     threadRepository.save(thread);
+                    entityCache.evictThread(sessionId);
                 }
                 return "**Attached to project:** " + project.getName() + "\n\n"
                         + "Thread `" + thread.getTitle() + "` is now linked to project **"
@@ -221,11 +229,13 @@ public class ContextCommandService {
                             thread.setProjectIds(pids);
                             thread.setUpdatedAt(Instant.now());
                             threadRepository.save(thread);
+                            entityCache.evictThread(thread.getThreadId());
                         }
                     }
                 }
                 session.setUpdatedAt(Instant.now());
                 sessionRepository.save(session);
+                entityCache.evictSession(sessionId);
                 return "**Attached to project:** " + project.getName() + "\n\n"
                         + "Session is now linked to project **" + project.getName() + "**.\n"
                         + "You can now use project features like tickets, resources, and imports.";
@@ -263,7 +273,7 @@ public class ContextCommandService {
             newThread.setUpdatedAt(Instant.now());
             threadRepository.save(newThread);
 
-            ProjectDocument project = projectRepository.findById(projectId).orElse(null);
+            ProjectDocument project = entityCache.project(projectId).orElse(null);
             String projectName = project != null ? project.getName() : projectId;
 
             // If this is a session, link it to the new thread
@@ -273,6 +283,7 @@ public class ContextCommandService {
                     session.setThreadId(newThread.getThreadId());
                     session.setUpdatedAt(Instant.now());
                     sessionRepository.save(session);
+                    entityCache.evictSession(sessionId);
                 }
             }
 
@@ -287,10 +298,11 @@ public class ContextCommandService {
                 session.setThreadId(thread.getThreadId());
                 session.setUpdatedAt(Instant.now());
                 sessionRepository.save(session);
+                entityCache.evictSession(sessionId);
             }
         }
 
-        ProjectDocument project = projectRepository.findById(projectId).orElse(null);
+        ProjectDocument project = entityCache.project(projectId).orElse(null);
         String projectName = project != null ? project.getName() : projectId;
         long threadMsgCount = messageRepository.countBySessionId(thread.getThreadId());
 
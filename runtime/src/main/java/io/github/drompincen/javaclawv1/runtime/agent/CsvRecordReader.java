@@ -0,0 +1,136 @@
+package io.github.drompincen.javaclawv1.runtime.agent;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming RFC 4180 CSV reader: one record at a time from a {@link Reader}, so memory is
+ * bounded by {@code maxRecordChars} rather than the file. Quoted fields may contain commas,
+ * {@code ""} escapes and line breaks; records end at LF, CR or CRLF outside quotes.
+ */
+final class CsvRecordReader implements AutoCloseable {
+
+    /**
+     * The record exceeded the size limit. It has been skipped, so {@link #next()} may be called
+     * again to continue with the following record.
+     */
+    static final class RecordTooLargeException extends IOException {
+        RecordTooLargeException(int limit) {
+            super("Record exceeds " + limit + " characters");
+        }
+    }
+
+    private final Reader in;
+    private final int maxRecordChars;
+    private final char[] buf = new char[8192];
+    private int pos;
+    private int len;
+    private boolean eof;
+    private boolean first = true;
+
+    CsvRecordReader(Reader in, int maxRecordChars) {
+        this.in = in;
+        this.maxRecordChars = maxRecordChars;
+    }
+
+    /**
+     * Next record's fields, or {@code null} at end of input. A blank line yields one empty field.
+     *
+     * @throws RecordTooLargeException if the record holds more than {@code maxRecordChars} characters
+     */
+    String[] next() throws IOException {
+        if (first) {
+            first = false;
+            if (peek() == '\uFEFF') pos++; // byte-order mark from Excel exports
+        }
+        if (peek() < 0) return null;
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int chars = 0;
+        while (true) {
+            // The limit counts the record's characters, not its line break
+            if (chars++ > maxRecordChars) {
+                skipRecord(quoted);
+                throw new RecordTooLargeException(maxRecordChars);
+            }
+            int c = read();
+            if (quoted) {
+                if (c < 0) break; // unterminated quote: take what we have
+                if (c == '"') {
+                    if (peek() == '"') {
+                        pos++;
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n' || c < 0) {
+                break;
+            } else if (c == '\r') {
+                if (peek() == '\n') pos++;
+                break;
+            } else {
+                field.append((char) c);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    /** Discards the rest of the current record without buffering it. */
+    private void skipRecord(boolean quoted) throws IOException {
+        while (true) {
+            int c = read();
+            if (c < 0) return;
+            if (quoted) {
+                if (c == '"') {
+                    if (peek() == '"') pos++;
+                    else quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == '\n') {
+                return;
+            } else if (c == '\r') {
+                if (peek() == '\n') pos++;
+                return;
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        int c = peek();
+        if (c >= 0) pos++;
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (pos == len) {
+            if (eof) return -1;
+            len = in.read(buf, 0, buf.length);
+            pos = 0;
+            if (len <= 0) {
+                len = 0;
+                eof = true;
+                return -1;
+            }
+        }
+        return buf[pos];
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -3,6 +3,8 @@ package io.github.drompincen.javaclawv1.runtime.agent;
 import io.github.drompincen.javaclawv1.persistence.document.EventDocument;
 import io.github.drompincen.javaclawv1.persistence.repository.EventRepository;
 import io.github.drompincen.javaclawv1.protocol.event.EventType;
+import io.github.drompincen.javaclawv1.runtime.jfr.EventEmitEvent;
+import io.github.drompincen.javaclawv1.runtime.metrics.JavaClawMetrics;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
@@ -16,12 +18,34 @@ public class EventService {
 
     private final EventRepository eventRepository;
     private final ConcurrentHashMap<String, AtomicLong> seqCounters = new ConcurrentHashMap<>();
+    private final JavaClawMetrics metrics;
 
-    public EventService(EventRepository eventRepository) {
+    public EventService(EventRepository eventRepository, JavaClawMetrics metrics) {
         this.eventRepository = eventRepository;
+        this.metrics = metrics;
     }
 
     public EventDocument emit(String sessionId, EventType type, Object payload) {
+        long start = System.nanoTime();
+        EventEmitEvent jfr = new EventEmitEvent();
+        jfr.begin();
+        EventDocument saved = null;
+        try {
+            saved = doEmit(sessionId, type, payload);
+            return saved;
+        } finally {
+            metrics.recordEventEmit(type, System.nanoTime() - start);
+            jfr.end();
+            if (jfr.shouldCommit()) {
+                jfr.sessionId = sessionId;
+                jfr.eventType = type != null ? type.name() : null;
+                jfr.seq = saved != null ? saved.getSeq() : -1;
+                jfr.commit();
+            }
+        }
+    }
+
+    private EventDocument doEmit(String sessionId, EventType type, Object payload) {
         long seq = seqCounters
                 .computeIfAbsent(sessionId, k -> {
                     long last = eventRepository.findTopBySessionIdOrderBySeqDesc(sessionId)
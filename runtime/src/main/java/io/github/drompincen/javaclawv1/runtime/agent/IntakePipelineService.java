@@ -11,6 +11,9 @@ import io.github.drompincen.javaclawv1.persistence.repository.ThreadRepository;
 import io.github.drompincen.javaclawv1.protocol.api.IntakePipelineResponse;
 import io.github.drompincen.javaclawv1.protocol.api.SessionStatus;
 import io.github.drompincen.javaclawv1.protocol.event.EventType;
+import io.github.drompincen.javaclawv1.runtime.trace.Span;
+import io.github.drompincen.javaclawv1.runtime.trace.SpanKind;
+import io.github.drompincen.javaclawv1.runtime.trace.Tracer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -50,6 +53,7 @@ public class IntakePipelineService {
     private final EventService eventService;
     private final AgentLoop agentLoop;
     private final ContentExtractorService contentExtractor;
+    private final Tracer tracer;
 
     private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
         Thread t = new Thread(r, "intake-pipeline");
@@ -63,7 +67,8 @@ public class IntakePipelineService {
                                  MemoryRepository memoryRepository,
                                  EventService eventService,
                                  AgentLoop agentLoop,
-                                 ContentExtractorService contentExtractor) {
+                                 ContentExtractorService contentExtractor,
+                                 Tracer tracer) {
         this.sessionRepository = sessionRepository;
         this.messageRepository = messageRepository;
         this.threadRepository = threadRepository;
@@ -71,6 +76,7 @@ public class IntakePipelineService {
         this.eventService = eventService;
         this.agentLoop = agentLoop;
         this.contentExtractor = contentExtractor;
+        this.tracer = tracer;
     }
 
     public IntakePipelineResponse startPipeline(String projectId, String rawContent,
@@ -95,24 +101,31 @@ public class IntakePipelineService {
     private void runPipeline(String pipelineId, String projectId, String rawContentParam,
                              String sourceSessionId, List<String> filePaths) {
         String prefix = "[pipeline-" + pipelineId.substring(0, 8) + "]";
+        // The pipeline id doubles as the trace id, so the waterfall is looked up by pipeline
+        Span pipeline = tracer.startTrace(pipelineId, "intake pipeline", SpanKind.PIPELINE)
+                .session(sourceSessionId)
+                .project(projectId)
+                .attr("files", filePaths.size());
         try {
             String rawContent = rawContentParam;
 
             // ── Phase 0: Store raw content as project memory ──
             log.info("{} Phase 0: Storing raw content as memory", prefix);
-            MemoryDocument intakeMemory = new MemoryDocument();
-            intakeMemory.setMemoryId(UUID.randomUUID().toString());
-            intakeMemory.setKey("intake-" + pipelineId.substring(0, 8));
-            intakeMemory.setScope(MemoryDocument.MemoryScope.PROJECT);
-            intakeMemory.setProjectId(projectId);
-            intakeMemory.setContent(rawContent);
-            intakeMemory.setCreatedBy("intake-pipeline");
-            intakeMemory.setCreatedAt(Instant.now());
-            intakeMemory.setUpdatedAt(Instant.now());
-            intakeMemory.setExpiresAt(Instant.now().plus(Duration.ofDays(7)));
-            intakeMemory.setTags(List.of("intake", "raw-content"));
-            memoryRepository.save(intakeMemory);
-            log.info("{} Phase 0 complete — raw content saved as memory {}", prefix, intakeMemory.getKey());
+            try (Span memoryPhase = tracer.startSpan("phase store-memory", SpanKind.PHASE)) {
+                MemoryDocument intakeMemory = new MemoryDocument();
+                intakeMemory.setMemoryId(UUID.randomUUID().toString());
+                intakeMemory.setKey("intake-" + pipelineId.substring(0, 8));
+                intakeMemory.setScope(MemoryDocument.MemoryScope.PROJECT);
+                intakeMemory.setProjectId(projectId);
+                intakeMemory.setContent(rawContent);
+                intakeMemory.setCreatedBy("intake-pipeline");
+                intakeMemory.setCreatedAt(Instant.now());
+                intakeMemory.setUpdatedAt(Instant.now());
+                intakeMemory.setExpiresAt(Instant.now().plus(Duration.ofDays(7)));
+                intakeMemory.setTags(List.of("intake", "raw-content"));
+                memoryRepository.save(intakeMemory);
+                log.info("{} Phase 0 complete — raw content saved as memory {}", prefix, intakeMemory.getKey());
+            }
 
             // ── Detect pasted content format ──
             if (rawContent != null && !rawContent.isBlank()) {
@@ -126,7 +139,14 @@ public class IntakePipelineService {
             // ── Auto-extract file content ──
             if (!filePaths.isEmpty()) {
                 log.info("{} Extracting content from {} uploaded file(s)", prefix, filePaths.size());
-                String fileContent = contentExtractor.extractContent(filePaths);
+                String fileContent;
+                try (Span extractPhase = tracer.startSpan("phase extract-files", SpanKind.PHASE)) {
+                    fileContent = contentExtractor.extractContent(filePaths, (fileName, completed, total, cached) ->
+                            eventService.emit(sourceSessionId, EventType.INTAKE_EXTRACTION_PROGRESS, Map.of(
+                                    "pipelineId", pipelineId, "file", fileName, "completed", completed,
+                                    "total", total, "cached", cached)));
+                    extractPhase.attr("chars", fileContent.length());
+                }
                 rawContent = (rawContent != null ? rawContent + "\n\n" : "") + fileContent;
                 log.info("{} File content extracted ({} chars)", prefix, fileContent.length());
             }
@@ -136,10 +156,8 @@ public class IntakePipelineService {
 
             // ── Phase 1: Triage ──
             log.info("{} Phase 1: Triage", prefix);
-            String triageSessionId = createAgentSession(projectId, "intake-triage", pipelineId);
-            seedUserMessage(triageSessionId, buildTriagePrompt(enrichedContent, projectId, filePaths));
-            agentLoop.startAsync(triageSessionId);
-            waitForCompletion(triageSessionId, TRIAGE_TIMEOUT_MS);
+            String triageSessionId = runAgentPhase("triage", projectId, "intake-triage", pipelineId,
+                    buildTriagePrompt(enrichedContent, projectId, filePaths), TRIAGE_TIMEOUT_MS);
 
             String triageOutput = getLastAssistantMessage(triageSessionId);
             eventService.emit(sourceSessionId, EventType.INTAKE_CLASSIFIED,
@@ -171,12 +189,10 @@ public class IntakePipelineService {
 
             // ── Phase 2: Generalist hydration (single pass) ──
             log.info("{} Phase 2: Generalist hydration", prefix);
-            String hydrationSessionId = createAgentSession(projectId, "generalist", pipelineId);
-            seedUserMessage(hydrationSessionId, buildGeneralistHydrationPrompt(
-                    enrichedContent, triageOutput, projectId, filePaths,
-                    routeToThreads, routeToTickets, routeToPlan, routeToResources));
-            agentLoop.startAsync(hydrationSessionId);
-            waitForCompletion(hydrationSessionId, GENERALIST_TIMEOUT_MS);
+            String hydrationSessionId = runAgentPhase("generalist", projectId, "generalist", pipelineId,
+                    buildGeneralistHydrationPrompt(enrichedContent, triageOutput, projectId, filePaths,
+                            routeToThreads, routeToTickets, routeToPlan, routeToResources),
+                    GENERALIST_TIMEOUT_MS);
 
             eventService.emit(sourceSessionId, EventType.THREAD_CREATED,
                     Map.of("pipelineId", pipelineId, "hydrationSessionId", hydrationSessionId));
@@ -186,10 +202,8 @@ public class IntakePipelineService {
             if (routeToTickets || routeToPlan) {
                 try {
                     log.info("{} Phase 5: Objective Agent", prefix);
-                    String objectiveSessionId = createAgentSession(projectId, "objective-agent", pipelineId);
-                    seedUserMessage(objectiveSessionId, buildObjectiveAgentPrompt(projectId));
-                    agentLoop.startAsync(objectiveSessionId);
-                    waitForCompletion(objectiveSessionId, OBJECTIVE_TIMEOUT_MS);
+                    runAgentPhase("objective", projectId, "objective-agent", pipelineId,
+                            buildObjectiveAgentPrompt(projectId), OBJECTIVE_TIMEOUT_MS);
                     log.info("{} Phase 5 complete — objectives synthesized", prefix);
                 } catch (Exception e) {
                     log.warn("{} Phase 5 failed (non-fatal): {}", prefix, e.getMessage());
@@ -197,10 +211,8 @@ public class IntakePipelineService {
 
                 try {
                     log.info("{} Phase 6: Reconcile Agent", prefix);
-                    String reconcileSessionId = createAgentSession(projectId, "reconcile-agent", pipelineId);
-                    seedUserMessage(reconcileSessionId, buildReconcileAgentPrompt(projectId));
-                    agentLoop.startAsync(reconcileSessionId);
-                    waitForCompletion(reconcileSessionId, RECONCILE_TIMEOUT_MS);
+                    runAgentPhase("reconcile", projectId, "reconcile-agent", pipelineId,
+                            buildReconcileAgentPrompt(projectId), RECONCILE_TIMEOUT_MS);
                     log.info("{} Phase 6 complete — reconciliation done, delta pack created", prefix);
                 } catch (Exception e) {
                     log.warn("{} Phase 6 failed (non-fatal): {}", prefix, e.getMessage());
@@ -213,10 +225,8 @@ public class IntakePipelineService {
             if (routeToResources || routeToTickets) {
                 try {
                     log.info("{} Phase 7: Resource Agent", prefix);
-                    String resourceSessionId = createAgentSession(projectId, "resource-agent", pipelineId);
-                    seedUserMessage(resourceSessionId, buildResourceAgentPrompt(projectId));
-                    agentLoop.startAsync(resourceSessionId);
-                    waitForCompletion(resourceSessionId, RESOURCE_TIMEOUT_MS);
+                    runAgentPhase("resource", projectId, "resource-agent", pipelineId,
+                            buildResourceAgentPrompt(projectId), RESOURCE_TIMEOUT_MS);
                     log.info("{} Phase 7 complete — resource analysis done", prefix);
                 } catch (Exception e) {
                     log.warn("{} Phase 7 failed (non-fatal): {}", prefix, e.getMessage());
@@ -256,6 +266,7 @@ public class IntakePipelineService {
 
         } catch (Exception e) {
             log.error("{} Pipeline failed: {}", prefix, e.getMessage(), e);
+            pipeline.fail(e);
             sessionRepository.findById(sourceSessionId).ifPresent(s -> {
                 s.setStatus(SessionStatus.FAILED);
                 s.setUpdatedAt(Instant.now());
@@ -263,6 +274,30 @@ public class IntakePipelineService {
             });
             eventService.emit(sourceSessionId, EventType.ERROR,
                     Map.of("pipelineId", pipelineId, "error", e.getMessage()));
+        } finally {
+            pipeline.close();
+        }
+    }
+
+    /**
+     * Run one agent phase: a fresh pipeline session for {@code agentId} seeded with
+     * {@code prompt}, awaited to completion. The session carries the phase span so the
+     * agent run shows up under it in the pipeline trace.
+     */
+    private String runAgentPhase(String phase, String projectId, String agentId, String pipelineId,
+                                 String prompt, long timeoutMs) throws InterruptedException {
+        try (Span span = tracer.startSpan("phase " + phase, SpanKind.PHASE).agent(agentId)) {
+            String sessionId = createAgentSession(projectId, agentId, pipelineId, span);
+            span.session(sessionId);
+            seedUserMessage(sessionId, prompt);
+            agentLoop.startAsync(sessionId);
+            try {
+                waitForCompletion(sessionId, timeoutMs);
+            } catch (RuntimeException | InterruptedException e) {
+                span.fail(e);
+                throw e;
+            }
+            return sessionId;
         }
     }
 
@@ -310,7 +345,7 @@ public class IntakePipelineService {
 
     // ── Session / message helpers ──
 
-    private String createAgentSession(String projectId, String agentId, String pipelineId) {
+    private String createAgentSession(String projectId, String agentId, String pipelineId, Span parent) {
         String sessionId = UUID.randomUUID().toString();
         SessionDocument session = new SessionDocument();
         session.setSessionId(sessionId);
@@ -318,11 +353,11 @@ public class IntakePipelineService {
         session.setStatus(SessionStatus.IDLE);
         session.setCreatedAt(Instant.now());
         session.setUpdatedAt(Instant.now());
-        session.setMetadata(Map.of(
-                "agentId", agentId,
-                "type", "pipeline",
-                "pipelineId", pipelineId
-        ));
+        Map<String, String> metadata = new HashMap<>(Tracer.propagationMetadata(parent));
+        metadata.put("agentId", agentId);
+        metadata.put("type", "pipeline");
+        metadata.put("pipelineId", pipelineId);
+        session.setMetadata(metadata);
         sessionRepository.save(session);
         return sessionId;
     }
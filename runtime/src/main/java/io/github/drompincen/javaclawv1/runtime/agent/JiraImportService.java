@@ -3,12 +3,20 @@ package io.github.drompincen.javaclawv1.runtime.agent;
 import io.github.drompincen.javaclawv1.persistence.document.ThingDocument;
 import io.github.drompincen.javaclawv1.protocol.api.ThingCategory;
 import io.github.drompincen.javaclawv1.protocol.api.TicketDto;
+import io.github.drompincen.javaclawv1.protocol.event.EventType;
 import io.github.drompincen.javaclawv1.runtime.thing.ThingService;
+import io.github.drompincen.javaclawv1.runtime.thing.ThingWriteResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -28,11 +36,17 @@ import java.util.function.Function;
 public class JiraImportService {
 
     private static final Logger log = LoggerFactory.getLogger(JiraImportService.class);
+    private static final int IMPORT_BATCH = 1000;
+    private static final int MAX_REPORTED_ERRORS = 1000;
 
     private final ThingService thingService;
+    private final EventService eventService;
+    private final int maxRecordChars;
 
-    public JiraImportService(ThingService thingService) {
+    public JiraImportService(ThingService thingService, EventService eventService, Environment environment) {
         this.thingService = thingService;
+        this.eventService = eventService;
+        this.maxRecordChars = environment.getProperty("javaclaw.import.max-record-chars", Integer.class, 1_000_000);
     }
 
     // -----------------------------------------------------------------------
@@ -41,11 +55,27 @@ public class JiraImportService {
 
     public record ImportResult(int total, int imported, List<String> errors) {}
 
+    /** Called after each batch is written with the share of the file consumed so far. */
+    @FunctionalInterface
+    public interface ImportProgress {
+        ImportProgress NONE = (percent, rows) -> {};
+
+        void update(int percent, long rows);
+    }
+
     // -----------------------------------------------------------------------
     // 1. importFile — reads CSV or Excel and creates tickets
     // -----------------------------------------------------------------------
 
     public ImportResult importFile(String filePath, String projectId) {
+        return importFile(filePath, projectId, ImportProgress.NONE);
+    }
+
+    /**
+     * Streams the file row by row, so memory stays bounded by one batch regardless of file size.
+     * Legacy .xls workbooks are still loaded whole; the format caps out at 65,536 rows.
+     */
+    public ImportResult importFile(String filePath, String projectId, ImportProgress progress) {
         Path path = Path.of(filePath);
         if (!Files.exists(path)) {
             return new ImportResult(0, 0, List.of("File not found: " + filePath));
@@ -53,10 +83,10 @@ public class JiraImportService {
         String name = path.getFileName().toString().toLowerCase();
         try {
             if (name.endsWith(".csv")) {
-                return importCsv(path, projectId);
+                return importCsv(path, new TicketImport(projectId, progress));
             }
             if (name.endsWith(".xlsx") || name.endsWith(".xls")) {
-                return importExcel(path, projectId);
+                return importExcel(path, new TicketImport(projectId, progress));
             }
             return new ImportResult(0, 0, List.of("Unsupported file type: " + name + ". Use .csv, .xlsx, or .xls"));
         } catch (Exception e) {
@@ -99,7 +129,9 @@ public class JiraImportService {
 
         String filePath = paths.get(0);
         log.info("[JiraImport] file={} project={}", filePath, projectId);
-        ImportResult result = importFile(filePath, projectId);
+        ImportResult result = importFile(filePath, projectId, (percent, rows) ->
+                eventService.emit(sessionId, EventType.TOOL_PROGRESS, Map.of(
+                        "tool", "jira_import", "percent", percent, "message", rows + " rows processed")));
 
         StringBuilder sb = new StringBuilder();
         sb.append("**Jira Import Results**\n\n");
@@ -123,50 +155,41 @@ public class JiraImportService {
     }
 
     // -----------------------------------------------------------------------
-    // CSV import
+    // CSV import (streamed record by record)
     // -----------------------------------------------------------------------
 
-    private ImportResult importCsv(Path path, String projectId) throws Exception {
-        List<String> lines;
-        try (BufferedReader reader = Files.newBufferedReader(path)) {
-            lines = reader.lines().toList();
-        }
-        if (lines.isEmpty()) {
-            return new ImportResult(0, 0, List.of("CSV file is empty"));
-        }
-
-        String[] headers = parseCsvLine(lines.get(0));
-        Map<String, Integer> colMap = mapColumns(headers);
-        if (colMap.get("title") < 0) {
-            return new ImportResult(0, 0,
-                    List.of("No 'Summary' or 'Title' column found. Headers: " + String.join(", ", headers)));
-        }
-
-        int imported = 0;
-        List<String> errors = new ArrayList<>();
-        for (int i = 1; i < lines.size(); i++) {
-            try {
-                String[] cols = parseCsvLine(lines.get(i));
-                if (cols.length == 0 || (cols.length == 1 && cols[0].isBlank())) {
+    private ImportResult importCsv(Path path, TicketImport ticketImport) throws IOException {
+        long size = Files.size(path);
+        try (CountingInputStream counted = new CountingInputStream(new BufferedInputStream(Files.newInputStream(path)));
+             CsvRecordReader reader = new CsvRecordReader(
+                     new InputStreamReader(counted, StandardCharsets.UTF_8), maxRecordChars)) {
+            int row = 0;
+            while (true) {
+                String[] cols;
+                try {
+                    cols = reader.next();
+                } catch (CsvRecordReader.RecordTooLargeException e) {
+                    if (!ticketImport.reject(++row, e.getMessage())) break;
                     continue;
                 }
-                Map<String, Object> payload = buildTicketPayload(cols, colMap);
-                thingService.createThing(projectId, ThingCategory.TICKET, payload);
-                imported++;
-            } catch (Exception e) {
-                errors.add("Row " + (i + 1) + ": " + e.getMessage());
+                if (cols == null) break;
+                ticketImport.position(counted.count, size);
+                if (!ticketImport.row(++row, cols)) break;
             }
         }
-        return new ImportResult(lines.size() - 1, imported, errors);
+        return ticketImport.finish("CSV file is empty");
     }
 
     // -----------------------------------------------------------------------
     // Excel import (Apache POI — degrades gracefully if not on classpath)
     // -----------------------------------------------------------------------
 
-    private ImportResult importExcel(Path path, String projectId) throws Exception {
+    private ImportResult importExcel(Path path, TicketImport ticketImport) throws Exception {
         try {
-            return doImportExcel(path, projectId);
+            if (path.getFileName().toString().toLowerCase().endsWith(".xlsx")) {
+                return importXlsx(path, ticketImport);
+            }
+            return importXls(path, ticketImport);
         } catch (NoClassDefFoundError | Exception e) {
             if (e instanceof NoClassDefFoundError) {
                 log.warn("Apache POI is not available on the classpath. Excel import is disabled.");
@@ -177,54 +200,185 @@ public class JiraImportService {
         }
     }
 
-    private ImportResult doImportExcel(Path path, String projectId) throws Exception {
-        List<String> errors = new ArrayList<>();
-        int imported = 0;
-        int totalRows = 0;
+    private ImportResult importXlsx(Path path, TicketImport ticketImport) throws Exception {
+        try {
+            StreamingXlsxReader.read(path, (row, cols) -> {
+                if (!ticketImport.row(row, cols)) throw new StopImport();
+            }, ticketImport::position);
+        } catch (StopImport e) {
+            // header was unusable; the result already carries the reason
+        }
+        return ticketImport.finish("Excel sheet has no header row");
+    }
 
+    private ImportResult importXls(Path path, TicketImport ticketImport) throws Exception {
         try (var workbook = org.apache.poi.ss.usermodel.WorkbookFactory.create(path.toFile())) {
             var sheet = workbook.getSheetAt(0);
-            var headerRow = sheet.getRow(0);
-            if (headerRow == null) {
-                return new ImportResult(0, 0, List.of("Excel sheet has no header row"));
+            int lastRow = Math.max(sheet.getLastRowNum(), 1);
+            for (int r = 0; r <= sheet.getLastRowNum(); r++) {
+                var row = sheet.getRow(r);
+                if (row == null) {
+                    continue;
+                }
+                String[] cols = new String[Math.max(row.getLastCellNum(), 0)];
+                for (int c = 0; c < cols.length; c++) {
+                    var cell = row.getCell(c);
+                    cols[c] = cell != null ? getCellString(cell) : "";
+                }
+                ticketImport.position(r, lastRow);
+                if (!ticketImport.row(r + 1, cols)) break;
             }
+        }
+        return ticketImport.finish("Excel sheet has no header row");
+    }
+
+    /**
+     * Consumes rows in file order: the first row is the header, the rest are buffered and written
+     * {@value #IMPORT_BATCH} at a time. Rows carrying a Jira issue key are upserted on it
+     * ({@code externalRef}), so re-importing an export updates those tickets instead of
+     * duplicating them; rows without one have no reliable identity (titles repeat) and are
+     * inserted. Progress is reported after every batch; at most {@value #MAX_REPORTED_ERRORS}
+     * row errors are kept.
+     */
+    private final class TicketImport {
+        private final String projectId;
+        private final ImportProgress progress;
+        private final List<String> errors = new ArrayList<>();
+        private final List<Map<String, Object>> payloads = new ArrayList<>();
+        private final List<Integer> rows = new ArrayList<>();
+        private Map<String, Integer> colMap;
+        private String headerError;
+        private int total;
+        private int imported;
+        private int droppedErrors;
+        private int percent;
+
+        TicketImport(String projectId, ImportProgress progress) {
+            this.projectId = projectId;
+            this.progress = progress;
+        }
+
+        void position(long read, long size) {
+            if (size > 0) percent = (int) Math.min(99, read * 100 / size);
+        }
 
-            String[] headers = new String[headerRow.getLastCellNum()];
-            for (int c = 0; c < headers.length; c++) {
-                var cell = headerRow.getCell(c);
-                headers[c] = cell != null ? getCellString(cell) : "";
+        /** Returns false when the header has no title column and the rest of the file should be skipped. */
+        boolean row(int row, String[] cols) {
+            if (colMap == null) {
+                colMap = mapColumns(cols);
+                if (colMap.get("title") < 0) {
+                    headerError = "No 'Summary' or 'Title' column found. Headers: " + String.join(", ", cols);
+                    return false;
+                }
+                return true;
             }
-            Map<String, Integer> colMap = mapColumns(headers);
-            if (colMap.get("title") < 0) {
-                return new ImportResult(0, 0,
-                        List.of("No 'Summary' or 'Title' column found. Headers: " + String.join(", ", headers)));
+            if (String.join("", cols).isBlank()) {
+                return true;
+            }
+            total++;
+            try {
+                payloads.add(buildTicketPayload(cols, colMap));
+                rows.add(row);
+            } catch (Exception e) {
+                error(row, e.getMessage());
             }
+            if (payloads.size() >= IMPORT_BATCH) flush();
+            return true;
+        }
 
-            for (int r = 1; r <= sheet.getLastRowNum(); r++) {
-                var row = sheet.getRow(r);
-                if (row == null) {
-                    continue;
-                }
-                totalRows++;
-                try {
-                    String[] cols = new String[row.getLastCellNum()];
-                    for (int c = 0; c < cols.length; c++) {
-                        var cell = row.getCell(c);
-                        cols[c] = cell != null ? getCellString(cell) : "";
-                    }
-                    if (cols.length == 0
-                            || (cols.length > 0 && cols[0].isBlank() && getCol(cols, colMap.get("title")).isBlank())) {
-                        continue;
-                    }
-                    Map<String, Object> payload = buildTicketPayload(cols, colMap);
-                    thingService.createThing(projectId, ThingCategory.TICKET, payload);
-                    imported++;
-                } catch (Exception e) {
-                    errors.add("Row " + (r + 1) + ": " + e.getMessage());
+        /** Counts a row that could not be read as failed; an unreadable header ends the import. */
+        boolean reject(int row, String message) {
+            if (colMap == null) {
+                colMap = Map.of();
+                headerError = "Header row: " + message;
+                return false;
+            }
+            total++;
+            error(row, message);
+            return true;
+        }
+
+        ImportResult finish(String emptyMessage) {
+            if (colMap == null) return new ImportResult(0, 0, List.of(emptyMessage));
+            if (headerError != null) return new ImportResult(0, 0, List.of(headerError));
+            percent = 100;
+            if (payloads.isEmpty()) progress.update(percent, total);
+            else flush();
+            if (droppedErrors > 0) {
+                errors.add("... " + droppedErrors + " further row errors not recorded");
+            }
+            return new ImportResult(total, imported, errors);
+        }
+
+        private void flush() {
+            if (payloads.isEmpty()) return;
+            List<Integer> keyed = new ArrayList<>();
+            List<Integer> unkeyed = new ArrayList<>();
+            for (int i = 0; i < payloads.size(); i++) {
+                (payloads.get(i).containsKey("externalRef") ? keyed : unkeyed).add(i);
+            }
+            write(keyed, batch -> thingService.upsertAllByIdentity(
+                    projectId, ThingCategory.TICKET, "externalRef", batch));
+            write(unkeyed, batch -> thingService.saveAll(batch.stream().map(this::newTicket).toList()));
+            payloads.clear();
+            rows.clear();
+            progress.update(percent, total);
+        }
+
+        /** Writes the buffered payloads at {@code indexes}, mapping results back to file rows. */
+        private void write(List<Integer> indexes, Function<List<Map<String, Object>>, List<ThingWriteResult>> writer) {
+            if (indexes.isEmpty()) return;
+            try {
+                for (ThingWriteResult result : writer.apply(indexes.stream().map(payloads::get).toList())) {
+                    if (result.ok()) imported++;
+                    else error(rows.get(indexes.get(result.index())), result.error());
                 }
+            } catch (Exception e) {
+                for (int i : indexes) error(rows.get(i), e.getMessage());
             }
         }
-        return new ImportResult(totalRows, imported, errors);
+
+        private ThingDocument newTicket(Map<String, Object> payload) {
+            ThingDocument thing = new ThingDocument();
+            thing.setProjectId(projectId);
+            thing.setThingCategory(ThingCategory.TICKET);
+            thing.setPayload(new LinkedHashMap<>(payload));
+            return thing;
+        }
+
+        private void error(int row, String message) {
+            if (errors.size() < MAX_REPORTED_ERRORS) errors.add("Row " + row + ": " + message);
+            else droppedErrors++;
+        }
+    }
+
+    /** Thrown from the SAX row callback to abandon the sheet once the header is rejected. */
+    private static final class StopImport extends RuntimeException {
+        StopImport() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
     }
 
     private String getCellString(org.apache.poi.ss.usermodel.Cell cell) {
@@ -284,12 +438,13 @@ public class JiraImportService {
             throw new RuntimeException("Empty title");
         }
 
-        // Map Jira key as prefix to title if present
+        // Map Jira key as prefix to title if present; it is also the ticket's import identity
         String key = getCol(cols, colMap.get("key"));
         if (!key.isBlank()) {
             title = "[" + key + "] " + title;
         }
         payload.put("title", title);
+        if (!key.isBlank()) payload.put("externalRef", key);
         payload.put("description", getCol(cols, colMap.get("description")));
 
         // Map priority
@@ -321,29 +476,4 @@ public class JiraImportService {
         }
         return cols[idx] != null ? cols[idx].trim() : "";
     }
-
-    // -----------------------------------------------------------------------
-    // Simple CSV line parser (handles quoted fields with commas)
-    // -----------------------------------------------------------------------
-
-    private String[] parseCsvLine(String line) {
-        List<String> fields = new ArrayList<>();
-        boolean inQuotes = false;
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-            if (c == '"') {
-                inQuotes = !inQuotes;
-                continue;
-            }
-            if (c == ',' && !inQuotes) {
-                fields.add(sb.toString());
-                sb.setLength(0);
-                continue;
-            }
-            sb.append(c);
-        }
-        fields.add(sb.toString());
-        return fields.toArray(new String[0]);
-    }
 }
@@ -4,30 +4,94 @@ import io.github.drompincen.javaclawv1.persistence.document.LogDocument;
 import io.github.drompincen.javaclawv1.persistence.document.LlmInteractionDocument;
 import io.github.drompincen.javaclawv1.persistence.repository.LogRepository;
 import io.github.drompincen.javaclawv1.persistence.repository.LlmInteractionRepository;
+import io.github.drompincen.javaclawv1.runtime.agent.llm.LlmCallInfo;
+import io.github.drompincen.javaclawv1.runtime.metrics.JavaClawMetrics;
+import io.github.drompincen.javaclawv1.runtime.metrics.LlmUsageRollupService;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.io.PrintWriter;
-import java.io.StringWriter;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
- * Persists logs and LLM interactions to MongoDB for metrics and debugging.
+ * Persists logs and LLM interactions to MongoDB for metrics and debugging, and feeds each
+ * LLM interaction into the {@link JavaClawMetrics} LLM timers and token counters.
+ *
+ * Callers never touch Mongo: entries are queued and written in batches by {@link #flush}.
+ * DEBUG/INFO entries are sampled at {@code javaclaw.logging.info-sample-rate} and shed once
+ * the queue is past the pressure mark, WARN entries only when it is full. ERROR entries and
+ * LLM interactions have their own queues and are never sampled or shed; they are bounded only
+ * by a hard cap that protects the heap while Mongo is unreachable. A batch that fails to write
+ * goes back to the head of its queue and is retried on the next flush. Every entry gets a
+ * per-level {@code expiresAt} so the collections are trimmed by their TTL indexes. Each batch
+ * of LLM interactions written is also added to the {@link LlmUsageRollupService} buckets.
  */
 @Service
 public class LogService {
 
     private static final Logger log = LoggerFactory.getLogger(LogService.class);
 
+    private static final int FLUSH_BATCH = 500;
+    private static final int MAX_CAUSES = 5;
+
     private final LogRepository logRepository;
     private final LlmInteractionRepository llmInteractionRepository;
+    private final JavaClawMetrics metrics;
+    private final LlmUsageRollupService usageRollups;
+    private final double infoSampleRate;
+    private final int pressureMark;
+    private final int maxStackFrames;
+    private final Map<LogDocument.LogLevel, Duration> ttls = new EnumMap<>(LogDocument.LogLevel.class);
+    private final Duration llmInteractionTtl;
+    private final BlockingDeque<LogDocument> pendingLogs;
+    private final BlockingDeque<LogDocument> pendingErrors;
+    private final BlockingDeque<LlmInteractionDocument> pendingInteractions;
 
-    public LogService(LogRepository logRepository, LlmInteractionRepository llmInteractionRepository) {
+    public LogService(LogRepository logRepository, LlmInteractionRepository llmInteractionRepository,
+                      JavaClawMetrics metrics, LlmUsageRollupService usageRollups, Environment environment) {
         this.logRepository = logRepository;
         this.llmInteractionRepository = llmInteractionRepository;
+        this.metrics = metrics;
+        this.usageRollups = usageRollups;
+        int capacity = environment.getProperty("javaclaw.logging.queue-capacity", Integer.class, 10_000);
+        int criticalCapacity = environment.getProperty("javaclaw.logging.critical-queue-capacity", Integer.class, 50_000);
+        this.infoSampleRate = environment.getProperty("javaclaw.logging.info-sample-rate", Double.class, 1.0);
+        this.pressureMark = (int) (capacity
+                * environment.getProperty("javaclaw.logging.pressure-threshold", Double.class, 0.5));
+        this.maxStackFrames = environment.getProperty("javaclaw.logging.max-stack-frames", Integer.class, 20);
+        long[] defaultTtlDays = {1, 7, 30, 90};
+        for (LogDocument.LogLevel level : LogDocument.LogLevel.values()) {
+            String key = "javaclaw.logging.ttl-days." + level.name().toLowerCase(Locale.ROOT);
+            ttls.put(level, Duration.ofDays(environment.getProperty(key, Long.class, defaultTtlDays[level.ordinal()])));
+        }
+        this.llmInteractionTtl = Duration.ofDays(
+                environment.getProperty("javaclaw.logging.ttl-days.llm-interaction", Long.class, 90L));
+        this.pendingLogs = new LinkedBlockingDeque<>(capacity);
+        this.pendingErrors = new LinkedBlockingDeque<>(criticalCapacity);
+        this.pendingInteractions = new LinkedBlockingDeque<>(criticalCapacity);
+        metrics.gauge("javaclaw.logs.queue.depth", "Log entries and LLM interactions waiting to be written",
+                this::pendingCount);
     }
 
     public void logInfo(String source, String sessionId, String message, Map<String, Object> metadata) {
@@ -39,56 +103,191 @@ public class LogService {
     }
 
     public void logError(String source, String sessionId, String message, Throwable error, Map<String, Object> metadata) {
-        String stackTrace = null;
-        if (error != null) {
-            StringWriter sw = new StringWriter();
-            error.printStackTrace(new PrintWriter(sw));
-            stackTrace = sw.toString();
-        }
+        String stackTrace = error != null ? renderStackTrace(error, maxStackFrames) : null;
         persist(LogDocument.LogLevel.ERROR, source, sessionId, message, stackTrace, metadata);
     }
 
     private void persist(LogDocument.LogLevel level, String source, String sessionId,
                          String message, String stackTrace, Map<String, Object> metadata) {
-        try {
-            LogDocument doc = new LogDocument();
-            doc.setLogId(UUID.randomUUID().toString());
-            doc.setLevel(level);
-            doc.setSource(source);
-            doc.setSessionId(sessionId);
-            doc.setMessage(message);
-            doc.setStackTrace(stackTrace);
-            doc.setMetadata(metadata);
-            doc.setTimestamp(Instant.now());
-            logRepository.save(doc);
-        } catch (Exception e) {
-            log.error("Failed to persist log entry: {}", message, e);
+        boolean lowPriority = level == LogDocument.LogLevel.DEBUG || level == LogDocument.LogLevel.INFO;
+        if (lowPriority) {
+            if (infoSampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= infoSampleRate) {
+                metrics.recordLogDropped(level, "sampled");
+                return;
+            }
+            if (pendingLogs.size() >= pressureMark) {
+                metrics.recordLogDropped(level, "pressure");
+                return;
+            }
+        }
+
+        LogDocument doc = new LogDocument();
+        doc.setLogId(UUID.randomUUID().toString());
+        doc.setLevel(level);
+        doc.setSource(source);
+        doc.setSessionId(sessionId);
+        doc.setMessage(message);
+        doc.setStackTrace(stackTrace);
+        doc.setMetadata(metadata != null ? new HashMap<>(metadata) : null);
+        Instant now = Instant.now();
+        doc.setTimestamp(now);
+        doc.setExpiresAt(now.plus(ttls.get(level)));
+
+        BlockingQueue<LogDocument> queue = level == LogDocument.LogLevel.ERROR ? pendingErrors : pendingLogs;
+        if (!queue.offer(doc)) {
+            metrics.recordLogDropped(level, "full");
         }
     }
 
     /**
-     * Record an LLM interaction for metrics tracking.
+     * Stack trace of {@code error} and up to {@value #MAX_CAUSES} causes, keeping at most
+     * {@code maxFrames} frames of each; the rest are summarised as "... n more".
      */
-    public void recordLlmInteraction(String sessionId, String agentId, String provider, String model,
-                                      int messageCount, int promptTokens, int completionTokens,
+    static String renderStackTrace(Throwable error, int maxFrames) {
+        StringBuilder sb = new StringBuilder();
+        Set<Throwable> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        Throwable t = error;
+        for (int depth = 0; t != null && depth < MAX_CAUSES && seen.add(t); depth++) {
+            if (depth > 0) sb.append("Caused by: ");
+            sb.append(t).append('\n');
+            StackTraceElement[] frames = t.getStackTrace();
+            int shown = Math.min(frames.length, maxFrames);
+            for (int i = 0; i < shown; i++) {
+                sb.append("\tat ").append(frames[i]).append('\n');
+            }
+            if (frames.length > shown) {
+                sb.append("\t... ").append(frames.length - shown).append(" more\n");
+            }
+            t = t.getCause();
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Record an LLM interaction for metrics tracking, together with the provider/model that
+     * served it, the routing decisions (failover, hedging) taken along the way and the token
+     * usage and latency the provider reported. {@code call} may be null when the LLM service
+     * did not report one. The estimated token counts are only stored when the provider
+     * reported no usage, and the document is flagged as estimated.
+     */
+    public void recordLlmInteraction(String sessionId, String projectId, String agentId, LlmCallInfo call,
+                                      int messageCount, int estimatedPromptTokens, int estimatedCompletionTokens,
                                       long durationMs, boolean success, String errorMessage) {
+        LlmInteractionDocument doc = new LlmInteractionDocument();
+        doc.setInteractionId(UUID.randomUUID().toString());
+        doc.setSessionId(sessionId);
+        doc.setProjectId(projectId);
+        doc.setAgentId(agentId);
+        doc.setTimeToFirstTokenMs(-1);
+        if (call != null) {
+            doc.setProvider(call.getProvider());
+            doc.setModel(call.getModel());
+            doc.setRoutingReason(call.getRoutingReason());
+            doc.setFailedOverFrom(call.getFailedOverFrom());
+            doc.setHedged(call.isHedged());
+            doc.setHedgeWinner(call.getHedgeWinner());
+            doc.setAttempts(call.getAttempts());
+            doc.setTimeToFirstTokenMs(call.getTimeToFirstTokenMs());
+            doc.setTokensPerSecond(call.getTokensPerSecond());
+        }
+        if (call != null && call.isUsageReported()) {
+            doc.setPromptTokens(call.getPromptTokens());
+            doc.setCompletionTokens(call.getCompletionTokens());
+            doc.setCachedTokens(call.getCachedTokens());
+        } else {
+            doc.setPromptTokens(estimatedPromptTokens);
+            doc.setCompletionTokens(estimatedCompletionTokens);
+            doc.setTokensEstimated(true);
+        }
+        metrics.recordLlmCall(agentId, doc.getProvider(), success, durationMs, doc.getTimeToFirstTokenMs(),
+                doc.getPromptTokens(), doc.getCompletionTokens(), doc.getCachedTokens());
+        doc.setMessageCount(messageCount);
+        doc.setDurationMs(durationMs);
+        doc.setSuccess(success);
+        doc.setErrorMessage(errorMessage);
+        Instant now = Instant.now();
+        doc.setTimestamp(now);
+        doc.setExpiresAt(now.plus(llmInteractionTtl));
+        if (!pendingInteractions.offer(doc)) {
+            metrics.recordLogDropped("LLM_INTERACTION", "full");
+        }
+    }
+
+    /** Write queued entries with batched inserts, errors and LLM interactions first. */
+    @Scheduled(fixedDelayString = "${javaclaw.logging.flush-interval-ms:500}")
+    public void flush() {
+        drain(pendingErrors, batch -> logRepository.insert(batch), LogDocument::getLevel, written -> { });
+        List<LlmInteractionDocument> stored = new ArrayList<>();
+        drain(pendingInteractions, batch -> llmInteractionRepository.insert(batch), doc -> "LLM_INTERACTION",
+                stored::addAll);
+        drain(pendingLogs, batch -> logRepository.insert(batch), LogDocument::getLevel, written -> { });
+        if (stored.isEmpty()) return;
         try {
-            LlmInteractionDocument doc = new LlmInteractionDocument();
-            doc.setInteractionId(UUID.randomUUID().toString());
-            doc.setSessionId(sessionId);
-            doc.setAgentId(agentId);
-            doc.setProvider(provider);
-            doc.setModel(model);
-            doc.setMessageCount(messageCount);
-            doc.setPromptTokens(promptTokens);
-            doc.setCompletionTokens(completionTokens);
-            doc.setDurationMs(durationMs);
-            doc.setSuccess(success);
-            doc.setErrorMessage(errorMessage);
-            doc.setTimestamp(Instant.now());
-            llmInteractionRepository.save(doc);
+            usageRollups.record(stored);
         } catch (Exception e) {
-            log.error("Failed to persist LLM interaction: {}", e.getMessage(), e);
+            // The rollup service keeps the failed bucket updates and retries them itself
+            log.warn("Failed to update LLM usage buckets for {} interactions: {}", stored.size(), e.getMessage());
         }
     }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+
+    /**
+     * Writes the queue in batches. A failed batch is put back at the head of the queue, in
+     * order, and the queue is left until the next flush; only entries that no longer fit
+     * (the queue refilled meanwhile) are dropped. A retried batch may be partly written
+     * already; ids are fixed at enqueue time, so it is then written entry by entry and the
+     * duplicates are skipped. Every entry is passed to {@code written} exactly once, when it is
+     * stored or found stored by a retry.
+     */
+    private <T> void drain(BlockingDeque<T> queue, Consumer<List<T>> writer, Function<T, Object> levelOf,
+                           Consumer<List<T>> written) {
+        while (!queue.isEmpty()) {
+            List<T> batch = new ArrayList<>(FLUSH_BATCH);
+            if (queue.drainTo(batch, FLUSH_BATCH) == 0) return;
+            List<T> failed;
+            try {
+                writer.accept(batch);
+                written.accept(batch);
+                continue;
+            } catch (DuplicateKeyException e) {
+                failed = writeEachSkippingDuplicates(batch, writer, written);
+                if (failed.isEmpty()) continue;
+            } catch (Exception e) {
+                log.warn("Failed to write {} log entries, retrying on next flush: {}", batch.size(), e.getMessage());
+                failed = batch;
+            }
+            for (int i = failed.size() - 1; i >= 0; i--) {
+                if (!queue.offerFirst(failed.get(i))) {
+                    metrics.recordLogDropped(levelOf.apply(failed.get(i)), "full");
+                }
+            }
+            return;
+        }
+    }
+
+    /** Entries of {@code batch} that could not be written; duplicates count as written. */
+    private static <T> List<T> writeEachSkippingDuplicates(List<T> batch, Consumer<List<T>> writer,
+                                                           Consumer<List<T>> written) {
+        List<T> failed = new ArrayList<>();
+        for (T entry : batch) {
+            try {
+                writer.accept(List.of(entry));
+                written.accept(List.of(entry));
+            } catch (DuplicateKeyException e) {
+                // Written by an earlier attempt of the same batch, which failed before passing it on
+                written.accept(List.of(entry));
+            } catch (Exception e) {
+                failed.add(entry);
+            }
+        }
+        return failed;
+    }
+
+    public int pendingCount() {
+        return pendingLogs.size() + pendingErrors.size() + pendingInteractions.size();
+    }
 }
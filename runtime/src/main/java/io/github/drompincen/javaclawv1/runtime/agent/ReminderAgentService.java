@@ -3,11 +3,14 @@ package io.github.drompincen.javaclawv1.runtime.agent;
 import io.github.drompincen.javaclawv1.persistence.document.ThingDocument;
 import io.github.drompincen.javaclawv1.protocol.api.ThingCategory;
 import io.github.drompincen.javaclawv1.runtime.thing.ThingService;
+import io.github.drompincen.javaclawv1.runtime.thing.ThingWriteResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.BiFunction;
 
@@ -37,8 +40,8 @@ public class ReminderAgentService {
         String response = llmCaller.apply("reminder", userMessage);
 
         if (response != null) {
-            // Parse REMINDER lines from the LLM response and save to DB
-            int savedCount = 0;
+            // Parse REMINDER lines from the LLM response and save them to DB in one bulk write
+            List<ThingDocument> reminders = new ArrayList<>();
             for (String line : response.split("\n")) {
                 line = line.trim();
                 if (line.startsWith("REMINDER:") || line.contains("| WHEN:")) {
@@ -68,18 +71,17 @@ public class ReminderAgentService {
                     }
 
                     if (message != null && !message.isBlank()) {
-                        ThingDocument thing = thingService.createThing(null, ThingCategory.REMINDER, payload);
-                        savedCount++;
-
-                        String whenRaw = extractWhenPart(parts);
-                        log.info("[Reminder] created id={} msg={} when={}",
-                                thing.getId().substring(0, 8),
-                                truncate(message, 50),
-                                whenRaw);
+                        ThingDocument thing = new ThingDocument();
+                        thing.setThingCategory(ThingCategory.REMINDER);
+                        thing.setPayload(payload);
+                        reminders.add(thing);
+
+                        log.info("[Reminder] parsed msg={} when={}", truncate(message, 50), extractWhenPart(parts));
                     }
                 }
             }
-            if (savedCount > 0) {
+            if (!reminders.isEmpty()) {
+                long savedCount = thingService.saveAll(reminders).stream().filter(ThingWriteResult::ok).count();
                 log.info("[Reminder] saved {} reminders from LLM response", savedCount);
             }
             return response;
@@ -0,0 +1,77 @@
+package io.github.drompincen.javaclawv1.runtime.agent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounded, deterministic sample of a row stream: the first rows, the last rows, and an evenly
+ * strided selection of everything in between. The stride doubles whenever the middle fills, so
+ * memory stays at the row budget however long the stream is, and the same input always yields
+ * the same sample. Gaps are rendered as omission markers.
+ */
+final class RowSampler {
+
+    /** Longer rows are cut; a row this long is almost always minified data or binary noise. */
+    static final int MAX_ROW_CHARS = 4000;
+
+    private record Kept(long index, String row) {}
+
+    private final int headCap;
+    private final int tailCap;
+    private final int middleCap;
+    private final List<Kept> head = new ArrayList<>();
+    private final List<Kept> middle = new ArrayList<>();
+    private final ArrayDeque<Kept> tail = new ArrayDeque<>();
+    private long stride = 1;
+    private long seen;
+
+    RowSampler(int maxRows) {
+        headCap = Math.max(1, maxRows * 2 / 5);
+        tailCap = Math.max(1, maxRows / 5);
+        middleCap = Math.max(2, maxRows - headCap - tailCap);
+    }
+
+    void add(String row) {
+        if (row.length() > MAX_ROW_CHARS) row = row.substring(0, MAX_ROW_CHARS) + " [...]";
+        Kept kept = new Kept(seen++, row);
+        if (kept.index() < headCap) {
+            head.add(kept);
+            return;
+        }
+        tail.addLast(kept);
+        if (tail.size() > tailCap) offerMiddle(tail.removeFirst());
+    }
+
+    private void offerMiddle(Kept kept) {
+        long position = kept.index() - headCap;
+        if (position % stride != 0) return;
+        middle.add(kept);
+        if (middle.size() > middleCap) {
+            stride *= 2;
+            middle.removeIf(k -> (k.index() - headCap) % stride != 0);
+        }
+    }
+
+    long rows() {
+        return seen;
+    }
+
+    boolean sampled() {
+        return seen > head.size() + middle.size() + tail.size();
+    }
+
+    /** Appends kept rows in input order, one per line, with a marker for each run of skipped rows. */
+    void render(StringBuilder out) {
+        long next = 0;
+        for (List<Kept> part : List.of(head, middle, new ArrayList<>(tail))) {
+            for (Kept kept : part) {
+                if (kept.index() > next) {
+                    out.append("[... ").append(kept.index() - next).append(" rows omitted ...]\n");
+                }
+                out.append(kept.row()).append('\n');
+                next = kept.index() + 1;
+            }
+        }
+    }
+}
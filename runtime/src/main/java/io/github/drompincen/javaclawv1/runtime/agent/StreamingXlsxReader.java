@@ -0,0 +1,127 @@
+package io.github.drompincen.javaclawv1.runtime.agent;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Streams .xlsx sheets through POI's SAX event API, so rows are handed to
+ * the sink as they are parsed instead of building the workbook DOM. Only the shared-strings
+ * table is held in memory. Kept separate from {@link JiraImportService} so POI stays optional.
+ */
+final class StreamingXlsxReader {
+
+    /** Receives each row in sheet order; {@code row} is 1-based. */
+    interface RowSink {
+        void row(int row, String[] cols);
+    }
+
+    /** Row sink that is also told when each sheet starts. */
+    interface SheetSink extends RowSink {
+        void sheet(String name);
+    }
+
+    private StreamingXlsxReader() {}
+
+    /**
+     * Streams the first sheet only.
+     *
+     * @param onBytes called with (sheet bytes read, sheet size or -1) as the sheet is consumed
+     */
+    static void read(Path path, RowSink sink, BiConsumer<Long, Long> onBytes) throws Exception {
+        try (OPCPackage pkg = OPCPackage.open(path.toFile(), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            if (!sheets.hasNext()) return;
+            try (InputStream sheet = sheets.next()) {
+                long size = sheets.getSheetPart().getSize();
+                InputStream counted = new FilterInputStream(sheet) {
+                    private long read;
+
+                    @Override
+                    public int read() throws IOException {
+                        int b = super.read();
+                        if (b >= 0) onBytes.accept(++read, size);
+                        return b;
+                    }
+
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        int n = super.read(b, off, len);
+                        if (n > 0) onBytes.accept(read += n, size);
+                        return n;
+                    }
+                };
+                parse(counted, reader.getStylesTable(), new ReadOnlySharedStringsTable(pkg), sink);
+            }
+        }
+    }
+
+    /** Streams every sheet in workbook order, announcing each one to the sink before its rows. */
+    static void readAll(Path path, SheetSink sink) throws Exception {
+        try (OPCPackage pkg = OPCPackage.open(path.toFile(), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            StylesTable styles = reader.getStylesTable();
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (sheets.hasNext()) {
+                try (InputStream sheet = sheets.next()) {
+                    sink.sheet(sheets.getSheetName());
+                    parse(sheet, styles, strings, sink);
+                }
+            }
+        }
+    }
+
+    private static void parse(InputStream sheet, StylesTable styles, ReadOnlySharedStringsTable strings,
+                              RowSink sink) throws Exception {
+        XMLReader parser = XMLHelper.newXMLReader();
+        parser.setContentHandler(new XSSFSheetXMLHandler(styles, strings, new RowCollector(sink),
+                new DataFormatter(), false));
+        parser.parse(new InputSource(sheet));
+    }
+
+    /** Rebuilds each row as a dense array, filling cells the sheet omits with "". */
+    private static final class RowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final RowSink sink;
+        private final List<String> cells = new ArrayList<>();
+
+        RowCollector(RowSink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            cells.clear();
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            sink.row(rowNum + 1, cells.toArray(new String[0]));
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int col = cellReference != null ? new CellReference(cellReference).getCol() : cells.size();
+            while (cells.size() < col) cells.add("");
+            cells.add(formattedValue != null ? formattedValue : "");
+        }
+    }
+}
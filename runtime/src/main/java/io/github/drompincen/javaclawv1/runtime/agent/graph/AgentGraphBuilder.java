@@ -1,13 +1,20 @@
 package io.github.drompincen.javaclawv1.runtime.agent.graph;
 
-import io.github.drompincen.javaclawv1.persistence.document.AgentDocument;
-import io.github.drompincen.javaclawv1.persistence.repository.AgentRepository;
+import io.github.drompincen.javaclawv1.runtime.agent.AgentRegistry;
+import io.github.drompincen.javaclawv1.runtime.agent.AgentSnapshot;
 import io.github.drompincen.javaclawv1.runtime.agent.EventService;
 import io.github.drompincen.javaclawv1.runtime.agent.ReminderAgentService;
 import io.github.drompincen.javaclawv1.runtime.agent.LogService;
 import io.github.drompincen.javaclawv1.runtime.agent.approval.ApprovalService;
+import io.github.drompincen.javaclawv1.runtime.agent.llm.LlmCallInfo;
 import io.github.drompincen.javaclawv1.runtime.agent.llm.LlmService;
 import io.github.drompincen.javaclawv1.runtime.agent.llm.ToolMockRegistry;
+import io.github.drompincen.javaclawv1.runtime.jfr.AgentStepEvent;
+import io.github.drompincen.javaclawv1.runtime.jfr.ToolCallEvent;
+import io.github.drompincen.javaclawv1.runtime.metrics.JavaClawMetrics;
+import io.github.drompincen.javaclawv1.runtime.trace.Span;
+import io.github.drompincen.javaclawv1.runtime.trace.SpanKind;
+import io.github.drompincen.javaclawv1.runtime.trace.Tracer;
 import io.github.drompincen.javaclawv1.runtime.tools.Tool;
 import io.github.drompincen.javaclawv1.runtime.tools.ToolContext;
 import io.github.drompincen.javaclawv1.runtime.tools.ToolRegistry;
@@ -23,6 +30,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.util.ArrayList;
@@ -75,11 +83,13 @@ public class AgentGraphBuilder {
     private final EventService eventService;
     private final ApprovalService approvalService;
     private final MongoCheckpointSaver checkpointSaver;
-    private final AgentRepository agentRepository;
+    private final AgentRegistry agentRegistry;
     private final LogService logService;
     private final ObjectMapper objectMapper;
     private final ReminderAgentService reminderAgentService;
     private final ToolMockRegistry toolMockRegistry;
+    private final JavaClawMetrics metrics;
+    private final Tracer tracer;
     private final boolean testMode;
 
     public AgentGraphBuilder(LlmService llmService,
@@ -87,22 +97,26 @@ public class AgentGraphBuilder {
                              EventService eventService,
                              ApprovalService approvalService,
                              MongoCheckpointSaver checkpointSaver,
-                             AgentRepository agentRepository,
+                             AgentRegistry agentRegistry,
                              LogService logService,
                              ObjectMapper objectMapper,
                              ReminderAgentService reminderAgentService,
                              @org.springframework.beans.factory.annotation.Autowired(required = false)
-                             ToolMockRegistry toolMockRegistry) {
+                             ToolMockRegistry toolMockRegistry,
+                             JavaClawMetrics metrics,
+                             Tracer tracer) {
         this.llmService = llmService;
         this.toolRegistry = toolRegistry;
         this.eventService = eventService;
         this.approvalService = approvalService;
         this.checkpointSaver = checkpointSaver;
-        this.agentRepository = agentRepository;
+        this.agentRegistry = agentRegistry;
         this.logService = logService;
         this.objectMapper = objectMapper;
         this.reminderAgentService = reminderAgentService;
         this.toolMockRegistry = toolMockRegistry;
+        this.metrics = metrics;
+        this.tracer = tracer;
         this.testMode = "test".equals(System.getProperty("javaclaw.llm.provider"));
     }
 
@@ -114,14 +128,14 @@ public class AgentGraphBuilder {
         }
 
         AgentState state = initialState;
-        List<AgentDocument> agents = agentRepository.findByEnabledTrue();
+        List<AgentSnapshot> agents = agentRegistry.enabledAgents();
 
         if (agents.isEmpty()) {
             return runSingleAgent(state);
         }
 
-        AgentDocument controller = agents.stream()
-                .filter(a -> a.getRole() == AgentRole.CONTROLLER)
+        AgentSnapshot controller = agents.stream()
+                .filter(a -> a.role() == AgentRole.CONTROLLER)
                 .findFirst().orElse(null);
 
         if (controller == null) {
@@ -141,17 +155,19 @@ public class AgentGraphBuilder {
 
             // Step 1: Controller decides routing (isolated — fork discarded)
             eventService.emit(state.getThreadId(), EventType.AGENT_SWITCHED,
-                    Map.of("toAgent", controller.getAgentId()));
+                    Map.of("toAgent", controller.agentId()));
 
             String specialistList = agents.stream()
-                    .filter(a -> a.getRole() == AgentRole.SPECIALIST)
-                    .map(a -> a.getAgentId() + ": " + a.getDescription())
+                    .filter(a -> a.role() == AgentRole.SPECIALIST)
+                    .map(a -> a.agentId() + ": " + a.description())
                     .collect(Collectors.joining("\n"));
 
-            AgentState controllerState = state.withAgent(controller.getAgentId())
-                    .withMessage("system", controller.getSystemPrompt()
+            AgentState controllerState = state.withAgent(controller.agentId())
+                    .withMessage("system", controller.systemPrompt()
                             + "\n\nAvailable specialists:\n" + specialistList);
-            controllerResponse = callLlmForAgentSilent(controllerState, controller);
+            try (Span span = agentSpan(controller, "controller")) {
+                controllerResponse = callLlmForAgentSilent(controllerState, controller);
+            }
             // controllerState is discarded — main state is unchanged
 
             if (controllerResponse == null || controllerResponse.isBlank()) break;
@@ -166,8 +182,8 @@ public class AgentGraphBuilder {
                 log.info("[controller] Delegating to '{}', subTask='{}'",
                         delegateAgentId, subTaskDesc);
                 // Step 2: Delegate to specialist (isolated fork, merged back)
-                AgentDocument specialist = agents.stream()
-                        .filter(a -> a.getAgentId().equals(delegateAgentId))
+                AgentSnapshot specialist = agents.stream()
+                        .filter(a -> a.agentId().equals(delegateAgentId))
                         .findFirst().orElse(null);
 
                 if (specialist == null) {
@@ -180,11 +196,11 @@ public class AgentGraphBuilder {
                         Map.of("targetAgentId", delegateAgentId, "subTask", subTaskDesc));
 
                 eventService.emit(state.getThreadId(), EventType.AGENT_SWITCHED,
-                        Map.of("fromAgent", controller.getAgentId(), "toAgent", specialist.getAgentId()));
+                        Map.of("fromAgent", controller.agentId(), "toAgent", specialist.agentId()));
 
                 // Fork: specialist operates on isolated state with clean context
-                AgentState specialistState = state.withAgent(specialist.getAgentId())
-                        .withMessage("system", specialist.getSystemPrompt());
+                AgentState specialistState = state.withAgent(specialist.agentId())
+                        .withMessage("system", specialist.systemPrompt());
 
                 // Inject sub-task so specialist knows what to focus on
                 if (subTaskDesc != null && !"delegated task".equals(subTaskDesc)) {
@@ -192,11 +208,13 @@ public class AgentGraphBuilder {
                             "Your current task: " + subTaskDesc);
                 }
 
-                specialistState = runAgentSteps(specialistState, specialist, MAX_STEPS);
+                try (Span span = agentSpan(specialist, "specialist")) {
+                    specialistState = runAgentSteps(specialistState, specialist, MAX_STEPS);
+                }
                 specialistOutput = getLastAssistantMessage(specialistState);
 
                 // Merge ONLY the specialist's final output into main state
-                state = state.withAgent(specialist.getAgentId())
+                state = state.withAgent(specialist.agentId())
                         .withMessage("assistant", specialistOutput);
 
                 // Post-process: if reminder agent, extract and save reminders
@@ -206,20 +224,20 @@ public class AgentGraphBuilder {
                             (agentName, msg) -> specialistOutput);
                 }
                 eventService.emit(state.getThreadId(), EventType.AGENT_RESPONSE,
-                        Map.of("agentId", specialist.getAgentId(),
+                        Map.of("agentId", specialist.agentId(),
                                 "response", truncate(specialistOutput, 500)));
             } else {
                 specialistOutput = directResponse != null ? directResponse : controllerResponse;
                 // Direct response — attribute to controller
-                state = state.withAgent(controller.getAgentId())
+                state = state.withAgent(controller.agentId())
                         .withMessage("assistant", specialistOutput);
                 eventService.emit(state.getThreadId(), EventType.AGENT_RESPONSE,
-                        Map.of("agentId", controller.getAgentId(), "response", truncate(specialistOutput, 500)));
+                        Map.of("agentId", controller.agentId(), "response", truncate(specialistOutput, 500)));
             }
 
             // Step 3: Checker validates (isolated — fork discarded)
-            AgentDocument checker = agents.stream()
-                    .filter(a -> a.getRole() == AgentRole.CHECKER)
+            AgentSnapshot checker = agents.stream()
+                    .filter(a -> a.role() == AgentRole.CHECKER)
                     .findFirst().orElse(null);
 
             if (checker == null) {
@@ -229,17 +247,20 @@ public class AgentGraphBuilder {
             }
 
             eventService.emit(state.getThreadId(), EventType.AGENT_CHECK_REQUESTED,
-                    Map.of("agentId", checker.getAgentId()));
+                    Map.of("agentId", checker.agentId()));
 
             eventService.emit(state.getThreadId(), EventType.AGENT_SWITCHED,
-                    Map.of("toAgent", checker.getAgentId()));
+                    Map.of("toAgent", checker.agentId()));
 
             // Fork: checker operates on its own isolated state
-            AgentState checkerState = state.withAgent(checker.getAgentId())
-                    .withMessage("system", checker.getSystemPrompt())
+            AgentState checkerState = state.withAgent(checker.agentId())
+                    .withMessage("system", checker.systemPrompt())
                     .withMessage("user",
                             "Review the work completed above. The specialist's final output was:\n" + specialistOutput);
-            String checkerResponse = callLlmForAgentSilent(checkerState, checker);
+            String checkerResponse;
+            try (Span span = agentSpan(checker, "checker")) {
+                checkerResponse = callLlmForAgentSilent(checkerState, checker);
+            }
             // checkerState is discarded — main state is unchanged
 
             boolean passed = parseCheckPassed(checkerResponse);
@@ -247,13 +268,13 @@ public class AgentGraphBuilder {
             log.info("[checker] Result: pass={}, summary='{}'", passed, summary);
             if (passed) {
                 eventService.emit(state.getThreadId(), EventType.AGENT_CHECK_PASSED,
-                        Map.of("agentId", checker.getAgentId(),
+                        Map.of("agentId", checker.agentId(),
                                 "summary", summary));
                 break;
             } else {
                 String feedback = parseCheckFeedback(checkerResponse);
                 eventService.emit(state.getThreadId(), EventType.AGENT_CHECK_FAILED,
-                        Map.of("agentId", checker.getAgentId(), "feedback", feedback,
+                        Map.of("agentId", checker.agentId(), "feedback", feedback,
                                 "retry", retry + 1, "maxRetries", MAX_RETRIES));
 
                 // Only retry feedback goes into main state (for next specialist iteration)
@@ -272,13 +293,13 @@ public class AgentGraphBuilder {
      * Fast path for forced-agent routing (pipeline sessions).
      * Runs the specialist once with a low step limit, no controller or checker.
      */
-    private AgentState runForcedAgent(AgentState state, List<AgentDocument> agents) {
+    private AgentState runForcedAgent(AgentState state, List<AgentSnapshot> agents) {
         String agentId = state.getForcedAgentId();
         log.info("[routing] Forced agent routing to '{}' (pipeline mode, max {} steps)",
                 agentId, MAX_PIPELINE_STEPS);
 
-        AgentDocument specialist = agents.stream()
-                .filter(a -> a.getAgentId().equals(agentId))
+        AgentSnapshot specialist = agents.stream()
+                .filter(a -> a.agentId().equals(agentId))
                 .findFirst().orElse(null);
 
         if (specialist == null) {
@@ -290,19 +311,21 @@ public class AgentGraphBuilder {
         eventService.emit(state.getThreadId(), EventType.AGENT_DELEGATED,
                 Map.of("targetAgentId", agentId, "subTask", "pipeline"));
         eventService.emit(state.getThreadId(), EventType.AGENT_SWITCHED,
-                Map.of("toAgent", specialist.getAgentId()));
+                Map.of("toAgent", specialist.agentId()));
 
-        AgentState specialistState = state.withAgent(specialist.getAgentId())
-                .withMessage("system", specialist.getSystemPrompt());
+        AgentState specialistState = state.withAgent(specialist.agentId())
+                .withMessage("system", specialist.systemPrompt());
 
-        specialistState = runAgentSteps(specialistState, specialist, MAX_PIPELINE_STEPS);
+        try (Span span = agentSpan(specialist, "specialist")) {
+            specialistState = runAgentSteps(specialistState, specialist, MAX_PIPELINE_STEPS);
+        }
         String output = getLastAssistantMessage(specialistState);
 
-        state = state.withAgent(specialist.getAgentId())
+        state = state.withAgent(specialist.agentId())
                 .withMessage("assistant", output);
 
         eventService.emit(state.getThreadId(), EventType.AGENT_RESPONSE,
-                Map.of("agentId", specialist.getAgentId(),
+                Map.of("agentId", specialist.agentId(),
                         "response", truncate(output, 500)));
 
         return state;
@@ -315,9 +338,13 @@ public class AgentGraphBuilder {
         for (int step = state.getStepNo(); step <= MAX_STEPS; step++) {
             state = state.withStep(step);
             eventService.emit(state.getThreadId(), EventType.AGENT_STEP_STARTED, Map.of("step", step));
+            long stepStart = System.nanoTime();
+            AgentStepEvent stepEvent = new AgentStepEvent();
+            stepEvent.begin();
 
             String response = callLlm(state);
             if (response == null || response.isBlank()) {
+                recordStep(stepEvent, stepStart, state, state.getCurrentAgentId(), step, "empty", 0, response);
                 eventService.emit(state.getThreadId(), EventType.AGENT_STEP_COMPLETED,
                         Map.of("step", step, "done", true));
                 break;
@@ -326,6 +353,8 @@ public class AgentGraphBuilder {
             // Parse and execute any tool calls in the response
             List<ToolCallRequest> toolCalls = parseToolCalls(response);
             String textPart = stripToolCallTags(response);
+            recordStep(stepEvent, stepStart, state, state.getCurrentAgentId(), step,
+                    toolCalls.isEmpty() ? "done" : "tool_calls", toolCalls.size(), response);
 
             state = state.withMessage("assistant", textPart);
             eventService.emit(state.getThreadId(), EventType.AGENT_STEP_COMPLETED,
@@ -349,23 +378,29 @@ public class AgentGraphBuilder {
      *   3. If response is pure text → done
      *   4. If response describes tools in prose (no XML tags), nudge LLM to use XML format
      */
-    private AgentState runAgentSteps(AgentState state, AgentDocument agent, int maxSteps) {
+    private AgentState runAgentSteps(AgentState state, AgentSnapshot agent, int maxSteps) {
         int nudgeCount = 0;
         for (int step = state.getStepNo(); step <= maxSteps; step++) {
             state = state.withStep(step);
             eventService.emit(state.getThreadId(), EventType.AGENT_STEP_STARTED,
-                    Map.of("step", step, "agentId", agent.getAgentId()));
+                    Map.of("step", step, "agentId", agent.agentId()));
+            long stepStart = System.nanoTime();
+            AgentStepEvent stepEvent = new AgentStepEvent();
+            stepEvent.begin();
 
             String response = callLlmForAgent(state, agent);
             if (response == null || response.isBlank()) {
+                recordStep(stepEvent, stepStart, state, agent.agentId(), step, "empty", 0, response);
                 eventService.emit(state.getThreadId(), EventType.AGENT_STEP_COMPLETED,
-                        Map.of("step", step, "agentId", agent.getAgentId(), "done", true));
+                        Map.of("step", step, "agentId", agent.agentId(), "done", true));
                 break;
             }
 
             // Parse tool calls from the response
             List<ToolCallRequest> toolCalls = parseToolCalls(response);
             String textPart = stripToolCallTags(response);
+            recordStep(stepEvent, stepStart, state, agent.agentId(), step,
+                    toolCalls.isEmpty() ? "done" : "tool_calls", toolCalls.size(), response);
 
             // Add the text portion as assistant message
             if (!textPart.isBlank()) {
@@ -374,14 +409,14 @@ public class AgentGraphBuilder {
 
             boolean done = toolCalls.isEmpty();
             eventService.emit(state.getThreadId(), EventType.AGENT_STEP_COMPLETED,
-                    Map.of("step", step, "agentId", agent.getAgentId(), "done", done));
+                    Map.of("step", step, "agentId", agent.agentId(), "done", done));
 
             if (done) {
                 // Check if LLM described tool calls in prose instead of using XML tags
                 if (nudgeCount < MAX_TOOL_NUDGES && looksLikeProseToolDescription(response, agent)) {
                     nudgeCount++;
                     log.warn("[{}] Step {} — LLM described tools in prose (nudge {}/{}), requesting XML format",
-                            agent.getAgentId(), step, nudgeCount, MAX_TOOL_NUDGES);
+                            agent.agentId(), step, nudgeCount, MAX_TOOL_NUDGES);
                     state = state.withMessage("user", TOOL_CALL_NUDGE);
                     continue; // Retry — don't break
                 }
@@ -393,7 +428,7 @@ public class AgentGraphBuilder {
             }
 
             // Execute each tool call and add results to conversation
-            log.info("[{}] Step {} — executing {} tool call(s)", agent.getAgentId(), step, toolCalls.size());
+            log.info("[{}] Step {} — executing {} tool call(s)", agent.agentId(), step, toolCalls.size());
             state = executeToolCalls(state, toolCalls);
             checkpointSaver.save(state.getThreadId(), step, state);
         }
@@ -405,10 +440,10 @@ public class AgentGraphBuilder {
      * emitting <tool_call> XML blocks. This indicates the LLM understood the task
      * but used the wrong output format.
      */
-    private boolean looksLikeProseToolDescription(String response, AgentDocument agent) {
+    private boolean looksLikeProseToolDescription(String response, AgentSnapshot agent) {
         if (response == null || response.length() < 30) return false;
         String lower = response.toLowerCase();
-        List<String> tools = agent.getAllowedTools();
+        List<String> tools = agent.allowedTools();
         if (tools == null || tools.isEmpty()) return false;
 
         // Check if the response mentions any of the agent's tool names
@@ -614,6 +649,7 @@ public class AgentGraphBuilder {
 
     private String callLlm(AgentState state) {
         long startTime = System.currentTimeMillis();
+        Span span = tracer.startSpan("llm", SpanKind.LLM).agent(state.getCurrentAgentId());
         try {
             StringBuilder sb = new StringBuilder();
             llmService.streamResponse(state)
@@ -623,53 +659,60 @@ public class AgentGraphBuilder {
                     .blockLast();
             String result = sb.toString();
             long durationMs = System.currentTimeMillis() - startTime;
-            logService.recordLlmInteraction(state.getThreadId(), state.getCurrentAgentId(),
-                    "anthropic", null, state.getMessages().size(), 0,
+            logService.recordLlmInteraction(state.getThreadId(), state.getProjectId(), state.getCurrentAgentId(),
+                    state.getLastLlmCall(), state.getMessages().size(), estimatePromptTokens(state),
                     estimateTokens(result), durationMs, true, null);
             return result;
         } catch (Exception e) {
             long durationMs = System.currentTimeMillis() - startTime;
             log.error("LLM call failed for thread {}", state.getThreadId(), e);
-            logService.recordLlmInteraction(state.getThreadId(), state.getCurrentAgentId(),
-                    "anthropic", null, state.getMessages().size(), 0, 0,
+            logService.recordLlmInteraction(state.getThreadId(), state.getProjectId(), state.getCurrentAgentId(),
+                    state.getLastLlmCall(), state.getMessages().size(), 0, 0,
                     durationMs, false, e.getMessage());
             logService.logError("AgentGraphBuilder", state.getThreadId(),
                     "LLM call failed: " + e.getMessage(), e, Map.of());
             eventService.emit(state.getThreadId(), EventType.ERROR,
                     Map.of("message", "LLM call failed: " + e.getMessage()));
+            span.fail(e);
             return null;
+        } finally {
+            endLlmSpan(span, state);
         }
     }
 
-    private String callLlmForAgent(AgentState state, AgentDocument agent) {
-        log.info("[{}] Streaming LLM response", agent.getAgentId());
+    private String callLlmForAgent(AgentState state, AgentSnapshot agent) {
+        log.info("[{}] Streaming LLM response", agent.agentId());
         long startTime = System.currentTimeMillis();
+        Span span = tracer.startSpan("llm " + agent.agentId(), SpanKind.LLM).agent(agent.agentId());
         try {
             StringBuilder sb = new StringBuilder();
             llmService.streamResponse(state)
                     .doOnNext(token -> eventService.emit(state.getThreadId(),
                             EventType.MODEL_TOKEN_DELTA,
-                            Map.of("token", token, "agentId", agent.getAgentId())))
+                            Map.of("token", token, "agentId", agent.agentId())))
                     .doOnNext(sb::append)
                     .blockLast();
             String result = sb.toString();
             long durationMs = System.currentTimeMillis() - startTime;
-            logService.recordLlmInteraction(state.getThreadId(), agent.getAgentId(),
-                    "anthropic", null, state.getMessages().size(), 0,
+            logService.recordLlmInteraction(state.getThreadId(), state.getProjectId(), agent.agentId(),
+                    state.getLastLlmCall(), state.getMessages().size(), estimatePromptTokens(state),
                     estimateTokens(result), durationMs, true, null);
             return result;
         } catch (Exception e) {
             long durationMs = System.currentTimeMillis() - startTime;
             log.error("LLM call failed for agent {} in thread {}",
-                    agent.getAgentId(), state.getThreadId(), e);
-            logService.recordLlmInteraction(state.getThreadId(), agent.getAgentId(),
-                    "anthropic", null, state.getMessages().size(), 0, 0,
+                    agent.agentId(), state.getThreadId(), e);
+            logService.recordLlmInteraction(state.getThreadId(), state.getProjectId(), agent.agentId(),
+                    state.getLastLlmCall(), state.getMessages().size(), 0, 0,
                     durationMs, false, e.getMessage());
             logService.logError("AgentGraphBuilder", state.getThreadId(),
-                    "LLM call failed for " + agent.getAgentId() + ": " + e.getMessage(), e, Map.of());
+                    "LLM call failed for " + agent.agentId() + ": " + e.getMessage(), e, Map.of());
             eventService.emit(state.getThreadId(), EventType.ERROR,
-                    Map.of("message", "LLM call failed for " + agent.getAgentId() + ": " + e.getMessage()));
+                    Map.of("message", "LLM call failed for " + agent.agentId() + ": " + e.getMessage()));
+            span.fail(e);
             return null;
+        } finally {
+            endLlmSpan(span, state);
         }
     }
 
@@ -678,47 +721,92 @@ public class AgentGraphBuilder {
      * Used for controller and checker whose responses are internal orchestration
      * and should not appear in the user's chat.
      */
-    private String callLlmForAgentSilent(AgentState state, AgentDocument agent) {
+    private String callLlmForAgentSilent(AgentState state, AgentSnapshot agent) {
         long startTime = System.currentTimeMillis();
+        Span span = tracer.startSpan("llm " + agent.agentId(), SpanKind.LLM).agent(agent.agentId());
         try {
             String result = llmService.blockingResponse(state);
             long durationMs = System.currentTimeMillis() - startTime;
             log.info("[{}] LLM response received ({}ms, {} chars)",
-                    agent.getAgentId(), durationMs, result != null ? result.length() : 0);
-            logService.recordLlmInteraction(state.getThreadId(), agent.getAgentId(),
-                    "anthropic", null, state.getMessages().size(), 0,
+                    agent.agentId(), durationMs, result != null ? result.length() : 0);
+            logService.recordLlmInteraction(state.getThreadId(), state.getProjectId(), agent.agentId(),
+                    state.getLastLlmCall(), state.getMessages().size(), estimatePromptTokens(state),
                     estimateTokens(result), durationMs, true, null);
             return result;
         } catch (Exception e) {
             long durationMs = System.currentTimeMillis() - startTime;
-            log.error("[{}] LLM call failed ({}ms): {}", agent.getAgentId(), durationMs, e.getMessage());
-            logService.recordLlmInteraction(state.getThreadId(), agent.getAgentId(),
-                    "anthropic", null, state.getMessages().size(), 0, 0,
+            log.error("[{}] LLM call failed ({}ms): {}", agent.agentId(), durationMs, e.getMessage());
+            logService.recordLlmInteraction(state.getThreadId(), state.getProjectId(), agent.agentId(),
+                    state.getLastLlmCall(), state.getMessages().size(), 0, 0,
                     durationMs, false, e.getMessage());
             eventService.emit(state.getThreadId(), EventType.ERROR,
-                    Map.of("message", "LLM call failed for " + agent.getAgentId() + ": " + e.getMessage()));
+                    Map.of("message", "LLM call failed for " + agent.agentId() + ": " + e.getMessage()));
+            span.fail(e);
             return null;
+        } finally {
+            endLlmSpan(span, state);
+        }
+    }
+
+    private Span agentSpan(AgentSnapshot agent, String role) {
+        return tracer.startSpan("agent " + agent.agentId(), SpanKind.AGENT)
+                .agent(agent.agentId())
+                .attr("role", role);
+    }
+
+    private void endLlmSpan(Span span, AgentState state) {
+        LlmCallInfo call = state.getLastLlmCall();
+        if (call != null && span.isRecording()) {
+            span.attr("provider", call.getProvider())
+                    .attr("model", call.getModel())
+                    .attr("attempts", call.getAttempts())
+                    .attr("promptTokens", call.getPromptTokens())
+                    .attr("completionTokens", call.getCompletionTokens());
+            if (call.getTimeToFirstTokenMs() >= 0) span.attr("ttftMs", call.getTimeToFirstTokenMs());
+            if (call.getFailedOverFrom() != null) span.attr("failedOverFrom", call.getFailedOverFrom());
         }
+        span.close();
     }
 
     private int estimateTokens(String text) {
         return text != null ? text.length() / 4 : 0;
     }
 
+    /** Fallback only — used when the provider reports no usage for the call. */
+    private int estimatePromptTokens(AgentState state) {
+        int chars = 0;
+        for (Map<String, String> msg : state.getMessages()) {
+            String content = msg.get("content");
+            if (content != null) chars += content.length();
+        }
+        return chars / 4;
+    }
+
     public ToolResult executeTool(AgentState state, String toolName, JsonNode input) {
-        // Enforce agent's allowedTools list
-        String agentId = state.getCurrentAgentId();
-        if (agentId != null) {
-            Optional<AgentDocument> agentOpt = agentRepository.findById(agentId);
-            if (agentOpt.isPresent()) {
-                List<String> allowed = agentOpt.get().getAllowedTools();
-                if (allowed != null && !allowed.isEmpty()
-                        && !allowed.contains("*") && !allowed.contains(toolName)) {
-                    log.warn("[{}] Blocked disallowed tool call: {}", agentId, toolName);
-                    return ToolResult.failure("Tool '" + toolName
-                            + "' is not allowed for agent '" + agentId + "'");
-                }
+        try (Span span = tracer.startSpan("tool " + toolName, SpanKind.TOOL)
+                .agent(state.getCurrentAgentId())
+                .attr("tool", toolName)) {
+            ToolResult result;
+            try {
+                result = doExecuteTool(state, toolName, input);
+            } catch (RuntimeException e) {
+                span.fail(e);
+                throw e;
             }
+            if (!result.success()) span.fail(result.error());
+            return result;
+        }
+    }
+
+    private ToolResult doExecuteTool(AgentState state, String toolName, JsonNode input) {
+        // Enforce agent's allowedTools list (precomputed set in the registry, no Mongo round trip)
+        long start = System.nanoTime();
+        String agentId = state.getCurrentAgentId();
+        if (!agentRegistry.isToolAllowed(agentId, toolName)) {
+            log.warn("[{}] Blocked disallowed tool call: {}", agentId, toolName);
+            metrics.recordToolExecution(knownToolName(toolName), "blocked", System.nanoTime() - start);
+            return ToolResult.failure("Tool '" + toolName
+                    + "' is not allowed for agent '" + agentId + "'");
         }
 
         // Check tool mock registry first (V2 scenario testing)
@@ -732,6 +820,7 @@ public class AgentGraphBuilder {
 
         Optional<Tool> toolOpt = toolRegistry.get(toolName);
         if (toolOpt.isEmpty()) {
+            metrics.recordToolExecution(null, "not_found", System.nanoTime() - start);
             return ToolResult.failure("Tool not found: " + toolName);
         }
 
@@ -754,6 +843,7 @@ public class AgentGraphBuilder {
             if (response.isEmpty() || response.get() == ApprovalRequestDto.ApprovalStatus.DENIED) {
                 eventService.emit(state.getThreadId(), EventType.TOOL_CALL_DENIED,
                         Map.of("tool", toolName, "reason", "denied_or_timeout"));
+                metrics.recordToolExecution(tool.name(), "denied", System.nanoTime() - start);
                 return ToolResult.failure("Tool call denied or timed out");
             }
             eventService.emit(state.getThreadId(), EventType.APPROVAL_RESPONDED,
@@ -779,7 +869,19 @@ public class AgentGraphBuilder {
         };
 
         ToolContext ctx = new ToolContext(state.getThreadId(), Path.of("."), Map.of());
-        ToolResult result = tool.execute(ctx, input, stream);
+        // Time the tool itself, excluding any approval wait
+        long execStart = System.nanoTime();
+        ToolCallEvent toolEvent = new ToolCallEvent();
+        toolEvent.begin();
+        ToolResult result;
+        try {
+            result = tool.execute(ctx, input, stream);
+        } catch (RuntimeException e) {
+            recordToolCall(toolEvent, execStart, state, tool.name(), "error", input, null);
+            throw e;
+        }
+        recordToolCall(toolEvent, execStart, state, tool.name(), result.success() ? "success" : "failure",
+                input, result);
 
         eventService.emit(state.getThreadId(), EventType.TOOL_RESULT,
                 Map.of("tool", toolName, "success", result.success()));
@@ -787,6 +889,46 @@ public class AgentGraphBuilder {
         return result;
     }
 
+    private void recordStep(AgentStepEvent event, long startNanos, AgentState state, String agentId,
+                            int step, String outcome, int toolCalls, String response) {
+        metrics.recordAgentStep(agentId, outcome, System.nanoTime() - startNanos);
+        event.end();
+        if (event.shouldCommit()) {
+            event.sessionId = state.getThreadId();
+            event.agentId = agentId;
+            event.step = step;
+            event.outcome = outcome;
+            event.toolCalls = toolCalls;
+            event.responseChars = response != null ? response.length() : 0;
+            event.commit();
+        }
+    }
+
+    private void recordToolCall(ToolCallEvent event, long startNanos, AgentState state, String toolName,
+                                String outcome, JsonNode input, ToolResult result) {
+        metrics.recordToolExecution(toolName, outcome, System.nanoTime() - startNanos);
+        event.end();
+        if (event.shouldCommit()) {
+            // Sizes are only computed while a recording has the event enabled
+            event.sessionId = state.getThreadId();
+            event.agentId = state.getCurrentAgentId();
+            event.tool = toolName;
+            event.outcome = outcome;
+            event.inputBytes = jsonBytes(input);
+            event.outputBytes = result != null ? jsonBytes(result.output()) : 0;
+            event.commit();
+        }
+    }
+
+    private static long jsonBytes(JsonNode node) {
+        return node != null ? node.toString().getBytes(StandardCharsets.UTF_8).length : 0;
+    }
+
+    /** Tool name as a metric tag: only names the registry knows, to keep cardinality bounded. */
+    private String knownToolName(String toolName) {
+        return toolRegistry.get(toolName).isPresent() ? toolName : null;
+    }
+
     // --- JSON response parsing helpers ---
 
     /** Pattern to strip markdown code fences (```json ... ```) that LLMs wrap around JSON responses */
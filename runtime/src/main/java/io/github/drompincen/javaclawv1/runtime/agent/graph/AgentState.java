@@ -1,5 +1,8 @@
 package io.github.drompincen.javaclawv1.runtime.agent.graph;
 
+import io.github.drompincen.javaclawv1.runtime.agent.llm.LlmCallInfo;
+import io.github.drompincen.javaclawv1.runtime.agent.llm.LlmPriority;
+
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -17,6 +20,9 @@ public class AgentState {
     private int stepNo;
     private Map<String, Object> context;
     private String forcedAgentId;
+    private LlmPriority llmPriority = LlmPriority.INTERACTIVE;
+    // Per-call outcome, deliberately not carried over by copy()
+    private LlmCallInfo lastLlmCall;
 
     public AgentState() {
         this.messages = new ArrayList<>();
@@ -76,6 +82,7 @@ public class AgentState {
         s.stepNo = this.stepNo;
         s.context = new HashMap<>(this.context);
         s.forcedAgentId = this.forcedAgentId;
+        s.llmPriority = this.llmPriority;
         return s;
     }
 
@@ -109,4 +116,10 @@ public class AgentState {
 
     public String getForcedAgentId() { return forcedAgentId; }
     public void setForcedAgentId(String forcedAgentId) { this.forcedAgentId = forcedAgentId; }
+
+    public LlmPriority getLlmPriority() { return llmPriority; }
+    public void setLlmPriority(LlmPriority llmPriority) { this.llmPriority = llmPriority; }
+
+    public LlmCallInfo getLastLlmCall() { return lastLlmCall; }
+    public void setLastLlmCall(LlmCallInfo lastLlmCall) { this.lastLlmCall = lastLlmCall; }
 }
@@ -2,11 +2,13 @@ package io.github.drompincen.javaclawv1.runtime.agent.graph;
 
 import io.github.drompincen.javaclawv1.persistence.document.CheckpointDocument;
 import io.github.drompincen.javaclawv1.persistence.repository.CheckpointRepository;
+import io.github.drompincen.javaclawv1.runtime.jfr.CheckpointSaveEvent;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.Optional;
 import java.util.UUID;
@@ -25,6 +27,10 @@ public class MongoCheckpointSaver {
     }
 
     public void save(String threadId, int stepNo, AgentState state) {
+        CheckpointSaveEvent jfr = new CheckpointSaveEvent();
+        jfr.begin();
+        String json = null;
+        boolean saved = false;
         try {
             CheckpointDocument cp = new CheckpointDocument();
             cp.setCheckpointId(UUID.randomUUID().toString());
@@ -33,12 +39,23 @@ public class MongoCheckpointSaver {
             cp.setCreatedAt(Instant.now());
             // Store as JSON string to avoid Spring Data MongoDB _class metadata issues
             // with Jackson tree nodes (ObjectNode has no no-arg constructor)
-            cp.setState(objectMapper.writeValueAsString(state));
+            json = objectMapper.writeValueAsString(state);
+            cp.setState(json);
             cp.setEventOffset(stepNo);
             checkpointRepository.save(cp);
+            saved = true;
             log.debug("Saved checkpoint for thread {} at step {}", threadId, stepNo);
         } catch (Exception e) {
             log.error("Failed to save checkpoint for thread {}", threadId, e);
+        } finally {
+            jfr.end();
+            if (jfr.shouldCommit()) {
+                jfr.sessionId = threadId;
+                jfr.step = stepNo;
+                jfr.stateBytes = json != null ? json.getBytes(StandardCharsets.UTF_8).length : 0;
+                jfr.success = saved;
+                jfr.commit();
+            }
         }
     }
 
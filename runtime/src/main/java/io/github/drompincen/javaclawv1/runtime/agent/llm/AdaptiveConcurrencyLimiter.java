@@ -0,0 +1,189 @@
+package io.github.drompincen.javaclawv1.runtime.agent.llm;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * AIMD concurrency limiter for a single LLM provider.
+ *
+ * The limit grows by {@code 1/limit} per successful call (roughly +1 per round of calls)
+ * and halves on a rate-limit response, at most once per {@link #DECREASE_COOLDOWN} so a
+ * burst of 429s from calls already in flight counts as one signal. A {@code retry-after}
+ * (or {@link #DEFAULT_RATE_LIMIT_PAUSE} when the provider gave none) pauses all new grants
+ * until it elapses. Waiters are granted strictly by
+ * {@link LlmPriority}, FIFO within a priority.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    static final Duration DECREASE_COOLDOWN = Duration.ofSeconds(1);
+    static final Duration DEFAULT_RATE_LIMIT_PAUSE = Duration.ofSeconds(1);
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(
+            Comparator.comparing((Waiter w) -> w.priority).thenComparingLong(w -> w.seq));
+    private double limit;
+    private int inFlight;
+    private long seq;
+    private long pausedUntilNanos;
+    private long lastDecreaseNanos = Long.MIN_VALUE;
+    private long rateLimitedCount;
+
+    public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit) {
+        this.name = name;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+    }
+
+    private static final class Waiter {
+        final LlmPriority priority;
+        final long seq;
+        final Condition granted;
+        boolean done;
+
+        Waiter(LlmPriority priority, long seq, Condition granted) {
+            this.priority = priority;
+            this.seq = seq;
+            this.granted = granted;
+        }
+    }
+
+    /**
+     * Block until a slot is available for this priority, or throw after {@code timeout}.
+     * The returned permit must be completed with exactly one of its outcome methods.
+     */
+    public Permit acquire(LlmPriority priority, Duration timeout) throws InterruptedException, TimeoutException {
+        lock.lock();
+        try {
+            Waiter me = new Waiter(priority != null ? priority : LlmPriority.INTERACTIVE, seq++, lock.newCondition());
+            waiters.add(me);
+            long deadline = System.nanoTime() + timeout.toNanos();
+            boolean acquired = false;
+            try {
+                while (true) {
+                    dispatch();
+                    if (me.done) {
+                        acquired = true;
+                        return new Permit(System.nanoTime());
+                    }
+                    long now = System.nanoTime();
+                    long remaining = deadline - now;
+                    if (remaining <= 0) {
+                        throw new TimeoutException("Timed out after " + timeout.toMillis()
+                                + "ms waiting for an LLM slot on " + name);
+                    }
+                    // While paused, nobody releases a slot at pause end — wake up ourselves
+                    long wait = pausedUntilNanos > now ? Math.min(remaining, pausedUntilNanos - now) : remaining;
+                    me.granted.awaitNanos(wait);
+                }
+            } finally {
+                if (!acquired) {
+                    // Timed out or interrupted — possibly after a grant raced with the wake-up
+                    if (me.done) inFlight--;
+                    else waiters.remove(me);
+                    dispatch();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Grant slots to the highest-priority waiters while capacity allows. Caller holds the lock. */
+    private void dispatch() {
+        if (System.nanoTime() < pausedUntilNanos) return;
+        while (!waiters.isEmpty() && inFlight < (int) limit) {
+            Waiter next = waiters.poll();
+            next.done = true;
+            inFlight++;
+            next.granted.signal();
+        }
+    }
+
+    private void complete(boolean success, boolean rateLimited, Duration retryAfter) {
+        lock.lock();
+        try {
+            inFlight--;
+            long now = System.nanoTime();
+            if (success) {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            } else if (rateLimited) {
+                rateLimitedCount++;
+                if (lastDecreaseNanos == Long.MIN_VALUE || now - lastDecreaseNanos >= DECREASE_COOLDOWN.toNanos()) {
+                    limit = Math.max(minLimit, limit / 2);
+                    lastDecreaseNanos = now;
+                }
+                Duration pause = retryAfter != null && !retryAfter.isNegative() ? retryAfter : DEFAULT_RATE_LIMIT_PAUSE;
+                pausedUntilNanos = Math.max(pausedUntilNanos, now + pause.toNanos());
+            }
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** True while a rate-limit pause is holding back new grants. */
+    public boolean isPaused() {
+        lock.lock();
+        try {
+            return System.nanoTime() < pausedUntilNanos;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Stats stats() {
+        lock.lock();
+        try {
+            long pauseMs = Math.max(0, (pausedUntilNanos - System.nanoTime()) / 1_000_000);
+            int[] queuedByPriority = new int[LlmPriority.values().length];
+            for (Waiter w : waiters) queuedByPriority[w.priority.ordinal()]++;
+            return new Stats(name, (int) limit, inFlight, waiters.size(),
+                    queuedByPriority[LlmPriority.INTERACTIVE.ordinal()],
+                    queuedByPriority[LlmPriority.SCHEDULED.ordinal()],
+                    queuedByPriority[LlmPriority.PIPELINE.ordinal()],
+                    pauseMs, rateLimitedCount);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public record Stats(String provider, int limit, int inFlight, int queued,
+                        int queuedInteractive, int queuedScheduled, int queuedPipeline,
+                        long pausedForMs, long rateLimitedCount) {}
+
+    /** A granted slot. Completing it more than once is a no-op. */
+    public final class Permit {
+        private final long grantedAtNanos;
+        private boolean completed;
+
+        private Permit(long grantedAtNanos) {
+            this.grantedAtNanos = grantedAtNanos;
+        }
+
+        public long grantedAtNanos() { return grantedAtNanos; }
+
+        /** Call succeeded — additive increase. */
+        public void onSuccess() { finish(true, false, null); }
+
+        /** Provider signalled overload (429/529) — multiplicative decrease, honour retry-after. */
+        public void onRateLimited(Duration retryAfter) { finish(false, true, retryAfter); }
+
+        /** Call failed or was cancelled for another reason — release without adjusting the limit. */
+        public void release() { finish(false, false, null); }
+
+        private synchronized void finish(boolean success, boolean rateLimited, Duration retryAfter) {
+            if (completed) return;
+            completed = true;
+            complete(success, rateLimited, retryAfter);
+        }
+    }
+}
@@ -3,6 +3,8 @@ package io.github.drompincen.javaclawv1.runtime.agent.llm;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.drompincen.javaclawv1.runtime.agent.graph.AgentState;
+import io.github.drompincen.javaclawv1.runtime.jfr.LlmCallEvent;
+import io.github.drompincen.javaclawv1.runtime.upload.ImagePartStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.anthropic.AnthropicChatModel;
@@ -12,7 +14,11 @@ import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.SystemMessage;
 import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.Usage;
 import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.model.Media;
 import org.springframework.ai.openai.OpenAiChatModel;
@@ -23,15 +29,23 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
 import org.springframework.util.MimeType;
+import reactor.core.Exceptions;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
 import java.util.*;
-import java.util.function.Supplier;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Default LLM service that checks both Anthropic and OpenAI keys.
  * Uses whichever provider has a real (non-placeholder) key configured.
- * Anthropic is checked first, then OpenAI.
+ * Anthropic is checked first, then OpenAI. When both keys are set, {@link LlmRouter}
+ * fails over between them and can hedge slow interactive streams.
  * If a key is set at runtime (--api-key or Ctrl+K) but the Spring AI
  * autoconfiguration didn't create the model bean, models are created lazily.
  */
@@ -42,6 +56,9 @@ public class DefaultLlmService implements LlmService {
     private static final Logger log = LoggerFactory.getLogger(DefaultLlmService.class);
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
+    private static final String DEFAULT_ANTHROPIC_MODEL = "claude-sonnet-4-5-20250929";
+    private static final String DEFAULT_OPENAI_MODEL = "gpt-4o";
+
     private static final String ONBOARDING_MESSAGE = """
             **Welcome to JavaClaw!** No API key is configured yet.
 
@@ -59,6 +76,9 @@ public class DefaultLlmService implements LlmService {
     private final AnthropicChatModel anthropicModel;
     private final OpenAiChatModel openaiModel;
     private final Environment environment;
+    private final LlmConcurrencyLimiter concurrencyLimiter;
+    private final LlmRouter router;
+    private final ImagePartStore imagePartStore;
 
     // Lazily-created models for keys set at runtime (--api-key, Ctrl+K)
     private volatile ChatModel lazyOpenAiModel;
@@ -66,10 +86,16 @@ public class DefaultLlmService implements LlmService {
 
     public DefaultLlmService(@Autowired(required = false) AnthropicChatModel anthropicModel,
                              @Autowired(required = false) OpenAiChatModel openaiModel,
-                             Environment environment) {
+                             Environment environment,
+                             LlmConcurrencyLimiter concurrencyLimiter,
+                             LlmRouter router,
+                             ImagePartStore imagePartStore) {
         this.anthropicModel = anthropicModel;
         this.openaiModel = openaiModel;
         this.environment = environment;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.router = router;
+        this.imagePartStore = imagePartStore;
         log.info("DefaultLlmService initialized — anthropic={}, openai={}",
                 anthropicModel != null ? "available" : "missing",
                 openaiModel != null ? "available" : "missing");
@@ -108,17 +134,69 @@ public class DefaultLlmService implements LlmService {
         return resolveProvider() != Provider.NONE;
     }
 
-    private ChatModel getActiveModel() {
-        Provider p = resolveProvider();
-        ChatModel model = switch (p) {
-            case ANTHROPIC -> getOrCreateAnthropicModel();
-            case OPENAI -> getOrCreateOpenAiModel();
-            case NONE -> null;
-        };
-        if (model == null && p != Provider.NONE) {
-            log.warn("Provider {} selected but could not create model", p);
+    /** A provider with a usable key, resolved to its chat model. */
+    private record Target(LlmRouter.Candidate candidate, ChatModel model) {
+        String provider() { return candidate.provider(); }
+    }
+
+    /** Routing order for one call; {@code preferred} is the configured first choice. */
+    private record Routing(List<Target> order, Target preferred) {}
+
+    /**
+     * Every provider with a real key, in configuration preference order
+     * (Anthropic first, then OpenAI).
+     */
+    private List<Target> availableTargets() {
+        List<Target> targets = new ArrayList<>(2);
+        if (hasRealKey(resolveKey("spring.ai.anthropic.api-key"), "sk-ant-placeholder")) {
+            ChatModel model = getOrCreateAnthropicModel();
+            if (model != null) {
+                targets.add(new Target(new LlmRouter.Candidate("anthropic",
+                        modelName(model, DEFAULT_ANTHROPIC_MODEL)), model));
+            } else {
+                log.warn("Provider ANTHROPIC selected but could not create model");
+            }
+        }
+        if (hasRealKey(resolveKey("spring.ai.openai.api-key"), "sk-placeholder")) {
+            ChatModel model = getOrCreateOpenAiModel();
+            if (model != null) {
+                targets.add(new Target(new LlmRouter.Candidate("openai",
+                        modelName(model, DEFAULT_OPENAI_MODEL)), model));
+            } else {
+                log.warn("Provider OPENAI selected but could not create model");
+            }
+        }
+        return targets;
+    }
+
+    private String modelName(ChatModel model, String fallback) {
+        try {
+            ChatOptions options = model.getDefaultOptions();
+            if (options != null && options.getModel() != null) return options.getModel();
+        } catch (Exception ignored) {}
+        return fallback;
+    }
+
+    private Routing route(LlmCallInfo call) {
+        List<Target> targets = availableTargets();
+        if (targets.isEmpty()) return new Routing(List.of(), null);
+        LlmRouter.Decision decision = router.route(targets.stream().map(Target::candidate).toList());
+        Map<LlmRouter.Candidate, Target> byCandidate = new HashMap<>();
+        for (Target t : targets) byCandidate.put(t.candidate(), t);
+        List<Target> order = decision.order().stream().map(byCandidate::get).toList();
+
+        call.setRoutingReason(decision.reason());
+        markServedBy(call, order.get(0), targets.get(0));
+        if (!decision.reason().equals("preferred") && !decision.reason().equals("only-provider")) {
+            log.info("LLM routing: {} -> {}", decision.reason(), order.get(0).provider());
         }
-        return model;
+        return new Routing(order, targets.get(0));
+    }
+
+    private void markServedBy(LlmCallInfo call, Target served, Target preferred) {
+        call.setProvider(served.provider());
+        call.setModel(served.candidate().model());
+        call.setFailedOverFrom(served == preferred ? null : preferred.provider());
     }
 
     private ChatModel getOrCreateOpenAiModel() {
@@ -128,7 +206,9 @@ public class DefaultLlmService implements LlmService {
             if (lazyOpenAiModel != null) return lazyOpenAiModel;
             try {
                 OpenAiApi api = new OpenAiApi(runtimeKey);
-                OpenAiChatOptions options = OpenAiChatOptions.builder().model("gpt-4o").build();
+                OpenAiChatOptions options = OpenAiChatOptions.builder()
+                        .model(DEFAULT_OPENAI_MODEL)
+                        .streamUsage(true).build();
                 lazyOpenAiModel = new OpenAiChatModel(api, options);
                 log.info("Created OpenAI model (lazy) — key set via --api-key or Ctrl+K");
                 return lazyOpenAiModel;
@@ -149,7 +229,7 @@ public class DefaultLlmService implements LlmService {
             try {
                 AnthropicApi api = new AnthropicApi(runtimeKey);
                 AnthropicChatOptions options = AnthropicChatOptions.builder()
-                        .model("claude-sonnet-4-5-20250929")
+                        .model(DEFAULT_ANTHROPIC_MODEL)
                         .maxTokens(8192).build();
                 lazyAnthropicModel = new AnthropicChatModel(api, options);
                 log.info("Created Anthropic model (lazy) — key set via --api-key or Ctrl+K");
@@ -174,71 +254,311 @@ public class DefaultLlmService implements LlmService {
 
     @Override
     public Flux<String> streamResponse(AgentState state) {
-        ChatModel model = getActiveModel();
-        if (model == null) {
+        LlmCallInfo call = newCall(state);
+        Routing routing = route(call);
+        if (routing.order().isEmpty()) {
             return Flux.just(ONBOARDING_MESSAGE);
         }
         Prompt prompt = buildPrompt(state);
-        log.debug("Streaming response via {}", resolveProvider());
+        LlmPriority priority = state.getLlmPriority();
+        Target primary = routing.order().get(0);
+        log.debug("Streaming response via {} ({})", primary.provider(), priority);
+
+        Flux<String> stream;
+        if (router.isHedgeEnabled() && priority == LlmPriority.INTERACTIVE) {
+            stream = hedgedStream(routing, prompt, priority, call);
+        } else {
+            stream = streamFrom(primary, "primary", prompt, priority, call).map(TaggedToken::text);
+        }
 
-        return model.stream(prompt)
-                .map(response -> {
-                    if (response.getResult() != null && response.getResult().getOutput() != null) {
-                        String text = response.getResult().getOutput().getText();
-                        return text != null ? text : "";
+        return stream.onErrorResume(e -> {
+            Throwable failure = unwrapHedgeFailure(e);
+            if (isRetryableError(failure) || isLimiterTimeout(failure)) {
+                log.warn("Stream hit retryable error, retrying via collectStream: {}", failure.getMessage());
+                try {
+                    String text = collectWithFailover(routing, prompt, priority, call);
+                    return Flux.just(text != null ? text : "");
+                } catch (Exception ex) {
+                    return Flux.error(ex);
+                }
+            }
+            return Flux.error(failure);
+        });
+    }
+
+    private LlmCallInfo newCall(AgentState state) {
+        LlmCallInfo call = new LlmCallInfo();
+        call.setSessionId(state.getThreadId());
+        call.setAgentId(state.getCurrentAgentId());
+        state.setLastLlmCall(call);
+        return call;
+    }
+
+    private record TaggedToken(Target source, String role, String text) {}
+
+    /**
+     * Race the primary against a second request that only starts once the primary has gone
+     * {@link LlmRouter#hedgeDelay} without a first token. Whichever emits first wins and the
+     * other is cancelled, which releases its limiter permit. The hedge goes to the next
+     * provider in the routing order, or to the primary's provider if there is only one.
+     */
+    private Flux<String> hedgedStream(Routing routing, Prompt prompt, LlmPriority priority, LlmCallInfo call) {
+        Target primary = routing.order().get(0);
+        Target backup = routing.order().size() > 1 ? routing.order().get(1) : primary;
+        Duration delay = router.hedgeDelay(primary.candidate());
+
+        Flux<TaggedToken> first = streamFrom(primary, "primary", prompt, priority, call)
+                .subscribeOn(Schedulers.boundedElastic());
+        Flux<TaggedToken> hedge = Mono.delay(delay)
+                .thenMany(Flux.defer(() -> {
+                    call.setHedged(true);
+                    log.info("No first token from {} after {}ms, hedging to {}",
+                            primary.provider(), delay.toMillis(), backup.provider());
+                    return streamFrom(backup, "hedge", prompt, priority, call);
+                }))
+                .subscribeOn(Schedulers.boundedElastic());
+
+        AtomicBoolean decided = new AtomicBoolean();
+        return Flux.firstWithValue(first, hedge)
+                .doOnNext(token -> {
+                    if (decided.compareAndSet(false, true)) {
+                        markServedBy(call, token.source(), routing.preferred());
+                        if (call.isHedged()) call.setHedgeWinner(token.role());
                     }
-                    return "";
                 })
-                .filter(text -> !text.isEmpty())
-                .onErrorResume(e -> {
-                    if (isRetryableError(e)) {
-                        log.warn("Stream hit retryable error, retrying via collectStream: {}", e.getMessage());
-                        try {
-                            String text = collectStream(model, prompt);
-                            return Flux.just(text != null ? text : "");
-                        } catch (Exception ex) {
-                            return Flux.error(ex);
-                        }
-                    }
-                    return Flux.error(e);
-                });
+                .map(TaggedToken::text);
+    }
+
+    /**
+     * One streaming request against {@code target}, holding a limiter permit for its lifetime
+     * and feeding time-to-first-token and outcome into the target's health. Cancellation
+     * (a lost hedge) releases the permit without counting as success or failure.
+     */
+    private Flux<TaggedToken> streamFrom(Target target, String role, Prompt prompt,
+                                         LlmPriority priority, LlmCallInfo call) {
+        AdaptiveConcurrencyLimiter limiter = concurrencyLimiter.forProvider(target.provider());
+        LlmProviderHealth health = router.health(target.candidate());
+        return Flux.using(() -> acquire(limiter, priority),
+                permit -> Flux.defer(() -> {
+                    call.incrementAttempts();
+                    LlmCallEvent jfr = new LlmCallEvent();
+                    jfr.begin();
+                    UsageTracker usage = new UsageTracker();
+                    return target.model().stream(prompt)
+                            .doOnNext(usage::observe)
+                            .map(this::extractText)
+                            .filter(text -> !text.isEmpty())
+                            .doOnNext(text -> {
+                                if (usage.firstToken()) {
+                                    health.recordTimeToFirstToken(usage.timeToFirstTokenMs());
+                                }
+                            })
+                            .map(text -> new TaggedToken(target, role, text))
+                            .doOnComplete(() -> {
+                                health.recordSuccess();
+                                permit.onSuccess();
+                                usage.commitTo(call);
+                                commitCallEvent(jfr, target, role, priority, call, usage, null);
+                            })
+                            .doOnError(e -> {
+                                health.recordFailure();
+                                completeWithError(permit, e);
+                                commitCallEvent(jfr, target, role, priority, call, usage, e);
+                            })
+                            .doOnCancel(() -> commitCallEvent(jfr, target, role, priority, call, usage,
+                                    new CancellationException("cancelled")));
+                }),
+                AdaptiveConcurrencyLimiter.Permit::release);
+    }
+
+    /** When every side of a hedge failed, surface the last underlying provider error. */
+    private Throwable unwrapHedgeFailure(Throwable e) {
+        if (e instanceof NoSuchElementException && e.getCause() != null) {
+            List<Throwable> causes = Exceptions.unwrapMultiple(e.getCause());
+            if (!causes.isEmpty()) return causes.get(causes.size() - 1);
+        }
+        return e;
     }
 
     @Override
     public String blockingResponse(AgentState state) {
-        ChatModel model = getActiveModel();
-        if (model == null) {
+        LlmCallInfo call = newCall(state);
+        Routing routing = route(call);
+        if (routing.order().isEmpty()) {
             return ONBOARDING_MESSAGE;
         }
-        log.debug("Blocking response via {}", resolveProvider());
+        log.debug("Blocking response via {}", routing.order().get(0).provider());
         Prompt prompt = buildPrompt(state);
         // Use streaming and collect — model.call() fails with Spring AI 1.0.0-M6
         // due to deserialization mismatch with current Anthropic API response format
-        return collectStream(model, prompt);
+        return collectWithFailover(routing, prompt, state.getLlmPriority(), call);
     }
 
-    /** Stream the response and collect all chunks into a single string, with retry. */
-    private String collectStream(ChatModel model, Prompt prompt) {
-        for (int attempt = 0; attempt < MAX_RETRIES; attempt++) {
+    /**
+     * Try each provider in routing order. While another provider remains, a provider only gets
+     * {@link LlmRouter#attemptsBeforeFailover} attempts before the call moves on; the last
+     * provider gets the full retry budget. Non-retryable errors are thrown immediately.
+     */
+    private String collectWithFailover(Routing routing, Prompt prompt, LlmPriority priority, LlmCallInfo call) {
+        List<Target> order = routing.order();
+        for (int i = 0; i < order.size(); i++) {
+            Target target = order.get(i);
+            boolean canFailOver = router.isFailoverEnabled() && i < order.size() - 1;
+            int attempts = canFailOver ? router.attemptsBeforeFailover() : MAX_RETRIES;
+            try {
+                String text = collectStream(target, prompt, priority, attempts, call);
+                markServedBy(call, target, routing.preferred());
+                return text;
+            } catch (RuntimeException e) {
+                if (!canFailOver || !(isRetryableError(e) || isLimiterTimeout(e))) {
+                    markServedBy(call, target, routing.preferred());
+                    throw e;
+                }
+                log.warn("Provider {} failed ({}), failing over to {}",
+                        target.provider(), e.getMessage(), order.get(i + 1).provider());
+            }
+        }
+        throw new IllegalStateException("No LLM provider available");
+    }
+
+    /**
+     * Usage and latency of a single streaming attempt. Providers report usage on stream chunks
+     * (Anthropic on message start/delta, OpenAI on the final chunk when stream usage is on),
+     * either cumulatively or as running totals, so the largest value seen is kept.
+     */
+    static final class UsageTracker {
+        private final long startNanos = System.nanoTime();
+        private long firstTokenNanos;
+        private boolean reported;
+        private int promptTokens;
+        private int completionTokens;
+        private int cachedTokens;
+        private String model;
+
+        void observe(ChatResponse response) {
+            ChatResponseMetadata metadata = response.getMetadata();
+            if (metadata == null) return;
+            if (metadata.getModel() != null && !metadata.getModel().isBlank()) model = metadata.getModel();
+            Usage usage = metadata.getUsage();
+            if (usage == null) return;
+            int prompt = usage.getPromptTokens() != null ? usage.getPromptTokens() : 0;
+            int completion = usage.getCompletionTokens() != null ? usage.getCompletionTokens() : 0;
+            if (prompt > 0 || completion > 0) reported = true;
+            promptTokens = Math.max(promptTokens, prompt);
+            completionTokens = Math.max(completionTokens, completion);
+            cachedTokens = Math.max(cachedTokens, cachedTokens(usage.getNativeUsage()));
+        }
+
+        /** Marks the first token; true only on the first call. */
+        boolean firstToken() {
+            if (firstTokenNanos != 0) return false;
+            firstTokenNanos = System.nanoTime();
+            return true;
+        }
+
+        long timeToFirstTokenMs() {
+            return firstTokenNanos == 0 ? -1 : (firstTokenNanos - startNanos) / 1_000_000;
+        }
+
+        void commitTo(LlmCallInfo call) {
+            call.setUsageReported(reported);
+            call.setPromptTokens(promptTokens);
+            call.setCompletionTokens(completionTokens);
+            call.setCachedTokens(cachedTokens);
+            call.setTimeToFirstTokenMs(timeToFirstTokenMs());
+            call.setGenerationMs((System.nanoTime() - startNanos) / 1_000_000);
+            if (model != null) call.setModel(model);
+        }
+
+        /** Cache hits are only exposed on OpenAI's native usage in this Spring AI version. */
+        private static int cachedTokens(Object nativeUsage) {
+            if (nativeUsage instanceof OpenAiApi.Usage u) {
+                if (u.promptTokensDetails() != null && u.promptTokensDetails().cachedTokens() != null) {
+                    return u.promptTokensDetails().cachedTokens();
+                }
+                if (u.promptCacheHitTokens() != null) return u.promptCacheHitTokens();
+            }
+            return 0;
+        }
+    }
+
+    /** Close the JFR event for one attempt; fields are only filled in while a recording enables it. */
+    private static void commitCallEvent(LlmCallEvent event, Target target, String role, LlmPriority priority,
+                                        LlmCallInfo call, UsageTracker usage, Throwable error) {
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.sessionId = call.getSessionId();
+        event.agentId = call.getAgentId();
+        event.provider = target.provider();
+        event.model = usage.model != null ? usage.model : target.candidate().model();
+        event.priority = priority != null ? priority.name() : null;
+        event.role = role;
+        event.success = error == null;
+        event.error = error != null ? error.getClass().getSimpleName() + ": " + error.getMessage() : null;
+        event.promptTokens = usage.promptTokens;
+        event.completionTokens = usage.completionTokens;
+        event.cachedTokens = usage.cachedTokens;
+        event.timeToFirstToken = usage.timeToFirstTokenMs();
+        event.commit();
+    }
+
+    private String extractText(ChatResponse response) {
+        if (response.getResult() != null && response.getResult().getOutput() != null) {
+            String text = response.getResult().getOutput().getText();
+            return text != null ? text : "";
+        }
+        return "";
+    }
+
+    /**
+     * Stream the response and collect all chunks into a single string, with retry.
+     * Every attempt takes a slot from the provider limiter. Rate-limit errors do not sleep
+     * here: the limiter halves its concurrency and pauses the provider (retry-after if given),
+     * so the retry simply queues behind higher-priority callers. Other retryable errors
+     * (5xx) back off with jitter.
+     */
+    private String collectStream(Target target, Prompt prompt, LlmPriority priority,
+                                 int maxAttempts, LlmCallInfo call) {
+        AdaptiveConcurrencyLimiter limiter = concurrencyLimiter.forProvider(target.provider());
+        LlmProviderHealth health = router.health(target.candidate());
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            AdaptiveConcurrencyLimiter.Permit permit = acquire(limiter, priority);
+            call.incrementAttempts();
+            LlmCallEvent jfr = new LlmCallEvent();
+            jfr.begin();
+            UsageTracker usage = new UsageTracker();
             try {
                 StringBuilder sb = new StringBuilder();
-                model.stream(prompt)
-                        .map(response -> {
-                            if (response.getResult() != null && response.getResult().getOutput() != null) {
-                                String text = response.getResult().getOutput().getText();
-                                return text != null ? text : "";
+                target.model().stream(prompt)
+                        .doOnNext(usage::observe)
+                        .map(this::extractText)
+                        .filter(text -> !text.isEmpty())
+                        .doOnNext(text -> {
+                            if (usage.firstToken()) {
+                                health.recordTimeToFirstToken(usage.timeToFirstTokenMs());
                             }
-                            return "";
+                            sb.append(text);
                         })
-                        .filter(text -> !text.isEmpty())
-                        .doOnNext(sb::append)
                         .blockLast();
+                health.recordSuccess();
+                permit.onSuccess();
+                usage.commitTo(call);
+                commitCallEvent(jfr, target, "blocking", priority, call, usage, null);
                 return sb.toString();
             } catch (Exception e) {
-                if (isRetryableError(e) && attempt < MAX_RETRIES - 1) {
-                    long delay = BACKOFF_MS[attempt];
+                health.recordFailure();
+                completeWithError(permit, e);
+                commitCallEvent(jfr, target, "blocking", priority, call, usage, e);
+                if (isRetryableError(e) && attempt < maxAttempts - 1) {
+                    if (LlmConcurrencyLimiter.isRateLimit(e)) {
+                        log.warn("Rate limited (attempt {}/{}), re-queueing on limiter: {}",
+                                attempt + 1, maxAttempts, e.getMessage());
+                        continue;
+                    }
+                    long base = SERVER_ERROR_BACKOFF_MS[Math.min(attempt, SERVER_ERROR_BACKOFF_MS.length - 1)];
+                    long delay = base / 2 + ThreadLocalRandom.current().nextLong(base / 2 + 1);
                     log.warn("Retryable error (attempt {}/{}), retrying in {}ms: {}",
-                            attempt + 1, MAX_RETRIES, delay, e.getMessage());
+                            attempt + 1, maxAttempts, delay, e.getMessage());
                     try { Thread.sleep(delay); } catch (InterruptedException ie) {
                         Thread.currentThread().interrupt();
                         throw e;
@@ -246,53 +566,44 @@ public class DefaultLlmService implements LlmService {
                 } else {
                     throw e;
                 }
+            } finally {
+                permit.release();
             }
         }
         throw new IllegalStateException("Exhausted retries");
     }
 
     private static final int MAX_RETRIES = 3;
-    private static final long[] BACKOFF_MS = {2_000, 4_000, 8_000};
+    private static final long[] SERVER_ERROR_BACKOFF_MS = {2_000, 4_000, 8_000};
 
-    /** Call supplier with exponential backoff on retryable errors (429, 503, 529). */
-    private <T> T callWithRetry(Supplier<T> supplier) {
-        for (int attempt = 0; attempt < MAX_RETRIES; attempt++) {
-            try {
-                return supplier.get();
-            } catch (Exception e) {
-                if (isRetryableError(e) && attempt < MAX_RETRIES - 1) {
-                    long delay = BACKOFF_MS[attempt];
-                    log.warn("Retryable error (attempt {}/{}), retrying in {}ms: {}",
-                            attempt + 1, MAX_RETRIES, delay, e.getMessage());
-                    try { Thread.sleep(delay); } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        throw e;
-                    }
-                } else {
-                    throw e;
-                }
-            }
+    private AdaptiveConcurrencyLimiter.Permit acquire(AdaptiveConcurrencyLimiter limiter, LlmPriority priority) {
+        try {
+            return limiter.acquire(priority, concurrencyLimiter.acquireTimeout());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an LLM slot", e);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException(e.getMessage(), e);
         }
-        throw new IllegalStateException("Exhausted retries"); // unreachable
     }
 
-    /** Check if error is retryable by walking cause chain for 429/503/529/rate-limit signals. */
-    private boolean isRetryableError(Throwable t) {
-        Throwable current = t;
-        while (current != null) {
-            String msg = current.getMessage();
-            if (msg != null) {
-                String lower = msg.toLowerCase();
-                if (lower.contains("429") || lower.contains("500") || lower.contains("503") || lower.contains("529")
-                        || lower.contains("rate limit") || lower.contains("rate_limit")
-                        || lower.contains("overloaded") || lower.contains("too many requests")
-                        || lower.contains("internal server error")) {
-                    return true;
-                }
-            }
-            current = current.getCause();
+    /** The provider's queue was too long to get a slot — another provider may still have room. */
+    private boolean isLimiterTimeout(Throwable t) {
+        return t instanceof IllegalStateException && t.getCause() instanceof TimeoutException;
+    }
+
+    private void completeWithError(AdaptiveConcurrencyLimiter.Permit permit, Throwable e) {
+        if (LlmConcurrencyLimiter.isRateLimit(e)) {
+            Duration retryAfter = LlmConcurrencyLimiter.retryAfter(e);
+            permit.onRateLimited(retryAfter);
+        } else {
+            permit.release();
         }
-        return false;
+    }
+
+    /** Check if error is retryable: 429/529/5xx status in the cause chain, or a rate-limit/overload signal. */
+    private boolean isRetryableError(Throwable t) {
+        return LlmConcurrencyLimiter.isRetryable(t);
     }
 
     private Prompt buildPrompt(AgentState state) {
@@ -329,8 +640,12 @@ public class DefaultLlmService implements LlmService {
                 String type = part.getOrDefault("type", "text");
                 if ("image".equals(type)) {
                     String mediaType = part.getOrDefault("mediaType", "image/png");
+                    String blobId = part.get("blobId");
                     String data = part.get("data");
-                    if (data != null) {
+                    if (blobId != null) {
+                        mediaList.add(imagePartStore.media(blobId, mediaType));
+                    } else if (data != null) {
+                        // Inline base64 from messages stored before image parts moved to the blob store
                         byte[] imageBytes = Base64.getDecoder().decode(data);
                         Media media = Media.builder()
                                 .mimeType(MimeType.valueOf(mediaType))
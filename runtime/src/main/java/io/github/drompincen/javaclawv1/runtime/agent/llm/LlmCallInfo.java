@@ -0,0 +1,88 @@
+package io.github.drompincen.javaclawv1.runtime.agent.llm;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * What actually served the most recent LLM call on an {@code AgentState}: the provider and
+ * model that produced the answer, how the router got there, and the token usage and latency
+ * reported for it. Filled in by the {@link LlmService} as the call progresses, read by the
+ * caller when recording the interaction.
+ */
+public class LlmCallInfo {
+
+    private volatile String sessionId;
+    private volatile String agentId;
+    private volatile String provider;
+    private volatile String model;
+    private volatile String routingReason;
+    private volatile String failedOverFrom;
+    private volatile boolean hedged;
+    private volatile String hedgeWinner;
+    // Bumped concurrently by the retry loop and the hedge racers
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    // Usage of the attempt that produced the answer; zero when the provider reported none
+    private volatile boolean usageReported;
+    private volatile int promptTokens;
+    private volatile int completionTokens;
+    private volatile int cachedTokens;
+    private volatile long timeToFirstTokenMs = -1;
+    private volatile long generationMs;
+
+    public String getSessionId() { return sessionId; }
+    public void setSessionId(String sessionId) { this.sessionId = sessionId; }
+
+    public String getAgentId() { return agentId; }
+    public void setAgentId(String agentId) { this.agentId = agentId; }
+
+    public String getProvider() { return provider; }
+    public void setProvider(String provider) { this.provider = provider; }
+
+    public String getModel() { return model; }
+    public void setModel(String model) { this.model = model; }
+
+    public String getRoutingReason() { return routingReason; }
+    public void setRoutingReason(String routingReason) { this.routingReason = routingReason; }
+
+    public String getFailedOverFrom() { return failedOverFrom; }
+    public void setFailedOverFrom(String failedOverFrom) { this.failedOverFrom = failedOverFrom; }
+
+    public boolean isHedged() { return hedged; }
+    public void setHedged(boolean hedged) { this.hedged = hedged; }
+
+    public String getHedgeWinner() { return hedgeWinner; }
+    public void setHedgeWinner(String hedgeWinner) { this.hedgeWinner = hedgeWinner; }
+
+    public int getAttempts() { return attempts.get(); }
+    public void setAttempts(int attempts) { this.attempts.set(attempts); }
+
+    void incrementAttempts() { attempts.incrementAndGet(); }
+
+    public boolean isUsageReported() { return usageReported; }
+    public void setUsageReported(boolean usageReported) { this.usageReported = usageReported; }
+
+    public int getPromptTokens() { return promptTokens; }
+    public void setPromptTokens(int promptTokens) { this.promptTokens = promptTokens; }
+
+    public int getCompletionTokens() { return completionTokens; }
+    public void setCompletionTokens(int completionTokens) { this.completionTokens = completionTokens; }
+
+    /** Prompt tokens served from the provider's prompt cache (subset of {@link #getPromptTokens}). */
+    public int getCachedTokens() { return cachedTokens; }
+    public void setCachedTokens(int cachedTokens) { this.cachedTokens = cachedTokens; }
+
+    /** Request sent to first non-empty token, excluding time queued on the limiter; -1 if none. */
+    public long getTimeToFirstTokenMs() { return timeToFirstTokenMs; }
+    public void setTimeToFirstTokenMs(long timeToFirstTokenMs) { this.timeToFirstTokenMs = timeToFirstTokenMs; }
+
+    /** Request sent to end of stream. */
+    public long getGenerationMs() { return generationMs; }
+    public void setGenerationMs(long generationMs) { this.generationMs = generationMs; }
+
+    /** Output tokens per second after the first token arrived; 0 when not measurable. */
+    public double getTokensPerSecond() {
+        long decodeMs = generationMs - Math.max(0, timeToFirstTokenMs);
+        if (completionTokens <= 0 || decodeMs <= 0) return 0.0;
+        return completionTokens * 1000.0 / decodeMs;
+    }
+}
@@ -0,0 +1,146 @@
+package io.github.drompincen.javaclawv1.runtime.agent.llm;
+
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Provider-level concurrency control for outgoing LLM calls: one
+ * {@link AdaptiveConcurrencyLimiter} per provider, shared by every session on this node.
+ *
+ * Configured via {@code javaclaw.llm.limiter.*} (initial/min/max concurrency and how long a
+ * call may queue before failing).
+ */
+@Component
+public class LlmConcurrencyLimiter {
+
+    private static final Pattern STATUS_IN_MESSAGE = Pattern.compile(
+            "^\\s*([1-5]\\d{2})\\b|\\b(?:status(?: code)?|HTTP)[\\s:=]+([1-5]\\d{2})\\b", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern RETRY_AFTER_IN_MESSAGE =
+            Pattern.compile("retry[-_ ]after[\"':= ]+(\\d+(?:\\.\\d+)?)", Pattern.CASE_INSENSITIVE);
+
+    private final Map<String, AdaptiveConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final Duration acquireTimeout;
+
+    public LlmConcurrencyLimiter(Environment environment) {
+        this.initialLimit = environment.getProperty("javaclaw.llm.limiter.initial-concurrency", Integer.class, 4);
+        this.minLimit = environment.getProperty("javaclaw.llm.limiter.min-concurrency", Integer.class, 1);
+        this.maxLimit = environment.getProperty("javaclaw.llm.limiter.max-concurrency", Integer.class, 16);
+        this.acquireTimeout = Duration.ofMillis(
+                environment.getProperty("javaclaw.llm.limiter.queue-timeout-ms", Long.class, 300_000L));
+    }
+
+    public AdaptiveConcurrencyLimiter forProvider(String provider) {
+        return limiters.computeIfAbsent(provider,
+                p -> new AdaptiveConcurrencyLimiter(p, initialLimit, minLimit, maxLimit));
+    }
+
+    public Duration acquireTimeout() {
+        return acquireTimeout;
+    }
+
+    /** In-flight and queued counts for every provider that has been used. */
+    public List<AdaptiveConcurrencyLimiter.Stats> stats() {
+        return limiters.values().stream()
+                .map(AdaptiveConcurrencyLimiter::stats)
+                .sorted(Comparator.comparing(AdaptiveConcurrencyLimiter.Stats::provider))
+                .toList();
+    }
+
+    /** True for provider overload signals (429 and Anthropic's 529), as opposed to 5xx failures. */
+    public static boolean isRateLimit(Throwable t) {
+        int status = httpStatus(t);
+        if (status > 0) return status == 429 || status == 529;
+        return mentions(t, "rate limit", "rate_limit", "overloaded", "too many requests");
+    }
+
+    /** True for errors worth retrying: rate limits, overload and 5xx responses. */
+    public static boolean isRetryable(Throwable t) {
+        int status = httpStatus(t);
+        if (status > 0) return status == 429 || status == 529 || status >= 500;
+        for (Throwable c = t; c != null; c = c.getCause()) {
+            if (c instanceof TransientAiException) return true;
+        }
+        return mentions(t, "rate limit", "rate_limit", "overloaded", "too many requests", "internal server error");
+    }
+
+    /**
+     * HTTP status of the first provider error in the cause chain, or -1. Spring AI reports
+     * statuses as a {@code "<code> - <body>"} message, so a code is also read from the start of
+     * a message or after "status"/"HTTP" — never from digits elsewhere (ids, token counts).
+     */
+    static int httpStatus(Throwable t) {
+        for (Throwable c = t; c != null; c = c.getCause()) {
+            if (c instanceof WebClientResponseException w) return w.getStatusCode().value();
+            if (c instanceof RestClientResponseException r) return r.getStatusCode().value();
+            if (c.getMessage() != null) {
+                Matcher m = STATUS_IN_MESSAGE.matcher(c.getMessage());
+                if (m.find()) return Integer.parseInt(m.group(1) != null ? m.group(1) : m.group(2));
+            }
+        }
+        return -1;
+    }
+
+    private static boolean mentions(Throwable t, String... phrases) {
+        for (Throwable c = t; c != null; c = c.getCause()) {
+            if (c.getMessage() == null) continue;
+            String lower = c.getMessage().toLowerCase();
+            for (String phrase : phrases) {
+                if (lower.contains(phrase)) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Extract a {@code retry-after} hint from the HTTP error in the cause chain, falling back
+     * to the error message. Supports delta-seconds and HTTP-date forms; null when absent.
+     */
+    public static Duration retryAfter(Throwable t) {
+        for (Throwable c = t; c != null; c = c.getCause()) {
+            HttpHeaders headers = null;
+            if (c instanceof WebClientResponseException w) headers = w.getHeaders();
+            else if (c instanceof RestClientResponseException r) headers = r.getResponseHeaders();
+            if (headers != null) {
+                Duration d = parseRetryAfter(headers.getFirst(HttpHeaders.RETRY_AFTER));
+                if (d != null) return d;
+            }
+            if (c.getMessage() != null) {
+                Matcher m = RETRY_AFTER_IN_MESSAGE.matcher(c.getMessage());
+                if (m.find()) return parseRetryAfter(m.group(1));
+            }
+        }
+        return null;
+    }
+
+    static Duration parseRetryAfter(String value) {
+        if (value == null || value.isBlank()) return null;
+        String v = value.trim();
+        try {
+            return Duration.ofMillis(Math.round(Double.parseDouble(v) * 1000));
+        } catch (NumberFormatException ignored) {}
+        try {
+            Duration d = Duration.between(ZonedDateTime.now(),
+                    ZonedDateTime.parse(v, DateTimeFormatter.RFC_1123_DATE_TIME));
+            return d.isNegative() ? Duration.ZERO : d;
+        } catch (Exception ignored) {}
+        return null;
+    }
+}
@@ -0,0 +1,24 @@
+package io.github.drompincen.javaclawv1.runtime.agent.llm;
+
+/**
+ * Scheduling class of an LLM call. When a provider is saturated, queued calls are
+ * granted in this order (declaration order = highest priority first).
+ */
+public enum LlmPriority {
+    /** A user is waiting on the response (chat, Ask Claw). */
+    INTERACTIVE,
+    /** Scheduled agent executions. */
+    SCHEDULED,
+    /** Intake pipeline phases and extraction sessions. */
+    PIPELINE;
+
+    /** Map a session's {@code metadata.type} to a priority; unknown types are interactive. */
+    public static LlmPriority forSessionType(String type) {
+        if (type == null) return INTERACTIVE;
+        return switch (type) {
+            case "scheduled_execution" -> SCHEDULED;
+            case "pipeline", "intake-pipeline", "extraction" -> PIPELINE;
+            default -> INTERACTIVE;
+        };
+    }
+}
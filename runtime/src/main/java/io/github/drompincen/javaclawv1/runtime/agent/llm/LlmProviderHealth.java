@@ -0,0 +1,88 @@
+package io.github.drompincen.javaclawv1.runtime.agent.llm;
+
+import java.util.Arrays;
+
+/**
+ * Rolling health of one provider/model pair: error rate over the last {@link #OUTCOME_WINDOW}
+ * calls and time-to-first-token over the last {@link #TTFT_WINDOW} successful streams.
+ * Cancelled calls (e.g. the losing side of a hedge) are not recorded.
+ */
+public class LlmProviderHealth {
+
+    static final int OUTCOME_WINDOW = 50;
+    static final int TTFT_WINDOW = 100;
+
+    private final String provider;
+    private final String model;
+
+    private final boolean[] failures = new boolean[OUTCOME_WINDOW];
+    private int outcomeCount;
+    private int outcomeNext;
+
+    private final long[] ttftMs = new long[TTFT_WINDOW];
+    private int ttftCount;
+    private int ttftNext;
+
+    private long totalCalls;
+    private long totalFailures;
+
+    public LlmProviderHealth(String provider, String model) {
+        this.provider = provider;
+        this.model = model;
+    }
+
+    public synchronized void recordSuccess() {
+        recordOutcome(false);
+    }
+
+    public synchronized void recordFailure() {
+        recordOutcome(true);
+        totalFailures++;
+    }
+
+    private void recordOutcome(boolean failed) {
+        failures[outcomeNext] = failed;
+        outcomeNext = (outcomeNext + 1) % OUTCOME_WINDOW;
+        if (outcomeCount < OUTCOME_WINDOW) outcomeCount++;
+        totalCalls++;
+    }
+
+    public synchronized void recordTimeToFirstToken(long millis) {
+        ttftMs[ttftNext] = millis;
+        ttftNext = (ttftNext + 1) % TTFT_WINDOW;
+        if (ttftCount < TTFT_WINDOW) ttftCount++;
+    }
+
+    public synchronized int sampleCount() {
+        return outcomeCount;
+    }
+
+    /** Fraction of failed calls in the window; 0 when nothing has been recorded. */
+    public synchronized double errorRate() {
+        if (outcomeCount == 0) return 0.0;
+        int failed = 0;
+        for (int i = 0; i < outcomeCount; i++) {
+            if (failures[i]) failed++;
+        }
+        return (double) failed / outcomeCount;
+    }
+
+    /** Nearest-rank percentile of recent time-to-first-token, or -1 with fewer than {@code minSamples}. */
+    public synchronized long ttftPercentile(double percentile, int minSamples) {
+        if (ttftCount == 0 || ttftCount < minSamples) return -1;
+        long[] sorted = Arrays.copyOf(ttftMs, ttftCount);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile * sorted.length);
+        return sorted[Math.min(sorted.length - 1, Math.max(0, rank - 1))];
+    }
+
+    public Stats stats() {
+        synchronized (this) {
+            return new Stats(provider, model, outcomeCount, errorRate(),
+                    ttftPercentile(0.5, 1), ttftPercentile(0.95, 1), totalCalls, totalFailures);
+        }
+    }
+
+    public record Stats(String provider, String model, int windowSize, double errorRate,
+                        long p50TtftMs, long p95TtftMs, long totalCalls, long totalFailures) {}
+}
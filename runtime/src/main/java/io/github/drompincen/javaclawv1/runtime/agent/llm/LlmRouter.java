@@ -0,0 +1,120 @@
+package io.github.drompincen.javaclawv1.runtime.agent.llm;
+
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Chooses which configured provider serves an LLM call, based on rolling
+ * {@link LlmProviderHealth} and the provider's {@link AdaptiveConcurrencyLimiter} state.
+ *
+ * The preferred provider stays first unless it is rate-limited (limiter paused) or its recent
+ * error rate is at or above {@code javaclaw.llm.routing.error-rate-threshold}; then the first
+ * healthy alternative is promoted. Also supplies the hedge delay for latency-critical streams:
+ * the configured percentile of the primary's recent time-to-first-token.
+ */
+@Component
+public class LlmRouter {
+
+    private final LlmConcurrencyLimiter concurrencyLimiter;
+    private final Map<String, LlmProviderHealth> health = new ConcurrentHashMap<>();
+
+    private final boolean failoverEnabled;
+    private final double errorRateThreshold;
+    private final int minSamples;
+    private final int attemptsBeforeFailover;
+    private final boolean hedgeEnabled;
+    private final double hedgePercentile;
+    private final Duration hedgeMinDelay;
+    private final Duration hedgeDefaultDelay;
+
+    public LlmRouter(Environment environment, LlmConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.failoverEnabled = environment.getProperty("javaclaw.llm.routing.failover-enabled", Boolean.class, true);
+        this.errorRateThreshold = environment.getProperty("javaclaw.llm.routing.error-rate-threshold", Double.class, 0.5);
+        this.minSamples = environment.getProperty("javaclaw.llm.routing.min-samples", Integer.class, 5);
+        this.attemptsBeforeFailover = environment.getProperty("javaclaw.llm.routing.attempts-before-failover", Integer.class, 1);
+        this.hedgeEnabled = environment.getProperty("javaclaw.llm.routing.hedge.enabled", Boolean.class, false);
+        this.hedgePercentile = environment.getProperty("javaclaw.llm.routing.hedge.percentile", Double.class, 0.95);
+        this.hedgeMinDelay = Duration.ofMillis(
+                environment.getProperty("javaclaw.llm.routing.hedge.min-delay-ms", Long.class, 500L));
+        this.hedgeDefaultDelay = Duration.ofMillis(
+                environment.getProperty("javaclaw.llm.routing.hedge.default-delay-ms", Long.class, 4_000L));
+    }
+
+    /** A provider that has a usable key, with the model it will call. */
+    public record Candidate(String provider, String model) {}
+
+    /** Candidates in the order they should be tried, and why that order was chosen. */
+    public record Decision(List<Candidate> order, String reason) {
+        public Candidate primary() { return order.get(0); }
+    }
+
+    public LlmProviderHealth health(Candidate candidate) {
+        return health.computeIfAbsent(candidate.provider() + "/" + candidate.model(),
+                k -> new LlmProviderHealth(candidate.provider(), candidate.model()));
+    }
+
+    /** Order {@code preferred} (non-empty, configuration order) by current health. */
+    public Decision route(List<Candidate> preferred) {
+        if (preferred.size() == 1) return new Decision(preferred, "only-provider");
+        Candidate first = preferred.get(0);
+        String problem = unhealthyReason(first);
+        if (problem == null) return new Decision(preferred, "preferred");
+        if (!failoverEnabled) return new Decision(preferred, "preferred-degraded:" + problem);
+
+        for (int i = 1; i < preferred.size(); i++) {
+            Candidate alt = preferred.get(i);
+            if (unhealthyReason(alt) == null) {
+                List<Candidate> order = new ArrayList<>(preferred.size());
+                order.add(alt);
+                for (Candidate c : preferred) {
+                    if (c != alt) order.add(c);
+                }
+                return new Decision(List.copyOf(order), "failover:" + problem + ":" + first.provider());
+            }
+        }
+        return new Decision(preferred, "all-degraded");
+    }
+
+    private String unhealthyReason(Candidate candidate) {
+        if (concurrencyLimiter.forProvider(candidate.provider()).isPaused()) return "rate-limited";
+        LlmProviderHealth h = health(candidate);
+        if (h.sampleCount() >= minSamples && h.errorRate() >= errorRateThreshold) return "error-rate";
+        return null;
+    }
+
+    public boolean isFailoverEnabled() {
+        return failoverEnabled;
+    }
+
+    /** Attempts on one provider before a blocking call moves to the next candidate. */
+    public int attemptsBeforeFailover() {
+        return Math.max(1, attemptsBeforeFailover);
+    }
+
+    public boolean isHedgeEnabled() {
+        return hedgeEnabled;
+    }
+
+    /** How long to wait for the primary's first token before starting a hedged request. */
+    public Duration hedgeDelay(Candidate primary) {
+        long p = health(primary).ttftPercentile(hedgePercentile, minSamples);
+        Duration delay = p < 0 ? hedgeDefaultDelay : Duration.ofMillis(p);
+        return delay.compareTo(hedgeMinDelay) < 0 ? hedgeMinDelay : delay;
+    }
+
+    public List<LlmProviderHealth.Stats> stats() {
+        return health.values().stream()
+                .map(LlmProviderHealth::stats)
+                .sorted(Comparator.comparing(LlmProviderHealth.Stats::provider)
+                        .thenComparing(LlmProviderHealth.Stats::model))
+                .toList();
+    }
+}
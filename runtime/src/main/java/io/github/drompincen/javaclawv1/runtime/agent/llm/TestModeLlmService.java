@@ -75,6 +75,10 @@ public class TestModeLlmService implements LlmService {
 
     @Override
     public String blockingResponse(AgentState state) {
+        LlmCallInfo call = new LlmCallInfo();
+        call.setProvider("test");
+        call.setModel("test-mode");
+        state.setLastLlmCall(call);
         String agentId = state.getCurrentAgentId() != null ? state.getCurrentAgentId() : "unknown";
         String sessionId = state.getThreadId();
         String userQuery = TestResponseGenerator.getLastUserMessage(state.getMessages());
@@ -0,0 +1,186 @@
+package io.github.drompincen.javaclawv1.runtime.cache;
+
+import io.github.drompincen.javaclawv1.persistence.stream.ChangeStreamService;
+import io.github.drompincen.javaclawv1.runtime.metrics.JavaClawMetrics;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import reactor.core.Disposable;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded read-through cache of one document type, keyed by {@code _id} and configured under
+ * {@code javaclaw.cache.<name>.*}. Entries beyond {@code max-entries} are evicted least recently
+ * used and expire after {@code ttl-ms}. Changes to the backing collection (from any node) evict
+ * the affected id via a key-only change stream; while that stream is down entries expire after
+ * the shorter {@code javaclaw.cache.fallback-ttl-ms} instead. A load is only published if its id
+ * was not evicted while it ran, so a change to one id never discards loads of the others.
+ *
+ * Cached documents are shared between callers and must be treated as read-only; read-modify-write
+ * paths keep going to the repository. Ids that do not exist are not cached. With
+ * {@code enabled: false} every lookup goes straight to the loader.
+ */
+public class EntityCache<T> {
+
+    private static final Logger log = LoggerFactory.getLogger(EntityCache.class);
+
+    private record Entry<T>(T value, long loadedAtNanos) {}
+
+    private final String name;
+    private final String collection;
+    private final Function<String, Optional<T>> loader;
+    private final JavaClawMetrics metrics;
+    private final LongSupplier nanoClock;
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final long fallbackTtlNanos;
+    private final Map<String, Entry<T>> entries;
+    /** Version of the in-flight load per id; evicting an id drops its version. */
+    private final Map<String, Long> loading = new ConcurrentHashMap<>();
+    private final AtomicLong versions = new AtomicLong();
+    private volatile boolean streamActive;
+    private Disposable subscription;
+
+    public EntityCache(String name, String collection, Function<String, Optional<T>> loader,
+                       int defaultMaxEntries, Environment env, JavaClawMetrics metrics) {
+        this(name, collection, loader, defaultMaxEntries, env, metrics, System::nanoTime);
+    }
+
+    EntityCache(String name, String collection, Function<String, Optional<T>> loader,
+                int defaultMaxEntries, Environment env, JavaClawMetrics metrics, LongSupplier nanoClock) {
+        this.name = name;
+        this.collection = collection;
+        this.loader = loader;
+        this.metrics = metrics;
+        this.nanoClock = nanoClock;
+        String prefix = "javaclaw.cache." + name + ".";
+        this.enabled = env.getProperty(prefix + "enabled", Boolean.class, true);
+        this.ttlNanos = Duration.ofMillis(env.getProperty(prefix + "ttl-ms", Long.class, 300_000L)).toNanos();
+        this.fallbackTtlNanos = Duration.ofMillis(
+                env.getProperty("javaclaw.cache.fallback-ttl-ms", Long.class, 5_000L)).toNanos();
+        int maxEntries = env.getProperty(prefix + "max-entries", Integer.class, defaultMaxEntries);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<T>> eldest) {
+                if (size() <= maxEntries) return false;
+                metrics.recordCacheEviction(name, "size");
+                return true;
+            }
+        };
+        if (enabled) {
+            metrics.cacheSizeGauge(name, this::size);
+        }
+    }
+
+    /** Subscribe to changes on the backing collection; without a change stream only TTLs apply. */
+    public void watch(ChangeStreamService changeStreamService) {
+        if (!enabled || changeStreamService == null) return;
+        subscription = changeStreamService.watchKeys(collection)
+                .doOnSubscribe(s -> {
+                    // Changes made while the stream was down were missed
+                    clear();
+                    streamActive = true;
+                })
+                .doOnError(e -> {
+                    streamActive = false;
+                    clear();
+                })
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofMinutes(1)))
+                .subscribe(this::onChange,
+                        e -> log.warn("{} cache change stream stopped: {}", name, e.getMessage()));
+        log.info("{} cache watching '{}' for changes", name, collection);
+    }
+
+    public void stop() {
+        if (subscription != null) subscription.dispose();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Optional<T> get(String id) {
+        if (id == null) return Optional.empty();
+        if (!enabled) return loader.apply(id);
+
+        Entry<T> entry;
+        synchronized (entries) {
+            entry = entries.get(id);
+            if (entry != null && !isFresh(entry)) {
+                entries.remove(id);
+                metrics.recordCacheEviction(name, "expired");
+                entry = null;
+            }
+        }
+        metrics.recordCacheLookup(name, entry != null);
+        if (entry != null) return Optional.of(entry.value());
+
+        Long version = versions.incrementAndGet();
+        loading.put(id, version);
+        Optional<T> loaded;
+        try {
+            loaded = loader.apply(id);
+        } catch (RuntimeException e) {
+            loading.remove(id, version);
+            throw e;
+        }
+        synchronized (entries) {
+            // Only publish if this id was not evicted during the read; the caller still gets fresh data
+            if (loading.remove(id, version) && loaded.isPresent()) {
+                entries.put(id, new Entry<>(loaded.get(), nanoClock.getAsLong()));
+            }
+        }
+        return loaded;
+    }
+
+    /** Drop one id, e.g. right after this node wrote it. */
+    public void evict(String id) {
+        if (id == null) return;
+        loading.remove(id);
+        synchronized (entries) {
+            if (entries.remove(id) != null) metrics.recordCacheEviction(name, "invalidated");
+        }
+    }
+
+    public void clear() {
+        loading.clear();
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private boolean isFresh(Entry<T> entry) {
+        long age = nanoClock.getAsLong() - entry.loadedAtNanos();
+        return age < (streamActive ? ttlNanos : Math.min(ttlNanos, fallbackTtlNanos));
+    }
+
+    private void onChange(ChangeStreamEvent<Document> event) {
+        BsonDocument key = event.getRaw() != null ? event.getRaw().getDocumentKey() : null;
+        BsonValue id = key != null ? key.get("_id") : null;
+        if (id != null && id.isString()) {
+            evict(id.asString().getValue());
+        } else {
+            // drop, rename or invalidate: no single id to evict
+            clear();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package io.github.drompincen.javaclawv1.runtime.cache;
+
+import io.github.drompincen.javaclawv1.persistence.document.ProjectDocument;
+import io.github.drompincen.javaclawv1.persistence.document.SessionDocument;
+import io.github.drompincen.javaclawv1.persistence.document.ThreadDocument;
+import io.github.drompincen.javaclawv1.persistence.repository.ProjectRepository;
+import io.github.drompincen.javaclawv1.persistence.repository.SessionRepository;
+import io.github.drompincen.javaclawv1.persistence.stream.ChangeStreamService;
+import io.github.drompincen.javaclawv1.runtime.metrics.JavaClawMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Read-through caches for the small documents looked up on every message and event: projects,
+ * sessions and thread headers. See {@link EntityCache} for eviction and coherence rules; each type
+ * can be switched off with {@code javaclaw.cache.<type>.enabled: false}. Agents are served by
+ * {@code AgentRegistry}, which watches that collection itself.
+ */
+@Component
+public class EntityCacheService {
+
+    /** Thread fields that grow with the conversation; never needed to route a message. */
+    static final String[] THREAD_BODY_FIELDS = {"content", "summary", "evidence", "decisions", "actions", "extractedIdeas"};
+
+    private final EntityCache<ProjectDocument> projects;
+    private final EntityCache<SessionDocument> sessions;
+    private final EntityCache<ThreadDocument> threads;
+    private final ChangeStreamService changeStreamService;
+
+    public EntityCacheService(ProjectRepository projectRepository,
+                              SessionRepository sessionRepository,
+                              MongoTemplate mongoTemplate,
+                              Environment env,
+                              JavaClawMetrics metrics,
+                              @Autowired(required = false) ChangeStreamService changeStreamService) {
+        this.projects = new EntityCache<>("project", "projects", projectRepository::findById, 1_000, env, metrics);
+        this.sessions = new EntityCache<>("session", "sessions", sessionRepository::findById, 10_000, env, metrics);
+        this.threads = new EntityCache<>("thread", "threads", id -> {
+            Query query = Query.query(Criteria.where("_id").is(id));
+            query.fields().exclude(THREAD_BODY_FIELDS);
+            return Optional.ofNullable(mongoTemplate.findOne(query, ThreadDocument.class));
+        }, 10_000, env, metrics);
+        this.changeStreamService = changeStreamService;
+    }
+
+    @PostConstruct
+    public void start() {
+        all().forEach(cache -> cache.watch(changeStreamService));
+    }
+
+    @PreDestroy
+    public void stop() {
+        all().forEach(EntityCache::stop);
+    }
+
+    public Optional<ProjectDocument> project(String projectId) {
+        return projects.get(projectId);
+    }
+
+    public Optional<SessionDocument> session(String sessionId) {
+        return sessions.get(sessionId);
+    }
+
+    /** The thread without its body ({@link #THREAD_BODY_FIELDS}); load from the repository to edit it. */
+    public Optional<ThreadDocument> threadHeader(String threadId) {
+        return threads.get(threadId);
+    }
+
+    public void evictSession(String sessionId) {
+        sessions.evict(sessionId);
+    }
+
+    public void evictThread(String threadId) {
+        threads.evict(threadId);
+    }
+
+    private List<EntityCache<?>> all() {
+        return List.of(projects, sessions, threads);
+    }
+}
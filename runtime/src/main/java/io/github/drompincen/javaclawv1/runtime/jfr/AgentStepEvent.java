@@ -0,0 +1,37 @@
+package io.github.drompincen.javaclawv1.runtime.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** One agent step: the LLM call plus response parsing, excluding tool execution. */
+@Name("javaclaw.AgentStep")
+@Label("Agent Step")
+@Category({"JavaClaw", "Agent"})
+@Description("LLM call and response parsing for one agent step")
+@Enabled(false)
+@StackTrace(false)
+public class AgentStepEvent extends jdk.jfr.Event {
+
+    @Label("Session Id")
+    public String sessionId;
+
+    @Label("Agent Id")
+    public String agentId;
+
+    @Label("Step")
+    public int step;
+
+    @Label("Outcome")
+    @Description("tool_calls, done or empty")
+    public String outcome;
+
+    @Label("Tool Calls")
+    public int toolCalls;
+
+    @Label("Response Chars")
+    public int responseChars;
+}
@@ -0,0 +1,32 @@
+package io.github.drompincen.javaclawv1.runtime.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Serializing and saving an agent state checkpoint. */
+@Name("javaclaw.CheckpointSave")
+@Label("Checkpoint Save")
+@Category({"JavaClaw", "Persistence"})
+@Description("Serialization and insert of an agent state checkpoint")
+@Enabled(false)
+@StackTrace(false)
+public class CheckpointSaveEvent extends jdk.jfr.Event {
+
+    @Label("Session Id")
+    public String sessionId;
+
+    @Label("Step")
+    public int step;
+
+    @Label("State Size")
+    @DataAmount
+    public long stateBytes;
+
+    @Label("Success")
+    public boolean success;
+}
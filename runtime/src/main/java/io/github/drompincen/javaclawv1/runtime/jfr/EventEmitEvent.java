@@ -0,0 +1,27 @@
+package io.github.drompincen.javaclawv1.runtime.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Sequencing and persisting one session event to Mongo. */
+@Name("javaclaw.EventEmit")
+@Label("Event Emit")
+@Category({"JavaClaw", "Persistence"})
+@Description("Sequence assignment and insert of a session event")
+@Enabled(false)
+@StackTrace(false)
+public class EventEmitEvent extends jdk.jfr.Event {
+
+    @Label("Session Id")
+    public String sessionId;
+
+    @Label("Event Type")
+    public String eventType;
+
+    @Label("Sequence")
+    public long seq;
+}
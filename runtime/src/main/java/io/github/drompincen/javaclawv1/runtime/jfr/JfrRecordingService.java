@@ -0,0 +1,157 @@
+package io.github.drompincen.javaclawv1.runtime.jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Starts time-boxed JDK Flight Recorder recordings on demand. Recordings use the JDK
+ * {@code default} profile with the shipped {@code jfr/javaclaw.jfc} layered on top, so they
+ * include GC, I/O and lock events alongside the JavaClaw events. Each recording writes to
+ * {@code javaclaw.jfr.dir} when its duration elapses; {@link #dump} can snapshot a running one.
+ * Finished recordings are kept until deleted.
+ */
+@Service
+public class JfrRecordingService {
+
+    private static final Logger log = LoggerFactory.getLogger(JfrRecordingService.class);
+
+    static final String PROFILE_RESOURCE = "/jfr/javaclaw.jfc";
+
+    private final Path directory;
+    private final Duration maxDuration;
+    private final int maxRunning;
+    private final Map<Long, Recording> recordings = new ConcurrentHashMap<>();
+
+    public JfrRecordingService(Environment environment) {
+        this.directory = Path.of(environment.getProperty("javaclaw.jfr.dir",
+                Path.of(System.getProperty("java.io.tmpdir"), "javaclaw-jfr").toString()));
+        this.maxDuration = Duration.ofSeconds(
+                environment.getProperty("javaclaw.jfr.max-duration-seconds", Long.class, 600L));
+        this.maxRunning = environment.getProperty("javaclaw.jfr.max-running", Integer.class, 2);
+    }
+
+    public record RecordingInfo(long id, String name, String state, Instant startTime,
+                                long durationSeconds, String file, long sizeBytes) {}
+
+    /** Start a recording that stops itself after {@code duration} (capped at the configured max). */
+    public synchronized RecordingInfo start(Duration duration) throws IOException, ParseException {
+        if (duration == null || duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException("duration must be positive");
+        }
+        Duration capped = duration.compareTo(maxDuration) > 0 ? maxDuration : duration;
+        long running = recordings.values().stream()
+                .filter(r -> r.getState() == RecordingState.RUNNING).count();
+        if (running >= maxRunning) {
+            throw new IllegalStateException(running + " recordings already running");
+        }
+
+        Files.createDirectories(directory);
+        Recording recording = new Recording(settings());
+        recording.setName("javaclaw-" + Instant.now().toEpochMilli());
+        recording.setToDisk(true);
+        recording.setDuration(capped);
+        recording.setDestination(directory.resolve(recording.getName() + ".jfr"));
+        recording.start();
+        recordings.put(recording.getId(), recording);
+        log.info("Started JFR recording {} for {}s -> {}", recording.getId(), capped.toSeconds(),
+                recording.getDestination());
+        return info(recording);
+    }
+
+    /** JDK default settings overlaid with the JavaClaw profile. */
+    static Map<String, String> settings() throws IOException, ParseException {
+        Map<String, String> settings = new HashMap<>(Configuration.getConfiguration("default").getSettings());
+        settings.putAll(javaclawProfile().getSettings());
+        return settings;
+    }
+
+    static Configuration javaclawProfile() throws IOException, ParseException {
+        InputStream in = JfrRecordingService.class.getResourceAsStream(PROFILE_RESOURCE);
+        if (in == null) throw new IOException("Missing JFR profile " + PROFILE_RESOURCE);
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            return Configuration.create(reader);
+        }
+    }
+
+    public List<RecordingInfo> list() {
+        return recordings.values().stream()
+                .sorted(Comparator.comparingLong(Recording::getId))
+                .map(this::info)
+                .toList();
+    }
+
+    public Optional<RecordingInfo> get(long id) {
+        return Optional.ofNullable(recordings.get(id)).map(this::info);
+    }
+
+    /**
+     * Path to the recording's data: the destination file once it has stopped, or a fresh
+     * snapshot of what has been recorded so far while it is still running.
+     */
+    public Optional<Path> dump(long id) throws IOException {
+        Recording recording = recordings.get(id);
+        if (recording == null) return Optional.empty();
+        if (recording.getState() == RecordingState.RUNNING) {
+            Path snapshot = directory.resolve(recording.getName() + "-snapshot.jfr");
+            recording.dump(snapshot);
+            return Optional.of(snapshot);
+        }
+        Path destination = recording.getDestination();
+        return destination != null && Files.exists(destination) ? Optional.of(destination) : Optional.empty();
+    }
+
+    /** Stop the recording early; its data is written to the destination file. */
+    public Optional<RecordingInfo> stop(long id) {
+        Recording recording = recordings.get(id);
+        if (recording == null) return Optional.empty();
+        if (recording.getState() == RecordingState.RUNNING) recording.stop();
+        return Optional.of(info(recording));
+    }
+
+    /** Close the recording and delete its files. */
+    public boolean delete(long id) throws IOException {
+        Recording recording = recordings.remove(id);
+        if (recording == null) return false;
+        Path destination = recording.getDestination();
+        recording.close();
+        if (destination != null) {
+            Files.deleteIfExists(destination);
+            Files.deleteIfExists(directory.resolve(recording.getName() + "-snapshot.jfr"));
+        }
+        return true;
+    }
+
+    private RecordingInfo info(Recording recording) {
+        Path destination = recording.getDestination();
+        long size = 0;
+        try {
+            if (destination != null && Files.exists(destination)) size = Files.size(destination);
+        } catch (IOException ignored) {}
+        return new RecordingInfo(recording.getId(), recording.getName(), recording.getState().name(),
+                recording.getStartTime(),
+                recording.getDuration() != null ? recording.getDuration().toSeconds() : 0,
+                destination != null ? destination.toString() : null, size);
+    }
+}
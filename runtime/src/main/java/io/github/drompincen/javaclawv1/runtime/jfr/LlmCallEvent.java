@@ -0,0 +1,60 @@
+package io.github.drompincen.javaclawv1.runtime.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * One streaming request to a provider — a single attempt, so retries, failovers and hedges
+ * each produce their own event. Limiter queueing happens before the event begins.
+ */
+@Name("javaclaw.LlmCall")
+@Label("LLM Call")
+@Category({"JavaClaw", "LLM"})
+@Description("A single streaming request to an LLM provider")
+@Enabled(false)
+@StackTrace(false)
+public class LlmCallEvent extends jdk.jfr.Event {
+
+    @Label("Session Id")
+    public String sessionId;
+
+    @Label("Agent Id")
+    public String agentId;
+
+    @Label("Provider")
+    public String provider;
+
+    @Label("Model")
+    public String model;
+
+    @Label("Priority")
+    public String priority;
+
+    @Label("Role")
+    @Description("blocking, primary or hedge")
+    public String role;
+
+    @Label("Success")
+    public boolean success;
+
+    @Label("Error")
+    public String error;
+
+    @Label("Prompt Tokens")
+    public int promptTokens;
+
+    @Label("Completion Tokens")
+    public int completionTokens;
+
+    @Label("Cached Tokens")
+    public int cachedTokens;
+
+    @Label("Time To First Token")
+    @Timespan(Timespan.MILLISECONDS)
+    public long timeToFirstToken;
+}
@@ -0,0 +1,40 @@
+package io.github.drompincen.javaclawv1.runtime.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Execution of a tool, excluding any approval wait. */
+@Name("javaclaw.ToolCall")
+@Label("Tool Call")
+@Category({"JavaClaw", "Tool"})
+@Description("Execution of a tool by an agent")
+@Enabled(false)
+@StackTrace(false)
+public class ToolCallEvent extends jdk.jfr.Event {
+
+    @Label("Session Id")
+    public String sessionId;
+
+    @Label("Agent Id")
+    public String agentId;
+
+    @Label("Tool")
+    public String tool;
+
+    @Label("Outcome")
+    @Description("success, failure or error")
+    public String outcome;
+
+    @Label("Input Size")
+    @DataAmount
+    public long inputBytes;
+
+    @Label("Output Size")
+    @DataAmount
+    public long outputBytes;
+}
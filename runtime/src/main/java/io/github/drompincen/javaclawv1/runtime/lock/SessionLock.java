@@ -0,0 +1,30 @@
+package io.github.drompincen.javaclawv1.runtime.lock;
+
+/**
+ * A session lock held by this node. The fencing token is strictly greater than that of any
+ * earlier holder of the same session's lock; writes made under the lock check it with
+ * {@link SessionLockService#checkFencingToken} so a holder that lost the lock cannot
+ * overwrite the work of the one that took it over.
+ */
+public final class SessionLock {
+
+    private final String sessionId;
+    private final String owner;
+    private final long fencingToken;
+    private volatile boolean lost;
+
+    SessionLock(String sessionId, String owner, long fencingToken) {
+        this.sessionId = sessionId;
+        this.owner = owner;
+        this.fencingToken = fencingToken;
+    }
+
+    public String sessionId() { return sessionId; }
+    public String owner() { return owner; }
+    public long fencingToken() { return fencingToken; }
+
+    /** True once a renewal found the lock taken over by another holder. */
+    public boolean isLost() { return lost; }
+
+    void markLost() { lost = true; }
+}
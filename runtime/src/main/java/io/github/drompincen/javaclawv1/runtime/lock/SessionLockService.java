@@ -1,63 +1,162 @@
 package io.github.drompincen.javaclawv1.runtime.lock;
 
 import io.github.drompincen.javaclawv1.persistence.document.LockDocument;
-import io.github.drompincen.javaclawv1.persistence.repository.LockRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Per-session mutual exclusion across nodes. Acquisition is a single {@code findAndModify}
+ * upsert that only matches a free (expired or released) lock document; when the session's
+ * lock is held the upsert collides with the unique {@code sessionId} index and fails. Every
+ * acquisition increments the document's fencing token. The index is ensured at startup by
+ * {@link #ensureIndexes}, since exclusion does not hold without it.
+ *
+ * Locks held by this node are renewed by {@link #heartbeat} every
+ * {@code javaclaw.locks.heartbeat-ms}, well inside the TTL, for as long as the run holds them.
+ */
 @Service
 public class SessionLockService {
 
-    private static final long TTL_SECONDS = 60;
+    private static final Logger log = LoggerFactory.getLogger(SessionLockService.class);
 
-    private final LockRepository lockRepository;
+    private final MongoTemplate mongoTemplate;
+    private final Duration ttl;
+    private final Map<String, SessionLock> held = new ConcurrentHashMap<>();
 
-    public SessionLockService(LockRepository lockRepository) {
-        this.lockRepository = lockRepository;
+    public SessionLockService(MongoTemplate mongoTemplate, Environment environment) {
+        this.mongoTemplate = mongoTemplate;
+        this.ttl = Duration.ofSeconds(environment.getProperty("javaclaw.locks.ttl-seconds", Long.class, 60L));
     }
 
-    public Optional<String> tryAcquire(String sessionId) {
-        var existing = lockRepository.findBySessionId(sessionId);
-        if (existing.isPresent() && existing.get().getExpiresAt().isAfter(Instant.now())) {
-            return Optional.empty();
+    /**
+     * Creates the unique {@code sessionId} index unless one exists (mongo-init.js creates it too),
+     * and drops any TTL index on {@code expiresAt}: it would delete lock documents, resetting
+     * their fencing tokens.
+     */
+    @PostConstruct
+    public void ensureIndexes() {
+        IndexOperations indexes = mongoTemplate.indexOps(LockDocument.class);
+        boolean unique = false;
+        for (IndexInfo info : indexes.getIndexInfo()) {
+            if (info.isIndexForFields(List.of("expiresAt")) && info.getExpireAfter().isPresent()) {
+                log.info("Dropping TTL index {} on locks.expiresAt", info.getName());
+                indexes.dropIndex(info.getName());
+            } else if (info.isIndexForFields(List.of("sessionId")) && info.isUnique()) {
+                unique = true;
+            }
         }
-        existing.ifPresent(lockRepository::delete);
+        if (!unique) {
+            indexes.ensureIndex(new Index("sessionId", Sort.Direction.ASC).unique());
+        }
+    }
 
+    public Optional<SessionLock> tryAcquire(String sessionId) {
+        Instant now = Instant.now();
         String owner = UUID.randomUUID().toString();
-        LockDocument lock = new LockDocument();
-        lock.setLockId(UUID.randomUUID().toString());
-        lock.setSessionId(sessionId);
-        lock.setOwner(owner);
-        lock.setAcquiredAt(Instant.now());
-        lock.setExpiresAt(Instant.now().plus(TTL_SECONDS, ChronoUnit.SECONDS));
-        lockRepository.save(lock);
-        return Optional.of(owner);
+        Query free = Query.query(Criteria.where("sessionId").is(sessionId).and("expiresAt").lte(now));
+        Update claim = new Update()
+                .inc("fencingToken", 1)
+                .set("owner", owner)
+                .set("acquiredAt", now)
+                .set("renewedAt", now)
+                .set("expiresAt", now.plus(ttl))
+                .setOnInsert("_id", UUID.randomUUID().toString());
+        LockDocument doc;
+        try {
+            doc = mongoTemplate.findAndModify(free, claim,
+                    FindAndModifyOptions.options().upsert(true).returnNew(true), LockDocument.class);
+        } catch (DuplicateKeyException e) {
+            return Optional.empty(); // held by someone else
+        }
+        if (doc == null || !owner.equals(doc.getOwner())) return Optional.empty();
+
+        SessionLock lock = new SessionLock(sessionId, owner, doc.getFencingToken());
+        held.put(sessionId, lock);
+        return Optional.of(lock);
     }
 
-    public boolean renew(String sessionId, String owner) {
-        return lockRepository.findBySessionId(sessionId)
-                .filter(l -> l.getOwner().equals(owner))
-                .map(l -> {
-                    l.setExpiresAt(Instant.now().plus(TTL_SECONDS, ChronoUnit.SECONDS));
-                    lockRepository.save(l);
-                    return true;
-                })
-                .orElse(false);
+    /** Extend the lock's expiry; false (and the lock marked lost) if another holder has taken it. */
+    public boolean renew(SessionLock lock) {
+        Instant now = Instant.now();
+        long matched = mongoTemplate.updateFirst(heldBy(lock),
+                new Update().set("expiresAt", now.plus(ttl)).set("renewedAt", now),
+                LockDocument.class).getMatchedCount();
+        if (matched == 0) {
+            lock.markLost();
+            held.remove(lock.sessionId(), lock);
+            log.warn("Lock for session {} (token {}) was taken over", lock.sessionId(), lock.fencingToken());
+            return false;
+        }
+        return true;
     }
 
-    public void release(String sessionId, String owner) {
-        lockRepository.findBySessionId(sessionId)
-                .filter(l -> l.getOwner().equals(owner))
-                .ifPresent(lockRepository::delete);
+    /** Renew every lock this node holds. */
+    @Scheduled(fixedDelayString = "${javaclaw.locks.heartbeat-ms:20000}")
+    public void heartbeat() {
+        for (SessionLock lock : held.values()) {
+            try {
+                renew(lock);
+            } catch (Exception e) {
+                log.warn("Failed to renew lock for session {}: {}", lock.sessionId(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Guard for writes made under the lock: throws if another holder has acquired the session's
+     * lock since {@code lock} was granted. The check is itself a write matched on the fencing
+     * token, extending the lease, so no other node can acquire the lock for a full TTL after it
+     * passes.
+     */
+    public void checkFencingToken(SessionLock lock) {
+        if (lock.isLost() || !renew(lock)) {
+            lock.markLost();
+            throw new IllegalStateException("Lock for session " + lock.sessionId()
+                    + " superseded; fencing token " + lock.fencingToken() + " is stale");
+        }
+    }
+
+    /** Free the lock immediately; a no-op if it has already been taken over. */
+    public void release(SessionLock lock) {
+        held.remove(lock.sessionId(), lock);
+        mongoTemplate.updateFirst(heldBy(lock), new Update().set("expiresAt", Instant.now()), LockDocument.class);
     }
 
     public boolean isLocked(String sessionId) {
-        return lockRepository.findBySessionId(sessionId)
-                .filter(l -> l.getExpiresAt().isAfter(Instant.now()))
-                .isPresent();
+        return mongoTemplate.exists(
+                Query.query(Criteria.where("sessionId").is(sessionId).and("expiresAt").gt(Instant.now())),
+                LockDocument.class);
+    }
+
+    int heldCount() {
+        return held.size();
+    }
+
+    private static Query heldBy(SessionLock lock) {
+        return Query.query(Criteria.where("sessionId").is(lock.sessionId())
+                .and("owner").is(lock.owner())
+                .and("fencingToken").is(lock.fencingToken()));
     }
 }
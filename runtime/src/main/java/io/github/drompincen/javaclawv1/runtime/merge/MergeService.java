@@ -46,11 +46,12 @@ public class MergeService {
         ThingDocument ticket = thingService.createThing(projectId, ThingCategory.TICKET, ticketPayload);
 
         for (ThingDocument idea : ideas) {
-            thingService.mergePayload(idea, Map.of(
+            thingService.applyPayload(idea, Map.of(
                     "status", IdeaDto.IdeaStatus.PROMOTED.name(),
                     "promotedToTicketId", ticket.getId()
             ));
         }
+        thingService.saveAll(ideas);
 
         log.info("Merged {} ideas into ticket {}", ideaIds.size(), ticket.getId());
         return ticket;
@@ -0,0 +1,193 @@
+package io.github.drompincen.javaclawv1.runtime.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Meter names and tags for the runtime hot paths, kept in one place so dashboards have a
+ * single reference. Tags are deliberately low-cardinality: agent ids, tool names, providers,
+ * event types and fixed outcome strings only — never session, project or execution ids.
+ *
+ * Timers publish a small fixed set of SLO buckets (rather than percentile histograms) so the
+ * Prometheus scrape stays compact while still supporting {@code histogram_quantile}.
+ */
+@Component
+public class JavaClawMetrics {
+
+    public static final String UNKNOWN = "unknown";
+
+    private static final Duration[] LLM_BUCKETS = seconds(0.25, 0.5, 1, 2, 5, 10, 30, 60, 120);
+    private static final Duration[] TOOL_BUCKETS = seconds(0.01, 0.05, 0.1, 0.5, 1, 5, 30, 120);
+    private static final Duration[] FAST_BUCKETS = seconds(0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 1);
+    private static final Duration[] SCHEDULER_BUCKETS = seconds(0.01, 0.1, 1, 5, 15, 60, 300);
+
+    private final MeterRegistry registry;
+    private final AtomicInteger schedulerQueueDepth = new AtomicInteger();
+
+    public JavaClawMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        Gauge.builder("javaclaw.scheduler.queue.depth", schedulerQueueDepth, AtomicInteger::get)
+                .description("Due READY executions seen by the last executor poll")
+                .register(registry);
+    }
+
+    public MeterRegistry registry() {
+        return registry;
+    }
+
+    /** One agent step: LLM call plus parsing; outcome is "tool_calls", "done" or "empty". */
+    public void recordAgentStep(String agentId, String outcome, long nanos) {
+        Timer.builder("javaclaw.agent.step")
+                .tag("agent", tag(agentId))
+                .tag("outcome", outcome)
+                .serviceLevelObjectives(LLM_BUCKETS)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** A finished LLM call as seen by the agent graph (including retries and failover). */
+    public void recordLlmCall(String agentId, String provider, boolean success, long durationMs,
+                              long timeToFirstTokenMs, int promptTokens, int completionTokens, int cachedTokens) {
+        String agent = tag(agentId);
+        String prov = tag(provider);
+        Timer.builder("javaclaw.llm.duration")
+                .tag("agent", agent)
+                .tag("provider", prov)
+                .tag("outcome", success ? "success" : "error")
+                .serviceLevelObjectives(LLM_BUCKETS)
+                .register(registry)
+                .record(durationMs, TimeUnit.MILLISECONDS);
+        if (timeToFirstTokenMs >= 0) {
+            Timer.builder("javaclaw.llm.ttft")
+                    .tag("agent", agent)
+                    .tag("provider", prov)
+                    .serviceLevelObjectives(LLM_BUCKETS)
+                    .register(registry)
+                    .record(timeToFirstTokenMs, TimeUnit.MILLISECONDS);
+        }
+        countTokens(agent, prov, "prompt", promptTokens);
+        countTokens(agent, prov, "completion", completionTokens);
+        countTokens(agent, prov, "cached", cachedTokens);
+    }
+
+    private void countTokens(String agent, String provider, String type, int tokens) {
+        if (tokens <= 0) return;
+        Counter.builder("javaclaw.llm.tokens")
+                .tag("agent", agent)
+                .tag("provider", provider)
+                .tag("type", type)
+                .register(registry)
+                .increment(tokens);
+    }
+
+    /** Outcome is "success", "failure", "denied", "blocked", "not_found" or "error". */
+    public void recordToolExecution(String tool, String outcome, long nanos) {
+        Timer.builder("javaclaw.tool.execution")
+                .tag("tool", tag(tool))
+                .tag("outcome", outcome)
+                .serviceLevelObjectives(TOOL_BUCKETS)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordEventEmit(Object eventType, long nanos) {
+        Timer.builder("javaclaw.event.emit")
+                .tag("type", eventType != null ? eventType.toString() : UNKNOWN)
+                .serviceLevelObjectives(FAST_BUCKETS)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Time from an event being written to it being pushed to a WebSocket subscriber. */
+    public void recordWebSocketSendLag(Duration lag) {
+        Timer.builder("javaclaw.websocket.send.lag")
+                .serviceLevelObjectives(FAST_BUCKETS)
+                .register(registry)
+                .record(lag.isNegative() ? Duration.ZERO : lag);
+    }
+
+    public void recordWebSocketSendFailure() {
+        registry.counter("javaclaw.websocket.send.failures").increment();
+    }
+
+    /**
+     * Claim attempt on a due execution. {@code delay} is how late the claim happened relative
+     * to the execution's scheduledAt; only recorded for successful claims.
+     */
+    public void recordSchedulerClaim(boolean claimed, long nanos, Duration delay) {
+        Timer.builder("javaclaw.scheduler.claim")
+                .tag("outcome", claimed ? "claimed" : "lost")
+                .serviceLevelObjectives(FAST_BUCKETS)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        if (claimed && delay != null) {
+            Timer.builder("javaclaw.scheduler.claim.delay")
+                    .serviceLevelObjectives(SCHEDULER_BUCKETS)
+                    .register(registry)
+                    .record(delay.isNegative() ? Duration.ZERO : delay);
+        }
+    }
+
+    /** A log entry the async log writer did not persist; reason is "sampled", "pressure" or "full". */
+    public void recordLogDropped(Object level, String reason) {
+        Counter.builder("javaclaw.logs.dropped")
+                .tag("level", level != null ? level.toString() : UNKNOWN)
+                .tag("reason", reason)
+                .register(registry)
+                .increment();
+    }
+
+    /** Entity cache lookup; {@code cache} is the entity type ("project", "session", ...). */
+    public void recordCacheLookup(String cache, boolean hit) {
+        Counter.builder("javaclaw.cache.lookups")
+                .tag("cache", cache)
+                .tag("result", hit ? "hit" : "miss")
+                .register(registry)
+                .increment();
+    }
+
+    /** Entity cache removal; cause is "size", "expired" or "invalidated". */
+    public void recordCacheEviction(String cache, String cause) {
+        Counter.builder("javaclaw.cache.evictions")
+                .tag("cache", cache)
+                .tag("cause", cause)
+                .register(registry)
+                .increment();
+    }
+
+    public void cacheSizeGauge(String cache, Supplier<Number> size) {
+        Gauge.builder("javaclaw.cache.size", size)
+                .description("Entries held by the entity cache")
+                .tag("cache", cache)
+                .register(registry);
+    }
+
+    public void setSchedulerQueueDepth(int depth) {
+        schedulerQueueDepth.set(depth);
+    }
+
+    /** Register a gauge sampled from {@code supplier} at scrape time. */
+    public void gauge(String name, String description, Supplier<Number> supplier) {
+        Gauge.builder(name, supplier).description(description).register(registry);
+    }
+
+    private static String tag(String value) {
+        return value == null || value.isBlank() ? UNKNOWN : value;
+    }
+
+    private static Duration[] seconds(double... values) {
+        Duration[] out = new Duration[values.length];
+        for (int i = 0; i < values.length; i++) {
+            out[i] = Duration.ofNanos((long) (values[i] * 1_000_000_000L));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,360 @@
+package io.github.drompincen.javaclawv1.runtime.metrics;
+
+import io.github.drompincen.javaclawv1.persistence.document.LlmInteractionDocument;
+import io.github.drompincen.javaclawv1.persistence.document.LlmUsageBucketDocument;
+import io.github.drompincen.javaclawv1.persistence.document.LlmUsageBucketDocument.Granularity;
+import io.github.drompincen.javaclawv1.persistence.repository.LlmUsageRollup;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.env.Environment;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.GroupOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Maintains minute, hour and day {@link LlmUsageBucketDocument}s per agent, project, provider
+ * and model, and answers usage queries from them. {@link #record} is called by the log writer
+ * with each interaction once it is known to be stored; bucket updates the database rejects are
+ * kept and re-sent with the next call or retry, so an interaction is counted once unless the
+ * outcome of a whole bulk is unknown (e.g. a dropped connection). {@link #rollup} covers an arbitrary range with
+ * the coarsest buckets that fit inside it and minute buckets at the edges, so a 30-day query
+ * reads roughly 30 day buckets plus a few dozen hour and minute buckets per group.
+ *
+ * Minute and hour buckets expire sooner than day buckets; ranges reaching past their retention
+ * are widened to the enclosing hour or day. On startup an empty bucket collection is backfilled
+ * from {@code llm_interactions}.
+ */
+@Service
+public class LlmUsageRollupService implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(LlmUsageRollupService.class);
+
+    private static final int BACKFILL_BATCH = 1000;
+    private static final int MAX_UNAPPLIED = 50_000;
+
+    public enum GroupBy {
+        TOTAL(null), AGENT("agentId"), PROJECT("projectId"), PROVIDER("provider"), MODEL("model");
+
+        private final String field;
+
+        GroupBy(String field) { this.field = field; }
+    }
+
+    record Segment(Granularity granularity, Instant start, Instant end) {}
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean backfill;
+    private final Map<Granularity, Duration> retention = new EnumMap<>(Granularity.class);
+    private final List<Map.Entry<String, Update>> unapplied = new ArrayList<>();
+
+    public LlmUsageRollupService(MongoTemplate mongoTemplate, Environment environment) {
+        this.mongoTemplate = mongoTemplate;
+        this.backfill = environment.getProperty("javaclaw.llm-usage.backfill", Boolean.class, true);
+        long[] defaultDays = {2, 35, 400};
+        for (Granularity g : Granularity.values()) {
+            String key = "javaclaw.llm-usage.retention-days." + g.name().toLowerCase(Locale.ROOT);
+            retention.put(g, Duration.ofDays(environment.getProperty(key, Long.class, defaultDays[g.ordinal()])));
+        }
+    }
+
+    /**
+     * Add the interactions to their minute, hour and day buckets with one unordered bulk upsert,
+     * together with any bucket updates that failed before. Updates that fail now are kept for
+     * the next call and the error is rethrown.
+     */
+    public synchronized void record(List<LlmInteractionDocument> interactions) {
+        Map<String, Delta> deltas = new LinkedHashMap<>();
+        for (LlmInteractionDocument doc : interactions) {
+            if (doc.getTimestamp() == null) continue;
+            for (Granularity g : Granularity.values()) {
+                Instant start = floor(doc.getTimestamp(), g);
+                deltas.computeIfAbsent(bucketId(g, start, doc), id -> new Delta(g, start, doc)).add(doc);
+            }
+        }
+        List<Map.Entry<String, Update>> ops = new ArrayList<>(unapplied);
+        unapplied.clear();
+        deltas.forEach((id, delta) -> ops.add(Map.entry(id, delta.toUpdate(retention))));
+        if (ops.isEmpty()) return;
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, LlmUsageBucketDocument.class);
+        ops.forEach(op -> bulk.upsert(Query.query(Criteria.where("_id").is(op.getKey())), op.getValue()));
+        try {
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            // The other updates were applied; re-sending them would count their interactions twice
+            e.getErrors().forEach(error -> keepUnapplied(ops.get(error.getIndex())));
+            throw e;
+        } catch (RuntimeException e) {
+            ops.forEach(this::keepUnapplied);
+            throw e;
+        }
+    }
+
+    /** Re-send bucket updates that failed, for when no new interactions arrive to carry them. */
+    @Scheduled(fixedDelayString = "${javaclaw.llm-usage.retry-interval-ms:10000}")
+    public void retryUnapplied() {
+        synchronized (this) {
+            if (unapplied.isEmpty()) return;
+        }
+        try {
+            record(List.of());
+        } catch (Exception e) {
+            log.warn("Retrying LLM usage bucket updates failed: {}", e.getMessage());
+        }
+    }
+
+    synchronized int unappliedCount() {
+        return unapplied.size();
+    }
+
+    private void keepUnapplied(Map.Entry<String, Update> op) {
+        if (unapplied.size() < MAX_UNAPPLIED) {
+            unapplied.add(op);
+        } else {
+            log.warn("Dropping LLM usage bucket update for {}: too many pending retries", op.getKey());
+        }
+    }
+
+    /** Usage in {@code [from, to)} per group, busiest first; minute precision. */
+    public List<LlmUsageRollup> rollup(Instant from, Instant to, GroupBy groupBy) {
+        Instant now = Instant.now();
+        List<Segment> segments = plan(from, to,
+                now.minus(retention.get(Granularity.MINUTE)), now.minus(retention.get(Granularity.HOUR)));
+        if (segments.isEmpty()) return List.of();
+
+        Criteria[] ranges = segments.stream()
+                .map(s -> Criteria.where("granularity").is(s.granularity().name())
+                        .and("bucketStart").gte(Date.from(s.start())).lt(Date.from(s.end())))
+                .toArray(Criteria[]::new);
+        GroupOperation group = (groupBy.field == null ? Aggregation.group() : Aggregation.group(groupBy.field))
+                .sum("calls").as("calls")
+                .sum("errors").as("errors")
+                .sum("promptTokens").as("promptTokens")
+                .sum("completionTokens").as("completionTokens")
+                .sum("cachedTokens").as("cachedTokens")
+                .sum("estimatedCalls").as("estimatedCalls")
+                .sum("totalDurationMs").as("totalDurationMs")
+                .sum("timeToFirstTokenSumMs").as("timeToFirstTokenSumMs")
+                .sum("timeToFirstTokenCount").as("timeToFirstTokenCount")
+                .sum("tokensPerSecondSum").as("tokensPerSecondSum")
+                .sum("tokensPerSecondCount").as("tokensPerSecondCount");
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(new Criteria().orOperator(ranges)),
+                group,
+                Aggregation.sort(Sort.Direction.DESC, "calls"));
+        return mongoTemplate.aggregate(aggregation, LlmUsageBucketDocument.class, Document.class)
+                .getMappedResults().stream()
+                .map(LlmUsageRollupService::toRollup)
+                .toList();
+    }
+
+    /**
+     * Splits {@code [from, to)} into bucket ranges: minute buckets up to the first full hour,
+     * hour buckets up to the first full day, day buckets for the whole days, and back down
+     * again at the end. Ends older than a granularity's horizon are widened to the next
+     * coarser bucket, since the finer buckets there have expired.
+     */
+    static List<Segment> plan(Instant from, Instant to, Instant minuteHorizon, Instant hourHorizon) {
+        Instant start = widen(floor(from, Granularity.MINUTE), minuteHorizon, hourHorizon, false);
+        Instant end = widen(ceil(to, Granularity.MINUTE), minuteHorizon, hourHorizon, true);
+        List<Segment> segments = new ArrayList<>();
+        if (!start.isBefore(end)) return segments;
+
+        Instant hourStart = ceil(start, Granularity.HOUR);
+        Instant hourEnd = floor(end, Granularity.HOUR);
+        if (!hourStart.isBefore(hourEnd)) {
+            add(segments, Granularity.MINUTE, start, end);
+            return segments;
+        }
+        add(segments, Granularity.MINUTE, start, hourStart);
+        Instant dayStart = ceil(hourStart, Granularity.DAY);
+        Instant dayEnd = floor(hourEnd, Granularity.DAY);
+        if (!dayStart.isBefore(dayEnd)) {
+            add(segments, Granularity.HOUR, hourStart, hourEnd);
+        } else {
+            add(segments, Granularity.HOUR, hourStart, dayStart);
+            add(segments, Granularity.DAY, dayStart, dayEnd);
+            add(segments, Granularity.HOUR, dayEnd, hourEnd);
+        }
+        add(segments, Granularity.MINUTE, hourEnd, end);
+        return segments;
+    }
+
+    private static Instant widen(Instant t, Instant minuteHorizon, Instant hourHorizon, boolean up) {
+        if (!t.isBefore(minuteHorizon)) return t;
+        Granularity g = t.isBefore(hourHorizon) ? Granularity.DAY : Granularity.HOUR;
+        return up ? ceil(t, g) : floor(t, g);
+    }
+
+    private static void add(List<Segment> segments, Granularity g, Instant start, Instant end) {
+        if (start.isBefore(end)) segments.add(new Segment(g, start, end));
+    }
+
+    /** Rebuild the buckets from {@code llm_interactions} when there are none yet. */
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!backfill) return;
+        try {
+            if (mongoTemplate.exists(new Query(), LlmUsageBucketDocument.class)) return;
+            Query query = Query.query(Criteria.where("timestamp").lt(Date.from(Instant.now())));
+            long count = 0;
+            try (Stream<LlmInteractionDocument> stream = mongoTemplate.stream(query, LlmInteractionDocument.class)) {
+                List<LlmInteractionDocument> batch = new ArrayList<>(BACKFILL_BATCH);
+                for (Iterator<LlmInteractionDocument> it = stream.iterator(); it.hasNext(); ) {
+                    batch.add(it.next());
+                    if (batch.size() == BACKFILL_BATCH || !it.hasNext()) {
+                        record(batch);
+                        count += batch.size();
+                        batch = new ArrayList<>(BACKFILL_BATCH);
+                    }
+                }
+            }
+            if (count > 0) log.info("Backfilled LLM usage buckets from {} interactions", count);
+        } catch (Exception e) {
+            log.warn("LLM usage bucket backfill failed: {}", e.getMessage());
+        }
+    }
+
+    static String bucketId(Granularity g, Instant start, LlmInteractionDocument doc) {
+        return String.join("|", g.name(), Long.toString(start.getEpochSecond()),
+                key(doc.getAgentId()), key(doc.getProjectId()), key(doc.getProvider()), key(doc.getModel()));
+    }
+
+    private static String key(String value) {
+        return value != null ? value : "";
+    }
+
+    static Instant floor(Instant t, Granularity g) {
+        return t.truncatedTo(unit(g));
+    }
+
+    static Instant ceil(Instant t, Granularity g) {
+        Instant floor = floor(t, g);
+        return floor.equals(t) ? t : floor.plus(1, unit(g));
+    }
+
+    private static ChronoUnit unit(Granularity g) {
+        return switch (g) {
+            case MINUTE -> ChronoUnit.MINUTES;
+            case HOUR -> ChronoUnit.HOURS;
+            case DAY -> ChronoUnit.DAYS;
+        };
+    }
+
+    private static LlmUsageRollup toRollup(Document d) {
+        long ttftCount = number(d, "timeToFirstTokenCount").longValue();
+        long tpsCount = number(d, "tokensPerSecondCount").longValue();
+        Object id = d.get("_id");
+        return new LlmUsageRollup(
+                id != null ? id.toString() : null,
+                number(d, "calls").longValue(),
+                number(d, "errors").longValue(),
+                number(d, "promptTokens").longValue(),
+                number(d, "completionTokens").longValue(),
+                number(d, "cachedTokens").longValue(),
+                number(d, "estimatedCalls").longValue(),
+                number(d, "totalDurationMs").longValue(),
+                ttftCount > 0 ? number(d, "timeToFirstTokenSumMs").doubleValue() / ttftCount : null,
+                tpsCount > 0 ? number(d, "tokensPerSecondSum").doubleValue() / tpsCount : null);
+    }
+
+    private static Number number(Document d, String field) {
+        Object value = d.get(field);
+        return value instanceof Number n ? n : 0;
+    }
+
+    /** Increments for one bucket accumulated from a batch. */
+    private static final class Delta {
+        private final Granularity granularity;
+        private final Instant bucketStart;
+        private final String agentId;
+        private final String projectId;
+        private final String provider;
+        private final String model;
+        private long calls;
+        private long errors;
+        private long promptTokens;
+        private long completionTokens;
+        private long cachedTokens;
+        private long estimatedCalls;
+        private long totalDurationMs;
+        private long ttftSumMs;
+        private long ttftCount;
+        private double tpsSum;
+        private long tpsCount;
+
+        Delta(Granularity granularity, Instant bucketStart, LlmInteractionDocument doc) {
+            this.granularity = granularity;
+            this.bucketStart = bucketStart;
+            this.agentId = doc.getAgentId();
+            this.projectId = doc.getProjectId();
+            this.provider = doc.getProvider();
+            this.model = doc.getModel();
+        }
+
+        Delta add(LlmInteractionDocument doc) {
+            calls++;
+            if (!doc.isSuccess()) errors++;
+            promptTokens += doc.getPromptTokens();
+            completionTokens += doc.getCompletionTokens();
+            cachedTokens += doc.getCachedTokens();
+            if (doc.isTokensEstimated()) estimatedCalls++;
+            totalDurationMs += doc.getDurationMs();
+            if (doc.getTimeToFirstTokenMs() >= 0) {
+                ttftSumMs += doc.getTimeToFirstTokenMs();
+                ttftCount++;
+            }
+            if (doc.getTokensPerSecond() > 0) {
+                tpsSum += doc.getTokensPerSecond();
+                tpsCount++;
+            }
+            return this;
+        }
+
+        Update toUpdate(Map<Granularity, Duration> retention) {
+            return new Update()
+                    .inc("calls", calls)
+                    .inc("errors", errors)
+                    .inc("promptTokens", promptTokens)
+                    .inc("completionTokens", completionTokens)
+                    .inc("cachedTokens", cachedTokens)
+                    .inc("estimatedCalls", estimatedCalls)
+                    .inc("totalDurationMs", totalDurationMs)
+                    .inc("timeToFirstTokenSumMs", ttftSumMs)
+                    .inc("timeToFirstTokenCount", ttftCount)
+                    .inc("tokensPerSecondSum", tpsSum)
+                    .inc("tokensPerSecondCount", tpsCount)
+                    .setOnInsert("granularity", granularity.name())
+                    .setOnInsert("bucketStart", bucketStart)
+                    .setOnInsert("agentId", agentId)
+                    .setOnInsert("projectId", projectId)
+                    .setOnInsert("provider", provider)
+                    .setOnInsert("model", model)
+                    .setOnInsert("expiresAt", bucketStart.plus(1, unit(granularity)).plus(retention.get(granularity)));
+        }
+    }
+}
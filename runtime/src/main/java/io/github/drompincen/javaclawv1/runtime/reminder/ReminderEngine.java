@@ -0,0 +1,307 @@
+package io.github.drompincen.javaclawv1.runtime.reminder;
+
+import com.mongodb.client.model.changestream.OperationType;
+import io.github.drompincen.javaclawv1.persistence.document.ThingDocument;
+import io.github.drompincen.javaclawv1.persistence.stream.ChangeStreamService;
+import io.github.drompincen.javaclawv1.protocol.api.ThingCategory;
+import io.github.drompincen.javaclawv1.protocol.event.EventType;
+import io.github.drompincen.javaclawv1.runtime.agent.EventService;
+import io.github.drompincen.javaclawv1.runtime.thing.ThingService;
+import jakarta.annotation.PreDestroy;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.env.Environment;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fires REMINDER things at their {@code payload.triggerAt}. Untriggered reminders due within
+ * the horizon sit in an in-memory priority queue and a driver thread sleeps until the head
+ * comes due, so reminders fire on time instead of on the next scan. The queue is kept in sync
+ * by a change stream on REMINDER things and reloaded from Mongo every {@code resync-ms}
+ * (every {@code fallback-resync-ms} while the change stream is down).
+ *
+ * Every node holds the full queue; each firing is claimed with a compare-and-set on
+ * {@code triggered=false, triggerAt=<due>} so exactly one node emits the event. A recurring
+ * reminder's claim moves {@code triggerAt} to its next occurrence in the same update. A due
+ * reminder stays pending until its claim is settled; a claim that fails is retried after
+ * {@code retry-ms}.
+ */
+@Component
+public class ReminderEngine implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ReminderEngine.class);
+
+    static final String COLLECTION = "things";
+
+    /** {@code dueAt} is the trigger time the claim matches on; {@code fireAt} orders the queue and moves on retry. */
+    private record Pending(ThingDocument reminder, Instant dueAt, Instant fireAt) {}
+
+    private final ThingService thingService;
+    private final EventService eventService;
+    private final ChangeStreamService changeStreamService;
+    private final Duration horizon;
+    private final long resyncMs;
+    private final long fallbackResyncMs;
+    private final long retryMs;
+
+    private final PriorityQueue<Pending> queue = new PriorityQueue<>(Comparator.comparing(Pending::fireAt));
+    private final Map<String, Pending> pending = new HashMap<>();
+
+    private volatile boolean running;
+    private volatile boolean streamActive;
+    private volatile long nextResyncAt = Long.MAX_VALUE; // first set by the resync in run()
+    private volatile Thread driver;
+    private Disposable subscription;
+
+    public ReminderEngine(ThingService thingService,
+                          EventService eventService,
+                          @Autowired(required = false) ChangeStreamService changeStreamService,
+                          Environment environment) {
+        this.thingService = thingService;
+        this.eventService = eventService;
+        this.changeStreamService = changeStreamService;
+        this.horizon = Duration.ofHours(environment.getProperty("javaclaw.reminders.horizon-hours", Long.class, 24L));
+        this.resyncMs = environment.getProperty("javaclaw.reminders.resync-ms", Long.class, 300_000L);
+        this.fallbackResyncMs = environment.getProperty("javaclaw.reminders.fallback-resync-ms", Long.class, 5_000L);
+        this.retryMs = environment.getProperty("javaclaw.reminders.retry-ms", Long.class, 5_000L);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        running = true;
+        try {
+            int migrated = thingService.migrateReminderTriggerTimes();
+            if (migrated > 0) log.info("Converted {} reminder trigger times to dates", migrated);
+        } catch (Exception e) {
+            log.warn("Reminder trigger time migration failed: {}", e.getMessage());
+        }
+        if (changeStreamService != null) {
+            subscription = changeStreamService.watchAllChanges(COLLECTION, ThingDocument.class,
+                            "thingCategory", ThingCategory.REMINDER.name())
+                    .doOnSubscribe(s -> streamActive = true)
+                    .doOnError(e -> streamActive = false)
+                    .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofMinutes(1)))
+                    .subscribe(this::onChange,
+                            e -> log.warn("Reminder change stream stopped: {}", e.getMessage()));
+        }
+        resync();
+        Thread thread = new Thread(this::drive, "reminder-engine");
+        thread.setDaemon(true);
+        driver = thread;
+        thread.start();
+        log.info("Reminder engine started ({} reminders pending)", pendingCount());
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (subscription != null) subscription.dispose();
+        Thread thread = driver;
+        if (thread != null) LockSupport.unpark(thread);
+    }
+
+    private void drive() {
+        while (running) {
+            try {
+                tick();
+            } catch (Exception e) {
+                log.warn("Reminder engine tick failed: {}", e.getMessage());
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(Math.max(1, millisUntilNextWork())));
+        }
+    }
+
+    /** Fire every reminder that has come due, and resync from Mongo when one is owed. */
+    void tick() {
+        for (Pending due : takeDue(Instant.now())) {
+            fire(due);
+        }
+        if (System.currentTimeMillis() >= nextResyncAt) resync();
+    }
+
+    /** Pops the due entries off the heap; they stay pending until {@link #settle} or {@link #retry}. */
+    private List<Pending> takeDue(Instant now) {
+        List<Pending> due = new ArrayList<>();
+        synchronized (queue) {
+            while (!queue.isEmpty() && !queue.peek().fireAt().isAfter(now)) {
+                Pending head = queue.poll();
+                // Superseded entries stay in the heap until they surface; only the current one fires
+                if (pending.get(head.reminder().getId()) == head) due.add(head);
+            }
+        }
+        return due;
+    }
+
+    /** The firing was claimed here or elsewhere; drop it unless a change has replaced it meanwhile. */
+    private void settle(Pending due) {
+        synchronized (queue) {
+            pending.remove(due.reminder().getId(), due);
+        }
+    }
+
+    /** The claim could not be made; fire again after {@code retry-ms} unless a change has replaced it. */
+    private void retry(Pending due) {
+        synchronized (queue) {
+            if (pending.get(due.reminder().getId()) != due) return;
+            Pending again = new Pending(due.reminder(), due.dueAt(), Instant.now().plusMillis(retryMs));
+            pending.put(due.reminder().getId(), again);
+            queue.add(again);
+        }
+    }
+
+    private long millisUntilNextWork() {
+        long until = nextResyncAt;
+        synchronized (queue) {
+            Pending head = queue.peek();
+            if (head != null) until = Math.min(until, head.fireAt().toEpochMilli());
+        }
+        return until - System.currentTimeMillis();
+    }
+
+    private void fire(Pending due) {
+        ThingDocument reminder = due.reminder();
+        Map<String, Object> p = reminder.getPayload();
+        Instant next = nextOccurrence(reminder, due.dueAt(), Instant.now());
+        Map<String, Object> updates = next != null
+                ? Map.of("triggerAt", next, "triggered", false)
+                : Map.of("triggered", true);
+        boolean claimed;
+        try {
+            claimed = thingService.claimReminder(reminder.getId(), due.dueAt(), updates);
+        } catch (Exception e) {
+            log.warn("Failed to claim reminder {}, retrying in {} ms: {}", reminder.getId(), retryMs, e.getMessage());
+            retry(due);
+            return;
+        }
+        settle(due);
+        if (!claimed) {
+            log.debug("Reminder {} already fired or changed", reminder.getId());
+            return;
+        }
+        try {
+            String message = (String) p.get("message");
+            String type = p.get("type") != null ? p.get("type").toString() : "TIME_BASED";
+            eventService.emit(reminder.getProjectId(), EventType.REMINDER_TRIGGERED,
+                    Map.of("reminderId", reminder.getId(),
+                            "message", message != null ? message : "",
+                            "type", type));
+            log.info("Triggered reminder {} for project {}", reminder.getId(), reminder.getProjectId());
+            if (next != null && next.isBefore(Instant.now().plus(horizon))) track(reminder, next);
+        } catch (Exception e) {
+            log.error("Failed to trigger reminder {}", reminder.getId(), e);
+        }
+    }
+
+    /** Next firing of a recurring reminder after {@code now}, keeping its cadence; null for one-shots. */
+    static Instant nextOccurrence(ThingDocument reminder, Instant dueAt, Instant now) {
+        Map<String, Object> p = reminder.getPayload();
+        if (!Boolean.TRUE.equals(p.get("recurring")) || !(p.get("intervalSeconds") instanceof Number n)) return null;
+        long interval = n.longValue();
+        if (interval <= 0) return null;
+        long missed = Math.max(0, Duration.between(dueAt, now).getSeconds() / interval);
+        return dueAt.plusSeconds((missed + 1) * interval);
+    }
+
+    /** Reload the queue with every untriggered reminder due within the horizon. */
+    void resync() {
+        try {
+            List<ThingDocument> upcoming = thingService.findPendingReminders(Instant.now().plus(horizon));
+            synchronized (queue) {
+                queue.clear();
+                pending.clear();
+                for (ThingDocument reminder : upcoming) {
+                    Instant dueAt = reminder.payloadInstant("triggerAt");
+                    if (dueAt != null) enqueue(reminder, dueAt);
+                }
+            }
+            log.debug("Reminder engine resynced {} reminders", upcoming.size());
+        } catch (Exception e) {
+            log.warn("Reminder engine resync failed: {}", e.getMessage());
+        } finally {
+            nextResyncAt = System.currentTimeMillis() + (streamActive ? resyncMs : fallbackResyncMs);
+        }
+    }
+
+    void onChange(ChangeStreamEvent<ThingDocument> event) {
+        if (event.getOperationType() == OperationType.DELETE) {
+            BsonDocument key = event.getRaw() != null ? event.getRaw().getDocumentKey() : null;
+            BsonValue id = key != null ? key.get("_id") : null;
+            if (id != null && id.isString()) onDelete(id.asString().getValue());
+            return;
+        }
+        ThingDocument thing = event.getBody();
+        if (thing != null) onDocument(thing);
+    }
+
+    /** Track the reminder's latest state: queued while untriggered and due within the horizon. */
+    void onDocument(ThingDocument thing) {
+        if (thing.getId() == null || thing.getThingCategory() != ThingCategory.REMINDER) return;
+        Instant dueAt = thing.payloadInstant("triggerAt");
+        boolean queued = dueAt != null && !Boolean.TRUE.equals(thing.getPayload().get("triggered"))
+                && dueAt.isBefore(Instant.now().plus(horizon));
+        if (!queued) {
+            onDelete(thing.getId());
+            return;
+        }
+        track(thing, dueAt);
+    }
+
+    void onDelete(String reminderId) {
+        synchronized (queue) {
+            pending.remove(reminderId);
+        }
+    }
+
+    private void track(ThingDocument reminder, Instant dueAt) {
+        boolean newHead;
+        synchronized (queue) {
+            newHead = enqueue(reminder, dueAt);
+        }
+        Thread thread = driver;
+        if (newHead && thread != null) LockSupport.unpark(thread);
+    }
+
+    /** Caller holds the queue lock. Returns true if the reminder is now first in line. */
+    private boolean enqueue(ThingDocument reminder, Instant dueAt) {
+        Pending entry = new Pending(reminder, dueAt, dueAt);
+        pending.put(reminder.getId(), entry);
+        queue.add(entry);
+        // Rebuild once superseded entries make up most of the heap
+        if (queue.size() > 2 * pending.size() + 64) {
+            queue.clear();
+            queue.addAll(pending.values());
+        }
+        return queue.peek() == entry;
+    }
+
+    int pendingCount() {
+        synchronized (queue) {
+            return pending.size();
+        }
+    }
+
+    boolean isPending(String reminderId) {
+        synchronized (queue) {
+            return pending.containsKey(reminderId);
+        }
+    }
+}
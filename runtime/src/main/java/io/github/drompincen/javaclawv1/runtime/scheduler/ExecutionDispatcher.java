@@ -0,0 +1,210 @@
+package io.github.drompincen.javaclawv1.runtime.scheduler;
+
+import com.mongodb.client.model.changestream.OperationType;
+import io.github.drompincen.javaclawv1.persistence.document.FutureExecutionDocument;
+import io.github.drompincen.javaclawv1.persistence.repository.FutureExecutionRepository;
+import io.github.drompincen.javaclawv1.persistence.stream.ChangeStreamService;
+import io.github.drompincen.javaclawv1.protocol.api.ExecStatus;
+import io.github.drompincen.javaclawv1.runtime.metrics.JavaClawMetrics;
+import jakarta.annotation.PreDestroy;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.env.Environment;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Event-driven dispatch of future executions. READY executions due within the horizon are
+ * held on an in-memory {@link TimingWheel} and handed to {@link ExecutionEngineService#dispatch}
+ * on the tick they come due; the wheel is kept in sync by a change stream on
+ * {@code future_executions}, so an immediate execution is dispatched as soon as it is inserted.
+ * Only updates that touch {@code execStatus} or {@code scheduledAt} reach the dispatcher, so
+ * lease renewals never cost a lookup or a wheel update.
+ *
+ * A full resync from Mongo runs every {@code javaclaw.scheduler.wheel.resync-ms} to pull in
+ * executions that entered the horizon, and every {@code fallback-resync-ms} while the change
+ * stream is down (e.g. standalone Mongo). The engine's own poll remains as the last safety net.
+ */
+@Service
+public class ExecutionDispatcher implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ExecutionDispatcher.class);
+
+    static final String COLLECTION = "future_executions";
+
+    private final FutureExecutionRepository futureExecutionRepository;
+    private final ExecutionEngineService executionEngine;
+    private final ChangeStreamService changeStreamService;
+    private final SchedulerMembershipService membership;
+    private final boolean enabled;
+    private final Duration horizon;
+    private final long resyncMs;
+    private final long fallbackResyncMs;
+    private final TimingWheel<FutureExecutionDocument> wheel;
+
+    private volatile boolean running;
+    private volatile boolean streamActive;
+    private volatile long nextResyncAt = Long.MAX_VALUE; // first set by the resync in run()
+    private volatile long syncedGeneration;
+    private volatile Thread driver;
+    private Disposable subscription;
+
+    public ExecutionDispatcher(FutureExecutionRepository futureExecutionRepository,
+                               ExecutionEngineService executionEngine,
+                               @Autowired(required = false) ChangeStreamService changeStreamService,
+                               SchedulerMembershipService membership,
+                               JavaClawMetrics metrics,
+                               Environment environment) {
+        this.futureExecutionRepository = futureExecutionRepository;
+        this.executionEngine = executionEngine;
+        this.changeStreamService = changeStreamService;
+        this.membership = membership;
+        this.syncedGeneration = membership.generation();
+        this.enabled = environment.getProperty("javaclaw.scheduler.enabled", Boolean.class, true);
+        this.horizon = Duration.ofHours(environment.getProperty("javaclaw.scheduler.wheel.horizon-hours", Long.class, 26L));
+        this.resyncMs = environment.getProperty("javaclaw.scheduler.wheel.resync-ms", Long.class, 300_000L);
+        this.fallbackResyncMs = environment.getProperty("javaclaw.scheduler.wheel.fallback-resync-ms", Long.class, 5_000L);
+        long tickMs = environment.getProperty("javaclaw.scheduler.wheel.tick-ms", Long.class, 100L);
+        // 64 slots per level, 4 levels: ~19 days at 100 ms ticks before timers overflow
+        this.wheel = new TimingWheel<>(tickMs, 6, 4, System.currentTimeMillis());
+        metrics.gauge("javaclaw.scheduler.wheel.size", "Future executions held on the dispatch timing wheel",
+                this::wheelSize);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) return;
+        running = true;
+        if (changeStreamService != null) {
+            subscription = changeStreamService.watchChangesTo(COLLECTION, FutureExecutionDocument.class,
+                            "execStatus", "scheduledAt")
+                    .doOnSubscribe(s -> streamActive = true)
+                    .doOnError(e -> streamActive = false)
+                    .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofMinutes(1)))
+                    .subscribe(this::onChange,
+                            e -> log.warn("Execution dispatcher change stream stopped: {}", e.getMessage()));
+        }
+        resync();
+        Thread thread = new Thread(this::drive, "execution-dispatcher");
+        thread.setDaemon(true);
+        driver = thread;
+        thread.start();
+        log.info("Execution dispatcher started ({} executions on the wheel)", wheelSize());
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (subscription != null) subscription.dispose();
+        Thread thread = driver;
+        if (thread != null) LockSupport.unpark(thread);
+    }
+
+    private void drive() {
+        while (running) {
+            try {
+                tick();
+            } catch (Exception e) {
+                log.warn("Execution dispatcher tick failed: {}", e.getMessage());
+            }
+            LockSupport.parkNanos(wheel.tickMs() * 1_000_000L);
+        }
+    }
+
+    /** Dispatch everything that has come due, and resync from Mongo when one is owed. */
+    void tick() {
+        List<FutureExecutionDocument> due;
+        synchronized (wheel) {
+            due = wheel.advance(System.currentTimeMillis());
+        }
+        for (FutureExecutionDocument exec : due) {
+            try {
+                executionEngine.dispatch(exec);
+            } catch (Exception e) {
+                log.warn("Dispatch of execution {} failed: {}", exec.getExecutionId(), e.getMessage());
+            }
+        }
+        if (System.currentTimeMillis() >= nextResyncAt || membership.generation() != syncedGeneration) resync();
+    }
+
+    /** Reload the wheel with every READY execution in this node's partitions due within the horizon. */
+    void resync() {
+        long generation = membership.generation();
+        try {
+            List<FutureExecutionDocument> upcoming =
+                    futureExecutionRepository.findByExecStatusAndPartitionInAndScheduledAtLessThanEqualOrderByPriorityDescScheduledAtAsc(
+                            ExecStatus.READY, membership.ownedPartitions(), Instant.now().plus(horizon));
+            synchronized (wheel) {
+                wheel.clear();
+                for (FutureExecutionDocument exec : upcoming) {
+                    wheel.schedule(exec.getExecutionId(), exec.getScheduledAt().toEpochMilli(), exec);
+                }
+            }
+            syncedGeneration = generation;
+            log.debug("Execution dispatcher resynced {} executions", upcoming.size());
+        } catch (Exception e) {
+            log.warn("Execution dispatcher resync failed: {}", e.getMessage());
+        } finally {
+            nextResyncAt = System.currentTimeMillis() + (streamActive ? resyncMs : fallbackResyncMs);
+        }
+    }
+
+    void onChange(ChangeStreamEvent<FutureExecutionDocument> event) {
+        if (event.getOperationType() == OperationType.DELETE) {
+            BsonDocument key = event.getRaw() != null ? event.getRaw().getDocumentKey() : null;
+            BsonValue id = key != null ? key.get("_id") : null;
+            if (id != null && id.isString()) onDelete(id.asString().getValue());
+            return;
+        }
+        FutureExecutionDocument exec = event.getBody();
+        if (exec != null) onDocument(exec);
+    }
+
+    /** Track the execution's latest state: on the wheel while READY within the horizon, off it otherwise. */
+    void onDocument(FutureExecutionDocument exec) {
+        if (exec.getExecutionId() == null) return;
+        boolean onWheel = exec.getExecStatus() == ExecStatus.READY && exec.getScheduledAt() != null
+                && membership.ownsPartition(exec.getPartition())
+                && exec.getScheduledAt().isBefore(Instant.now().plus(horizon));
+        boolean dueNow;
+        synchronized (wheel) {
+            if (!onWheel) {
+                wheel.cancel(exec.getExecutionId());
+                return;
+            }
+            dueNow = wheel.schedule(exec.getExecutionId(), exec.getScheduledAt().toEpochMilli(), exec);
+        }
+        Thread thread = driver;
+        if (dueNow && thread != null) LockSupport.unpark(thread);
+    }
+
+    void onDelete(String executionId) {
+        synchronized (wheel) {
+            wheel.cancel(executionId);
+        }
+    }
+
+    int wheelSize() {
+        synchronized (wheel) {
+            return wheel.size();
+        }
+    }
+
+    boolean isScheduled(String executionId) {
+        synchronized (wheel) {
+            return wheel.contains(executionId);
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package io.github.drompincen.javaclawv1.runtime.scheduler;
 
+import com.mongodb.client.result.UpdateResult;
 import io.github.drompincen.javaclawv1.persistence.document.FutureExecutionDocument;
 import io.github.drompincen.javaclawv1.persistence.document.MessageDocument;
 import io.github.drompincen.javaclawv1.persistence.document.PastExecutionDocument;
 import io.github.drompincen.javaclawv1.persistence.document.SessionDocument;
+import io.github.drompincen.javaclawv1.persistence.repository.AgentExecutionCount;
 import io.github.drompincen.javaclawv1.persistence.repository.FutureExecutionRepository;
 import io.github.drompincen.javaclawv1.persistence.repository.MessageRepository;
 import io.github.drompincen.javaclawv1.persistence.repository.PastExecutionRepository;
@@ -12,11 +14,22 @@ import io.github.drompincen.javaclawv1.protocol.api.ExecStatus;
 import io.github.drompincen.javaclawv1.protocol.api.ResultStatus;
 import io.github.drompincen.javaclawv1.protocol.api.SessionStatus;
 import io.github.drompincen.javaclawv1.runtime.agent.AgentLoop;
+import io.github.drompincen.javaclawv1.runtime.metrics.JavaClawMetrics;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.CompoundIndexDefinition;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
 
@@ -24,7 +37,6 @@ import java.util.*;
 public class ExecutionEngineService {
 
     private static final Logger log = LoggerFactory.getLogger(ExecutionEngineService.class);
-    private static final long LEASE_DURATION_MS = 90_000;
     private static final long STALE_LEASE_GRACE_MS = 30_000;
 
     private final FutureExecutionRepository futureExecutionRepository;
@@ -33,81 +45,178 @@ public class ExecutionEngineService {
     private final MessageRepository messageRepository;
     private final AgentLoop agentLoop;
     private final LeaseHeartbeatService leaseHeartbeatService;
-    private final String instanceId = UUID.randomUUID().toString().substring(0, 8);
+    private final JavaClawMetrics metrics;
+    private final MongoTemplate mongoTemplate;
+    private final SchedulerMembershipService membership;
+    private final String instanceId;
 
     public ExecutionEngineService(FutureExecutionRepository futureExecutionRepository,
                                   PastExecutionRepository pastExecutionRepository,
                                   SessionRepository sessionRepository,
                                   MessageRepository messageRepository,
                                   AgentLoop agentLoop,
-                                  LeaseHeartbeatService leaseHeartbeatService) {
+                                  LeaseHeartbeatService leaseHeartbeatService,
+                                  JavaClawMetrics metrics,
+                                  MongoTemplate mongoTemplate,
+                                  SchedulerMembershipService membership) {
         this.futureExecutionRepository = futureExecutionRepository;
         this.pastExecutionRepository = pastExecutionRepository;
         this.sessionRepository = sessionRepository;
         this.messageRepository = messageRepository;
         this.agentLoop = agentLoop;
         this.leaseHeartbeatService = leaseHeartbeatService;
+        this.metrics = metrics;
+        this.mongoTemplate = mongoTemplate;
+        this.membership = membership;
+        this.instanceId = membership.nodeId();
     }
 
-    @Scheduled(fixedDelayString = "${javaclaw.scheduler.executor-poll-interval-ms:5000}")
+    /**
+     * The per-agent concurrency limit is enforced by the unique {@code (agentId, slot)} index,
+     * so it is created here rather than left to index auto-creation (mongo-init.js creates it
+     * too). Only claimed and running executions carry a slot.
+     */
+    @PostConstruct
+    public void ensureIndexes() {
+        mongoTemplate.indexOps(FutureExecutionDocument.class).ensureIndex(
+                new CompoundIndexDefinition(new org.bson.Document("agentId", 1).append("slot", 1))
+                        .named("agent_slot_idx")
+                        .unique()
+                        .partial(PartialIndexFilter.of(Criteria.where("slot").exists(true))));
+    }
+
+    /**
+     * Reconciliation sweep over this node's partitions: recovers stale leases and claims
+     * anything due that the {@link ExecutionDispatcher} missed. Normal dispatch is
+     * event-driven, so this runs rarely.
+     */
+    @Scheduled(fixedDelayString = "${javaclaw.scheduler.executor-poll-interval-ms:60000}")
     public void pollAndExecute() {
         // Recover stale leases first
         recoverStaleLeases();
 
-        // Find READY items that are due
+        // Find READY items that are due in the partitions this node owns
         List<FutureExecutionDocument> readyItems =
-                futureExecutionRepository.findByExecStatusAndScheduledAtLessThanEqualOrderByPriorityDescScheduledAtAsc(
-                        ExecStatus.READY, Instant.now());
+                futureExecutionRepository.findByExecStatusAndPartitionInAndScheduledAtLessThanEqualOrderByPriorityDescScheduledAtAsc(
+                        ExecStatus.READY, membership.ownedPartitions(), Instant.now());
+        metrics.setSchedulerQueueDepth(readyItems.size());
+
+        if (readyItems.isEmpty()) return;
+
+        // Active (claimed or running) executions per agent, counted once per poll and bumped
+        // locally as this poll claims more. Only skips agents already at their limit; the
+        // claim's slot is what enforces it
+        Map<String, Long> active = new HashMap<>();
+        for (AgentExecutionCount count : futureExecutionRepository.countActiveByAgent()) {
+            active.put(count.id(), count.count());
+        }
 
         for (FutureExecutionDocument item : readyItems) {
-            // Check per-agent concurrency
-            long runningCount = futureExecutionRepository.findByAgentIdAndExecStatus(
-                    item.getAgentId(), ExecStatus.RUNNING).size();
-            int maxConcurrent = 1; // Default, could read from schedule
-            if (runningCount >= maxConcurrent) continue;
-
-            // Try to claim
-            if (claimExecution(item)) {
-                executeAsync(item);
+            int maxConcurrent = Math.max(1, item.getMaxConcurrent());
+            if (active.getOrDefault(item.getAgentId(), 0L) >= maxConcurrent) continue;
+            if (claimAndRun(item)) {
+                active.merge(item.getAgentId(), 1L, Long::sum);
+            }
+        }
+    }
+
+    /**
+     * Claim and start one due execution if its agent has a free slot. Returns false when the
+     * agent is at its limit or another instance claimed it first; a capacity-blocked item stays
+     * READY and is picked up when one of the agent's executions finishes.
+     */
+    public boolean dispatch(FutureExecutionDocument item) {
+        return claimAndRun(item);
+    }
+
+    /** Fill the agent's free slots from its due READY executions, highest priority first. */
+    void dispatchWaiting(String agentId) {
+        List<FutureExecutionDocument> waiting = futureExecutionRepository
+                .findByAgentIdAndExecStatusAndScheduledAtLessThanEqualOrderByPriorityDescScheduledAtAsc(
+                        agentId, ExecStatus.READY, Instant.now());
+        for (FutureExecutionDocument item : waiting) {
+            if (!membership.ownsPartition(item.getPartition())) continue;
+            if (takenSlots(agentId).size() >= Math.max(1, item.getMaxConcurrent())) return;
+            claimAndRun(item);
+        }
+    }
+
+    private boolean claimAndRun(FutureExecutionDocument item) {
+        long claimStart = System.nanoTime();
+        FutureExecutionDocument claimed = claimExecution(item);
+        metrics.recordSchedulerClaim(claimed != null, System.nanoTime() - claimStart,
+                item.getScheduledAt() != null ? Duration.between(item.getScheduledAt(), Instant.now()) : null);
+        if (claimed == null) return false;
+        executeAsync(claimed);
+        return true;
+    }
+
+    /**
+     * Atomically move the item from READY to PENDING under this instance's lease, taking one of
+     * its agent's {@code maxConcurrent} slots in the same update. The unique
+     * {@code (agentId, slot)} index rejects a slot another claim already holds, so concurrent
+     * dispatchers on any node cannot exceed the limit. Returns the claimed document, or null when
+     * no slot is free or another instance (or a cancel) got there first.
+     */
+    private FutureExecutionDocument claimExecution(FutureExecutionDocument item) {
+        Set<Integer> taken = takenSlots(item.getAgentId());
+        for (int slot = 0; slot < Math.max(1, item.getMaxConcurrent()); slot++) {
+            if (taken.contains(slot)) continue;
+            Instant now = Instant.now();
+            Query query = Query.query(Criteria.where("_id").is(item.getExecutionId())
+                    .and("execStatus").is(ExecStatus.READY)
+                    .and("scheduledAt").lte(now));
+            Update update = new Update()
+                    .set("execStatus", ExecStatus.PENDING)
+                    .set("slot", slot)
+                    .set("lockOwner", instanceId)
+                    .set("claimToken", UUID.randomUUID().toString())
+                    .set("lockedAt", now)
+                    .set("leaseUntil", now.plusMillis(leaseHeartbeatService.leaseDurationMs()))
+                    .set("lastUpdatedAt", now);
+            try {
+                FutureExecutionDocument exec = mongoTemplate.findAndModify(query, update,
+                        FindAndModifyOptions.options().returnNew(true), FutureExecutionDocument.class);
+                if (exec != null) {
+                    log.info("Claimed execution {} for agent {} (slot {})", exec.getExecutionId(), exec.getAgentId(), slot);
+                }
+                return exec;
+            } catch (DuplicateKeyException e) {
+                // A concurrent claim took this slot; try the next one
+            } catch (Exception e) {
+                log.debug("Failed to claim execution {}: {}", item.getExecutionId(), e.getMessage());
+                return null;
             }
         }
+        return null;
     }
 
-    private boolean claimExecution(FutureExecutionDocument item) {
-        // Optimistic claim: read, check status, update
-        Optional<FutureExecutionDocument> fresh = futureExecutionRepository.findById(item.getExecutionId());
-        if (fresh.isEmpty() || fresh.get().getExecStatus() != ExecStatus.READY) return false;
-
-        FutureExecutionDocument exec = fresh.get();
-        exec.setExecStatus(ExecStatus.PENDING);
-        exec.setLockOwner(instanceId);
-        exec.setLockedAt(Instant.now());
-        exec.setLeaseUntil(Instant.now().plusMillis(LEASE_DURATION_MS));
-        exec.setLastUpdatedAt(Instant.now());
-
-        try {
-            futureExecutionRepository.save(exec);
-            log.info("Claimed execution {} for agent {}", exec.getExecutionId(), exec.getAgentId());
-            return true;
-        } catch (Exception e) {
-            log.debug("Failed to claim execution {}: {}", exec.getExecutionId(), e.getMessage());
-            return false;
+    /** Slots held by the agent's claimed and running executions, on any node. */
+    private Set<Integer> takenSlots(String agentId) {
+        Query query = Query.query(Criteria.where("agentId").is(agentId).and("slot").exists(true));
+        query.fields().include("slot");
+        Set<Integer> taken = new HashSet<>();
+        for (FutureExecutionDocument exec : mongoTemplate.find(query, FutureExecutionDocument.class)) {
+            taken.add(exec.getSlot());
         }
+        return taken;
     }
 
     private void executeAsync(FutureExecutionDocument exec) {
         Thread.ofVirtual().name("agent-exec-" + exec.getAgentId()).start(() -> {
             Instant startedAt = Instant.now();
             String sessionId = null;
+            ExecutionLease lease = null;
 
             try {
-                // Mark RUNNING
-                exec.setExecStatus(ExecStatus.RUNNING);
-                exec.setLastUpdatedAt(Instant.now());
-                futureExecutionRepository.save(exec);
+                // Mark RUNNING, unless the claim was recovered by another node in the meantime
+                if (!markRunning(exec)) {
+                    log.warn("Execution {} was re-claimed since {} claimed it; not starting it", exec.getExecutionId(), instanceId);
+                    return;
+                }
 
                 // Start heartbeat
-                leaseHeartbeatService.startHeartbeat(exec.getExecutionId());
+                lease = leaseHeartbeatService.startHeartbeat(exec.getExecutionId(), instanceId, exec.getClaimToken());
 
                 // Create session for this execution
                 SessionDocument session = new SessionDocument();
@@ -116,6 +225,7 @@ public class ExecutionEngineService {
                 session.setProjectId(exec.getProjectId());
                 session.setStatus(SessionStatus.IDLE);
                 session.setCreatedAt(Instant.now());
+                session.setUpdatedAt(session.getCreatedAt());
 
                 Map<String, String> metadata = new HashMap<>();
                 metadata.put("type", "scheduled_execution");
@@ -132,7 +242,7 @@ public class ExecutionEngineService {
                 agentLoop.startAsync(sessionId);
 
                 // Wait for completion by polling session status
-                SessionStatus finalStatus = waitForCompletion(sessionId, 300_000); // 5 min timeout
+                SessionStatus finalStatus = waitForCompletion(sessionId, 300_000, lease); // 5 min timeout
 
                 // Stop heartbeat
                 leaseHeartbeatService.stopHeartbeat(exec.getExecutionId());
@@ -153,10 +263,16 @@ public class ExecutionEngineService {
                 past.setAttempt(exec.getAttempt() + 1);
                 past.setCreatedAt(Instant.now());
 
-                if (finalStatus == SessionStatus.COMPLETED) {
+                if (lease.isLost()) {
+                    // Another node recovered the execution; it owns the retry bookkeeping now
+                    past.setResultStatus(ResultStatus.FAIL);
+                    past.setErrorCode("LEASE_LOST");
+                    past.setErrorMessage("Execution lease was taken over; run aborted");
+                } else if (finalStatus == SessionStatus.COMPLETED) {
                     past.setResultStatus(ResultStatus.SUCCESS);
-                    // Delete the future execution
-                    futureExecutionRepository.deleteById(exec.getExecutionId());
+                    // Delete the future execution, unless a newer claim owns it by now
+                    mongoTemplate.remove(Query.query(Criteria.where("_id").is(exec.getExecutionId())
+                            .and("claimToken").is(exec.getClaimToken())), FutureExecutionDocument.class);
                 } else {
                     past.setResultStatus(ResultStatus.FAIL);
                     past.setErrorMessage("Session ended with status: " + finalStatus);
@@ -189,14 +305,42 @@ public class ExecutionEngineService {
                 past.setCreatedAt(Instant.now());
                 pastExecutionRepository.save(past);
 
-                handleFailure(exec);
+                if (lease == null || !lease.isLost()) handleFailure(exec);
+            } finally {
+                try {
+                    dispatchWaiting(exec.getAgentId());
+                } catch (Exception e) {
+                    log.warn("Dispatching waiting executions for agent {} failed: {}",
+                            exec.getAgentId(), e.getMessage());
+                }
             }
         });
     }
 
-    private SessionStatus waitForCompletion(String sessionId, long timeoutMs) {
+    /**
+     * Mark the claimed execution RUNNING, fenced on the claim's token: a claim that was
+     * recovered and re-claimed since, even by this node, no longer matches.
+     */
+    private boolean markRunning(FutureExecutionDocument exec) {
+        Instant now = Instant.now();
+        UpdateResult result = mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(exec.getExecutionId()).and("claimToken").is(exec.getClaimToken())),
+                new Update().set("execStatus", ExecStatus.RUNNING).set("lastUpdatedAt", now),
+                FutureExecutionDocument.class);
+        if (result.getMatchedCount() == 0) return false;
+        exec.setExecStatus(ExecStatus.RUNNING);
+        exec.setLastUpdatedAt(now);
+        return true;
+    }
+
+    private SessionStatus waitForCompletion(String sessionId, long timeoutMs, ExecutionLease lease) {
         long deadline = System.currentTimeMillis() + timeoutMs;
         while (System.currentTimeMillis() < deadline) {
+            if (lease.isLost()) {
+                log.warn("Lease on execution {} lost; stopping session {}", lease.executionId(), sessionId);
+                agentLoop.stop(sessionId);
+                return SessionStatus.FAILED;
+            }
             Optional<SessionDocument> session = sessionRepository.findById(sessionId);
             if (session.isPresent()) {
                 SessionStatus status = session.get().getStatus();
@@ -214,24 +358,38 @@ public class ExecutionEngineService {
         return SessionStatus.FAILED; // Timeout
     }
 
+    /**
+     * Queue a failed run for retry, or cancel it once attempts are exhausted, fenced on its claim
+     * token: if the execution was recovered (and perhaps re-claimed) since, the newer claim owns
+     * it and nothing is written.
+     */
     private void handleFailure(FutureExecutionDocument exec) {
-        if (exec.getAttempt() + 1 < exec.getMaxAttempts()) {
-            exec.setExecStatus(ExecStatus.FAILED_RETRYABLE);
-            exec.setAttempt(exec.getAttempt() + 1);
-            exec.setScheduledAt(Instant.now().plusMillis(exec.getRetryBackoffMs()));
-            exec.setLockOwner(null);
-            exec.setLeaseUntil(null);
-            exec.setLastUpdatedAt(Instant.now());
-            futureExecutionRepository.save(exec);
-            log.info("Execution {} queued for retry (attempt {})", exec.getExecutionId(), exec.getAttempt());
+        Instant now = Instant.now();
+        boolean retry = exec.getAttempt() + 1 < exec.getMaxAttempts();
+        Update update = release(retry ? ExecStatus.FAILED_RETRYABLE : ExecStatus.CANCELLED, now);
+        if (retry) {
+            update.set("attempt", exec.getAttempt() + 1)
+                    .set("scheduledAt", now.plusMillis(exec.getRetryBackoffMs()));
+        }
+        UpdateResult result = mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(exec.getExecutionId()).and("claimToken").is(exec.getClaimToken())),
+                update, FutureExecutionDocument.class);
+        if (result.getMatchedCount() == 0) {
+            log.warn("Execution {} was re-claimed since this run started; leaving it to the new claim",
+                    exec.getExecutionId());
+        } else if (retry) {
+            log.info("Execution {} queued for retry (attempt {})", exec.getExecutionId(), exec.getAttempt() + 1);
         } else {
-            exec.setExecStatus(ExecStatus.CANCELLED);
-            exec.setLastUpdatedAt(Instant.now());
-            futureExecutionRepository.save(exec);
             log.warn("Execution {} exhausted retries ({} attempts)", exec.getExecutionId(), exec.getMaxAttempts());
         }
     }
 
+    /** Move to {@code status} and give up the claim: slot, owner, token and lease. */
+    private static Update release(ExecStatus status, Instant now) {
+        return new Update().set("execStatus", status).set("lastUpdatedAt", now)
+                .unset("slot").unset("lockOwner").unset("claimToken").unset("leaseUntil");
+    }
+
     private void seedScheduledPrompt(String sessionId, String agentId, String projectId) {
         String projectClause = projectId != null ? " for project " + projectId : "";
         String prompt = switch (agentId) {
@@ -258,20 +416,19 @@ public class ExecutionEngineService {
 
     private void recoverStaleLeases() {
         Instant threshold = Instant.now().minusMillis(STALE_LEASE_GRACE_MS);
-        List<FutureExecutionDocument> stale = futureExecutionRepository.findByLeaseUntilLessThanAndExecStatusIn(
-                threshold, List.of(ExecStatus.RUNNING, ExecStatus.PENDING));
+        List<FutureExecutionDocument> stale = futureExecutionRepository.findByLeaseUntilLessThanAndExecStatusInAndPartitionIn(
+                threshold, List.of(ExecStatus.RUNNING, ExecStatus.PENDING), membership.ownedPartitions());
 
         for (FutureExecutionDocument item : stale) {
-            if (item.getAttempt() > 0) {
-                item.setExecStatus(ExecStatus.FAILED_RETRYABLE);
-            } else {
-                item.setExecStatus(ExecStatus.READY);
-            }
-            item.setLockOwner(null);
-            item.setLeaseUntil(null);
-            item.setLastUpdatedAt(Instant.now());
-            futureExecutionRepository.save(item);
-            log.info("Recovered stale execution {} (was {})", item.getExecutionId(), item.getExecStatus());
+            ExecStatus next = item.getAttempt() > 0 ? ExecStatus.FAILED_RETRYABLE : ExecStatus.READY;
+            // Re-check staleness in the write: the owner may have renewed or settled it since the scan
+            UpdateResult result = mongoTemplate.updateFirst(
+                    Query.query(Criteria.where("_id").is(item.getExecutionId())
+                            .and("execStatus").in(ExecStatus.RUNNING, ExecStatus.PENDING)
+                            .and("leaseUntil").lt(threshold)),
+                    release(next, Instant.now()), FutureExecutionDocument.class);
+            if (result.getMatchedCount() == 0) continue;
+            log.info("Recovered stale execution {} (was {}, now {})", item.getExecutionId(), item.getExecStatus(), next);
         }
     }
 }
@@ -0,0 +1,30 @@
+package io.github.drompincen.javaclawv1.runtime.scheduler;
+
+/**
+ * The lease this node holds on a claimed future execution, identified by the claim's fencing
+ * token. {@link LeaseHeartbeatService} renews it in bulk; once a renewal finds the execution
+ * re-claimed (e.g. recovered as stale, on this node or another) the lease is marked lost and the
+ * running execution should abort.
+ */
+public final class ExecutionLease {
+
+    private final String executionId;
+    private final String owner;
+    private final String claimToken;
+    private volatile boolean lost;
+
+    ExecutionLease(String executionId, String owner, String claimToken) {
+        this.executionId = executionId;
+        this.owner = owner;
+        this.claimToken = claimToken;
+    }
+
+    public String executionId() { return executionId; }
+    public String owner() { return owner; }
+    public String claimToken() { return claimToken; }
+
+    /** True once a renewal found the execution no longer carrying {@link #claimToken()}. */
+    public boolean isLost() { return lost; }
+
+    void markLost() { lost = true; }
+}
@@ -1,62 +1,124 @@
 package io.github.drompincen.javaclawv1.runtime.scheduler;
 
+import com.mongodb.client.result.UpdateResult;
 import io.github.drompincen.javaclawv1.persistence.document.FutureExecutionDocument;
-import io.github.drompincen.javaclawv1.persistence.repository.FutureExecutionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.*;
 
+/**
+ * Keeps the leases of locally running executions alive. One periodic tick renews every lease
+ * this node holds with a single {@code updateMany}, conditioned on each document still carrying
+ * the claim token the lease was started with (tokens are unique per claim, so matching the ids
+ * and tokens as two sets is exact). When fewer documents match than were renewed, the missing
+ * ones are looked up and their {@link ExecutionLease}s marked lost.
+ */
 @Service
 public class LeaseHeartbeatService {
 
     private static final Logger log = LoggerFactory.getLogger(LeaseHeartbeatService.class);
-    private static final long HEARTBEAT_INTERVAL_MS = 30_000;
-    private static final long LEASE_DURATION_MS = 90_000;
 
-    private final FutureExecutionRepository futureExecutionRepository;
+    private final MongoTemplate mongoTemplate;
+    private final long heartbeatMs;
+    private final long leaseDurationMs;
     private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
         Thread t = new Thread(r, "lease-heartbeat");
         t.setDaemon(true);
         return t;
     });
-    private final Map<String, ScheduledFuture<?>> activeHeartbeats = new ConcurrentHashMap<>();
+    private final Map<String, ExecutionLease> activeLeases = new ConcurrentHashMap<>();
 
-    public LeaseHeartbeatService(FutureExecutionRepository futureExecutionRepository) {
-        this.futureExecutionRepository = futureExecutionRepository;
+    public LeaseHeartbeatService(MongoTemplate mongoTemplate, Environment environment) {
+        this.mongoTemplate = mongoTemplate;
+        this.heartbeatMs = environment.getProperty("javaclaw.scheduler.lease.heartbeat-ms", Long.class, 30_000L);
+        this.leaseDurationMs = environment.getProperty("javaclaw.scheduler.lease.duration-ms", Long.class, 90_000L);
     }
 
-    public void startHeartbeat(String executionId) {
-        ScheduledFuture<?> future = scheduler.scheduleAtFixedRate(() -> {
+    @PostConstruct
+    public void start() {
+        scheduler.scheduleWithFixedDelay(() -> {
             try {
-                futureExecutionRepository.findById(executionId).ifPresent(exec -> {
-                    exec.setLeaseUntil(Instant.now().plusMillis(LEASE_DURATION_MS));
-                    exec.setLastUpdatedAt(Instant.now());
-                    futureExecutionRepository.save(exec);
-                });
+                renewAll();
             } catch (Exception e) {
-                log.warn("Heartbeat failed for execution {}: {}", executionId, e.getMessage());
+                log.warn("Lease renewal failed: {}", e.getMessage());
             }
-        }, HEARTBEAT_INTERVAL_MS, HEARTBEAT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+    }
 
-        activeHeartbeats.put(executionId, future);
+    /** Start renewing the lease {@code owner} holds on the execution under the given claim token. */
+    public ExecutionLease startHeartbeat(String executionId, String owner, String claimToken) {
+        ExecutionLease lease = new ExecutionLease(executionId, owner, claimToken);
+        activeLeases.put(executionId, lease);
         log.debug("Started heartbeat for execution {}", executionId);
+        return lease;
     }
 
     public void stopHeartbeat(String executionId) {
-        ScheduledFuture<?> future = activeHeartbeats.remove(executionId);
-        if (future != null) {
-            future.cancel(false);
+        if (activeLeases.remove(executionId) != null) {
             log.debug("Stopped heartbeat for execution {}", executionId);
         }
     }
 
+    /** How long a claim or renewal keeps an execution leased ({@code javaclaw.scheduler.lease.duration-ms}). */
+    public long leaseDurationMs() {
+        return leaseDurationMs;
+    }
+
+    public int activeCount() {
+        return activeLeases.size();
+    }
+
+    /** Renew every active lease in one update, plus a lookup only when some were lost. */
+    void renewAll() {
+        List<ExecutionLease> leases = List.copyOf(activeLeases.values());
+        if (leases.isEmpty()) return;
+        Instant now = Instant.now();
+        UpdateResult result = mongoTemplate.updateMulti(held(leases),
+                new Update().set("leaseUntil", now.plusMillis(leaseDurationMs)).set("lastUpdatedAt", now),
+                FutureExecutionDocument.class);
+        if (result.getMatchedCount() < leases.size()) {
+            detectLost(leases);
+        }
+    }
+
+    private void detectLost(List<ExecutionLease> leases) {
+        Query query = held(leases);
+        query.fields().include("_id");
+        Set<String> held = new HashSet<>();
+        for (FutureExecutionDocument exec : mongoTemplate.find(query, FutureExecutionDocument.class)) {
+            held.add(exec.getExecutionId());
+        }
+        for (ExecutionLease lease : leases) {
+            if (held.contains(lease.executionId())) continue;
+            if (activeLeases.remove(lease.executionId(), lease)) {
+                lease.markLost();
+                log.warn("Lease on execution {} lost by {}", lease.executionId(), lease.owner());
+            }
+        }
+    }
+
+    private static Query held(List<ExecutionLease> leases) {
+        return Query.query(Criteria.where("_id").in(leases.stream().map(ExecutionLease::executionId).toList())
+                .and("claimToken").in(leases.stream().map(ExecutionLease::claimToken).toList()));
+    }
+
+    @PreDestroy
     public void shutdown() {
-        activeHeartbeats.values().forEach(f -> f.cancel(false));
-        activeHeartbeats.clear();
+        activeLeases.clear();
         scheduler.shutdown();
     }
 }
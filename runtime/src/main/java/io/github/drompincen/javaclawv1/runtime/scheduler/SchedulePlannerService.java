@@ -1,13 +1,19 @@
 package io.github.drompincen.javaclawv1.runtime.scheduler;
 
+import com.mongodb.bulk.BulkWriteResult;
 import io.github.drompincen.javaclawv1.persistence.document.AgentScheduleDocument;
 import io.github.drompincen.javaclawv1.persistence.document.FutureExecutionDocument;
 import io.github.drompincen.javaclawv1.persistence.repository.AgentScheduleRepository;
 import io.github.drompincen.javaclawv1.persistence.repository.FutureExecutionRepository;
 import io.github.drompincen.javaclawv1.protocol.api.ExecStatus;
-import io.github.drompincen.javaclawv1.protocol.api.ScheduleType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.scheduling.support.CronExpression;
 import org.springframework.stereotype.Service;
@@ -24,85 +30,191 @@ public class SchedulePlannerService {
 
     private final AgentScheduleRepository scheduleRepository;
     private final FutureExecutionRepository futureExecutionRepository;
+    private final SchedulerMembershipService membership;
+    private final MongoTemplate mongoTemplate;
+    private final int horizonDays;
 
     private Instant lastReconcileAt = Instant.EPOCH;
+    private long reconciledGeneration = -1;
+    /** Local date each schedule timezone was last planned for; a new date rolls the horizon forward. */
+    final Map<String, LocalDate> plannedDay = new HashMap<>();
 
     public SchedulePlannerService(AgentScheduleRepository scheduleRepository,
-                                  FutureExecutionRepository futureExecutionRepository) {
+                                  FutureExecutionRepository futureExecutionRepository,
+                                  SchedulerMembershipService membership,
+                                  MongoTemplate mongoTemplate,
+                                  Environment environment) {
         this.scheduleRepository = scheduleRepository;
         this.futureExecutionRepository = futureExecutionRepository;
+        this.membership = membership;
+        this.mongoTemplate = mongoTemplate;
+        this.horizonDays = Math.max(1, environment.getProperty("javaclaw.scheduler.planning-horizon-days", Integer.class, 2));
     }
 
+    /**
+     * Plan changed schedules in this node's partitions; everything it owns after a rebalance.
+     * Once a schedule timezone crosses midnight, its owned schedules are re-planned so the
+     * horizon rolls forward even when nothing changed.
+     */
     @Scheduled(fixedDelayString = "${javaclaw.scheduler.planner-interval-ms:60000}")
     public void reconcileSchedules() {
-        List<AgentScheduleDocument> changed = scheduleRepository.findByUpdatedAtGreaterThan(lastReconcileAt);
-        if (changed.isEmpty()) return;
+        long generation = membership.generation();
+        boolean replanAll = generation != reconciledGeneration;
+        if (replanAll) {
+            // Partitions may have moved here: re-plan everything we own, idempotency keys dedupe
+            lastReconcileAt = Instant.EPOCH;
+            reconciledGeneration = generation;
+        }
+        Instant startedAt = Instant.now();
+        List<AgentScheduleDocument> changed = scheduleRepository.findByUpdatedAtGreaterThan(lastReconcileAt).stream()
+                .filter(schedule -> membership.owns(schedule.getAgentId(), schedule.getProjectId()))
+                .toList();
+        lastReconcileAt = startedAt;
+        if (!changed.isEmpty()) {
+            log.info("Reconciling {} changed schedules", changed.size());
+            List<AgentScheduleDocument> enabled = new ArrayList<>();
+            for (AgentScheduleDocument schedule : changed) {
+                if (schedule.isEnabled()) enabled.add(schedule);
+                else cancelStaleItems(schedule);
+            }
+            planAndPersist(enabled);
+        }
+        rollHorizon(replanAll);
+    }
 
-        log.info("Reconciling {} changed schedules", changed.size());
-        for (AgentScheduleDocument schedule : changed) {
-            if (!schedule.isEnabled()) {
-                cancelStaleItems(schedule);
+    /** Rebuild the day plan of every schedule timezone whose local date moved since it was last planned. */
+    private void rollHorizon(boolean justPlanned) {
+        Set<String> timezones = new TreeSet<>(mongoTemplate.findDistinct(
+                Query.query(Criteria.where("enabled").is(true)), "timezone", AgentScheduleDocument.class, String.class));
+        timezones.add("UTC");
+        for (String timezone : timezones) {
+            LocalDate today;
+            try {
+                today = LocalDate.now(ZoneId.of(timezone));
+            } catch (DateTimeException e) {
+                log.warn("Skipping schedules with invalid timezone {}: {}", timezone, e.getMessage());
                 continue;
             }
-            generateFutureExecutions(schedule);
+            LocalDate last = plannedDay.put(timezone, today);
+            // A full re-plan this pass already covers today's horizon
+            if (!justPlanned && !today.equals(last)) rebuildDayPlan(timezone);
         }
-        lastReconcileAt = Instant.now();
     }
 
     public void generateFutureExecutions(AgentScheduleDocument schedule) {
+        planAndPersist(List.of(schedule));
+    }
+
+    /**
+     * Plan every slot of the given schedules over the horizon and write them in one unordered
+     * bulk: an upsert per slot keyed on the unique idempotency key, plus a prune per schedule
+     * of READY future slots left over from older schedule versions.
+     */
+    public void planAndPersist(List<AgentScheduleDocument> schedules) {
+        if (schedules.isEmpty()) return;
+        Instant now = Instant.now();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, FutureExecutionDocument.class);
+        int slots = 0;
+        int ops = 0;
+        for (AgentScheduleDocument schedule : schedules) {
+            List<FutureExecutionDocument> planned = planSlots(schedule, now);
+            List<String> keys = new ArrayList<>(planned.size());
+            for (FutureExecutionDocument exec : planned) {
+                bulk.upsert(Query.query(Criteria.where("idempotencyKey").is(exec.getIdempotencyKey())), slotUpsert(exec));
+                keys.add(exec.getIdempotencyKey());
+            }
+            slots += planned.size();
+            ops += planned.size();
+            if (schedule.getScheduleId() != null) {
+                ops++;
+                bulk.remove(Query.query(Criteria.where("scheduleId").is(schedule.getScheduleId())
+                        .and("execStatus").is(ExecStatus.READY)
+                        .and("createdFromScheduleVersion").lt(schedule.getVersion())
+                        .and("scheduledAt").gte(now)
+                        .and("idempotencyKey").nin(keys)));
+            }
+        }
+        if (ops == 0) return;
+
+        BulkWriteResult result = bulk.execute();
+        if (!result.getUpserts().isEmpty() || result.getDeletedCount() > 0) {
+            log.info("Planned {} schedules over {} days: {} slots, {} new, {} obsolete pruned",
+                    schedules.size(), horizonDays, slots, result.getUpserts().size(), result.getDeletedCount());
+        }
+    }
+
+    /** In-memory slot generation over the planning horizon; past slots are never backfilled. */
+    List<FutureExecutionDocument> planSlots(AgentScheduleDocument schedule, Instant now) {
         ZoneId tz = ZoneId.of(schedule.getTimezone() != null ? schedule.getTimezone() : "UTC");
         LocalDate today = LocalDate.now(tz);
-        String dateKey = today.format(DATE_KEY_FMT);
-
-        List<LocalTime> executionTimes = computeExecutionTimes(schedule);
-        int created = 0;
-
-        for (LocalTime time : executionTimes) {
-            ZonedDateTime zdt = ZonedDateTime.of(today, time, tz);
-            Instant scheduledAt = zdt.toInstant();
-
-            // Don't backfill past time slots — prevents agents from firing on restart
-            if (scheduledAt.isBefore(Instant.now())) continue;
-
-            String idempotencyKey = dateKey + "|" + schedule.getAgentId() + "|"
-                    + (schedule.getProjectId() != null ? schedule.getProjectId() : "GLOBAL")
-                    + "|" + scheduledAt;
-
-            if (futureExecutionRepository.existsByIdempotencyKey(idempotencyKey)) continue;
-
-            FutureExecutionDocument exec = new FutureExecutionDocument();
-            exec.setExecutionId(UUID.randomUUID().toString());
-            exec.setIdempotencyKey(idempotencyKey);
-            exec.setDateKey(dateKey);
-            exec.setAgentId(schedule.getAgentId());
-            exec.setProjectId(schedule.getProjectId());
-            exec.setTimezone(schedule.getTimezone());
-            exec.setScheduledAt(scheduledAt);
-            exec.setPlannedHour(time.getHour());
-            exec.setPlannedMinute(time.getMinute());
-            exec.setImmediate(false);
-            exec.setExecStatus(ExecStatus.READY);
-
-            AgentScheduleDocument.ExecutorPolicy policy = schedule.getExecutorPolicy();
-            if (policy != null) {
-                exec.setPriority(policy.getPriority());
-                exec.setMaxAttempts(policy.getMaxAttempts());
-                exec.setRetryBackoffMs(policy.getRetryBackoffMs());
-            }
+        String scope = schedule.getProjectId() != null ? schedule.getProjectId() : "GLOBAL";
+        int partition = SchedulerMembershipService.partitionOf(schedule.getAgentId(), schedule.getProjectId());
+        AgentScheduleDocument.ExecutorPolicy policy = schedule.getExecutorPolicy();
 
-            exec.setScheduleId(schedule.getScheduleId());
-            exec.setCreatedFromScheduleVersion(schedule.getVersion());
-            exec.setCreatedAt(Instant.now());
-            exec.setLastUpdatedAt(Instant.now());
+        List<FutureExecutionDocument> planned = new ArrayList<>();
+        for (int d = 0; d < horizonDays; d++) {
+            LocalDate day = today.plusDays(d);
+            String dateKey = day.format(DATE_KEY_FMT);
+            for (LocalTime time : computeExecutionTimes(schedule, day, tz)) {
+                Instant scheduledAt = ZonedDateTime.of(day, time, tz).toInstant();
+                // Don't backfill past time slots — prevents agents from firing on restart
+                if (scheduledAt.isBefore(now)) continue;
 
-            futureExecutionRepository.save(exec);
-            created++;
+                FutureExecutionDocument exec = new FutureExecutionDocument();
+                exec.setExecutionId(UUID.randomUUID().toString());
+                exec.setIdempotencyKey(dateKey + "|" + schedule.getAgentId() + "|" + scope + "|" + scheduledAt);
+                exec.setDateKey(dateKey);
+                exec.setAgentId(schedule.getAgentId());
+                exec.setProjectId(schedule.getProjectId());
+                exec.setPartition(partition);
+                exec.setTimezone(schedule.getTimezone());
+                exec.setScheduledAt(scheduledAt);
+                exec.setPlannedHour(time.getHour());
+                exec.setPlannedMinute(time.getMinute());
+                exec.setImmediate(false);
+                exec.setExecStatus(ExecStatus.READY);
+                if (policy != null) {
+                    exec.setPriority(policy.getPriority());
+                    exec.setMaxConcurrent(policy.getMaxConcurrent());
+                    exec.setMaxAttempts(policy.getMaxAttempts());
+                    exec.setRetryBackoffMs(policy.getRetryBackoffMs());
+                }
+                exec.setScheduleId(schedule.getScheduleId());
+                exec.setCreatedFromScheduleVersion(schedule.getVersion());
+                exec.setCreatedAt(now);
+                exec.setLastUpdatedAt(now);
+                planned.add(exec);
+            }
         }
+        return planned;
+    }
 
-        if (created > 0) {
-            log.info("Created {} future executions for schedule {} (agent={})",
-                    created, schedule.getScheduleId(), schedule.getAgentId());
-        }
+    /**
+     * New slots are inserted whole; a slot that already exists keeps its identity, status and
+     * attempts but is re-stamped with the current schedule version and executor policy.
+     */
+    private static Update slotUpsert(FutureExecutionDocument exec) {
+        return new Update()
+                .setOnInsert("_id", exec.getExecutionId())
+                .setOnInsert("dateKey", exec.getDateKey())
+                .setOnInsert("agentId", exec.getAgentId())
+                .setOnInsert("projectId", exec.getProjectId())
+                .setOnInsert("partition", exec.getPartition())
+                .setOnInsert("timezone", exec.getTimezone())
+                .setOnInsert("scheduledAt", exec.getScheduledAt())
+                .setOnInsert("plannedHour", exec.getPlannedHour())
+                .setOnInsert("plannedMinute", exec.getPlannedMinute())
+                .setOnInsert("immediate", false)
+                .setOnInsert("execStatus", ExecStatus.READY)
+                .setOnInsert("attempt", 0)
+                .setOnInsert("scheduleId", exec.getScheduleId())
+                .setOnInsert("createdAt", exec.getCreatedAt())
+                .setOnInsert("lastUpdatedAt", exec.getLastUpdatedAt())
+                .set("createdFromScheduleVersion", exec.getCreatedFromScheduleVersion())
+                .set("priority", exec.getPriority())
+                .set("maxConcurrent", exec.getMaxConcurrent())
+                .set("maxAttempts", exec.getMaxAttempts())
+                .set("retryBackoffMs", exec.getRetryBackoffMs());
     }
 
     public FutureExecutionDocument createImmediateExecution(String agentId, String projectId) {
@@ -118,6 +230,7 @@ public class SchedulePlannerService {
         exec.setDateKey(dateKey);
         exec.setAgentId(agentId);
         exec.setProjectId(projectId);
+        exec.setPartition(SchedulerMembershipService.partitionOf(agentId, projectId));
         exec.setTimezone("UTC");
         exec.setScheduledAt(now);
         exec.setPlannedHour(-1);
@@ -132,7 +245,7 @@ public class SchedulePlannerService {
         return futureExecutionRepository.save(exec);
     }
 
-    private List<LocalTime> computeExecutionTimes(AgentScheduleDocument schedule) {
+    private List<LocalTime> computeExecutionTimes(AgentScheduleDocument schedule, LocalDate day, ZoneId tz) {
         if (schedule.getScheduleType() == null) return List.of();
 
         return switch (schedule.getScheduleType()) {
@@ -158,10 +271,8 @@ public class SchedulePlannerService {
                 if (schedule.getCronExpr() == null) yield List.of();
                 try {
                     CronExpression cron = CronExpression.parse(schedule.getCronExpr());
-                    ZoneId tz = ZoneId.of(schedule.getTimezone() != null ? schedule.getTimezone() : "UTC");
-                    LocalDate today = LocalDate.now(tz);
-                    ZonedDateTime start = today.atStartOfDay(tz);
-                    ZonedDateTime end = today.plusDays(1).atStartOfDay(tz);
+                    ZonedDateTime start = day.atStartOfDay(tz);
+                    ZonedDateTime end = day.plusDays(1).atStartOfDay(tz);
 
                     List<LocalTime> times = new ArrayList<>();
                     LocalDateTime next = cron.next(start.toLocalDateTime());
@@ -193,23 +304,21 @@ public class SchedulePlannerService {
         }
     }
 
+    /** Drop yesterday's leftovers and extend the plan of the owned schedules in a timezone by a day. */
     public void rebuildDayPlan(String timezone) {
         ZoneId tz = ZoneId.of(timezone);
         String yesterdayKey = LocalDate.now(tz).minusDays(1).format(DATE_KEY_FMT);
-        String todayKey = LocalDate.now(tz).format(DATE_KEY_FMT);
 
         // Clean up yesterday's non-running items
         futureExecutionRepository.deleteByDateKeyAndExecStatusIn(yesterdayKey,
                 List.of(ExecStatus.READY, ExecStatus.CANCELLED, ExecStatus.SKIPPED, ExecStatus.FAILED_RETRYABLE));
 
-        // Regenerate today's plan
-        List<AgentScheduleDocument> schedules = scheduleRepository.findByEnabled(true);
-        for (AgentScheduleDocument schedule : schedules) {
-            String schedTz = schedule.getTimezone() != null ? schedule.getTimezone() : "UTC";
-            if (schedTz.equals(timezone)) {
-                generateFutureExecutions(schedule);
-            }
-        }
+        // Extend the plan by a day; slots already planned are matched by idempotency key
+        List<AgentScheduleDocument> schedules = scheduleRepository.findByEnabled(true).stream()
+                .filter(schedule -> timezone.equals(schedule.getTimezone() != null ? schedule.getTimezone() : "UTC"))
+                .filter(schedule -> membership.owns(schedule.getAgentId(), schedule.getProjectId()))
+                .toList();
+        planAndPersist(schedules);
         log.info("Midnight rebuild complete for timezone {}", timezone);
     }
 }
@@ -0,0 +1,187 @@
+package io.github.drompincen.javaclawv1.runtime.scheduler;
+
+import io.github.drompincen.javaclawv1.persistence.document.FutureExecutionDocument;
+import io.github.drompincen.javaclawv1.persistence.document.SchedulerNodeDocument;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.env.Environment;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Scheduler cluster membership and work partitioning. Every node heartbeats a row in
+ * {@code scheduler_nodes}; the live rows define a consistent-hash ring that assigns each of
+ * {@link #PARTITION_COUNT} fixed partitions to one node. Schedules and executions map to a
+ * partition by {@code agentId|projectId}, and each node plans and polls only the partitions
+ * it owns. Joins and leaves show up on the next heartbeat and bump {@link #generation()} so
+ * the planner and dispatcher can pick up partitions they just gained.
+ *
+ * Until the first heartbeat succeeds a node owns every partition, which keeps a single node
+ * (or a node that cannot reach Mongo yet) working as before. Brief overlaps during a
+ * rebalance are harmless because claims are compare-and-set.
+ */
+@Service
+public class SchedulerMembershipService implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(SchedulerMembershipService.class);
+
+    /** Fixed cluster-wide; changing it remaps every execution. */
+    public static final int PARTITION_COUNT = 256;
+    private static final int VIRTUAL_NODES = 64;
+
+    private record Assignment(List<String> members, boolean[] owned, List<Integer> ownedList, long generation) {}
+
+    private final MongoTemplate mongoTemplate;
+    private final String nodeId;
+    private final String hostname;
+    private final Instant startedAt = Instant.now();
+    private final long memberTtlMs;
+    private volatile Assignment assignment;
+
+    public SchedulerMembershipService(MongoTemplate mongoTemplate, Environment environment) {
+        this.mongoTemplate = mongoTemplate;
+        this.nodeId = environment.getProperty("javaclaw.scheduler.node-id", UUID.randomUUID().toString().substring(0, 8));
+        this.memberTtlMs = environment.getProperty("javaclaw.scheduler.membership.member-ttl-ms", Long.class, 15_000L);
+        this.hostname = resolveHostname();
+        this.assignment = assign(List.of(nodeId), 0);
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    /** Incremented whenever this node's partition assignment changes. */
+    public long generation() {
+        return assignment.generation();
+    }
+
+    public List<String> members() {
+        return assignment.members();
+    }
+
+    public List<Integer> ownedPartitions() {
+        return assignment.ownedList();
+    }
+
+    public boolean ownsPartition(int partition) {
+        return partition >= 0 && partition < PARTITION_COUNT && assignment.owned()[partition];
+    }
+
+    public boolean owns(String agentId, String projectId) {
+        return ownsPartition(partitionOf(agentId, projectId));
+    }
+
+    /** Partition of an agent/project pair; stable across nodes and restarts. */
+    public static int partitionOf(String agentId, String projectId) {
+        String key = agentId + "|" + (projectId != null ? projectId : "GLOBAL");
+        return (int) Math.floorMod(ConsistentHashRing.hash(key), (long) PARTITION_COUNT);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        heartbeat();
+        backfillPartitions();
+    }
+
+    /** Refresh this node's row, then rebuild the assignment if the live member set changed. */
+    @Scheduled(fixedDelayString = "${javaclaw.scheduler.membership.heartbeat-ms:5000}")
+    public void heartbeat() {
+        try {
+            Instant now = Instant.now();
+            mongoTemplate.upsert(Query.query(Criteria.where("_id").is(nodeId)),
+                    new Update()
+                            .set("hostname", hostname)
+                            .set("heartbeatAt", now)
+                            .set("expiresAt", now.plusMillis(memberTtlMs * 20))
+                            .setOnInsert("startedAt", startedAt),
+                    SchedulerNodeDocument.class);
+
+            Query live = Query.query(Criteria.where("heartbeatAt").gte(now.minusMillis(memberTtlMs)));
+            live.fields().include("_id");
+            List<String> members = new ArrayList<>();
+            for (SchedulerNodeDocument node : mongoTemplate.find(live, SchedulerNodeDocument.class)) {
+                members.add(node.getNodeId());
+            }
+            updateMembers(members);
+        } catch (Exception e) {
+            log.warn("Scheduler membership heartbeat failed: {}", e.getMessage());
+        }
+    }
+
+    /** Leave the cluster so the remaining nodes take over this node's partitions right away. */
+    @PreDestroy
+    public void leave() {
+        try {
+            mongoTemplate.remove(Query.query(Criteria.where("_id").is(nodeId)), SchedulerNodeDocument.class);
+        } catch (Exception e) {
+            log.debug("Could not remove scheduler node {}: {}", nodeId, e.getMessage());
+        }
+    }
+
+    void updateMembers(List<String> live) {
+        List<String> members = new ArrayList<>(live);
+        if (!members.contains(nodeId)) members.add(nodeId);
+        members.sort(null);
+        Assignment current = assignment;
+        if (members.equals(current.members())) return;
+
+        Assignment next = assign(members, current.generation() + 1);
+        assignment = next;
+        log.info("Scheduler membership changed: {} nodes {}; node {} owns {} of {} partitions",
+                members.size(), members, nodeId, next.ownedList().size(), PARTITION_COUNT);
+    }
+
+    private Assignment assign(List<String> members, long generation) {
+        ConsistentHashRing ring = new ConsistentHashRing(members, VIRTUAL_NODES);
+        boolean[] owned = new boolean[PARTITION_COUNT];
+        List<Integer> ownedList = new ArrayList<>();
+        for (int p = 0; p < PARTITION_COUNT; p++) {
+            if (nodeId.equals(ring.nodeFor("partition-" + p))) {
+                owned[p] = true;
+                ownedList.add(p);
+            }
+        }
+        return new Assignment(List.copyOf(members), owned, List.copyOf(ownedList), generation);
+    }
+
+    /** Stamp a partition on executions written before partitioning existed. */
+    void backfillPartitions() {
+        try {
+            Query legacy = Query.query(Criteria.where("partition").exists(false));
+            legacy.fields().include("_id").include("agentId").include("projectId");
+            List<FutureExecutionDocument> docs = mongoTemplate.find(legacy, FutureExecutionDocument.class);
+            if (docs.isEmpty()) return;
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, FutureExecutionDocument.class);
+            for (FutureExecutionDocument doc : docs) {
+                bulk.updateOne(Query.query(Criteria.where("_id").is(doc.getExecutionId())),
+                        Update.update("partition", partitionOf(doc.getAgentId(), doc.getProjectId())));
+            }
+            bulk.execute();
+            log.info("Assigned partitions to {} existing future executions", docs.size());
+        } catch (Exception e) {
+            log.warn("Partition backfill failed: {}", e.getMessage());
+        }
+    }
+
+    private static String resolveHostname() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "unknown";
+        }
+    }
+}
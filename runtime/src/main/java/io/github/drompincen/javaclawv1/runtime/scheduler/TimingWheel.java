@@ -0,0 +1,159 @@
+package io.github.drompincen.javaclawv1.runtime.scheduler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hierarchical timing wheel of keyed timers. Level 0 has {@code 2^bits} slots of one tick;
+ * each higher level has the same number of slots, each spanning a whole lower level. Timers
+ * further out than the top level wait in an overflow bucket. Scheduling and cancelling are
+ * O(1); {@link #advance} does constant work per elapsed tick plus the cascades it triggers.
+ *
+ * Timers fire on the first tick at or after their due time, so never early and at most one
+ * tick late. Scheduling an existing key replaces its timer. Not thread-safe.
+ */
+final class TimingWheel<T> {
+
+    private static final class Entry<T> {
+        final String key;
+        final long dueTick;
+        final T value;
+        Map<String, Entry<T>> bucket;
+
+        Entry(String key, long dueTick, T value) {
+            this.key = key;
+            this.dueTick = dueTick;
+            this.value = value;
+        }
+    }
+
+    private final long tickMs;
+    private final int bits;
+    private final int levels;
+    private final long mask;
+    private final Map<String, Entry<T>>[][] slots;
+    private final Map<String, Entry<T>> overflow = new LinkedHashMap<>();
+    private final Map<String, Entry<T>> expired = new LinkedHashMap<>();
+    private final Map<String, Entry<T>> entries = new HashMap<>();
+    private long currentTick;
+
+    @SuppressWarnings("unchecked")
+    TimingWheel(long tickMs, int bits, int levels, long startMs) {
+        if (tickMs <= 0 || bits <= 0 || levels <= 0 || (long) bits * levels >= 62) {
+            throw new IllegalArgumentException("invalid wheel geometry");
+        }
+        this.tickMs = tickMs;
+        this.bits = bits;
+        this.levels = levels;
+        this.mask = (1L << bits) - 1;
+        this.slots = new Map[levels][1 << bits];
+        this.currentTick = Math.floorDiv(startMs, tickMs);
+    }
+
+    long tickMs() {
+        return tickMs;
+    }
+
+    /** Milliseconds covered by the wheel levels before timers go to the overflow bucket. */
+    long spanMs() {
+        return (1L << (bits * levels)) * tickMs;
+    }
+
+    /**
+     * Schedule {@code value} under {@code key} to fire at {@code dueMs}. Returns true when it
+     * is already due, i.e. it will be returned by the next {@link #advance}.
+     */
+    boolean schedule(String key, long dueMs, T value) {
+        cancel(key);
+        Entry<T> entry = new Entry<>(key, Math.ceilDiv(dueMs, tickMs), value);
+        entries.put(key, entry);
+        place(entry);
+        return entry.bucket == expired;
+    }
+
+    boolean cancel(String key) {
+        Entry<T> entry = entries.remove(key);
+        if (entry == null) return false;
+        entry.bucket.remove(key);
+        return true;
+    }
+
+    boolean contains(String key) {
+        return entries.containsKey(key);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    void clear() {
+        for (Entry<T> entry : entries.values()) entry.bucket.remove(entry.key);
+        entries.clear();
+    }
+
+    /** Move the wheel to {@code nowMs} and return the values of every timer that came due, in tick order. */
+    List<T> advance(long nowMs) {
+        long target = Math.floorDiv(nowMs, tickMs);
+        if (entries.size() == expired.size() && target > currentTick) {
+            // Nothing pending on the wheel: jump instead of walking empty ticks
+            currentTick = target;
+        }
+        while (currentTick < target) {
+            currentTick++;
+            if ((currentTick & ((1L << (bits * levels)) - 1)) == 0) cascade(overflow);
+            for (int level = levels - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (bits * level)) - 1)) == 0) {
+                    cascade(slot(level, (int) ((currentTick >>> (bits * level)) & mask)));
+                }
+            }
+            cascade(slot(0, (int) (currentTick & mask)));
+        }
+        if (expired.isEmpty()) return List.of();
+        List<T> due = new ArrayList<>(expired.size());
+        for (Entry<T> entry : expired.values()) {
+            entries.remove(entry.key);
+            due.add(entry.value);
+        }
+        expired.clear();
+        return due;
+    }
+
+    private void place(Entry<T> entry) {
+        if (entry.dueTick <= currentTick) {
+            put(expired, entry);
+            return;
+        }
+        for (int level = 0; level < levels; level++) {
+            int shift = bits * (level + 1);
+            if ((entry.dueTick >>> shift) == (currentTick >>> shift)) {
+                put(slot(level, (int) ((entry.dueTick >>> (bits * level)) & mask)), entry);
+                return;
+            }
+        }
+        put(overflow, entry);
+    }
+
+    private void cascade(Map<String, Entry<T>> bucket) {
+        if (bucket.isEmpty()) return;
+        List<Entry<T>> moving = new ArrayList<>(bucket.values());
+        bucket.clear();
+        for (Entry<T> entry : moving) place(entry);
+    }
+
+    private Map<String, Entry<T>> slot(int level, int index) {
+        Map<String, Entry<T>> bucket = slots[level][index];
+        if (bucket == null) {
+            bucket = new LinkedHashMap<>();
+            slots[level][index] = bucket;
+        }
+        return bucket;
+    }
+
+    private static <T> void put(Map<String, Entry<T>> bucket, Entry<T> entry) {
+        entry.bucket = bucket;
+        bucket.put(entry.key, entry);
+    }
+}
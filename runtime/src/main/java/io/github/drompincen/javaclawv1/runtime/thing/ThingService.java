@@ -4,9 +4,18 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.drompincen.javaclawv1.persistence.document.ThingDocument;
 import io.github.drompincen.javaclawv1.persistence.repository.ThingRepository;
 import io.github.drompincen.javaclawv1.protocol.api.ThingCategory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.schema.JsonSchemaObject;
 import org.springframework.stereotype.Service;
 
 import org.springframework.data.domain.Sort;
@@ -15,9 +24,13 @@ import java.time.Instant;
 import java.util.*;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
-public class ThingService {
+public class ThingService implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ThingService.class);
+    private static final int BACKFILL_BATCH = 1000;
 
     private final ThingRepository thingRepository;
     private final MongoTemplate mongoTemplate;
@@ -39,9 +52,116 @@ public class ThingService {
             thing.setCreateDate(Instant.now());
         }
         thing.setUpdateDate(Instant.now());
+        thing.refreshIdentityKeys();
         return thingRepository.save(thing);
     }
 
+    // ---- Bulk writes ----
+
+    /**
+     * Save many things in one unordered bulk write: new things (no id) are inserted, the rest
+     * replace their stored document by id. One result per input thing, in order; a failed item
+     * does not stop the others.
+     */
+    public List<ThingWriteResult> saveAll(List<ThingDocument> things) {
+        if (things.isEmpty()) return List.of();
+        Instant now = Instant.now();
+        boolean[] isNew = new boolean[things.size()];
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ThingDocument.class);
+        for (int i = 0; i < things.size(); i++) {
+            ThingDocument thing = things.get(i);
+            isNew[i] = thing.getId() == null;
+            if (isNew[i]) thing.setId(UUID.randomUUID().toString());
+            if (thing.getCreateDate() == null) thing.setCreateDate(now);
+            thing.setUpdateDate(now);
+            thing.refreshIdentityKeys();
+            if (isNew[i]) {
+                bulk.insert(thing);
+            } else {
+                bulk.replaceOne(Query.query(Criteria.where("_id").is(thing.getId())), thing,
+                        FindAndReplaceOptions.options().upsert());
+            }
+        }
+
+        Map<Integer, String> errors = new HashMap<>();
+        Set<Integer> upserted = new HashSet<>();
+        try {
+            bulk.execute().getUpserts().forEach(u -> upserted.add(u.getIndex()));
+        } catch (BulkOperationException e) {
+            e.getErrors().forEach(err -> errors.put(err.getIndex(), err.getMessage()));
+            e.getResult().getUpserts().forEach(u -> upserted.add(u.getIndex()));
+        }
+
+        List<ThingWriteResult> results = new ArrayList<>(things.size());
+        for (int i = 0; i < things.size(); i++) {
+            boolean inserted = !errors.containsKey(i) && (isNew[i] || upserted.contains(i));
+            results.add(new ThingWriteResult(i, things.get(i).getId(), inserted, errors.get(i)));
+        }
+        if (!errors.isEmpty()) log.warn("Bulk save of {} things: {} failed", things.size(), errors.size());
+        return results;
+    }
+
+    /**
+     * Create-or-update things of one category by a payload identity field (e.g. ticket title):
+     * one indexed lookup for all existing matches, then one {@link #saveAll} bulk. Existing things
+     * get the new payload merged in; payloads repeating an identity within the batch merge into
+     * the same thing. One result per input payload, in order.
+     */
+    public List<ThingWriteResult> upsertAllByIdentity(String projectId, ThingCategory category,
+                                                      String identityField, List<Map<String, Object>> payloads) {
+        if (payloads.isEmpty()) return List.of();
+        List<String> keys = new ArrayList<>(payloads.size());
+        for (Map<String, Object> payload : payloads) {
+            Object value = payload.get(identityField);
+            if (!(value instanceof String text) || text.isBlank()) {
+                throw new IllegalArgumentException("Every payload needs a non-blank '" + identityField + "'");
+            }
+            keys.add(ThingDocument.identityKey(identityField, text));
+        }
+
+        Map<String, ThingDocument> byKey = new LinkedHashMap<>();
+        Query existing = new Query()
+                .addCriteria(Criteria.where("projectId").is(projectId))
+                .addCriteria(Criteria.where("thingCategory").is(category))
+                .addCriteria(Criteria.where("identityKeys").in(new HashSet<>(keys)));
+        for (ThingDocument thing : mongoTemplate.find(existing, ThingDocument.class)) {
+            for (String key : thing.getIdentityKeys()) byKey.putIfAbsent(key, thing);
+        }
+
+        List<ThingDocument> batch = new ArrayList<>();
+        Map<ThingDocument, Integer> batchIndex = new IdentityHashMap<>();
+        int[] itemToBatch = new int[payloads.size()];
+        for (int i = 0; i < payloads.size(); i++) {
+            ThingDocument thing = byKey.get(keys.get(i));
+            if (thing == null) {
+                thing = new ThingDocument();
+                thing.setProjectId(projectId);
+                thing.setThingCategory(category);
+                thing.setPayload(new LinkedHashMap<>());
+                byKey.put(keys.get(i), thing);
+            }
+            applyPayload(thing, payloads.get(i));
+            itemToBatch[i] = batchIndex.computeIfAbsent(thing, t -> {
+                batch.add(t);
+                return batch.size() - 1;
+            });
+        }
+
+        List<ThingWriteResult> written = saveAll(batch);
+        List<ThingWriteResult> results = new ArrayList<>(payloads.size());
+        for (int i = 0; i < payloads.size(); i++) {
+            ThingWriteResult r = written.get(itemToBatch[i]);
+            results.add(new ThingWriteResult(i, r.id(), r.inserted(), r.error()));
+        }
+        return results;
+    }
+
+    /** Delete many things with one query; returns how many were removed. */
+    public long deleteAllByIds(Collection<String> ids) {
+        if (ids.isEmpty()) return 0;
+        return mongoTemplate.remove(Query.query(Criteria.where("_id").in(ids)), ThingDocument.class).getDeletedCount();
+    }
+
     public Optional<ThingDocument> findById(String id) {
         return thingRepository.findById(id);
     }
@@ -111,15 +231,48 @@ public class ThingService {
         return mongoTemplate.find(query, ThingDocument.class);
     }
 
-    /** Find due reminders: triggered=false AND triggerAt < now. */
-    public List<ThingDocument> findDueReminders(Instant before) {
+    /** Untriggered reminders due at or before {@code until}, earliest first. */
+    public List<ThingDocument> findPendingReminders(Instant until) {
         Query query = new Query()
                 .addCriteria(Criteria.where("thingCategory").is(ThingCategory.REMINDER))
                 .addCriteria(Criteria.where("payload.triggered").is(false))
-                .addCriteria(Criteria.where("payload.triggerAt").lt(Date.from(before)));
+                .addCriteria(Criteria.where("payload.triggerAt").lte(Date.from(until)))
+                .with(Sort.by("payload.triggerAt"));
         return mongoTemplate.find(query, ThingDocument.class);
     }
 
+    /**
+     * Atomically claim one firing of a reminder: applies {@code updates} to its payload only if
+     * it is still untriggered and still due at {@code dueAt}. Exactly one caller wins per firing.
+     */
+    public boolean claimReminder(String id, Instant dueAt, Map<String, Object> updates) {
+        Query query = new Query()
+                .addCriteria(Criteria.where("_id").is(id))
+                .addCriteria(Criteria.where("thingCategory").is(ThingCategory.REMINDER))
+                .addCriteria(Criteria.where("payload.triggered").is(false))
+                .addCriteria(Criteria.where("payload.triggerAt").is(Date.from(dueAt)));
+        Update update = new Update().set("updateDate", Instant.now());
+        updates.forEach((key, value) -> update.set("payload." + key, value));
+        return mongoTemplate.updateFirst(query, update, ThingDocument.class).getModifiedCount() > 0;
+    }
+
+    /** Rewrite reminder trigger times stored as ISO-8601 strings as BSON dates; returns how many changed. */
+    public int migrateReminderTriggerTimes() {
+        Query query = new Query()
+                .addCriteria(Criteria.where("thingCategory").is(ThingCategory.REMINDER))
+                .addCriteria(Criteria.where("payload.triggerAt").type(JsonSchemaObject.Type.STRING));
+        int migrated = 0;
+        for (ThingDocument thing : mongoTemplate.find(query, ThingDocument.class)) {
+            Instant triggerAt = thing.payloadInstant("triggerAt");
+            Update update = triggerAt != null
+                    ? Update.update("payload.triggerAt", triggerAt)
+                    : new Update().unset("payload.triggerAt");
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(thing.getId())), update, ThingDocument.class);
+            migrated++;
+        }
+        return migrated;
+    }
+
     /** Find a single thing by category and two payload fields (e.g., resourceId+ticketId). */
     public Optional<ThingDocument> findOneByPayloadFields(ThingCategory category, Map<String, Object> fieldValues) {
         List<ThingDocument> results = findByPayloadFields(category, fieldValues);
@@ -129,23 +282,24 @@ public class ThingService {
     /** Find first thing by project, category, and case-insensitive payload.title match. */
     public Optional<ThingDocument> findByProjectCategoryAndTitleIgnoreCase(
             String projectId, ThingCategory category, String title) {
-        Query query = new Query()
-                .addCriteria(Criteria.where("projectId").is(projectId))
-                .addCriteria(Criteria.where("thingCategory").is(category))
-                .addCriteria(Criteria.where("payload.title").regex(
-                        "^" + Pattern.quote(title) + "$", "i"));
-        ThingDocument result = mongoTemplate.findOne(query, ThingDocument.class);
-        return Optional.ofNullable(result);
+        return findByProjectCategoryAndPayloadFieldIgnoreCase(projectId, category, "title", title);
     }
 
-    /** Find first thing by project, category, and case-insensitive match on an arbitrary payload field. */
+    /**
+     * Find first thing by project, category, and case-insensitive match on an arbitrary payload field.
+     * Identity fields (title, name, message, outcome) are matched on the indexed normalized key, which
+     * also ignores surrounding and repeated whitespace; other fields fall back to an anchored regex.
+     */
     public Optional<ThingDocument> findByProjectCategoryAndPayloadFieldIgnoreCase(
             String projectId, ThingCategory category, String field, String value) {
         Query query = new Query()
                 .addCriteria(Criteria.where("projectId").is(projectId))
-                .addCriteria(Criteria.where("thingCategory").is(category))
-                .addCriteria(Criteria.where("payload." + field).regex(
-                        "^" + Pattern.quote(value) + "$", "i"));
+                .addCriteria(Criteria.where("thingCategory").is(category));
+        if (ThingDocument.IDENTITY_FIELDS.contains(field)) {
+            query.addCriteria(Criteria.where("identityKeys").is(ThingDocument.identityKey(field, value)));
+        } else {
+            query.addCriteria(Criteria.where("payload." + field).regex("^" + Pattern.quote(value) + "$", "i"));
+        }
         ThingDocument result = mongoTemplate.findOne(query, ThingDocument.class);
         return Optional.ofNullable(result);
     }
@@ -153,13 +307,7 @@ public class ThingService {
     /** Find first thing by project, category, and case-insensitive payload.name match. */
     public Optional<ThingDocument> findByProjectCategoryAndNameIgnoreCase(
             String projectId, ThingCategory category, String name) {
-        Query query = new Query()
-                .addCriteria(Criteria.where("projectId").is(projectId))
-                .addCriteria(Criteria.where("thingCategory").is(category))
-                .addCriteria(Criteria.where("payload.name").regex(
-                        "^" + Pattern.quote(name) + "$", "i"));
-        ThingDocument result = mongoTemplate.findOne(query, ThingDocument.class);
-        return Optional.ofNullable(result);
+        return findByProjectCategoryAndPayloadFieldIgnoreCase(projectId, category, "name", name);
     }
 
     /** Find things by project and category, sorted by a field (can be top-level or payload field). */
@@ -172,6 +320,41 @@ public class ThingService {
         return mongoTemplate.find(query, ThingDocument.class);
     }
 
+    // ---- Migrations ----
+
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            int backfilled = backfillIdentityKeys();
+            if (backfilled > 0) log.info("Backfilled identity keys on {} things", backfilled);
+        } catch (Exception e) {
+            log.warn("Identity key backfill failed: {}", e.getMessage());
+        }
+    }
+
+    /** Compute identity keys for things saved before they existed, in bulk batches. */
+    int backfillIdentityKeys() {
+        Query legacy = Query.query(Criteria.where("identityKeys").exists(false));
+        legacy.fields().include("_id");
+        for (String field : ThingDocument.IDENTITY_FIELDS) legacy.fields().include("payload." + field);
+        int count = 0;
+        BulkOperations bulk = null;
+        try (Stream<ThingDocument> things = mongoTemplate.stream(legacy, ThingDocument.class)) {
+            for (ThingDocument thing : (Iterable<ThingDocument>) things::iterator) {
+                thing.refreshIdentityKeys();
+                if (bulk == null) bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ThingDocument.class);
+                bulk.updateOne(Query.query(Criteria.where("_id").is(thing.getId())),
+                        Update.update("identityKeys", thing.getIdentityKeys()));
+                if (++count % BACKFILL_BATCH == 0) {
+                    bulk.execute();
+                    bulk = null;
+                }
+            }
+        }
+        if (bulk != null) bulk.execute();
+        return count;
+    }
+
     // ---- Convenience builders ----
 
     public ThingDocument createThing(String projectId, ThingCategory category, Map<String, Object> payload) {
@@ -195,6 +378,12 @@ public class ThingService {
 
     /** Update specific payload fields without replacing the entire payload. */
     public ThingDocument mergePayload(ThingDocument thing, Map<String, Object> updates) {
+        applyPayload(thing, updates);
+        return save(thing);
+    }
+
+    /** Merge updates into the payload in memory; null values remove the field. */
+    public void applyPayload(ThingDocument thing, Map<String, Object> updates) {
         Map<String, Object> payload = thing.getPayload();
         if (payload == null) {
             payload = new LinkedHashMap<>();
@@ -207,6 +396,5 @@ public class ThingService {
             }
         }
         thing.setPayload(payload);
-        return save(thing);
     }
 }
@@ -0,0 +1,16 @@
+package io.github.drompincen.javaclawv1.runtime.thing;
+
+/**
+ * Outcome of one item in a {@link ThingService} bulk write, reported in input order.
+ *
+ * @param index    position of the item in the caller's list
+ * @param id       id of the thing written (assigned if the item had none)
+ * @param inserted true if a new document was created, false if an existing one was replaced
+ * @param error    write error for this item, or {@code null} if it succeeded
+ */
+public record ThingWriteResult(int index, String id, boolean inserted, String error) {
+
+    public boolean ok() {
+        return error == null;
+    }
+}
@@ -0,0 +1,84 @@
+package io.github.drompincen.javaclawv1.runtime.trace;
+
+import io.github.drompincen.javaclawv1.persistence.document.SpanDocument;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders stored spans as an OTLP/JSON {@code ExportTraceServiceRequest}, so a trace can be
+ * loaded into any OTLP-compatible viewer (POST to a collector's {@code /v1/traces}, or
+ * import the file).
+ */
+public final class OtlpJson {
+
+    private static final int SPAN_KIND_INTERNAL = 1;
+    private static final int STATUS_OK = 1;
+    private static final int STATUS_ERROR = 2;
+
+    private OtlpJson() {}
+
+    public static Map<String, Object> export(List<SpanDocument> spans) {
+        List<Map<String, Object>> otlpSpans = new ArrayList<>(spans.size());
+        for (SpanDocument s : spans) otlpSpans.add(span(s));
+
+        return Map.of("resourceSpans", List.of(Map.of(
+                "resource", Map.of("attributes", List.of(attribute("service.name", "javaclaw"))),
+                "scopeSpans", List.of(Map.of(
+                        "scope", Map.of("name", "javaclaw"),
+                        "spans", otlpSpans)))));
+    }
+
+    private static Map<String, Object> span(SpanDocument s) {
+        Map<String, Object> span = new LinkedHashMap<>();
+        span.put("traceId", hexId(s.getTraceId(), 32));
+        span.put("spanId", hexId(s.getSpanId(), 16));
+        if (s.getParentSpanId() != null) span.put("parentSpanId", hexId(s.getParentSpanId(), 16));
+        span.put("name", s.getName());
+        span.put("kind", SPAN_KIND_INTERNAL);
+        span.put("startTimeUnixNano", unixNanos(s.getStartTime()));
+        span.put("endTimeUnixNano", unixNanos(s.getEndTime()));
+
+        List<Map<String, Object>> attributes = new ArrayList<>();
+        attributes.add(attribute("javaclaw.kind", s.getKind()));
+        if (s.getSessionId() != null) attributes.add(attribute("javaclaw.session_id", s.getSessionId()));
+        if (s.getProjectId() != null) attributes.add(attribute("javaclaw.project_id", s.getProjectId()));
+        if (s.getAgentId() != null) attributes.add(attribute("javaclaw.agent_id", s.getAgentId()));
+        if (s.getAttributes() != null) {
+            s.getAttributes().forEach((k, v) -> attributes.add(attribute("javaclaw." + k, v)));
+        }
+        span.put("attributes", attributes);
+
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("code", s.isError() ? STATUS_ERROR : STATUS_OK);
+        if (s.isError() && s.getErrorMessage() != null) status.put("message", s.getErrorMessage());
+        span.put("status", status);
+        return span;
+    }
+
+    private static Map<String, Object> attribute(String key, String value) {
+        return Map.of("key", key, "value", Map.of("stringValue", value != null ? value : ""));
+    }
+
+    /** OTLP 64-bit integers are JSON strings. */
+    private static String unixNanos(Instant t) {
+        return Long.toString(t.getEpochSecond() * 1_000_000_000L + t.getNano());
+    }
+
+    /** Lowercase hex of the required length; non-hex ids (legacy or hand-made) are hashed. */
+    static String hexId(String id, int length) {
+        String hex = id.replace("-", "").toLowerCase();
+        if (hex.length() == length && hex.chars().allMatch(c -> Character.digit(c, 16) >= 0)) return hex;
+        StringBuilder sb = new StringBuilder(length);
+        long h = 1125899906842597L;
+        while (sb.length() < length) {
+            for (int i = 0; i < id.length(); i++) h = 31 * h + id.charAt(i);
+            h += sb.length();
+            sb.append(String.format("%016x", h));
+        }
+        return sb.substring(0, length);
+    }
+}
@@ -0,0 +1,102 @@
+package io.github.drompincen.javaclawv1.runtime.trace;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A span started by the {@link Tracer}. Starting a span makes it the current span on the
+ * calling thread; closing it records it and restores the span that was current before, so
+ * spans must be closed on the thread that started them, in try-with-resources order.
+ *
+ * A non-recording span (tracing disabled, or nothing to attach to) accepts every call and
+ * records nothing.
+ */
+public final class Span implements AutoCloseable {
+
+    private final Tracer tracer;
+    private final boolean recording;
+    private final String traceId;
+    private final String spanId;
+    private final String parentSpanId;
+    private final String name;
+    private final SpanKind kind;
+    private final Instant startTime;
+    private final long startNanos;
+    private final Span previous;
+    private final Map<String, String> attributes = new LinkedHashMap<>();
+    private String sessionId;
+    private String projectId;
+    private String agentId;
+    private boolean error;
+    private String errorMessage;
+    private boolean closed;
+
+    Span(Tracer tracer, boolean recording, String traceId, String spanId, String parentSpanId,
+         String name, SpanKind kind, Span previous) {
+        this.tracer = tracer;
+        this.recording = recording;
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.parentSpanId = parentSpanId;
+        this.name = name;
+        this.kind = kind;
+        this.previous = previous;
+        this.startTime = Instant.now();
+        this.startNanos = System.nanoTime();
+    }
+
+    public boolean isRecording() { return recording; }
+    public String traceId() { return traceId; }
+    public String spanId() { return spanId; }
+    public String parentSpanId() { return parentSpanId; }
+    public String name() { return name; }
+    public SpanKind kind() { return kind; }
+    public Instant startTime() { return startTime; }
+    public String sessionId() { return sessionId; }
+    public String projectId() { return projectId; }
+    public String agentId() { return agentId; }
+    public boolean isError() { return error; }
+    public String errorMessage() { return errorMessage; }
+    public Map<String, String> attributes() { return attributes; }
+    Span previous() { return previous; }
+    long startNanos() { return startNanos; }
+
+    public Span session(String sessionId) {
+        this.sessionId = sessionId;
+        return this;
+    }
+
+    public Span project(String projectId) {
+        this.projectId = projectId;
+        return this;
+    }
+
+    public Span agent(String agentId) {
+        this.agentId = agentId;
+        return this;
+    }
+
+    public Span attr(String key, Object value) {
+        if (recording && value != null) attributes.put(key, String.valueOf(value));
+        return this;
+    }
+
+    public Span fail(String message) {
+        this.error = true;
+        this.errorMessage = message;
+        return this;
+    }
+
+    public Span fail(Throwable t) {
+        return fail(t.getClass().getSimpleName() + (t.getMessage() != null ? ": " + t.getMessage() : ""));
+    }
+
+    /** End the span. Closing twice is a no-op. */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        tracer.finish(this);
+    }
+}
@@ -0,0 +1,10 @@
+package io.github.drompincen.javaclawv1.runtime.trace;
+
+/** What a span measures; stored lowercase on the span document. */
+public enum SpanKind {
+    PIPELINE, PHASE, AGENT_RUN, AGENT, LLM, TOOL;
+
+    public String label() {
+        return name().toLowerCase();
+    }
+}
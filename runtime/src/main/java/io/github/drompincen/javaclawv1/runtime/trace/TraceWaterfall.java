@@ -0,0 +1,105 @@
+package io.github.drompincen.javaclawv1.runtime.trace;
+
+import io.github.drompincen.javaclawv1.persistence.document.SpanDocument;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Waterfall view of one trace: spans in depth-first start order with their offset from the
+ * trace start, plus the critical path — the chain of spans that determined the end-to-end
+ * time. Work off the critical path could run longer without delaying the trace; work on it
+ * is what parallelizing or speeding up would actually save.
+ */
+public final class TraceWaterfall {
+
+    private TraceWaterfall() {}
+
+    public record Row(String spanId, String parentSpanId, int depth, String name, String kind,
+                      String sessionId, String agentId, long offsetMs, long durationMs,
+                      boolean error, String errorMessage, boolean critical, Map<String, String> attributes) {}
+
+    public record View(String traceId, Instant startTime, long durationMs, int spanCount,
+                       List<Row> rows, List<String> criticalPath, Map<String, Long> criticalMsByKind) {}
+
+    public static View build(String traceId, List<SpanDocument> spans) {
+        if (spans.isEmpty()) return new View(traceId, null, 0, 0, List.of(), List.of(), Map.of());
+
+        Map<String, SpanDocument> byId = new HashMap<>();
+        for (SpanDocument s : spans) byId.put(s.getSpanId(), s);
+        // Spans whose parent is missing (still running, expired or dropped) are shown as roots
+        Map<String, List<SpanDocument>> children = new HashMap<>();
+        List<SpanDocument> roots = new ArrayList<>();
+        for (SpanDocument s : spans) {
+            if (s.getParentSpanId() != null && byId.containsKey(s.getParentSpanId())) {
+                children.computeIfAbsent(s.getParentSpanId(), k -> new ArrayList<>()).add(s);
+            } else {
+                roots.add(s);
+            }
+        }
+        Comparator<SpanDocument> byStart = Comparator.comparing(SpanDocument::getStartTime);
+        roots.sort(byStart);
+        children.values().forEach(list -> list.sort(byStart));
+
+        Instant start = spans.stream().map(SpanDocument::getStartTime).min(Comparator.naturalOrder()).get();
+        Instant end = spans.stream().map(SpanDocument::getEndTime).max(Comparator.naturalOrder()).get();
+
+        // Critical path starts at the root that finished last
+        SpanDocument lastRoot = roots.stream().max(Comparator.comparing(SpanDocument::getEndTime)).get();
+        List<String> criticalPath = new ArrayList<>();
+        walkCritical(lastRoot, children, criticalPath);
+        Set<String> critical = new HashSet<>(criticalPath);
+
+        // Self time on the critical path, per kind: a span's time minus its critical children
+        Map<String, Long> criticalMsByKind = new LinkedHashMap<>();
+        for (String id : criticalPath) {
+            SpanDocument s = byId.get(id);
+            long childMs = children.getOrDefault(id, List.of()).stream()
+                    .filter(c -> critical.contains(c.getSpanId()))
+                    .mapToLong(SpanDocument::getDurationMs).sum();
+            criticalMsByKind.merge(s.getKind(), Math.max(0, s.getDurationMs() - childMs), Long::sum);
+        }
+
+        List<Row> rows = new ArrayList<>(spans.size());
+        for (SpanDocument root : roots) addRows(root, 0, start, children, critical, rows);
+
+        return new View(traceId, start, end.toEpochMilli() - start.toEpochMilli(), spans.size(),
+                rows, criticalPath, criticalMsByKind);
+    }
+
+    /**
+     * Walk back from the span's end: the child that finished last is critical, then the child
+     * that finished last before that one started, and so on.
+     */
+    private static void walkCritical(SpanDocument span, Map<String, List<SpanDocument>> children, List<String> path) {
+        path.add(span.getSpanId());
+        List<SpanDocument> kids = new ArrayList<>(children.getOrDefault(span.getSpanId(), List.of()));
+        kids.sort(Comparator.comparing(SpanDocument::getEndTime).reversed());
+        Instant cursor = span.getEndTime();
+        for (SpanDocument child : kids) {
+            if (!child.getEndTime().isAfter(cursor)) {
+                walkCritical(child, children, path);
+                cursor = child.getStartTime();
+            }
+        }
+    }
+
+    private static void addRows(SpanDocument span, int depth, Instant start,
+                                Map<String, List<SpanDocument>> children, Set<String> critical, List<Row> rows) {
+        rows.add(new Row(span.getSpanId(), span.getParentSpanId(), depth, span.getName(), span.getKind(),
+                span.getSessionId(), span.getAgentId(),
+                span.getStartTime().toEpochMilli() - start.toEpochMilli(), span.getDurationMs(),
+                span.isError(), span.getErrorMessage(), critical.contains(span.getSpanId()),
+                span.getAttributes() != null ? span.getAttributes() : Map.of()));
+        for (SpanDocument child : children.getOrDefault(span.getSpanId(), List.of())) {
+            addRows(child, depth + 1, start, children, critical, rows);
+        }
+    }
+}
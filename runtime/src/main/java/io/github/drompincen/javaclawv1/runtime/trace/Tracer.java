@@ -0,0 +1,166 @@
+package io.github.drompincen.javaclawv1.runtime.trace;
+
+import io.github.drompincen.javaclawv1.persistence.document.SpanDocument;
+import io.github.drompincen.javaclawv1.persistence.repository.SpanRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lightweight in-process tracing. Spans nest through a thread-local current span; work that
+ * hops to another session (intake pipeline phases starting agent sessions) carries the trace
+ * id and parent span id in session metadata under {@link #TRACE_ID_KEY} and
+ * {@link #PARENT_SPAN_KEY}, and the agent loop continues the trace from there.
+ *
+ * Finished spans are queued and written to the {@code traces} collection in batches by
+ * {@link #flush}; when the queue is full new spans are dropped rather than blocking the
+ * agent. Span ids are 16 hex chars and trace ids are UUIDs, matching OTLP's 8- and 16-byte
+ * ids once dashes are removed.
+ */
+@Service
+public class Tracer {
+
+    private static final Logger log = LoggerFactory.getLogger(Tracer.class);
+
+    public static final String TRACE_ID_KEY = "traceId";
+    public static final String PARENT_SPAN_KEY = "parentSpanId";
+
+    private static final int FLUSH_BATCH = 500;
+
+    private final SpanRepository spanRepository;
+    private final boolean enabled;
+    private final Duration ttl;
+    private final BlockingQueue<SpanDocument> pending;
+    private final AtomicLong dropped = new AtomicLong();
+    private final ThreadLocal<Span> current = new ThreadLocal<>();
+
+    public Tracer(SpanRepository spanRepository, Environment environment) {
+        this.spanRepository = spanRepository;
+        this.enabled = environment.getProperty("javaclaw.tracing.enabled", Boolean.class, true);
+        this.ttl = Duration.ofHours(environment.getProperty("javaclaw.tracing.ttl-hours", Long.class, 168L));
+        this.pending = new ArrayBlockingQueue<>(
+                environment.getProperty("javaclaw.tracing.queue-capacity", Integer.class, 10_000));
+    }
+
+    /** Start a new trace. Pass the id of the work being traced (e.g. a pipeline id) or null. */
+    public Span startTrace(String traceId, String name, SpanKind kind) {
+        return start(traceId != null ? traceId : UUID.randomUUID().toString(), null, name, kind);
+    }
+
+    /** Child of the current span on this thread; non-recording when there is none. */
+    public Span startSpan(String name, SpanKind kind) {
+        Span parent = current.get();
+        if (parent == null || !parent.isRecording()) {
+            return activate(new Span(this, false, null, null, null, name, kind, parent));
+        }
+        Span span = start(parent.traceId(), parent.spanId(), name, kind);
+        span.session(parent.sessionId()).project(parent.projectId()).agent(parent.agentId());
+        return span;
+    }
+
+    /**
+     * Continue a trace started elsewhere, using the propagation keys from session metadata.
+     * Starts a new trace when the metadata carries none.
+     */
+    public Span continueTrace(Map<String, String> metadata, String name, SpanKind kind) {
+        String traceId = metadata != null ? metadata.get(TRACE_ID_KEY) : null;
+        if (traceId == null) return startTrace(null, name, kind);
+        return start(traceId, metadata.get(PARENT_SPAN_KEY), name, kind);
+    }
+
+    /** Propagation entries for session metadata, pointing at {@code parent}; empty if it isn't recording. */
+    public static Map<String, String> propagationMetadata(Span parent) {
+        if (parent == null || !parent.isRecording()) return Map.of();
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put(TRACE_ID_KEY, parent.traceId());
+        metadata.put(PARENT_SPAN_KEY, parent.spanId());
+        return metadata;
+    }
+
+    public Span current() {
+        return current.get();
+    }
+
+    private Span start(String traceId, String parentSpanId, String name, SpanKind kind) {
+        return activate(new Span(this, enabled, traceId, newSpanId(), parentSpanId, name, kind, current.get()));
+    }
+
+    private Span activate(Span span) {
+        current.set(span);
+        return span;
+    }
+
+    void finish(Span span) {
+        // Restore the span's parent, also when a child of it was left open
+        for (Span s = current.get(); s != null; s = s.previous()) {
+            if (s == span) {
+                if (span.previous() != null) current.set(span.previous());
+                else current.remove();
+                break;
+            }
+        }
+        if (!span.isRecording()) return;
+
+        long durationMs = (System.nanoTime() - span.startNanos()) / 1_000_000;
+        SpanDocument doc = new SpanDocument();
+        doc.setSpanId(span.spanId());
+        doc.setTraceId(span.traceId());
+        doc.setParentSpanId(span.parentSpanId());
+        doc.setName(span.name());
+        doc.setKind(span.kind().label());
+        doc.setSessionId(span.sessionId());
+        doc.setProjectId(span.projectId());
+        doc.setAgentId(span.agentId());
+        doc.setStartTime(span.startTime());
+        doc.setEndTime(span.startTime().plusMillis(durationMs));
+        doc.setDurationMs(durationMs);
+        doc.setError(span.isError());
+        doc.setErrorMessage(span.errorMessage());
+        doc.setAttributes(span.attributes().isEmpty() ? null : new HashMap<>(span.attributes()));
+        doc.setExpiresAt(Instant.now().plus(ttl));
+        if (!pending.offer(doc) && dropped.incrementAndGet() % 1000 == 1) {
+            log.warn("Trace span queue full, dropping spans ({} dropped so far)", dropped.get());
+        }
+    }
+
+    /** Write queued spans. Runs on a fixed delay; the root span of a trace is usually the last one written. */
+    @Scheduled(fixedDelayString = "${javaclaw.tracing.flush-interval-ms:1000}")
+    public void flush() {
+        while (!pending.isEmpty()) {
+            List<SpanDocument> batch = new ArrayList<>(FLUSH_BATCH);
+            if (pending.drainTo(batch, FLUSH_BATCH) == 0) return;
+            try {
+                spanRepository.saveAll(batch);
+            } catch (Exception e) {
+                log.warn("Failed to write {} trace spans: {}", batch.size(), e.getMessage());
+                return;
+            }
+        }
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    public long droppedCount() {
+        return dropped.get();
+    }
+
+    private static String newSpanId() {
+        return String.format("%016x", ThreadLocalRandom.current().nextLong());
+    }
+}
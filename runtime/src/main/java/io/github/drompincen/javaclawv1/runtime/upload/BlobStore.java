@@ -0,0 +1,470 @@
+package io.github.drompincen.javaclawv1.runtime.upload;
+
+import io.github.drompincen.javaclawv1.persistence.document.BlobDocument;
+import io.github.drompincen.javaclawv1.persistence.document.ThingDocument;
+import io.github.drompincen.javaclawv1.persistence.document.UploadSessionDocument;
+import io.github.drompincen.javaclawv1.protocol.api.ThingCategory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed store for uploaded files. Bytes are hashed while they stream to a part
+ * file and then moved to {@code blobs/<aa>/<sha256>}, so identical uploads share one blob.
+ * Each UPLOAD thing gets its own readable file name under {@code <projectId>/}, hard-linked
+ * to the blob where the file system allows it, and holds one reference on the blob.
+ *
+ * Chunked uploads append at the session's {@code receivedBytes} offset; the running digest is
+ * kept in memory and rebuilt from the part file when a chunk arrives after a restart or on
+ * another node. Image parts of chat messages are stored here too (see {@link ImagePartStore});
+ * each such part holds one reference through {@link #retain}/{@link #release}.
+ * {@link #collectGarbage} removes blobs nothing references any more. It first marks the blob
+ * document {@code collectingAt} with a compare-and-set on the reference count; commits of the
+ * same bytes only match unmarked documents, so they wait until collection has finished and then
+ * put the bytes back, and {@link #attach} refuses a marked blob.
+ */
+@Service
+public class BlobStore {
+
+    private static final Logger log = LoggerFactory.getLogger(BlobStore.class);
+    private static final int COMMIT_ATTEMPTS = 50;
+    private static final long COMMIT_RETRY_MS = 100;
+
+    public record StoredBlob(String sha256, long size, Path path) {}
+
+    /** A chunk did not start where the session left off; the client should resume from {@link #expectedOffset}. */
+    public static class OffsetMismatchException extends IllegalStateException {
+        private final long expectedOffset;
+
+        OffsetMismatchException(long expectedOffset) {
+            super("Chunk must start at offset " + expectedOffset);
+            this.expectedOffset = expectedOffset;
+        }
+
+        public long expectedOffset() { return expectedOffset; }
+    }
+
+    /** Running hash of a session's part file, valid up to {@code offset}. */
+    private static final class PartState {
+        MessageDigest digest;
+        long offset = -1;
+    }
+
+    private final MongoTemplate mongoTemplate;
+    private final Path root;
+    private final Duration sessionTtl;
+    private final Duration gcGrace;
+    private final Map<String, PartState> parts = new ConcurrentHashMap<>();
+
+    public BlobStore(MongoTemplate mongoTemplate, Environment env) {
+        this.mongoTemplate = mongoTemplate;
+        this.root = Path.of(env.getProperty("javaclaw.uploads.dir",
+                Path.of(System.getProperty("user.dir"), "uploads").toString()));
+        this.sessionTtl = Duration.ofHours(env.getProperty("javaclaw.uploads.session-ttl-hours", Long.class, 24L));
+        this.gcGrace = Duration.ofMinutes(env.getProperty("javaclaw.uploads.gc-grace-minutes", Long.class, 60L));
+    }
+
+    // ---- single-request uploads ----
+
+    /** Streams {@code in} into the store, hashing on the way, and returns the (possibly pre-existing) blob. */
+    public StoredBlob store(InputStream in) throws IOException {
+        Path part = partsDir().resolve(UUID.randomUUID() + ".part");
+        MessageDigest digest = sha256();
+        long size;
+        try (FileChannel out = FileChannel.open(part, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            size = copy(in, out, digest, Long.MAX_VALUE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(part);
+            throw e;
+        }
+        return commit(part, HexFormat.of().formatHex(digest.digest()), size);
+    }
+
+    public byte[] read(String sha256) throws IOException {
+        return Files.readAllBytes(blobPath(sha256));
+    }
+
+    // ---- chunked uploads ----
+
+    public UploadSessionDocument begin(String projectId, String fileName, String contentType, long size, String sha256) {
+        Instant now = Instant.now();
+        UploadSessionDocument session = new UploadSessionDocument();
+        session.setUploadSessionId(UUID.randomUUID().toString());
+        session.setProjectId(projectId);
+        session.setFileName(fileName);
+        session.setContentType(contentType);
+        session.setSize(size);
+        session.setSha256(sha256 != null ? sha256.toLowerCase() : null);
+        session.setCreatedAt(now);
+        session.setUpdatedAt(now);
+        session.setExpiresAt(now.plus(sessionTtl));
+        return mongoTemplate.insert(session);
+    }
+
+    public Optional<UploadSessionDocument> session(String uploadSessionId) {
+        return Optional.ofNullable(mongoTemplate.findById(uploadSessionId, UploadSessionDocument.class));
+    }
+
+    /**
+     * Appends one chunk at {@code offset} and returns the new offset. A chunk that fails part-way
+     * leaves the session at its previous offset; the client retries it from there.
+     */
+    public long append(String uploadSessionId, long offset, InputStream chunk) throws IOException {
+        PartState state = parts.computeIfAbsent(uploadSessionId, id -> new PartState());
+        synchronized (state) {
+            UploadSessionDocument session = liveSession(uploadSessionId, state);
+            if (offset != session.getReceivedBytes()) throw new OffsetMismatchException(session.getReceivedBytes());
+
+            Path part = partFile(uploadSessionId);
+            try (FileChannel out = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                if (state.offset != offset) resume(state, out, offset);
+                out.truncate(offset).position(offset);
+                long written;
+                try {
+                    written = copy(chunk, out, state.digest, session.getSize() - offset);
+                } catch (IOException | RuntimeException e) {
+                    state.offset = -1;   // digest has seen bytes the session has not accepted
+                    throw e;
+                }
+                long next = offset + written;
+                Instant now = Instant.now();
+                long matched = mongoTemplate.updateFirst(
+                        Query.query(Criteria.where("_id").is(uploadSessionId).and("receivedBytes").is(offset)),
+                        new Update().set("receivedBytes", next).set("updatedAt", now)
+                                .set("expiresAt", now.plus(sessionTtl)),
+                        UploadSessionDocument.class).getMatchedCount();
+                if (matched == 0) {
+                    state.offset = -1;
+                    throw new OffsetMismatchException(session(uploadSessionId)
+                            .map(UploadSessionDocument::getReceivedBytes).orElse(0L));
+                }
+                state.offset = next;
+                return next;
+            }
+        }
+    }
+
+    /** Finishes a fully received session: verifies the optional checksum and commits the blob. */
+    public StoredBlob complete(String uploadSessionId) throws IOException {
+        PartState state = parts.computeIfAbsent(uploadSessionId, id -> new PartState());
+        synchronized (state) {
+            UploadSessionDocument session = liveSession(uploadSessionId, state);
+            if (session.getReceivedBytes() != session.getSize()) {
+                throw new OffsetMismatchException(session.getReceivedBytes());
+            }
+            Path part = partFile(uploadSessionId);
+            if (state.offset != session.getSize()) {
+                try (FileChannel in = FileChannel.open(part, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    resume(state, in, session.getSize());
+                }
+            }
+            String sha = HexFormat.of().formatHex(state.digest.digest());
+            parts.remove(uploadSessionId);
+            mongoTemplate.remove(Query.query(Criteria.where("_id").is(uploadSessionId)), UploadSessionDocument.class);
+            if (session.getSha256() != null && !session.getSha256().equals(sha)) {
+                Files.deleteIfExists(part);
+                throw new IllegalArgumentException("Checksum mismatch: expected " + session.getSha256() + ", got " + sha);
+            }
+            return commit(part, sha, session.getSize());
+        }
+    }
+
+    /** The session, or an IllegalArgumentException once it is gone (its running digest is dropped too). */
+    private UploadSessionDocument liveSession(String uploadSessionId, PartState state) {
+        Optional<UploadSessionDocument> session = session(uploadSessionId);
+        if (session.isEmpty()) {
+            parts.remove(uploadSessionId, state);
+            throw new IllegalArgumentException("Unknown upload session: " + uploadSessionId);
+        }
+        return session.get();
+    }
+
+    public void abort(String uploadSessionId) throws IOException {
+        parts.remove(uploadSessionId);
+        mongoTemplate.remove(Query.query(Criteria.where("_id").is(uploadSessionId)), UploadSessionDocument.class);
+        Files.deleteIfExists(partFile(uploadSessionId));
+    }
+
+    // ---- references ----
+
+    /**
+     * Gives an upload its own file for the blob, named after the original file so extension-based
+     * readers keep working, and takes a reference on the blob. The reference is taken first, so
+     * garbage collection cannot start on the blob while the file is linked.
+     *
+     * @throws IOException if the blob is gone or being collected
+     */
+    public Path attach(String sha256, String projectId, String fileName) throws IOException {
+        Path dir = root.resolve(projectId);
+        Files.createDirectories(dir);
+        Path link = dir.resolve(UUID.randomUUID() + "-" + Path.of(fileName).getFileName());
+        long taken = mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(sha256).and("collectingAt").exists(false)),
+                new Update().inc("refCount", 1).addToSet("links", link.toString()).set("updatedAt", Instant.now()),
+                BlobDocument.class).getMatchedCount();
+        if (taken == 0) throw new IOException("Blob " + sha256 + " is no longer stored");
+        Path blob = blobPath(sha256);
+        try {
+            try {
+                Files.createLink(link, blob);
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                log.debug("Hard link unavailable for {}, copying: {}", link, e.getMessage());
+                Files.copy(blob, link);
+            }
+        } catch (IOException | RuntimeException e) {
+            detach(sha256, link.toString());
+            throw e;
+        }
+        return link;
+    }
+
+    /**
+     * Takes a reference on a blob for a message image part.
+     *
+     * @throws IOException if the blob is gone or being collected
+     */
+    public void retain(String sha256) throws IOException {
+        long taken = mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(sha256).and("collectingAt").exists(false)),
+                new Update().inc("refCount", 1).set("updatedAt", Instant.now()),
+                BlobDocument.class).getMatchedCount();
+        if (taken == 0) throw new IOException("Blob " + sha256 + " is no longer stored");
+    }
+
+    /** Drops a message image part's reference; the blob goes at the next collection if that was the last. */
+    public void release(String sha256) {
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(sha256)),
+                new Update().inc("refCount", -1).set("updatedAt", Instant.now()), BlobDocument.class);
+    }
+
+    /** Drops an upload's reference and its file; the blob itself goes at the next collection. */
+    public void detach(String sha256, String link) throws IOException {
+        if (link != null) Files.deleteIfExists(Path.of(link));
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(sha256)),
+                new Update().inc("refCount", -1).pull("links", link).set("updatedAt", Instant.now()),
+                BlobDocument.class);
+    }
+
+    // ---- extraction cache ----
+
+    public Optional<String> extraction(String sha256, String ext) {
+        Query query = Query.query(Criteria.where("_id").is(sha256));
+        query.fields().include("extractions." + ext);
+        BlobDocument blob = mongoTemplate.findOne(query, BlobDocument.class);
+        return Optional.ofNullable(blob != null && blob.getExtractions() != null ? blob.getExtractions().get(ext) : null);
+    }
+
+    /** Records extracted text on the blob; a no-op for files that did not come through the store. */
+    public void saveExtraction(String sha256, String ext, String text) {
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(sha256)),
+                new Update().set("extractions." + ext, text), BlobDocument.class);
+    }
+
+    // ---- garbage collection ----
+
+    /**
+     * Deletes blobs (and any leftover per-upload files) that have had no references for the grace
+     * period, after re-counting UPLOAD things so references dropped without {@link #detach}, or
+     * counts left stale by a crash, are corrected first. Message images count through
+     * {@link #retain}, so messages are not scanned. Also clears part files of expired sessions.
+     */
+    @Scheduled(fixedDelayString = "${javaclaw.uploads.gc-interval-ms:3600000}",
+            initialDelayString = "${javaclaw.uploads.gc-interval-ms:3600000}")
+    public int collectGarbage() {
+        Instant cutoff = Instant.now().minus(gcGrace);
+        int removed = 0;
+        List<BlobDocument> candidates = mongoTemplate.find(
+                Query.query(Criteria.where("refCount").lte(0).and("updatedAt").lt(cutoff)), BlobDocument.class);
+        for (BlobDocument blob : candidates) {
+            long refs = mongoTemplate.count(Query.query(Criteria.where("thingCategory").is(ThingCategory.UPLOAD)
+                    .and("payload.blobId").is(blob.getSha256())), ThingDocument.class);
+            if (refs > 0) {
+                mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(blob.getSha256())),
+                        new Update().set("refCount", refs), BlobDocument.class);
+                continue;
+            }
+            // Claim it: from here commits of the same bytes wait and attach refuses it
+            long claimed = mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(blob.getSha256())
+                            .and("refCount").lte(0).and("updatedAt").lt(cutoff)),
+                    new Update().set("collectingAt", Instant.now()), BlobDocument.class).getMatchedCount();
+            if (claimed == 0) continue; // re-referenced meanwhile
+            try {
+                Files.deleteIfExists(blobPath(blob.getSha256()));
+                if (blob.getLinks() != null) {
+                    for (String link : blob.getLinks()) Files.deleteIfExists(Path.of(link));
+                }
+                // A failed run leaves the mark; the next run finds the blob again and finishes it
+                mongoTemplate.remove(Query.query(Criteria.where("_id").is(blob.getSha256())
+                        .and("collectingAt").exists(true)), BlobDocument.class);
+                removed++;
+            } catch (IOException e) {
+                log.warn("Failed to delete blob {}: {}", blob.getSha256(), e.getMessage());
+            }
+        }
+        removed += removeStaleParts();
+        pruneParts();
+        if (removed > 0) log.info("Upload GC removed {} blob(s)/part file(s)", removed);
+        return removed;
+    }
+
+    private int removeStaleParts() {
+        Path dir = root.resolve("parts");
+        if (!Files.isDirectory(dir)) return 0;
+        Instant stale = Instant.now().minus(sessionTtl);
+        int removed = 0;
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path part : files.toList()) {
+                if (Files.getLastModifiedTime(part).toInstant().isAfter(stale)) continue;
+                String id = part.getFileName().toString().replace(".part", "");
+                if (session(id).isPresent()) continue;
+                Files.deleteIfExists(part);
+                removed++;
+            }
+        } catch (IOException e) {
+            log.warn("Failed to sweep upload part files: {}", e.getMessage());
+        }
+        return removed;
+    }
+
+    /** Drops running digests of sessions that expired or were abandoned on this node. */
+    private void pruneParts() {
+        if (parts.isEmpty()) return;
+        Query query = Query.query(Criteria.where("_id").in(parts.keySet()));
+        query.fields().include("_id");
+        Set<String> live = new HashSet<>();
+        for (UploadSessionDocument session : mongoTemplate.find(query, UploadSessionDocument.class)) {
+            live.add(session.getUploadSessionId());
+        }
+        parts.keySet().removeIf(id -> !live.contains(id));
+    }
+
+    /** Sessions with a running digest held on this node. */
+    int trackedParts() {
+        return parts.size();
+    }
+
+    // ---- internals ----
+
+    Path blobPath(String sha256) {
+        return root.resolve("blobs").resolve(sha256.substring(0, 2)).resolve(sha256);
+    }
+
+    private Path partFile(String uploadSessionId) throws IOException {
+        return partsDir().resolve(uploadSessionId + ".part");
+    }
+
+    private Path partsDir() throws IOException {
+        return Files.createDirectories(root.resolve("parts"));
+    }
+
+    /**
+     * Records the blob, then moves a fully hashed part file into place unless the blob already
+     * exists. The document is touched first so collection cannot start on it afterwards; if a
+     * collection is already deleting it, this waits for that to finish and restores the bytes.
+     */
+    private StoredBlob commit(Path part, String sha256, long size) throws IOException {
+        Path target = blobPath(sha256);
+        Instant now = Instant.now();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                mongoTemplate.upsert(Query.query(Criteria.where("_id").is(sha256).and("collectingAt").exists(false)),
+                        new Update().setOnInsert("size", size).setOnInsert("path", target.toString())
+                                .setOnInsert("refCount", 0L).setOnInsert("createdAt", now).set("updatedAt", now),
+                        BlobDocument.class);
+                break;
+            } catch (DuplicateKeyException e) {
+                // A concurrent upload inserted it first (the retry matches it) or a collection holds it
+                if (attempt == COMMIT_ATTEMPTS) {
+                    Files.deleteIfExists(part);
+                    throw new IOException("Blob " + sha256 + " is still being garbage collected");
+                }
+                try {
+                    Thread.sleep(COMMIT_RETRY_MS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    Files.deleteIfExists(part);
+                    throw new InterruptedIOException("Interrupted while committing blob " + sha256);
+                }
+            }
+        }
+        if (Files.exists(target)) {
+            Files.delete(part);
+        } else {
+            Files.createDirectories(target.getParent());
+            Files.move(part, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return new StoredBlob(sha256, size, target);
+    }
+
+    /** Re-hashes the first {@code offset} bytes of the part file, dropping anything written past it. */
+    private static void resume(PartState state, FileChannel part, long offset) throws IOException {
+        if (part.size() < offset) throw new IOException("Part file is shorter than the received offset " + offset);
+        state.digest = sha256();
+        ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+        part.position(0);
+        long remaining = offset;
+        while (remaining > 0) {
+            buf.clear().limit((int) Math.min(buf.capacity(), remaining));
+            int n = part.read(buf);
+            if (n < 0) break;
+            state.digest.update(buf.array(), 0, n);
+            remaining -= n;
+        }
+        part.truncate(offset);
+        state.offset = offset;
+    }
+
+    private static long copy(InputStream in, FileChannel out, MessageDigest digest, long limit) throws IOException {
+        byte[] buf = new byte[64 * 1024];
+        long total = 0;
+        int n;
+        while ((n = in.read(buf)) > 0) {
+            total += n;
+            if (total > limit) throw new IllegalArgumentException("Upload exceeds its declared size");
+            digest.update(buf, 0, n);
+            ByteBuffer chunk = ByteBuffer.wrap(buf, 0, n);
+            while (chunk.hasRemaining()) out.write(chunk);
+        }
+        return total;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package io.github.drompincen.javaclawv1.runtime.upload;
+
+import io.github.drompincen.javaclawv1.persistence.document.MessageDocument;
+import io.github.drompincen.javaclawv1.protocol.api.SendMessageRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.model.Media;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeType;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps image parts of chat messages out of the {@code messages} collection. Incoming base64
+ * images are decoded once, optionally downscaled so the long edge fits
+ * {@code javaclaw.images.max-long-edge} (the size providers resample to anyway, so larger
+ * images only cost bytes and image tokens), and written to the {@link BlobStore}; the message
+ * keeps the content hash in {@code blobId} and holds a reference on the blob until
+ * {@link #release} drops it. Dimensions are read from the image header before decoding: images
+ * over {@code javaclaw.images.max-pixels} are rejected, and larger ones are decoded subsampled
+ * so a big photo is never inflated at full resolution.
+ *
+ * Decoded {@link Media} is kept in an LRU bounded by {@code javaclaw.images.media-cache-mb},
+ * keyed by content hash, so an image is read from disk once rather than on every LLM step.
+ */
+@Service
+public class ImagePartStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ImagePartStore.class);
+
+    private final BlobStore blobStore;
+    private final boolean downscale;
+    private final int maxLongEdge;
+    private final long maxPixels;
+    private final long cacheBytes;
+    private final LinkedHashMap<String, Media> media = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+
+    public ImagePartStore(BlobStore blobStore, Environment env) {
+        this.blobStore = blobStore;
+        this.downscale = env.getProperty("javaclaw.images.downscale", Boolean.class, true);
+        this.maxLongEdge = env.getProperty("javaclaw.images.max-long-edge", Integer.class, 1568);
+        this.maxPixels = env.getProperty("javaclaw.images.max-pixels", Long.class, 40_000_000L);
+        this.cacheBytes = env.getProperty("javaclaw.images.media-cache-mb", Long.class, 64L) << 20;
+    }
+
+    /** An image whose header declares more pixels than {@code javaclaw.images.max-pixels}. */
+    public static class ImageTooLargeException extends IllegalArgumentException {
+        ImageTooLargeException(int width, int height, long maxPixels) {
+            super("Image is " + width + "x" + height + ", over the limit of " + maxPixels + " pixels");
+        }
+    }
+
+    /**
+     * Converts request parts to message parts, storing image data as blobs and taking a reference
+     * on each for the message.
+     *
+     * @throws IllegalArgumentException if an image part is not valid base64 or is too large
+     */
+    public List<MessageDocument.ContentPart> store(List<SendMessageRequest.ContentPart> parts) {
+        return parts.stream().map(p -> {
+            MessageDocument.ContentPart part = new MessageDocument.ContentPart();
+            part.setType(p.type());
+            part.setText(p.text());
+            part.setMediaType(p.mediaType());
+            if ("image".equals(p.type()) && p.data() != null) {
+                byte[] bytes;
+                try {
+                    bytes = Base64.getDecoder().decode(p.data());
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Image data must be base64", e);
+                }
+                String mediaType = p.mediaType() != null ? p.mediaType() : "image/png";
+                part.setMediaType(mediaType);
+                try {
+                    String sha = blobStore.store(new ByteArrayInputStream(fit(bytes, mediaType))).sha256();
+                    blobStore.retain(sha);
+                    part.setBlobId(sha);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to store image part", e);
+                }
+            } else {
+                part.setData(p.data());
+            }
+            return part;
+        }).toList();
+    }
+
+    /** Drops the blob references held by the image parts of messages that are being deleted. */
+    public void release(List<MessageDocument> messages) {
+        for (MessageDocument message : messages) {
+            if (message.getParts() == null) continue;
+            for (MessageDocument.ContentPart part : message.getParts()) {
+                if (part.getBlobId() != null) blobStore.release(part.getBlobId());
+            }
+        }
+    }
+
+    /** Decoded image for a stored part; reads the blob only on a cache miss. */
+    public Media media(String blobId, String mediaType) throws IOException {
+        synchronized (media) {
+            Media cached = media.get(blobId);
+            if (cached != null) return cached;
+        }
+        byte[] bytes = blobStore.read(blobId);
+        Media loaded = Media.builder()
+                .mimeType(MimeType.valueOf(mediaType != null ? mediaType : "image/png"))
+                .data(bytes)
+                .id(blobId)
+                .build();
+        synchronized (media) {
+            if (media.putIfAbsent(blobId, loaded) == null) {
+                cachedBytes += bytes.length;
+                Iterator<Map.Entry<String, Media>> eldest = media.entrySet().iterator();
+                while (cachedBytes > cacheBytes && eldest.hasNext()) {
+                    cachedBytes -= eldest.next().getValue().getDataAsByteArray().length;
+                    eldest.remove();
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Shrinks PNG/JPEG images whose long edge exceeds the limit; anything else is returned as is.
+     *
+     * @throws ImageTooLargeException if the header declares more than {@code max-pixels}
+     */
+    byte[] fit(byte[] bytes, String mediaType) {
+        if (!downscale) return bytes;
+        String format = switch (mediaType.toLowerCase()) {
+            case "image/png" -> "png";
+            case "image/jpeg", "image/jpg" -> "jpeg";
+            default -> null;
+        };
+        if (format == null) return bytes;
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) return bytes;
+            ImageReader reader = readers.next();
+            BufferedImage image;
+            int sourceWidth;
+            int sourceHeight;
+            try {
+                reader.setInput(in, true, true);
+                sourceWidth = reader.getWidth(0);
+                sourceHeight = reader.getHeight(0);
+                if ((long) sourceWidth * sourceHeight > maxPixels) {
+                    throw new ImageTooLargeException(sourceWidth, sourceHeight, maxPixels);
+                }
+                int longEdge = Math.max(sourceWidth, sourceHeight);
+                if (longEdge <= maxLongEdge) return bytes;
+                // Decode every n-th pixel, keeping at least the target size for the final resample
+                int step = longEdge / maxLongEdge;
+                ImageReadParam param = reader.getDefaultReadParam();
+                if (step > 1) param.setSourceSubsampling(step, step, 0, 0);
+                image = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+
+            double scale = (double) maxLongEdge / Math.max(sourceWidth, sourceHeight);
+            int width = Math.max(1, (int) Math.round(sourceWidth * scale));
+            int height = Math.max(1, (int) Math.round(sourceHeight * scale));
+            int type = "png".equals(format) ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+            BufferedImage scaled = new BufferedImage(width, height, type);
+            Graphics2D g = scaled.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(image, 0, 0, width, height, null);
+            } finally {
+                g.dispose();
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            if (!ImageIO.write(scaled, format, out)) return bytes;
+            log.debug("Downscaled {} image from {}x{} to {}x{}", format, sourceWidth, sourceHeight, width, height);
+            // Image tokens follow pixel count, so keep the smaller image even if it encodes larger
+            return out.toByteArray();
+        } catch (ImageTooLargeException e) {
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not downscale {} image, storing original: {}", mediaType, e.getMessage());
+            return bytes;
+        }
+    }
+}
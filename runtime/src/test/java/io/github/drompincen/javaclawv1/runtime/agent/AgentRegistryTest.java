@@ -0,0 +1,115 @@
+package io.github.drompincen.javaclawv1.runtime.agent;
+
+import io.github.drompincen.javaclawv1.persistence.document.AgentDocument;
+import io.github.drompincen.javaclawv1.persistence.repository.AgentRepository;
+import io.github.drompincen.javaclawv1.protocol.api.AgentRole;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AgentRegistryTest {
+
+    @Mock
+    private AgentRepository agentRepository;
+
+    private AgentRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new AgentRegistry(agentRepository, null);
+    }
+
+    @Test
+    void enabledAgentsAreLoadedOnceAndCached() {
+        when(agentRepository.findByEnabledTrue()).thenReturn(List.of(agent("pm", List.of("create_ticket"))));
+
+        assertThat(registry.enabledAgents()).extracting(AgentSnapshot::agentId).containsExactly("pm");
+        assertThat(registry.find("pm")).isPresent();
+        assertThat(registry.isToolAllowed("pm", "create_ticket")).isTrue();
+
+        verify(agentRepository, times(1)).findByEnabledTrue();
+        verify(agentRepository, never()).findById(any());
+    }
+
+    @Test
+    void isToolAllowedHonoursWildcardAndEmptyLists() {
+        when(agentRepository.findByEnabledTrue()).thenReturn(List.of(
+                agent("coder", List.of("*")),
+                agent("generalist", List.of()),
+                agent("pm", List.of("create_ticket"))));
+
+        assertThat(registry.isToolAllowed("coder", "shell_exec")).isTrue();
+        assertThat(registry.isToolAllowed("generalist", "shell_exec")).isTrue();
+        assertThat(registry.isToolAllowed("pm", "shell_exec")).isFalse();
+        assertThat(registry.isToolAllowed(null, "shell_exec")).isTrue();
+    }
+
+    @Test
+    void unknownAgentFallsBackToRepository() {
+        when(agentRepository.findByEnabledTrue()).thenReturn(List.of());
+        AgentDocument disabled = agent("old", List.of("read_file"));
+        disabled.setEnabled(false);
+        when(agentRepository.findById("old")).thenReturn(Optional.of(disabled));
+
+        assertThat(registry.isToolAllowed("old", "write_file")).isFalse();
+        assertThat(registry.isToolAllowed("old", "read_file")).isTrue();
+        assertThat(registry.find("old")).isEmpty();
+        verify(agentRepository, times(1)).findById("old");
+    }
+
+    @Test
+    void unknownAgentLookupIsCachedUntilInvalidated() {
+        when(agentRepository.findByEnabledTrue()).thenReturn(List.of());
+        when(agentRepository.findById("ghost")).thenReturn(Optional.empty());
+
+        assertThat(registry.isToolAllowed("ghost", "shell_exec")).isTrue();
+        assertThat(registry.isToolAllowed("ghost", "read_file")).isTrue();
+        verify(agentRepository, times(1)).findById("ghost");
+
+        registry.invalidate();
+        registry.isToolAllowed("ghost", "shell_exec");
+        verify(agentRepository, times(2)).findById("ghost");
+    }
+
+    @Test
+    void refreshReloadsSnapshot() {
+        when(agentRepository.findByEnabledTrue())
+                .thenReturn(List.of(agent("pm", List.of())))
+                .thenReturn(List.of(agent("pm", List.of()), agent("coder", List.of())));
+
+        assertThat(registry.enabledAgents()).hasSize(1);
+        assertThat(registry.refresh()).isEqualTo(2);
+        assertThat(registry.enabledAgents()).hasSize(2);
+        verify(agentRepository, times(2)).findByEnabledTrue();
+    }
+
+    @Test
+    void snapshotIsImmutable() {
+        AgentDocument doc = agent("pm", new java.util.ArrayList<>(List.of("create_ticket")));
+        when(agentRepository.findByEnabledTrue()).thenReturn(List.of(doc));
+
+        AgentSnapshot snapshot = registry.find("pm").orElseThrow();
+        doc.getAllowedTools().add("shell_exec");
+
+        assertThat(snapshot.allowsTool("shell_exec")).isFalse();
+        assertThat(registry.enabledAgents()).isUnmodifiable();
+    }
+
+    private AgentDocument agent(String id, List<String> tools) {
+        AgentDocument doc = new AgentDocument();
+        doc.setAgentId(id);
+        doc.setRole(AgentRole.SPECIALIST);
+        doc.setAllowedTools(tools);
+        doc.setEnabled(true);
+        return doc;
+    }
+}
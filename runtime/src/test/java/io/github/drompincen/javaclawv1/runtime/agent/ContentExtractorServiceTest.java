@@ -0,0 +1,133 @@
+package io.github.drompincen.javaclawv1.runtime.agent;
+
+import io.github.drompincen.javaclawv1.runtime.upload.BlobStore;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ContentExtractorServiceTest {
+
+    @TempDir
+    Path tmp;
+
+    private BlobStore blobStore;
+    private ContentExtractorService service;
+
+    @BeforeEach
+    void setUp() {
+        blobStore = mock(BlobStore.class);
+        service = new ContentExtractorService(blobStore, new MockEnvironment()
+                .withProperty("javaclaw.extraction.max-rows-per-file", "100"));
+    }
+
+    @Test
+    void filesKeepTheirOrderAndReportProgress() throws Exception {
+        Path notes = Files.writeString(tmp.resolve("notes.md"), "# Notes\nship it\n");
+        Path page = Files.writeString(tmp.resolve("page.html"), "<html><body><p>Hello</p></body></html>");
+        List<String> files = new CopyOnWriteArrayList<>();
+
+        String text = service.extractContent(List.of(notes.toString(), page.toString(), "/tmp/x.bin"),
+                (fileName, completed, total, cached) -> files.add(fileName + ":" + total));
+
+        assertThat(text).containsSubsequence("--- FILE: notes.md (md) ---", "ship it",
+                "--- FILE: page.html (html) ---", "Hello", "--- FILE: x.bin (bin) ---", "[unsupported format: bin]");
+        assertThat(text).doesNotContain("<p>");
+        assertThat(files).containsExactlyInAnyOrder("notes.md:3", "page.html:3", "x.bin:3");
+    }
+
+    @Test
+    void largeTextIsSampledInsteadOfRejected() throws Exception {
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) csv.append("row-").append(i).append(",value\n");
+        Path file = Files.writeString(tmp.resolve("big.csv"), csv);
+
+        String text = service.extractContent(List.of(file.toString()));
+
+        assertThat(text).contains("[large file: 100000 rows", "row-0,", "row-39,", "row-99999,", "rows omitted")
+                .doesNotContain("row-41,value");
+        assertThat(text.lines().filter(l -> l.startsWith("row-"))).hasSizeLessThanOrEqualTo(100);
+        assertThat(service.extractContent(List.of(file.toString()))).isEqualTo(text);
+    }
+
+    @Test
+    void repeatedUploadIsServedFromCacheByContentHash() throws Exception {
+        Path first = Files.writeString(tmp.resolve("a.txt"), "same bytes");
+        Path copy = Files.writeString(tmp.resolve("b.txt"), "same bytes");
+        List<Boolean> cached = new CopyOnWriteArrayList<>();
+
+        service.extractContent(List.of(first.toString()), (f, c, t, hit) -> cached.add(hit));
+        service.extractContent(List.of(copy.toString()), (f, c, t, hit) -> cached.add(hit));
+        Files.writeString(copy, "changed");
+        String changed = service.extractContent(List.of(copy.toString()), (f, c, t, hit) -> cached.add(hit));
+
+        assertThat(cached).containsExactly(false, true, false);
+        assertThat(changed).contains("changed");
+    }
+
+    @Test
+    void extractionIsRecordedOnTheBlobAndReusedAfterRestart() throws Exception {
+        Path file = Files.writeString(tmp.resolve("notes.txt"), "from disk");
+
+        service.extractContent(List.of(file.toString()));
+        verify(blobStore).saveExtraction(anyString(), eq("txt"), contains("from disk"));
+
+        when(blobStore.extraction(anyString(), eq("txt"))).thenReturn(Optional.of("from blob"));
+        ContentExtractorService restarted = new ContentExtractorService(blobStore, new MockEnvironment());
+        List<Boolean> cached = new CopyOnWriteArrayList<>();
+        assertThat(restarted.extractContent(List.of(file.toString()), (f, c, t, hit) -> cached.add(hit)))
+                .contains("from blob");
+        assertThat(cached).containsExactly(true);
+    }
+
+    @Test
+    void xlsxSheetsAreStreamedInOrder() throws Exception {
+        Path file = tmp.resolve("plan.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            var tasks = workbook.createSheet("Tasks");
+            tasks.createRow(0).createCell(0).setCellValue("Task");
+            var row = tasks.createRow(1);
+            row.createCell(0).setCellValue("Design");
+            row.createCell(2).setCellValue(3);
+            workbook.createSheet("People").createRow(0).createCell(0).setCellValue("Alice");
+            workbook.write(out);
+        }
+
+        String text = service.extractContent(List.of(file.toString()));
+
+        assertThat(text).containsSubsequence("[Sheet: Tasks]", "Task", "Design\t\t3", "[Sheet: People]", "Alice");
+    }
+
+    @Test
+    void samplerIsBoundedAndDeterministic() {
+        RowSampler sampler = new RowSampler(10);
+        for (int i = 0; i < 1_000; i++) sampler.add("r" + i);
+
+        StringBuilder out = new StringBuilder();
+        sampler.render(out);
+        List<String> rows = out.toString().lines().filter(l -> l.startsWith("r")).toList();
+
+        assertThat(sampler.sampled()).isTrue();
+        assertThat(rows).hasSizeLessThanOrEqualTo(10).startsWith("r0", "r1", "r2", "r3").endsWith("r998", "r999");
+        assertThat(out.toString()).contains("rows omitted");
+        RowSampler again = new RowSampler(10);
+        for (int i = 0; i < 1_000; i++) again.add("r" + i);
+        StringBuilder second = new StringBuilder();
+        again.render(second);
+        assertThat(second.toString()).isEqualTo(out.toString());
+    }
+}
@@ -3,6 +3,8 @@ package io.github.drompincen.javaclawv1.runtime.agent;
 import io.github.drompincen.javaclawv1.persistence.document.EventDocument;
 import io.github.drompincen.javaclawv1.persistence.repository.EventRepository;
 import io.github.drompincen.javaclawv1.protocol.event.EventType;
+import io.github.drompincen.javaclawv1.runtime.metrics.JavaClawMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -25,7 +27,7 @@ class EventServiceTest {
 
     @BeforeEach
     void setUp() {
-        eventService = new EventService(eventRepository);
+        eventService = new EventService(eventRepository, new JavaClawMetrics(new SimpleMeterRegistry()));
     }
 
     @Test
@@ -0,0 +1,197 @@
+package io.github.drompincen.javaclawv1.runtime.agent;
+
+import io.github.drompincen.javaclawv1.persistence.document.ThingDocument;
+import io.github.drompincen.javaclawv1.protocol.api.ThingCategory;
+import io.github.drompincen.javaclawv1.protocol.event.EventType;
+import io.github.drompincen.javaclawv1.runtime.thing.ThingService;
+import io.github.drompincen.javaclawv1.runtime.thing.ThingWriteResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@SuppressWarnings("deprecation")
+class JiraImportServiceTest {
+
+    @TempDir
+    Path tmp;
+
+    private ThingService thingService;
+    private EventService eventService;
+    private JiraImportService service;
+    private final List<Map<String, Object>> written = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        thingService = mock(ThingService.class);
+        eventService = mock(EventService.class);
+        service = new JiraImportService(thingService, eventService,
+                new MockEnvironment().withProperty("javaclaw.import.max-record-chars", "64"));
+        when(thingService.upsertAllByIdentity(any(), any(), any(), anyList())).thenAnswer(inv -> {
+            List<Map<String, Object>> payloads = inv.getArgument(3);
+            written.addAll(payloads);
+            List<ThingWriteResult> results = new ArrayList<>();
+            for (int i = 0; i < payloads.size(); i++) {
+                boolean failed = "[JC-7] Broken".equals(payloads.get(i).get("title"));
+                results.add(new ThingWriteResult(i, "id-" + i, true, failed ? "write failed" : null));
+            }
+            return results;
+        });
+        when(thingService.saveAll(anyList())).thenAnswer(inv -> {
+            List<ThingDocument> things = inv.getArgument(0);
+            List<ThingWriteResult> results = new ArrayList<>();
+            for (int i = 0; i < things.size(); i++) {
+                written.add(things.get(i).getPayload());
+                results.add(new ThingWriteResult(i, "new-" + i, true, null));
+            }
+            return results;
+        });
+    }
+
+    @Test
+    void largeCsvIsWrittenInBulkBatches() throws Exception {
+        StringBuilder csv = new StringBuilder("Issue key,Summary,Priority,Status\n");
+        for (int i = 1; i <= 2_500; i++) {
+            csv.append("JC-").append(i).append(",Ticket ").append(i).append(",High,Done\n");
+        }
+        Path file = Files.writeString(tmp.resolve("export.csv"), csv);
+
+        JiraImportService.ImportResult result = service.importFile(file.toString(), "proj-1");
+
+        assertThat(result.total()).isEqualTo(2_500);
+        assertThat(result.imported()).isEqualTo(2_500);
+        assertThat(result.errors()).isEmpty();
+        verify(thingService, times(3)).upsertAllByIdentity(eq("proj-1"), eq(ThingCategory.TICKET), eq("externalRef"), anyList());
+        verify(thingService, never()).saveAll(anyList());
+        verify(thingService, never()).createThing(any(), any(), any());
+        assertThat(written.get(0)).containsEntry("externalRef", "JC-1").containsEntry("title", "[JC-1] Ticket 1");
+    }
+
+    @Test
+    void rowsWithoutAnIssueKeyAreInsertedNotMergedByTitle() throws Exception {
+        Path file = Files.writeString(tmp.resolve("export.csv"),
+                "Issue key,Summary\nJC-1,Same title\n,Same title\n,Same title\n");
+
+        JiraImportService.ImportResult result = service.importFile(file.toString(), "proj-1");
+
+        assertThat(result.imported()).isEqualTo(3);
+        verify(thingService).upsertAllByIdentity(eq("proj-1"), eq(ThingCategory.TICKET), eq("externalRef"),
+                argThat(payloads -> payloads.size() == 1));
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ThingDocument>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(thingService).saveAll(inserted.capture());
+        assertThat(inserted.getValue()).hasSize(2).allSatisfy(thing -> {
+            assertThat(thing.getId()).isNull();
+            assertThat(thing.getProjectId()).isEqualTo("proj-1");
+            assertThat(thing.getThingCategory()).isEqualTo(ThingCategory.TICKET);
+            assertThat(thing.getPayload()).doesNotContainKey("externalRef");
+        });
+    }
+
+    @Test
+    void rowErrorsKeepTheirRowNumbers() throws Exception {
+        Path file = Files.writeString(tmp.resolve("export.csv"),
+                "Issue key,Summary\nJC-5,Fine\nJC-6,\nJC-7,Broken\n");
+
+        JiraImportService.ImportResult result = service.importFile(file.toString(), "proj-1");
+
+        assertThat(result.imported()).isEqualTo(1);
+        assertThat(result.errors()).containsExactly("Row 3: Empty title", "Row 4: write failed");
+    }
+
+    @Test
+    void quotedFieldsMayContainCommasQuotesAndNewlines() throws Exception {
+        Path file = Files.writeString(tmp.resolve("export.csv"),
+                "\uFEFFIssue key,Summary,Description\r\n"
+                        + "JC-1,\"Login, again\",\"Steps:\n1. open \"\"app\"\"\n2. fail\"\r\n"
+                        + "\r\n"
+                        + "JC-2,Signup,\n");
+
+        JiraImportService.ImportResult result = service.importFile(file.toString(), "proj-1");
+
+        assertThat(result.total()).isEqualTo(2);
+        assertThat(result.errors()).isEmpty();
+        assertThat(written).extracting(p -> p.get("title")).containsExactly("[JC-1] Login, again", "[JC-2] Signup");
+        assertThat(written.get(0)).containsEntry("description", "Steps:\n1. open \"app\"\n2. fail");
+    }
+
+    @Test
+    void oversizedRecordFailsItsRowAndTheImportContinues() throws Exception {
+        Path file = Files.writeString(tmp.resolve("export.csv"),
+                "Issue key,Summary\nJC-1,\"" + "x".repeat(200) + "\"\nJC-2,Fits\n");
+
+        JiraImportService.ImportResult result = service.importFile(file.toString(), "proj-1");
+
+        assertThat(result.total()).isEqualTo(2);
+        assertThat(result.imported()).isEqualTo(1);
+        assertThat(result.errors()).containsExactly("Row 2: Record exceeds 64 characters");
+        assertThat(written).extracting(p -> p.get("title")).containsExactly("[JC-2] Fits");
+    }
+
+    @Test
+    void missingTitleColumnStopsBeforeAnyWrite() throws Exception {
+        Path file = Files.writeString(tmp.resolve("export.csv"), "Issue key,Status\nJC-1,Done\n");
+
+        JiraImportService.ImportResult result = service.importFile(file.toString(), "proj-1");
+
+        assertThat(result.errors()).containsExactly("No 'Summary' or 'Title' column found. Headers: Issue key, Status");
+        verifyNoInteractions(thingService);
+    }
+
+    @Test
+    void executeEmitsProgressPerBatch() throws Exception {
+        StringBuilder csv = new StringBuilder("Summary\n");
+        for (int i = 1; i <= 1_500; i++) csv.append("Ticket ").append(i).append('\n');
+        Path file = Files.writeString(tmp.resolve("export.csv"), csv);
+
+        service.executeJiraImport("import " + file, "session-1", s -> "proj-1", m -> List.of(file.toString()));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, Object>> progress = ArgumentCaptor.forClass(Map.class);
+        verify(eventService, times(2)).emit(eq("session-1"), eq(EventType.TOOL_PROGRESS), progress.capture());
+        assertThat((int) progress.getAllValues().get(0).get("percent")).isBetween(1, 99);
+        assertThat(progress.getAllValues().get(0)).containsEntry("message", "1000 rows processed");
+        assertThat(progress.getAllValues().get(1)).containsEntry("percent", 100).containsEntry("tool", "jira_import")
+                .containsEntry("message", "1500 rows processed");
+    }
+
+    @Test
+    void xlsxIsStreamedThroughTheEventApi() throws Exception {
+        Path file = tmp.resolve("export.xlsx");
+        try (var workbook = new org.apache.poi.xssf.usermodel.XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            var sheet = workbook.createSheet("Issues");
+            var header = sheet.createRow(0);
+            header.createCell(0).setCellValue("Issue key");
+            header.createCell(1).setCellValue("Summary");
+            header.createCell(2).setCellValue("Priority");
+            var first = sheet.createRow(1);
+            first.createCell(0).setCellValue("JC-1");
+            first.createCell(1).setCellValue("Login bug");
+            first.createCell(2).setCellValue("Blocker");
+            var sparse = sheet.createRow(3);
+            sparse.createCell(1).setCellValue("No key");
+            workbook.write(out);
+        }
+
+        JiraImportService.ImportResult result = service.importFile(file.toString(), "proj-1");
+
+        assertThat(result.total()).isEqualTo(2);
+        assertThat(result.imported()).isEqualTo(2);
+        assertThat(written).extracting(p -> p.get("title")).containsExactly("[JC-1] Login bug", "No key");
+        assertThat(written.get(0)).containsEntry("priority", "CRITICAL");
+    }
+}
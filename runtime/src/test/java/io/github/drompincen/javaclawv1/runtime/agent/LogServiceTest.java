@@ -0,0 +1,240 @@
+package io.github.drompincen.javaclawv1.runtime.agent;
+
+import io.github.drompincen.javaclawv1.persistence.document.LlmInteractionDocument;
+import io.github.drompincen.javaclawv1.persistence.document.LogDocument;
+import io.github.drompincen.javaclawv1.persistence.repository.LlmInteractionRepository;
+import io.github.drompincen.javaclawv1.persistence.repository.LogRepository;
+import io.github.drompincen.javaclawv1.runtime.agent.llm.LlmCallInfo;
+import io.github.drompincen.javaclawv1.runtime.metrics.JavaClawMetrics;
+import io.github.drompincen.javaclawv1.runtime.metrics.LlmUsageRollupService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class LogServiceTest {
+
+    @Mock private LogRepository logRepository;
+    @Mock private LlmInteractionRepository llmInteractionRepository;
+    @Mock private LlmUsageRollupService usageRollups;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final JavaClawMetrics metrics = new JavaClawMetrics(registry);
+    private LogService logService;
+
+    @BeforeEach
+    void setUp() {
+        logService = new LogService(logRepository, llmInteractionRepository, metrics, usageRollups, new MockEnvironment()
+                .withProperty("javaclaw.logging.queue-capacity", "4")
+                .withProperty("javaclaw.logging.max-stack-frames", "2"));
+    }
+
+    @Test
+    void entriesAreQueuedUntilFlushedInOneBatch() {
+        logService.logInfo("test", "s1", "one", null);
+        logService.logWarn("test", "s1", "two", null);
+
+        verifyNoInteractions(logRepository);
+        assertThat(logService.pendingCount()).isEqualTo(2);
+
+        logService.flush();
+
+        List<LogDocument> batch = insertedLogs();
+        assertThat(batch).extracting(LogDocument::getMessage).containsExactly("one", "two");
+        assertThat(logService.pendingCount()).isZero();
+    }
+
+    @Test
+    void infoIsShedUnderPressureButErrorsAreKept() {
+        for (int i = 0; i < 5; i++) logService.logInfo("test", "s1", "info-" + i, null);
+        for (int i = 0; i < 10; i++) logService.logError("test", "s1", "error-" + i, null, null);
+
+        logService.flush();
+
+        ArgumentCaptor<List<LogDocument>> captor = logBatches();
+        verify(logRepository, times(2)).insert(captor.capture());
+        List<LogDocument> errors = captor.getAllValues().get(0);
+        List<LogDocument> infos = captor.getAllValues().get(1);
+        assertThat(errors).hasSize(10).allMatch(d -> d.getLevel() == LogDocument.LogLevel.ERROR);
+        assertThat(infos).extracting(LogDocument::getMessage).containsExactly("info-0", "info-1");
+        assertThat(registry.get("javaclaw.logs.dropped").tags("level", "INFO", "reason", "pressure")
+                .counter().count()).isEqualTo(3);
+    }
+
+    @Test
+    void errorsGetTruncatedStackTraceAndLongerTtl() {
+        Exception error = new IllegalStateException("outer", new RuntimeException("inner"));
+
+        logService.logInfo("test", "s1", "info", null);
+        logService.logError("test", "s1", "failed", error, null);
+        logService.flush();
+
+        ArgumentCaptor<List<LogDocument>> captor = logBatches();
+        verify(logRepository, times(2)).insert(captor.capture());
+        LogDocument errorDoc = captor.getAllValues().get(0).get(0);
+        LogDocument infoDoc = captor.getAllValues().get(1).get(0);
+
+        assertThat(errorDoc.getStackTrace())
+                .startsWith("java.lang.IllegalStateException: outer")
+                .contains("Caused by: java.lang.RuntimeException: inner")
+                .contains(" more");
+        assertThat(errorDoc.getStackTrace().lines().filter(l -> l.startsWith("\tat ")).count()).isEqualTo(4);
+        assertThat(Duration.between(errorDoc.getTimestamp(), errorDoc.getExpiresAt())).isEqualTo(Duration.ofDays(90));
+        assertThat(Duration.between(infoDoc.getTimestamp(), infoDoc.getExpiresAt())).isEqualTo(Duration.ofDays(7));
+    }
+
+    @Test
+    void failedWriteIsRetriedOnNextFlushAndDoesNotReachTheCaller() {
+        when(logRepository.insert(anyList())).thenThrow(new RuntimeException("mongo down")).thenReturn(List.of());
+        when(llmInteractionRepository.insert(anyList())).thenThrow(new RuntimeException("mongo down"));
+
+        logService.logError("test", "s1", "error", null, null);
+        logService.recordLlmInteraction("s1", null, "pm", null, 1, 10, 0, 50, true, null);
+        logService.flush();
+
+        assertThat(logService.pendingCount()).isEqualTo(2);
+        verify(usageRollups, never()).record(anyList());
+
+        logService.logError("test", "s1", "later", null, null);
+        logService.flush();
+
+        ArgumentCaptor<List<LogDocument>> captor = logBatches();
+        verify(logRepository, times(2)).insert(captor.capture());
+        assertThat(captor.getAllValues().get(1)).extracting(LogDocument::getMessage).containsExactly("error", "later");
+        assertThat(logService.pendingCount()).isEqualTo(1);
+        assertThat(registry.find("javaclaw.logs.dropped").counter()).isNull();
+    }
+
+    @Test
+    void partlyWrittenBatchIsRetriedEntryByEntrySkippingDuplicates() {
+        when(logRepository.insert(anyList()))
+                .thenThrow(new DuplicateKeyException("E11000"))
+                .thenThrow(new DuplicateKeyException("E11000"))
+                .thenReturn(List.of());
+
+        logService.logWarn("test", "s1", "written", null);
+        logService.logWarn("test", "s1", "pending", null);
+        logService.flush();
+
+        ArgumentCaptor<List<LogDocument>> captor = logBatches();
+        verify(logRepository, times(3)).insert(captor.capture());
+        assertThat(captor.getAllValues().get(2)).extracting(LogDocument::getMessage).containsExactly("pending");
+        assertThat(logService.pendingCount()).isZero();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void interactionsWrittenByAFailedAttemptAreRolledUpOnceByTheRetry() {
+        // First attempt writes "a" before failing; the retry finds "a" stored and writes "b"
+        when(llmInteractionRepository.insert(anyList()))
+                .thenThrow(new RuntimeException("connection reset"))
+                .thenThrow(new DuplicateKeyException("E11000"))
+                .thenThrow(new DuplicateKeyException("E11000"))
+                .thenReturn(List.of());
+
+        logService.recordLlmInteraction("s1", null, "a", null, 1, 10, 0, 50, true, null);
+        logService.recordLlmInteraction("s1", null, "b", null, 1, 10, 0, 50, true, null);
+        logService.flush();
+        verify(usageRollups, never()).record(anyList());
+
+        logService.flush();
+
+        ArgumentCaptor<List<LlmInteractionDocument>> captor = ArgumentCaptor.forClass(List.class);
+        verify(usageRollups).record(captor.capture());
+        assertThat(captor.getValue()).extracting(LlmInteractionDocument::getAgentId).containsExactly("a", "b");
+        assertThat(logService.pendingCount()).isZero();
+    }
+
+    @Test
+    void reportedUsageWinsOverEstimates() {
+        LlmCallInfo call = new LlmCallInfo();
+        call.setProvider("openai");
+        call.setModel("gpt-4o-2024-08-06");
+        call.setUsageReported(true);
+        call.setPromptTokens(1200);
+        call.setCompletionTokens(300);
+        call.setCachedTokens(1024);
+        call.setTimeToFirstTokenMs(500);
+        call.setGenerationMs(3500);
+
+        logService.recordLlmInteraction("s1", "p1", "coder", call, 4, 999, 999, 3600, true, null);
+
+        LlmInteractionDocument doc = saved();
+        assertThat(doc.getProvider()).isEqualTo("openai");
+        assertThat(doc.getModel()).isEqualTo("gpt-4o-2024-08-06");
+        assertThat(doc.getProjectId()).isEqualTo("p1");
+        assertThat(doc.getPromptTokens()).isEqualTo(1200);
+        assertThat(doc.getCompletionTokens()).isEqualTo(300);
+        assertThat(doc.getCachedTokens()).isEqualTo(1024);
+        assertThat(doc.isTokensEstimated()).isFalse();
+        assertThat(doc.getTimeToFirstTokenMs()).isEqualTo(500);
+        assertThat(doc.getTokensPerSecond()).isCloseTo(100.0, within(0.001));
+
+        assertThat(registry.get("javaclaw.llm.tokens").tags("provider", "openai", "type", "prompt")
+                .counter().count()).isEqualTo(1200);
+        assertThat(registry.get("javaclaw.llm.ttft").tag("agent", "coder").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void missingUsageFallsBackToFlaggedEstimates() {
+        LlmCallInfo call = new LlmCallInfo();
+        call.setProvider("anthropic");
+
+        logService.recordLlmInteraction("s1", "p1", "pm", call, 2, 80, 20, 900, true, null);
+
+        LlmInteractionDocument doc = saved();
+        assertThat(doc.getPromptTokens()).isEqualTo(80);
+        assertThat(doc.getCompletionTokens()).isEqualTo(20);
+        assertThat(doc.isTokensEstimated()).isTrue();
+        assertThat(doc.getTimeToFirstTokenMs()).isEqualTo(-1);
+    }
+
+    @Test
+    void nullCallIsRecordedWithoutProvider() {
+        logService.recordLlmInteraction("s1", null, "pm", null, 1, 10, 0, 50, false, "boom");
+
+        LlmInteractionDocument doc = saved();
+        assertThat(doc.getProvider()).isNull();
+        assertThat(doc.isSuccess()).isFalse();
+        assertThat(doc.getErrorMessage()).isEqualTo("boom");
+    }
+
+    @SuppressWarnings("unchecked")
+    private LlmInteractionDocument saved() {
+        logService.flush();
+        ArgumentCaptor<List<LlmInteractionDocument>> captor = ArgumentCaptor.forClass(List.class);
+        verify(llmInteractionRepository).insert(captor.capture());
+        assertThat(captor.getValue()).hasSize(1);
+        verify(usageRollups).record(captor.getValue());
+        return captor.getValue().get(0);
+    }
+
+    private List<LogDocument> insertedLogs() {
+        ArgumentCaptor<List<LogDocument>> captor = logBatches();
+        verify(logRepository).insert(captor.capture());
+        return captor.getValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<List<LogDocument>> logBatches() {
+        return ArgumentCaptor.forClass(List.class);
+    }
+}
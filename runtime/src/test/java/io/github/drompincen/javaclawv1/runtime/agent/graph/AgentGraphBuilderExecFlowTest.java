@@ -4,19 +4,24 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.drompincen.javaclawv1.persistence.document.AgentDocument;
 import io.github.drompincen.javaclawv1.persistence.repository.AgentRepository;
+import io.github.drompincen.javaclawv1.persistence.repository.SpanRepository;
 import io.github.drompincen.javaclawv1.protocol.api.AgentRole;
 import io.github.drompincen.javaclawv1.protocol.api.ToolRiskProfile;
 import io.github.drompincen.javaclawv1.protocol.event.EventType;
+import io.github.drompincen.javaclawv1.runtime.agent.AgentRegistry;
 import io.github.drompincen.javaclawv1.runtime.agent.EventService;
 import io.github.drompincen.javaclawv1.runtime.agent.LogService;
 import io.github.drompincen.javaclawv1.runtime.agent.ReminderAgentService;
 import io.github.drompincen.javaclawv1.runtime.agent.approval.ApprovalService;
 import io.github.drompincen.javaclawv1.runtime.agent.llm.LlmService;
+import io.github.drompincen.javaclawv1.runtime.metrics.JavaClawMetrics;
+import io.github.drompincen.javaclawv1.runtime.trace.Tracer;
 import io.github.drompincen.javaclawv1.runtime.tools.Tool;
 import io.github.drompincen.javaclawv1.runtime.tools.ToolContext;
 import io.github.drompincen.javaclawv1.runtime.tools.ToolRegistry;
 import io.github.drompincen.javaclawv1.runtime.tools.ToolResult;
 import io.github.drompincen.javaclawv1.runtime.tools.ToolStream;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -25,6 +30,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.mock.env.MockEnvironment;
 import reactor.core.publisher.Flux;
 
 import java.nio.file.Files;
@@ -84,8 +90,9 @@ class AgentGraphBuilderExecFlowTest {
 
         builder = new AgentGraphBuilder(
                 llmService, toolRegistry, eventService, approvalService,
-                checkpointSaver, agentRepository, logService, objectMapper,
-                reminderAgentService, null);
+                checkpointSaver, new AgentRegistry(agentRepository, null), logService, objectMapper,
+                reminderAgentService, null, new JavaClawMetrics(new SimpleMeterRegistry()),
+                new Tracer(mock(SpanRepository.class), new MockEnvironment()));
 
         when(llmService.isAvailable()).thenReturn(true);
         when(eventService.emit(any(), any(EventType.class), any())).thenReturn(null);
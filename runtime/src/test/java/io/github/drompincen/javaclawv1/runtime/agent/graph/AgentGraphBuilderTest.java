@@ -3,14 +3,19 @@ package io.github.drompincen.javaclawv1.runtime.agent.graph;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.drompincen.javaclawv1.persistence.document.AgentDocument;
 import io.github.drompincen.javaclawv1.persistence.repository.AgentRepository;
+import io.github.drompincen.javaclawv1.persistence.repository.SpanRepository;
 import io.github.drompincen.javaclawv1.protocol.api.AgentRole;
 import io.github.drompincen.javaclawv1.protocol.event.EventType;
+import io.github.drompincen.javaclawv1.runtime.agent.AgentRegistry;
 import io.github.drompincen.javaclawv1.runtime.agent.EventService;
 import io.github.drompincen.javaclawv1.runtime.agent.LogService;
 import io.github.drompincen.javaclawv1.runtime.agent.ReminderAgentService;
 import io.github.drompincen.javaclawv1.runtime.agent.approval.ApprovalService;
 import io.github.drompincen.javaclawv1.runtime.agent.llm.LlmService;
+import io.github.drompincen.javaclawv1.runtime.metrics.JavaClawMetrics;
+import io.github.drompincen.javaclawv1.runtime.trace.Tracer;
 import io.github.drompincen.javaclawv1.runtime.tools.ToolRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -19,6 +24,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.quality.Strictness;
 import org.mockito.junit.jupiter.MockitoSettings;
+import org.springframework.mock.env.MockEnvironment;
 import reactor.core.publisher.Flux;
 
 import java.util.List;
@@ -61,8 +67,9 @@ class AgentGraphBuilderTest {
 
         builder = new AgentGraphBuilder(
                 llmService, toolRegistry, eventService, approvalService,
-                checkpointSaver, agentRepository, logService, objectMapper,
-                reminderAgentService, null);
+                checkpointSaver, new AgentRegistry(agentRepository, null), logService, objectMapper,
+                reminderAgentService, null, new JavaClawMetrics(new SimpleMeterRegistry()),
+                new Tracer(mock(SpanRepository.class), new MockEnvironment()));
 
         controller = makeAgent("controller", AgentRole.CONTROLLER, "You are the controller.");
         generalist = makeAgent("generalist", AgentRole.SPECIALIST, "You are the generalist.");
@@ -0,0 +1,157 @@
+package io.github.drompincen.javaclawv1.runtime.agent.llm;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    @Test
+    void grantsUpToLimitThenQueues() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 2, 1, 8);
+        limiter.acquire(LlmPriority.INTERACTIVE, TIMEOUT);
+        limiter.acquire(LlmPriority.INTERACTIVE, TIMEOUT);
+
+        assertThat(limiter.stats().inFlight()).isEqualTo(2);
+        assertThatThrownBy(() -> limiter.acquire(LlmPriority.INTERACTIVE, Duration.ofMillis(50)))
+                .isInstanceOf(TimeoutException.class);
+        assertThat(limiter.stats().queued()).isZero();
+    }
+
+    @Test
+    void successIncreasesAndRateLimitHalvesLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 4, 1, 8);
+        for (int i = 0; i < 20; i++) {
+            limiter.acquire(LlmPriority.INTERACTIVE, TIMEOUT).onSuccess();
+        }
+        int grown = limiter.stats().limit();
+        assertThat(grown).isGreaterThan(4);
+
+        limiter.acquire(LlmPriority.INTERACTIVE, TIMEOUT).onRateLimited(Duration.ZERO);
+        assertThat(limiter.stats().limit()).isEqualTo(Math.max(1, (int) (grown / 2.0)));
+        assertThat(limiter.stats().rateLimitedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void burstOfRateLimitsDecreasesOnlyOnce() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 8, 1, 8);
+        var p1 = limiter.acquire(LlmPriority.INTERACTIVE, TIMEOUT);
+        var p2 = limiter.acquire(LlmPriority.INTERACTIVE, TIMEOUT);
+        var p3 = limiter.acquire(LlmPriority.INTERACTIVE, TIMEOUT);
+        p1.onRateLimited(Duration.ZERO);
+        p2.onRateLimited(Duration.ZERO);
+        p3.onRateLimited(Duration.ZERO);
+
+        assertThat(limiter.stats().limit()).isEqualTo(4);
+        assertThat(limiter.stats().inFlight()).isZero();
+    }
+
+    @Test
+    void retryAfterPausesNewGrants() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 4, 1, 8);
+        limiter.acquire(LlmPriority.INTERACTIVE, TIMEOUT).onRateLimited(Duration.ofMillis(300));
+
+        assertThat(limiter.stats().pausedForMs()).isPositive();
+        long start = System.nanoTime();
+        limiter.acquire(LlmPriority.INTERACTIVE, TIMEOUT).release();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(250);
+    }
+
+    @Test
+    void interactiveWaitersAreServedBeforePipeline() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 1, 1, 1);
+        AdaptiveConcurrencyLimiter.Permit held = limiter.acquire(LlmPriority.INTERACTIVE, TIMEOUT);
+
+        List<LlmPriority> order = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(2);
+        Thread pipeline = startWaiter(limiter, LlmPriority.PIPELINE, order, done);
+        awaitQueued(limiter, 1);
+        Thread interactive = startWaiter(limiter, LlmPriority.INTERACTIVE, order, done);
+        awaitQueued(limiter, 2);
+        assertThat(limiter.stats().queuedPipeline()).isEqualTo(1);
+        assertThat(limiter.stats().queuedInteractive()).isEqualTo(1);
+
+        held.onSuccess();
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        pipeline.join();
+        interactive.join();
+
+        assertThat(order).containsExactly(LlmPriority.INTERACTIVE, LlmPriority.PIPELINE);
+    }
+
+    @Test
+    void permitCompletionIsIdempotent() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 2, 1, 8);
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire(LlmPriority.SCHEDULED, TIMEOUT);
+        permit.onSuccess();
+        permit.release();
+
+        assertThat(limiter.stats().inFlight()).isZero();
+    }
+
+    @Test
+    void parsesRetryAfterSecondsAndMessages() {
+        assertThat(LlmConcurrencyLimiter.parseRetryAfter("2")).isEqualTo(Duration.ofSeconds(2));
+        assertThat(LlmConcurrencyLimiter.parseRetryAfter("1.5")).isEqualTo(Duration.ofMillis(1500));
+        assertThat(LlmConcurrencyLimiter.parseRetryAfter("soon")).isNull();
+        assertThat(LlmConcurrencyLimiter.retryAfter(new RuntimeException("429 Too Many Requests, retry-after: 7")))
+                .isEqualTo(Duration.ofSeconds(7));
+        assertThat(LlmConcurrencyLimiter.isRateLimit(new RuntimeException("overloaded_error"))).isTrue();
+        assertThat(LlmConcurrencyLimiter.isRateLimit(new RuntimeException("500 Internal Server Error"))).isFalse();
+    }
+
+    @Test
+    void retryClassificationUsesTheStatusCodeNotDigitsInTheMessage() {
+        assertThat(LlmConcurrencyLimiter.isRetryable(new RuntimeException("500 - {\"type\":\"api_error\"}"))).isTrue();
+        assertThat(LlmConcurrencyLimiter.isRetryable(new RuntimeException("HTTP 503 Service Unavailable"))).isTrue();
+        assertThat(LlmConcurrencyLimiter.isRetryable(new RuntimeException("wrapped",
+                new RuntimeException("529 - overloaded_error")))).isTrue();
+        assertThat(LlmConcurrencyLimiter.isRetryable(new RuntimeException("400 - prompt is too long: 4290 tokens")))
+                .isFalse();
+        assertThat(LlmConcurrencyLimiter.isRetryable(new RuntimeException("tool call req_5001 failed after 500ms")))
+                .isFalse();
+        assertThat(LlmConcurrencyLimiter.isRateLimit(new RuntimeException("request req_4291 used 529 tokens")))
+                .isFalse();
+        assertThat(LlmConcurrencyLimiter.isRateLimit(new RuntimeException("429 - rate_limit_error"))).isTrue();
+    }
+
+    @Test
+    void sessionTypesMapToPriorities() {
+        assertThat(LlmPriority.forSessionType(null)).isEqualTo(LlmPriority.INTERACTIVE);
+        assertThat(LlmPriority.forSessionType("scheduled_execution")).isEqualTo(LlmPriority.SCHEDULED);
+        assertThat(LlmPriority.forSessionType("pipeline")).isEqualTo(LlmPriority.PIPELINE);
+        assertThat(LlmPriority.forSessionType("extraction")).isEqualTo(LlmPriority.PIPELINE);
+    }
+
+    private Thread startWaiter(AdaptiveConcurrencyLimiter limiter, LlmPriority priority,
+                               List<LlmPriority> order, CountDownLatch done) {
+        return Thread.ofVirtual().start(() -> {
+            try {
+                AdaptiveConcurrencyLimiter.Permit p = limiter.acquire(priority, TIMEOUT);
+                order.add(priority);
+                p.onSuccess();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            } finally {
+                done.countDown();
+            }
+        });
+    }
+
+    private void awaitQueued(AdaptiveConcurrencyLimiter limiter, int queued) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (limiter.stats().queued() < queued && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package io.github.drompincen.javaclawv1.runtime.agent.llm;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LlmRouterTest {
+
+    private static final LlmRouter.Candidate ANTHROPIC = new LlmRouter.Candidate("anthropic", "claude");
+    private static final LlmRouter.Candidate OPENAI = new LlmRouter.Candidate("openai", "gpt-4o");
+
+    private LlmConcurrencyLimiter limiter;
+    private LlmRouter router;
+
+    @BeforeEach
+    void setUp() {
+        MockEnvironment env = new MockEnvironment()
+                .withProperty("javaclaw.llm.routing.min-samples", "4")
+                .withProperty("javaclaw.llm.routing.hedge.min-delay-ms", "100")
+                .withProperty("javaclaw.llm.routing.hedge.default-delay-ms", "3000");
+        limiter = new LlmConcurrencyLimiter(env);
+        router = new LlmRouter(env, limiter);
+    }
+
+    @Test
+    void healthyPreferredProviderStaysFirst() {
+        LlmRouter.Decision decision = router.route(List.of(ANTHROPIC, OPENAI));
+
+        assertThat(decision.order()).containsExactly(ANTHROPIC, OPENAI);
+        assertThat(decision.reason()).isEqualTo("preferred");
+        assertThat(router.route(List.of(OPENAI)).reason()).isEqualTo("only-provider");
+    }
+
+    @Test
+    void highErrorRateFailsOverToSecondary() {
+        LlmProviderHealth health = router.health(ANTHROPIC);
+        health.recordFailure();
+        health.recordFailure();
+        health.recordFailure();
+        health.recordSuccess();
+
+        LlmRouter.Decision decision = router.route(List.of(ANTHROPIC, OPENAI));
+
+        assertThat(decision.order()).containsExactly(OPENAI, ANTHROPIC);
+        assertThat(decision.reason()).isEqualTo("failover:error-rate:anthropic");
+    }
+
+    @Test
+    void errorRateNeedsMinimumSamples() {
+        router.health(ANTHROPIC).recordFailure();
+
+        assertThat(router.route(List.of(ANTHROPIC, OPENAI)).primary()).isEqualTo(ANTHROPIC);
+    }
+
+    @Test
+    void pausedProviderFailsOver() throws Exception {
+        limiter.forProvider("anthropic").acquire(LlmPriority.INTERACTIVE, Duration.ofSeconds(1))
+                .onRateLimited(Duration.ofSeconds(30));
+
+        LlmRouter.Decision decision = router.route(List.of(ANTHROPIC, OPENAI));
+
+        assertThat(decision.primary()).isEqualTo(OPENAI);
+        assertThat(decision.reason()).isEqualTo("failover:rate-limited:anthropic");
+    }
+
+    @Test
+    void allDegradedKeepsConfiguredOrder() throws Exception {
+        limiter.forProvider("anthropic").acquire(LlmPriority.INTERACTIVE, Duration.ofSeconds(1))
+                .onRateLimited(Duration.ofSeconds(30));
+        limiter.forProvider("openai").acquire(LlmPriority.INTERACTIVE, Duration.ofSeconds(1))
+                .onRateLimited(Duration.ofSeconds(30));
+
+        LlmRouter.Decision decision = router.route(List.of(ANTHROPIC, OPENAI));
+
+        assertThat(decision.order()).containsExactly(ANTHROPIC, OPENAI);
+        assertThat(decision.reason()).isEqualTo("all-degraded");
+    }
+
+    @Test
+    void hedgeDelayTracksTimeToFirstTokenPercentile() {
+        assertThat(router.hedgeDelay(ANTHROPIC)).isEqualTo(Duration.ofMillis(3000));
+
+        LlmProviderHealth health = router.health(ANTHROPIC);
+        for (long ms : new long[]{200, 300, 400, 1_200, 250, 350, 450, 380, 320, 260}) {
+            health.recordTimeToFirstToken(ms);
+        }
+        assertThat(router.hedgeDelay(ANTHROPIC)).isEqualTo(Duration.ofMillis(1_200));
+
+        LlmProviderHealth fast = router.health(OPENAI);
+        for (int i = 0; i < 10; i++) fast.recordTimeToFirstToken(20);
+        assertThat(router.hedgeDelay(OPENAI)).isEqualTo(Duration.ofMillis(100));
+    }
+
+    @Test
+    void healthWindowForgetsOldOutcomes() {
+        LlmProviderHealth health = router.health(ANTHROPIC);
+        for (int i = 0; i < LlmProviderHealth.OUTCOME_WINDOW; i++) health.recordFailure();
+        for (int i = 0; i < LlmProviderHealth.OUTCOME_WINDOW; i++) health.recordSuccess();
+
+        assertThat(health.errorRate()).isZero();
+        assertThat(health.stats().totalFailures()).isEqualTo(LlmProviderHealth.OUTCOME_WINDOW);
+    }
+}
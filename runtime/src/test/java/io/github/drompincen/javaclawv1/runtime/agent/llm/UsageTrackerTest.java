@@ -0,0 +1,68 @@
+package io.github.drompincen.javaclawv1.runtime.agent.llm;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.openai.api.OpenAiApi;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UsageTrackerTest {
+
+    @Test
+    void keepsLargestReportedUsageAcrossChunks() {
+        DefaultLlmService.UsageTracker tracker = new DefaultLlmService.UsageTracker();
+        tracker.observe(chunk("claude-sonnet-4-5-20250929", new DefaultUsage(1500, 1)));
+        assertThat(tracker.firstToken()).isTrue();
+        assertThat(tracker.firstToken()).isFalse();
+        tracker.observe(chunk(null, new DefaultUsage(0, 42)));
+        tracker.observe(chunk(null, new DefaultUsage(1500, 240)));
+
+        LlmCallInfo call = new LlmCallInfo();
+        call.setModel("configured-model");
+        tracker.commitTo(call);
+
+        assertThat(call.isUsageReported()).isTrue();
+        assertThat(call.getPromptTokens()).isEqualTo(1500);
+        assertThat(call.getCompletionTokens()).isEqualTo(240);
+        assertThat(call.getModel()).isEqualTo("claude-sonnet-4-5-20250929");
+        assertThat(call.getTimeToFirstTokenMs()).isGreaterThanOrEqualTo(0);
+    }
+
+    @Test
+    void readsCachedTokensFromOpenAiNativeUsage() {
+        OpenAiApi.Usage nativeUsage = new OpenAiApi.Usage(50, 2000, 2050,
+                new OpenAiApi.Usage.PromptTokensDetails(null, 1792), null, null, null);
+        DefaultLlmService.UsageTracker tracker = new DefaultLlmService.UsageTracker();
+        tracker.observe(chunk("gpt-4o", new DefaultUsage(2000, 50, 2050, nativeUsage)));
+
+        LlmCallInfo call = new LlmCallInfo();
+        tracker.commitTo(call);
+
+        assertThat(call.getCachedTokens()).isEqualTo(1792);
+    }
+
+    @Test
+    void noUsageLeavesCallUnreported() {
+        DefaultLlmService.UsageTracker tracker = new DefaultLlmService.UsageTracker();
+        tracker.observe(new ChatResponse(List.of(new Generation(new AssistantMessage("hi")))));
+
+        LlmCallInfo call = new LlmCallInfo();
+        tracker.commitTo(call);
+
+        assertThat(call.isUsageReported()).isFalse();
+        assertThat(call.getTimeToFirstTokenMs()).isEqualTo(-1);
+        assertThat(call.getTokensPerSecond()).isZero();
+    }
+
+    private ChatResponse chunk(String model, DefaultUsage usage) {
+        ChatResponseMetadata.Builder metadata = ChatResponseMetadata.builder().usage(usage);
+        if (model != null) metadata.model(model);
+        return new ChatResponse(List.of(new Generation(new AssistantMessage("x"))), metadata.build());
+    }
+}
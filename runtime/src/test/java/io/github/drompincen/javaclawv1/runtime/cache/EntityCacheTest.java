@@ -0,0 +1,202 @@
+package io.github.drompincen.javaclawv1.runtime.cache;
+
+import io.github.drompincen.javaclawv1.persistence.stream.ChangeStreamService;
+import io.github.drompincen.javaclawv1.runtime.metrics.JavaClawMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class EntityCacheTest {
+
+    private final Map<String, String> store = new HashMap<>();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final AtomicLong now = new AtomicLong();
+    private SimpleMeterRegistry registry;
+    private MockEnvironment env;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        env = new MockEnvironment()
+                .withProperty("javaclaw.cache.project.max-entries", "2")
+                .withProperty("javaclaw.cache.project.ttl-ms", "60000")
+                .withProperty("javaclaw.cache.fallback-ttl-ms", "5000");
+        store.put("p1", "Alpha");
+        store.put("p2", "Beta");
+        store.put("p3", "Gamma");
+    }
+
+    private EntityCache<String> cache() {
+        return new EntityCache<>("project", "projects", id -> {
+            loads.incrementAndGet();
+            return Optional.ofNullable(store.get(id));
+        }, 100, env, new JavaClawMetrics(registry), now::get);
+    }
+
+    private double lookups(String result) {
+        return registry.get("javaclaw.cache.lookups").tag("cache", "project").tag("result", result).counter().count();
+    }
+
+    @Test
+    void secondLookupIsServedFromMemory() {
+        EntityCache<String> cache = cache();
+
+        assertThat(cache.get("p1")).contains("Alpha");
+        assertThat(cache.get("p1")).contains("Alpha");
+
+        assertThat(loads).hasValue(1);
+        assertThat(lookups("miss")).isEqualTo(1);
+        assertThat(lookups("hit")).isEqualTo(1);
+    }
+
+    @Test
+    void missingIdsAreNotCached() {
+        EntityCache<String> cache = cache();
+
+        assertThat(cache.get("nope")).isEmpty();
+        store.put("nope", "Created later");
+
+        assertThat(cache.get("nope")).contains("Created later");
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvictedBeyondMaxEntries() {
+        EntityCache<String> cache = cache();
+        cache.get("p1");
+        cache.get("p2");
+        cache.get("p1");
+        cache.get("p3");
+
+        assertThat(cache.size()).isEqualTo(2);
+        loads.set(0);
+        cache.get("p1");
+        assertThat(loads).hasValue(0);
+        cache.get("p2");
+        assertThat(loads).hasValue(1);
+        assertThat(registry.get("javaclaw.cache.evictions").tag("cause", "size").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void withoutChangeStreamEntriesExpireAfterFallbackTtl() {
+        EntityCache<String> cache = cache();
+        cache.get("p1");
+        store.put("p1", "Renamed");
+
+        now.addAndGet(Duration.ofSeconds(4).toNanos());
+        assertThat(cache.get("p1")).contains("Alpha");
+        now.addAndGet(Duration.ofSeconds(2).toNanos());
+        assertThat(cache.get("p1")).contains("Renamed");
+    }
+
+    @Test
+    void changeStreamEventEvictsTheChangedIdOnly() {
+        Sinks.Many<ChangeStreamEvent<Document>> changes = Sinks.many().multicast().onBackpressureBuffer();
+        ChangeStreamService changeStreamService = mock(ChangeStreamService.class);
+        when(changeStreamService.watchKeys("projects")).thenReturn(changes.asFlux());
+        EntityCache<String> cache = cache();
+        cache.watch(changeStreamService);
+        cache.get("p1");
+        cache.get("p2");
+
+        // Stream is up: the fallback TTL no longer applies
+        now.addAndGet(Duration.ofSeconds(30).toNanos());
+        store.put("p1", "Renamed");
+        changes.tryEmitNext(changeTo("p1"));
+
+        loads.set(0);
+        assertThat(cache.get("p1")).contains("Renamed");
+        assertThat(cache.get("p2")).contains("Beta");
+        assertThat(loads).hasValue(1);
+        cache.stop();
+    }
+
+    @Test
+    void streamFailureClearsTheCache() {
+        Sinks.Many<ChangeStreamEvent<Document>> changes = Sinks.many().unicast().onBackpressureBuffer();
+        ChangeStreamService changeStreamService = mock(ChangeStreamService.class);
+        when(changeStreamService.watchKeys("projects")).thenReturn(changes.asFlux());
+        EntityCache<String> cache = cache();
+        cache.watch(changeStreamService);
+        cache.get("p1");
+
+        changes.tryEmitError(new IllegalStateException("not a replica set"));
+
+        assertThat(cache.size()).isZero();
+        cache.stop();
+    }
+
+    @Test
+    void evictingAnotherIdDuringALoadStillCachesIt() {
+        AtomicReference<EntityCache<String>> ref = new AtomicReference<>();
+        EntityCache<String> cache = new EntityCache<>("project", "projects", id -> {
+            loads.incrementAndGet();
+            ref.get().evict("p2");
+            return Optional.ofNullable(store.get(id));
+        }, 100, env, new JavaClawMetrics(registry), now::get);
+        ref.set(cache);
+
+        cache.get("p1");
+        cache.get("p1");
+
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void evictingTheSameIdDuringALoadDoesNotCacheTheStaleRead() {
+        AtomicReference<EntityCache<String>> ref = new AtomicReference<>();
+        EntityCache<String> cache = new EntityCache<>("project", "projects", id -> {
+            loads.incrementAndGet();
+            String read = store.get(id);
+            // a write lands between the read and publishing the entry
+            store.put(id, "Renamed");
+            ref.get().evict(id);
+            return Optional.ofNullable(read);
+        }, 100, env, new JavaClawMetrics(registry), now::get);
+        ref.set(cache);
+
+        assertThat(cache.get("p1")).contains("Alpha");
+        assertThat(cache.size()).isZero();
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void disabledCacheAlwaysLoads() {
+        env.setProperty("javaclaw.cache.project.enabled", "false");
+        EntityCache<String> cache = cache();
+
+        cache.get("p1");
+        cache.get("p1");
+
+        assertThat(loads).hasValue(2);
+        assertThat(cache.size()).isZero();
+        assertThat(registry.find("javaclaw.cache.lookups").counter()).isNull();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ChangeStreamEvent<Document> changeTo(String id) {
+        ChangeStreamDocument<Document> raw = mock(ChangeStreamDocument.class);
+        when(raw.getDocumentKey()).thenReturn(new BsonDocument("_id", new BsonString(id)));
+        ChangeStreamEvent<Document> event = mock(ChangeStreamEvent.class);
+        when(event.getRaw()).thenReturn(raw);
+        return event;
+    }
+}
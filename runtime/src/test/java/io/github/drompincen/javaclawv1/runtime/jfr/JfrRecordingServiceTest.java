@@ -0,0 +1,95 @@
+package io.github.drompincen.javaclawv1.runtime.jfr;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JfrRecordingServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private JfrRecordingService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new JfrRecordingService(new MockEnvironment()
+                .withProperty("javaclaw.jfr.dir", dir.toString())
+                .withProperty("javaclaw.jfr.max-duration-seconds", "120")
+                .withProperty("javaclaw.jfr.max-running", "1"));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (JfrRecordingService.RecordingInfo info : service.list()) {
+            service.delete(info.id());
+        }
+    }
+
+    @Test
+    void profileEnablesAllJavaClawEvents() throws Exception {
+        Map<String, String> settings = JfrRecordingService.settings();
+
+        for (String event : List.of("AgentStep", "LlmCall", "ToolCall", "EventEmit", "CheckpointSave")) {
+            assertThat(settings).containsEntry("javaclaw." + event + "#enabled", "true");
+        }
+        // JDK default profile is still underneath
+        assertThat(settings).containsKey("jdk.GarbageCollection#enabled");
+    }
+
+    @Test
+    void eventsAreDisabledOutsideARecording() {
+        AgentStepEvent event = new AgentStepEvent();
+        event.begin();
+        event.end();
+
+        assertThat(event.shouldCommit()).isFalse();
+    }
+
+    @Test
+    void recordingCapturesCustomEvents() throws Exception {
+        JfrRecordingService.RecordingInfo info = service.start(Duration.ofMinutes(10));
+        assertThat(info.durationSeconds()).isEqualTo(120);
+
+        ToolCallEvent event = new ToolCallEvent();
+        event.begin();
+        event.end();
+        assertThat(event.shouldCommit()).isTrue();
+        event.sessionId = "s1";
+        event.tool = "read_file";
+        event.outputBytes = 42;
+        event.commit();
+
+        service.stop(info.id());
+        Path file = service.dump(info.id()).orElseThrow();
+
+        List<RecordedEvent> toolEvents = RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getEventType().getName().equals("javaclaw.ToolCall"))
+                .toList();
+        assertThat(toolEvents).hasSize(1);
+        assertThat(toolEvents.get(0).getString("tool")).isEqualTo("read_file");
+        assertThat(toolEvents.get(0).getLong("outputBytes")).isEqualTo(42);
+    }
+
+    @Test
+    void concurrentRecordingsAreCapped() throws Exception {
+        service.start(Duration.ofSeconds(30));
+
+        assertThatThrownBy(() -> service.start(Duration.ofSeconds(30)))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> service.start(Duration.ZERO))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
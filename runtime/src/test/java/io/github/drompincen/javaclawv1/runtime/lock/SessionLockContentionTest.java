@@ -0,0 +1,95 @@
+package io.github.drompincen.javaclawv1.runtime.lock;
+
+import io.github.drompincen.javaclawv1.persistence.document.LockDocument;
+import io.github.drompincen.javaclawv1.runtime.agent.llm.TestMongoConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Contention benchmark against a real (embedded) MongoDB: 100 acquirers race for the same
+ * session lock, repeatedly, and exactly one must win each round with a strictly larger
+ * fencing token than the previous winner.
+ */
+@DataMongoTest
+@ActiveProfiles("test")
+@ContextConfiguration(classes = TestMongoConfiguration.class)
+class SessionLockContentionTest {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionLockContentionTest.class);
+
+    private static final int ACQUIRERS = 100;
+    private static final int ROUNDS = 20;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    void clean() {
+        mongoTemplate.dropCollection(LockDocument.class);
+        mongoTemplate.indexOps(LockDocument.class).ensureIndex(new Index("sessionId", Sort.Direction.ASC).unique());
+    }
+
+    @Test
+    void hundredConcurrentAcquirersYieldOneHolderPerRound() throws Exception {
+        List<SessionLockService> nodes = new ArrayList<>();
+        for (int i = 0; i < ACQUIRERS; i++) {
+            nodes.add(new SessionLockService(mongoTemplate, new MockEnvironment()));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(ACQUIRERS);
+        long previousToken = 0;
+        long totalNanos = 0;
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Optional<SessionLock>>> attempts = new ArrayList<>();
+                for (SessionLockService node : nodes) {
+                    attempts.add(pool.submit(() -> {
+                        start.await();
+                        return node.tryAcquire("contended");
+                    }));
+                }
+                long t0 = System.nanoTime();
+                start.countDown();
+                List<SessionLock> winners = new ArrayList<>();
+                for (Future<Optional<SessionLock>> attempt : attempts) {
+                    attempt.get(30, TimeUnit.SECONDS).ifPresent(winners::add);
+                }
+                totalNanos += System.nanoTime() - t0;
+
+                assertThat(winners).hasSize(1);
+                SessionLock winner = winners.get(0);
+                assertThat(winner.fencingToken()).isGreaterThan(previousToken);
+                previousToken = winner.fencingToken();
+
+                nodes.get(0).release(winner);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        log.info("{} rounds of {} concurrent acquirers: {} ms per round", ROUNDS, ACQUIRERS,
+                TimeUnit.NANOSECONDS.toMillis(totalNanos / ROUNDS));
+        assertThat(mongoTemplate.count(new org.springframework.data.mongodb.core.query.Query(), LockDocument.class))
+                .isEqualTo(1);
+    }
+}
@@ -1,109 +1,188 @@
 package io.github.drompincen.javaclawv1.runtime.lock;
 
+import com.mongodb.client.result.UpdateResult;
 import io.github.drompincen.javaclawv1.persistence.document.LockDocument;
-import io.github.drompincen.javaclawv1.persistence.repository.LockRepository;
+import org.bson.Document;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-
-import java.time.Instant;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class SessionLockServiceTest {
 
     @Mock
-    private LockRepository lockRepository;
+    private MongoTemplate mongoTemplate;
 
     private SessionLockService lockService;
 
     @BeforeEach
     void setUp() {
-        lockService = new SessionLockService(lockRepository);
+        lockService = new SessionLockService(mongoTemplate, new MockEnvironment());
     }
 
     @Test
-    void tryAcquireSucceedsWhenNoLockExists() {
-        when(lockRepository.findBySessionId("s1")).thenReturn(Optional.empty());
-        when(lockRepository.save(any(LockDocument.class))).thenAnswer(inv -> inv.getArgument(0));
+    void tryAcquireClaimsFreeLockAndReturnsFencingToken() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(LockDocument.class))).thenAnswer(inv -> granted(inv.getArgument(1), 7));
+
+        Optional<SessionLock> lock = lockService.tryAcquire("s1");
+
+        assertThat(lock).isPresent();
+        assertThat(lock.get().fencingToken()).isEqualTo(7);
+        assertThat(lockService.heldCount()).isEqualTo(1);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        ArgumentCaptor<FindAndModifyOptions> options = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+        verify(mongoTemplate).findAndModify(query.capture(), update.capture(), options.capture(), eq(LockDocument.class));
+        assertThat(query.getValue().getQueryObject().get("sessionId")).isEqualTo("s1");
+        assertThat((Document) query.getValue().getQueryObject().get("expiresAt")).containsKey("$lte");
+        assertThat((Document) update.getValue().getUpdateObject().get("$inc")).containsEntry("fencingToken", 1);
+        assertThat(options.getValue().isUpsert()).isTrue();
+        assertThat(options.getValue().isReturnNew()).isTrue();
+    }
 
-        Optional<String> owner = lockService.tryAcquire("s1");
+    @Test
+    void tryAcquireFailsWhenActiveLockExists() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(LockDocument.class))).thenThrow(new DuplicateKeyException("E11000 duplicate key"));
 
-        assertThat(owner).isPresent();
-        verify(lockRepository).save(any(LockDocument.class));
+        assertThat(lockService.tryAcquire("s1")).isEmpty();
+        assertThat(lockService.heldCount()).isZero();
     }
 
     @Test
-    void tryAcquireFailsWhenActiveLockExists() {
-        LockDocument existing = new LockDocument();
-        existing.setSessionId("s1");
-        existing.setOwner("other-owner");
-        existing.setExpiresAt(Instant.now().plusSeconds(30));
-        when(lockRepository.findBySessionId("s1")).thenReturn(Optional.of(existing));
+    void heartbeatRenewsHeldLocks() {
+        SessionLock lock = acquire("s1", 3);
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(LockDocument.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        lockService.heartbeat();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).updateFirst(query.capture(), any(Update.class), eq(LockDocument.class));
+        assertThat(query.getValue().getQueryObject())
+                .containsEntry("sessionId", "s1")
+                .containsEntry("owner", lock.owner())
+                .containsEntry("fencingToken", 3L);
+        assertThat(lock.isLost()).isFalse();
+    }
 
-        Optional<String> owner = lockService.tryAcquire("s1");
+    @Test
+    void takenOverLockIsMarkedLostAndFailsFencingCheck() {
+        SessionLock lock = acquire("s1", 3);
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(LockDocument.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        assertThat(lockService.renew(lock)).isFalse();
+
+        assertThat(lock.isLost()).isTrue();
+        assertThat(lockService.heldCount()).isZero();
+        assertThatThrownBy(() -> lockService.checkFencingToken(lock))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("fencing token 3");
+    }
 
-        assertThat(owner).isEmpty();
+    @Test
+    void fencingCheckIsAWriteMatchedOnTheToken() {
+        SessionLock lock = acquire("s1", 4);
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(LockDocument.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        lockService.checkFencingToken(lock);
+
+        assertThat(lock.isLost()).isFalse();
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).updateFirst(query.capture(), any(Update.class), eq(LockDocument.class));
+        assertThat(query.getValue().getQueryObject()).containsEntry("fencingToken", 4L);
+        verify(mongoTemplate, never()).exists(any(Query.class), eq(LockDocument.class));
     }
 
     @Test
-    void tryAcquireSucceedsWhenLockIsExpired() {
-        LockDocument expired = new LockDocument();
-        expired.setSessionId("s1");
-        expired.setOwner("old-owner");
-        expired.setExpiresAt(Instant.now().minusSeconds(10));
-        when(lockRepository.findBySessionId("s1")).thenReturn(Optional.of(expired));
-        when(lockRepository.save(any(LockDocument.class))).thenAnswer(inv -> inv.getArgument(0));
-
-        Optional<String> owner = lockService.tryAcquire("s1");
-
-        assertThat(owner).isPresent();
-        verify(lockRepository).delete(expired);
+    void startupDropsTtlIndexAndCreatesUniqueSessionIndex() {
+        IndexOperations indexes = mock(IndexOperations.class);
+        when(mongoTemplate.indexOps(LockDocument.class)).thenReturn(indexes);
+        when(indexes.getIndexInfo()).thenReturn(List.of(IndexInfo.indexInfoOf(new Document("name", "expiresAt")
+                .append("key", new Document("expiresAt", 1))
+                .append("expireAfterSeconds", 60))));
+
+        lockService.ensureIndexes();
+
+        verify(indexes).dropIndex("expiresAt");
+        ArgumentCaptor<IndexDefinition> index = ArgumentCaptor.forClass(IndexDefinition.class);
+        verify(indexes).ensureIndex(index.capture());
+        assertThat(index.getValue().getIndexKeys()).containsOnlyKeys("sessionId");
+        assertThat(index.getValue().getIndexOptions()).containsEntry("unique", true);
     }
 
     @Test
-    void releaseDeletesLockForCorrectOwner() {
-        LockDocument lock = new LockDocument();
-        lock.setSessionId("s1");
-        lock.setOwner("my-owner");
-        when(lockRepository.findBySessionId("s1")).thenReturn(Optional.of(lock));
+    void startupKeepsAnExistingUniqueSessionIndex() {
+        IndexOperations indexes = mock(IndexOperations.class);
+        when(mongoTemplate.indexOps(LockDocument.class)).thenReturn(indexes);
+        when(indexes.getIndexInfo()).thenReturn(List.of(new IndexInfo(
+                List.of(IndexField.create("sessionId", Sort.Direction.ASC)), "sessionId_1", true, false, null)));
 
-        lockService.release("s1", "my-owner");
+        lockService.ensureIndexes();
 
-        verify(lockRepository).delete(lock);
+        verify(indexes, never()).ensureIndex(any());
+        verify(indexes, never()).dropIndex(any());
     }
 
     @Test
-    void releaseDoesNothingForWrongOwner() {
-        LockDocument lock = new LockDocument();
-        lock.setSessionId("s1");
-        lock.setOwner("other-owner");
-        when(lockRepository.findBySessionId("s1")).thenReturn(Optional.of(lock));
+    void releaseFreesLockForItsHolderOnly() {
+        SessionLock lock = acquire("s1", 5);
 
-        lockService.release("s1", "wrong-owner");
+        lockService.release(lock);
 
-        verify(lockRepository, never()).delete(any(LockDocument.class));
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(query.capture(), update.capture(), eq(LockDocument.class));
+        assertThat(query.getValue().getQueryObject()).containsEntry("fencingToken", 5L);
+        assertThat((Document) update.getValue().getUpdateObject().get("$set")).containsKey("expiresAt");
+        assertThat(lockService.heldCount()).isZero();
     }
 
     @Test
-    void isLockedReturnsTrueForActiveLock() {
-        LockDocument lock = new LockDocument();
-        lock.setExpiresAt(Instant.now().plusSeconds(30));
-        when(lockRepository.findBySessionId("s1")).thenReturn(Optional.of(lock));
+    void isLockedChecksForUnexpiredLock() {
+        when(mongoTemplate.exists(any(Query.class), eq(LockDocument.class))).thenReturn(true);
 
         assertThat(lockService.isLocked("s1")).isTrue();
     }
 
-    @Test
-    void isLockedReturnsFalseWhenNoLock() {
-        when(lockRepository.findBySessionId("s1")).thenReturn(Optional.empty());
+    private SessionLock acquire(String sessionId, long token) {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(LockDocument.class))).thenAnswer(inv -> granted(inv.getArgument(1), token));
+        return lockService.tryAcquire(sessionId).orElseThrow();
+    }
 
-        assertThat(lockService.isLocked("s1")).isFalse();
+    private static LockDocument granted(Update update, long token) {
+        Document set = (Document) update.getUpdateObject().get("$set");
+        LockDocument doc = new LockDocument();
+        doc.setOwner((String) set.get("owner"));
+        doc.setFencingToken(token);
+        return doc;
     }
 }
@@ -0,0 +1,150 @@
+package io.github.drompincen.javaclawv1.runtime.metrics;
+
+import io.github.drompincen.javaclawv1.persistence.document.LlmInteractionDocument;
+import io.github.drompincen.javaclawv1.persistence.document.LlmUsageBucketDocument;
+import io.github.drompincen.javaclawv1.persistence.document.LlmUsageBucketDocument.Granularity;
+import io.github.drompincen.javaclawv1.runtime.metrics.LlmUsageRollupService.Segment;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LlmUsageRollupServiceTest {
+
+    private static final Instant LONG_AGO = Instant.parse("2000-01-01T00:00:00Z");
+
+    @Test
+    void planUsesCoarsestBucketsThatFitAndMinutesAtTheEdges() {
+        List<Segment> plan = LlmUsageRollupService.plan(
+                Instant.parse("2026-03-01T22:40:10Z"), Instant.parse("2026-03-04T01:15:00Z"), LONG_AGO, LONG_AGO);
+
+        assertThat(plan).containsExactly(
+                segment(Granularity.MINUTE, "2026-03-01T22:40:00Z", "2026-03-01T23:00:00Z"),
+                segment(Granularity.HOUR, "2026-03-01T23:00:00Z", "2026-03-02T00:00:00Z"),
+                segment(Granularity.DAY, "2026-03-02T00:00:00Z", "2026-03-04T00:00:00Z"),
+                segment(Granularity.HOUR, "2026-03-04T00:00:00Z", "2026-03-04T01:00:00Z"),
+                segment(Granularity.MINUTE, "2026-03-04T01:00:00Z", "2026-03-04T01:15:00Z"));
+    }
+
+    @Test
+    void shortRangeStaysInMinuteBuckets() {
+        List<Segment> plan = LlmUsageRollupService.plan(
+                Instant.parse("2026-03-01T11:30:00Z"), Instant.parse("2026-03-01T12:20:30Z"), LONG_AGO, LONG_AGO);
+
+        assertThat(plan).containsExactly(
+                segment(Granularity.MINUTE, "2026-03-01T11:30:00Z", "2026-03-01T12:21:00Z"));
+    }
+
+    @Test
+    void startPastMinuteRetentionIsWidenedToTheHour() {
+        List<Segment> plan = LlmUsageRollupService.plan(
+                Instant.parse("2026-03-01T10:40:00Z"), Instant.parse("2026-03-01T13:05:00Z"),
+                Instant.parse("2026-03-01T12:00:00Z"), LONG_AGO);
+
+        assertThat(plan).containsExactly(
+                segment(Granularity.HOUR, "2026-03-01T10:00:00Z", "2026-03-01T13:00:00Z"),
+                segment(Granularity.MINUTE, "2026-03-01T13:00:00Z", "2026-03-01T13:05:00Z"));
+    }
+
+    @Test
+    void recordUpsertsOneBucketPerGranularityAndKey() {
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        BulkOperations bulk = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, LlmUsageBucketDocument.class)).thenReturn(bulk);
+        LlmUsageRollupService service = new LlmUsageRollupService(mongoTemplate, new MockEnvironment());
+
+        service.record(List.of(
+                interaction("coder", "2026-03-01T10:00:05Z", 100, 20, true),
+                interaction("coder", "2026-03-01T10:00:40Z", 50, 10, false),
+                interaction("pm", "2026-03-01T10:00:40Z", 10, 1, true)));
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(bulk, times(6)).upsert(queries.capture(), updates.capture());
+        verify(bulk).execute();
+
+        assertThat(queries.getAllValues().get(0).getQueryObject().get("_id"))
+                .isEqualTo("MINUTE|" + Instant.parse("2026-03-01T10:00:00Z").getEpochSecond() + "|coder|p1|openai|gpt-4o");
+        Document inc = (Document) updates.getAllValues().get(0).getUpdateObject().get("$inc");
+        assertThat(inc.get("calls")).isEqualTo(2L);
+        assertThat(inc.get("errors")).isEqualTo(1L);
+        assertThat(inc.get("promptTokens")).isEqualTo(150L);
+        assertThat(inc.get("completionTokens")).isEqualTo(30L);
+    }
+
+    @Test
+    void rejectedBucketUpdatesAreResentAloneOnTheNextCall() {
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        BulkOperations failing = mock(BulkOperations.class);
+        BulkOperations retry = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, LlmUsageBucketDocument.class))
+                .thenReturn(failing, retry);
+        MongoBulkWriteException rejected = new MongoBulkWriteException(
+                BulkWriteResult.acknowledged(0, 0, 0, 2, List.of(), List.of()),
+                List.of(new BulkWriteError(11000, "E11000", new BsonDocument(), 1)),
+                null, new ServerAddress(), Set.of());
+        when(failing.execute()).thenThrow(new BulkOperationException("rejected", rejected));
+        LlmUsageRollupService service = new LlmUsageRollupService(mongoTemplate, new MockEnvironment());
+
+        assertThatThrownBy(() -> service.record(List.of(interaction("coder", "2026-03-01T10:00:05Z", 100, 20, true))))
+                .isInstanceOf(BulkOperationException.class);
+        assertThat(service.unappliedCount()).isEqualTo(1);
+
+        service.retryUnapplied();
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        verify(retry).upsert(queries.capture(), any(Update.class));
+        assertThat(queries.getValue().getQueryObject().getString("_id")).startsWith("HOUR|");
+        assertThat(service.unappliedCount()).isZero();
+    }
+
+    @Test
+    void emptyBatchDoesNotTouchMongo() {
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        new LlmUsageRollupService(mongoTemplate, new MockEnvironment()).record(List.of());
+
+        verify(mongoTemplate, times(0)).bulkOps(any(BulkOperations.BulkMode.class), eq(LlmUsageBucketDocument.class));
+    }
+
+    private static Segment segment(Granularity g, String start, String end) {
+        return new Segment(g, Instant.parse(start), Instant.parse(end));
+    }
+
+    private static LlmInteractionDocument interaction(String agentId, String timestamp, int prompt, int completion,
+                                                      boolean success) {
+        LlmInteractionDocument doc = new LlmInteractionDocument();
+        doc.setAgentId(agentId);
+        doc.setProjectId("p1");
+        doc.setProvider("openai");
+        doc.setModel("gpt-4o");
+        doc.setTimestamp(Instant.parse(timestamp));
+        doc.setPromptTokens(prompt);
+        doc.setCompletionTokens(completion);
+        doc.setSuccess(success);
+        doc.setTimeToFirstTokenMs(-1);
+        return doc;
+    }
+}
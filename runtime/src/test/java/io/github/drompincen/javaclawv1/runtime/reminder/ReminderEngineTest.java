@@ -0,0 +1,176 @@
+package io.github.drompincen.javaclawv1.runtime.reminder;
+
+import io.github.drompincen.javaclawv1.persistence.document.ThingDocument;
+import io.github.drompincen.javaclawv1.protocol.api.ThingCategory;
+import io.github.drompincen.javaclawv1.protocol.event.EventType;
+import io.github.drompincen.javaclawv1.runtime.agent.EventService;
+import io.github.drompincen.javaclawv1.runtime.thing.ThingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ReminderEngineTest {
+
+    private ThingService thingService;
+    private EventService eventService;
+    private ReminderEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        thingService = mock(ThingService.class);
+        eventService = mock(EventService.class);
+        engine = new ReminderEngine(thingService, eventService, null,
+                new MockEnvironment().withProperty("javaclaw.reminders.horizon-hours", "1"));
+        when(thingService.claimReminder(any(), any(), anyMap())).thenReturn(true);
+    }
+
+    @Test
+    void dueReminderFiresOnceWhenClaimed() {
+        Instant dueAt = Instant.now().minusMillis(5);
+        engine.onDocument(reminder("rem-1", dueAt, false));
+
+        engine.tick();
+        engine.tick();
+
+        verify(thingService).claimReminder("rem-1", dueAt, Map.of("triggered", true));
+        verify(eventService, times(1)).emit(eq("proj-1"), eq(EventType.REMINDER_TRIGGERED), any());
+        assertThat(engine.isPending("rem-1")).isFalse();
+    }
+
+    @Test
+    void reminderClaimedByAnotherNodeIsNotEmitted() {
+        when(thingService.claimReminder(any(), any(), anyMap())).thenReturn(false);
+        engine.onDocument(reminder("rem-taken", Instant.now().minusMillis(5), false));
+
+        engine.tick();
+
+        verifyNoInteractions(eventService);
+    }
+
+    @Test
+    void futureReminderWaitsUntilDue() throws Exception {
+        engine.onDocument(reminder("rem-soon", Instant.now().plusMillis(150), false));
+
+        engine.tick();
+        verifyNoInteractions(eventService);
+
+        Thread.sleep(200);
+        engine.tick();
+        verify(eventService).emit(eq("proj-1"), eq(EventType.REMINDER_TRIGGERED), any());
+    }
+
+    @Test
+    void recurringReminderIsRescheduledOnItsCadence() {
+        Instant dueAt = Instant.now().minusSeconds(1);
+        ThingDocument recurring = reminder("rem-recurring", dueAt, false);
+        recurring.getPayload().put("recurring", true);
+        recurring.getPayload().put("intervalSeconds", 600L);
+        engine.onDocument(recurring);
+
+        engine.tick();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, Object>> updates = ArgumentCaptor.forClass(Map.class);
+        verify(thingService).claimReminder(eq("rem-recurring"), eq(dueAt), updates.capture());
+        assertThat(updates.getValue()).containsEntry("triggered", false)
+                .containsEntry("triggerAt", dueAt.plusSeconds(600));
+        assertThat(engine.isPending("rem-recurring")).isTrue();
+    }
+
+    @Test
+    void missedRecurrencesAreSkippedNotReplayed() {
+        ThingDocument recurring = reminder("rem-late", Instant.EPOCH, false);
+        recurring.getPayload().put("recurring", true);
+        recurring.getPayload().put("intervalSeconds", 60L);
+        Instant dueAt = Instant.parse("2026-01-01T00:00:00Z");
+
+        Instant next = ReminderEngine.nextOccurrence(recurring, dueAt, dueAt.plus(Duration.ofMinutes(10)).plusSeconds(5));
+
+        assertThat(next).isEqualTo(dueAt.plus(Duration.ofMinutes(11)));
+        assertThat(ReminderEngine.nextOccurrence(reminder("rem-once", dueAt, false), dueAt, dueAt)).isNull();
+    }
+
+    @Test
+    void failedClaimKeepsTheReminderPendingAndRetries() {
+        engine = new ReminderEngine(thingService, eventService, null, new MockEnvironment()
+                .withProperty("javaclaw.reminders.horizon-hours", "1")
+                .withProperty("javaclaw.reminders.retry-ms", "0"));
+        Instant dueAt = Instant.now().minusMillis(5);
+        when(thingService.claimReminder(any(), any(), anyMap()))
+                .thenThrow(new IllegalStateException("Mongo unavailable"))
+                .thenReturn(true);
+        engine.onDocument(reminder("rem-retry", dueAt, false));
+
+        engine.tick();
+        assertThat(engine.isPending("rem-retry")).isTrue();
+        verifyNoInteractions(eventService);
+
+        engine.tick();
+        verify(thingService, times(2)).claimReminder("rem-retry", dueAt, Map.of("triggered", true));
+        verify(eventService).emit(eq("proj-1"), eq(EventType.REMINDER_TRIGGERED), any());
+        assertThat(engine.isPending("rem-retry")).isFalse();
+    }
+
+    @Test
+    void triggeredDeletedOrDistantRemindersLeaveTheQueue() {
+        engine.onDocument(reminder("rem-a", Instant.now().plusSeconds(60), false));
+        engine.onDocument(reminder("rem-b", Instant.now().plusSeconds(60), false));
+        engine.onDocument(reminder("rem-far", Instant.now().plus(Duration.ofHours(2)), false));
+        assertThat(engine.pendingCount()).isEqualTo(2);
+
+        engine.onDocument(reminder("rem-a", Instant.now().plusSeconds(60), true));
+        engine.onDelete("rem-b");
+
+        assertThat(engine.pendingCount()).isZero();
+    }
+
+    @Test
+    void rescheduledReminderFiresAtItsNewTimeOnly() {
+        Instant original = Instant.now().minusMillis(5);
+        engine.onDocument(reminder("rem-moved", original, false));
+        engine.onDocument(reminder("rem-moved", Instant.now().plusSeconds(60), false));
+
+        engine.tick();
+
+        verifyNoInteractions(eventService);
+        assertThat(engine.isPending("rem-moved")).isTrue();
+    }
+
+    @Test
+    void resyncLoadsDateTypedTriggerTimes() {
+        ThingDocument stored = reminder("rem-stored", null, false);
+        stored.getPayload().put("triggerAt", Date.from(Instant.now().plusSeconds(30)));
+        when(thingService.findPendingReminders(any())).thenReturn(List.of(stored));
+
+        engine.resync();
+
+        assertThat(engine.isPending("rem-stored")).isTrue();
+    }
+
+    private static ThingDocument reminder(String id, Instant triggerAt, boolean triggered) {
+        ThingDocument thing = new ThingDocument();
+        thing.setId(id);
+        thing.setProjectId("proj-1");
+        thing.setThingCategory(ThingCategory.REMINDER);
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("message", "Check the build");
+        payload.put("triggered", triggered);
+        if (triggerAt != null) payload.put("triggerAt", triggerAt);
+        thing.setPayload(payload);
+        return thing;
+    }
+}
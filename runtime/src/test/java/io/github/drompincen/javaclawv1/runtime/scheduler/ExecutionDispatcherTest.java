@@ -0,0 +1,125 @@
+package io.github.drompincen.javaclawv1.runtime.scheduler;
+
+import io.github.drompincen.javaclawv1.persistence.document.FutureExecutionDocument;
+import io.github.drompincen.javaclawv1.persistence.repository.FutureExecutionRepository;
+import io.github.drompincen.javaclawv1.persistence.stream.ChangeStreamService;
+import io.github.drompincen.javaclawv1.protocol.api.ExecStatus;
+import io.github.drompincen.javaclawv1.runtime.metrics.JavaClawMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ExecutionDispatcherTest {
+
+    private FutureExecutionRepository futureExecutionRepository;
+    private ExecutionEngineService executionEngine;
+    private ExecutionDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        futureExecutionRepository = mock(FutureExecutionRepository.class);
+        executionEngine = mock(ExecutionEngineService.class);
+        MockEnvironment env = new MockEnvironment()
+                .withProperty("javaclaw.scheduler.wheel.tick-ms", "10")
+                .withProperty("javaclaw.scheduler.wheel.horizon-hours", "1");
+        dispatcher = new ExecutionDispatcher(futureExecutionRepository, executionEngine, null,
+                new SchedulerMembershipService(mock(MongoTemplate.class), new MockEnvironment()),
+                new JavaClawMetrics(new SimpleMeterRegistry()), env);
+    }
+
+    @Test
+    void watchesOnlyChangesThatMoveAnExecution() {
+        ChangeStreamService changeStreamService = mock(ChangeStreamService.class);
+        when(changeStreamService.watchChangesTo(any(), eq(FutureExecutionDocument.class), any(String[].class)))
+                .thenReturn(Flux.never());
+        dispatcher = new ExecutionDispatcher(futureExecutionRepository, executionEngine, changeStreamService,
+                new SchedulerMembershipService(mock(MongoTemplate.class), new MockEnvironment()),
+                new JavaClawMetrics(new SimpleMeterRegistry()), new MockEnvironment());
+
+        dispatcher.run(null);
+        dispatcher.stop();
+
+        // Lease renewals only touch leaseUntil and never reach the dispatcher
+        verify(changeStreamService).watchChangesTo(ExecutionDispatcher.COLLECTION, FutureExecutionDocument.class,
+                "execStatus", "scheduledAt");
+        verify(changeStreamService, never()).watchAllChanges(any(), any());
+    }
+
+    @Test
+    void insertedImmediateExecutionIsDispatchedOnNextTick() {
+        FutureExecutionDocument exec = exec("exec-now", ExecStatus.READY, Instant.now().minusSeconds(1));
+
+        dispatcher.onDocument(exec);
+        dispatcher.tick();
+
+        verify(executionEngine).dispatch(exec);
+        assertThat(dispatcher.wheelSize()).isZero();
+    }
+
+    @Test
+    void futureExecutionWaitsOnTheWheel() throws Exception {
+        FutureExecutionDocument exec = exec("exec-soon", ExecStatus.READY, Instant.now().plusMillis(150));
+
+        dispatcher.onDocument(exec);
+        dispatcher.tick();
+        verify(executionEngine, never()).dispatch(any());
+
+        Thread.sleep(200);
+        dispatcher.tick();
+        verify(executionEngine).dispatch(exec);
+    }
+
+    @Test
+    void claimedCancelledOrDeletedExecutionsLeaveTheWheel() {
+        dispatcher.onDocument(exec("exec-a", ExecStatus.READY, Instant.now().plusSeconds(60)));
+        dispatcher.onDocument(exec("exec-b", ExecStatus.READY, Instant.now().plusSeconds(60)));
+        assertThat(dispatcher.wheelSize()).isEqualTo(2);
+
+        dispatcher.onDocument(exec("exec-a", ExecStatus.PENDING, Instant.now().plusSeconds(60)));
+        dispatcher.onDelete("exec-b");
+
+        assertThat(dispatcher.isScheduled("exec-a")).isFalse();
+        assertThat(dispatcher.isScheduled("exec-b")).isFalse();
+    }
+
+    @Test
+    void executionsBeyondHorizonAreLeftForResync() {
+        dispatcher.onDocument(exec("exec-far", ExecStatus.READY, Instant.now().plus(Duration.ofHours(2))));
+
+        assertThat(dispatcher.wheelSize()).isZero();
+    }
+
+    @Test
+    void resyncReplacesWheelContents() {
+        dispatcher.onDocument(exec("exec-stale", ExecStatus.READY, Instant.now().plusSeconds(60)));
+        when(futureExecutionRepository.findByExecStatusAndPartitionInAndScheduledAtLessThanEqualOrderByPriorityDescScheduledAtAsc(
+                eq(ExecStatus.READY), any(), any()))
+                .thenReturn(List.of(exec("exec-fresh", ExecStatus.READY, Instant.now().plusSeconds(30))));
+
+        dispatcher.resync();
+
+        assertThat(dispatcher.isScheduled("exec-stale")).isFalse();
+        assertThat(dispatcher.isScheduled("exec-fresh")).isTrue();
+    }
+
+    private static FutureExecutionDocument exec(String id, ExecStatus status, Instant scheduledAt) {
+        FutureExecutionDocument doc = new FutureExecutionDocument();
+        doc.setExecutionId(id);
+        doc.setAgentId("agent-a");
+        doc.setExecStatus(status);
+        doc.setScheduledAt(scheduledAt);
+        return doc;
+    }
+}
@@ -1,22 +1,33 @@
 package io.github.drompincen.javaclawv1.runtime.scheduler;
 
+import com.mongodb.client.result.UpdateResult;
 import io.github.drompincen.javaclawv1.persistence.document.FutureExecutionDocument;
 import io.github.drompincen.javaclawv1.persistence.document.SessionDocument;
+import io.github.drompincen.javaclawv1.persistence.repository.AgentExecutionCount;
 import io.github.drompincen.javaclawv1.persistence.repository.FutureExecutionRepository;
 import io.github.drompincen.javaclawv1.persistence.repository.MessageRepository;
 import io.github.drompincen.javaclawv1.persistence.repository.PastExecutionRepository;
 import io.github.drompincen.javaclawv1.persistence.repository.SessionRepository;
 import io.github.drompincen.javaclawv1.protocol.api.ExecStatus;
+import io.github.drompincen.javaclawv1.protocol.api.SessionStatus;
 import io.github.drompincen.javaclawv1.runtime.agent.AgentLoop;
+import io.github.drompincen.javaclawv1.runtime.metrics.JavaClawMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
-import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mock.env.MockEnvironment;
 
 import java.time.Instant;
 import java.util.List;
@@ -37,7 +48,7 @@ class ExecutionEngineServiceTest {
     @Mock private MessageRepository messageRepository;
     @Mock private AgentLoop agentLoop;
     @Mock private LeaseHeartbeatService leaseHeartbeatService;
-    @Captor private ArgumentCaptor<FutureExecutionDocument> execCaptor;
+    @Mock private MongoTemplate mongoTemplate;
 
     private ExecutionEngineService service;
 
@@ -46,7 +57,12 @@ class ExecutionEngineServiceTest {
         service = new ExecutionEngineService(
                 futureExecutionRepository, pastExecutionRepository,
                 sessionRepository, messageRepository,
-                agentLoop, leaseHeartbeatService);
+                agentLoop, leaseHeartbeatService,
+                new JavaClawMetrics(new SimpleMeterRegistry()),
+                mongoTemplate,
+                new SchedulerMembershipService(mock(MongoTemplate.class), new MockEnvironment()));
+        when(leaseHeartbeatService.startHeartbeat(any(), any(), any()))
+                .thenAnswer(inv -> new ExecutionLease(inv.getArgument(0), inv.getArgument(1), inv.getArgument(2)));
     }
 
     // ------------------------------------------------------------------
@@ -59,18 +75,27 @@ class ExecutionEngineServiceTest {
         stale.setAttempt(0);
         stale.setLeaseUntil(Instant.now().minusSeconds(60));
 
-        when(futureExecutionRepository.findByLeaseUntilLessThanAndExecStatusIn(any(), any()))
+        when(futureExecutionRepository.findByLeaseUntilLessThanAndExecStatusInAndPartitionIn(any(), any(), any()))
                 .thenReturn(List.of(stale));
         // No READY items to execute
-        when(futureExecutionRepository.findByExecStatusAndScheduledAtLessThanEqualOrderByPriorityDescScheduledAtAsc(
-                any(), any())).thenReturn(List.of());
+        when(futureExecutionRepository.findByExecStatusAndPartitionInAndScheduledAtLessThanEqualOrderByPriorityDescScheduledAtAsc(
+                any(), any(), any())).thenReturn(List.of());
+
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(FutureExecutionDocument.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
 
         service.pollAndExecute();
 
-        verify(futureExecutionRepository).save(execCaptor.capture());
-        assertThat(execCaptor.getValue().getExecStatus()).isEqualTo(ExecStatus.READY);
-        assertThat(execCaptor.getValue().getLockOwner()).isNull();
-        assertThat(execCaptor.getValue().getLeaseUntil()).isNull();
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(query.capture(), update.capture(), eq(FutureExecutionDocument.class));
+        // Still stale at write time, not just at scan time
+        assertThat(query.getValue().getQueryObject()).containsKeys("_id", "execStatus", "leaseUntil");
+        assertThat(((Document) update.getValue().getUpdateObject().get("$set")).get("execStatus"))
+                .isEqualTo(ExecStatus.READY);
+        assertThat((Document) update.getValue().getUpdateObject().get("$unset"))
+                .containsKeys("slot", "lockOwner", "claimToken", "leaseUntil");
+        verify(futureExecutionRepository, never()).save(any());
     }
 
     @Test
@@ -79,15 +104,68 @@ class ExecutionEngineServiceTest {
         stale.setAttempt(1);
         stale.setLeaseUntil(Instant.now().minusSeconds(60));
 
-        when(futureExecutionRepository.findByLeaseUntilLessThanAndExecStatusIn(any(), any()))
+        when(futureExecutionRepository.findByLeaseUntilLessThanAndExecStatusInAndPartitionIn(any(), any(), any()))
                 .thenReturn(List.of(stale));
-        when(futureExecutionRepository.findByExecStatusAndScheduledAtLessThanEqualOrderByPriorityDescScheduledAtAsc(
-                any(), any())).thenReturn(List.of());
+        when(futureExecutionRepository.findByExecStatusAndPartitionInAndScheduledAtLessThanEqualOrderByPriorityDescScheduledAtAsc(
+                any(), any(), any())).thenReturn(List.of());
+
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(FutureExecutionDocument.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
 
         service.pollAndExecute();
 
-        verify(futureExecutionRepository).save(execCaptor.capture());
-        assertThat(execCaptor.getValue().getExecStatus()).isEqualTo(ExecStatus.FAILED_RETRYABLE);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(FutureExecutionDocument.class));
+        assertThat(((Document) update.getValue().getUpdateObject().get("$set")).get("execStatus"))
+                .isEqualTo(ExecStatus.FAILED_RETRYABLE);
+    }
+
+    @Test
+    void failedRun_doesNotOverwriteAClaimTakenSinceItStarted() {
+        FutureExecutionDocument item = makeExec("exec-fail", "agent-f", ExecStatus.READY);
+        item.setScheduledAt(Instant.now());
+        FutureExecutionDocument claimed = makeExec("exec-fail", "agent-f", ExecStatus.PENDING);
+        claimed.setClaimToken("token-old");
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(FutureExecutionDocument.class)))
+                .thenReturn(claimed);
+        // markRunning matches; by the time the run fails another node holds a new claim
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(FutureExecutionDocument.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+        SessionDocument failed = new SessionDocument();
+        failed.setStatus(SessionStatus.FAILED);
+        when(sessionRepository.findById(any())).thenReturn(Optional.of(failed));
+
+        assertThat(service.dispatch(item)).isTrue();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, timeout(2000).times(2)).updateFirst(query.capture(), update.capture(),
+                eq(FutureExecutionDocument.class));
+        assertThat(query.getAllValues().get(1).getQueryObject().get("claimToken")).isEqualTo("token-old");
+        Document set = (Document) update.getAllValues().get(1).getUpdateObject().get("$set");
+        assertThat(set.get("execStatus")).isEqualTo(ExecStatus.FAILED_RETRYABLE);
+        assertThat(set.get("attempt")).isEqualTo(1);
+        assertThat(set).containsKey("scheduledAt");
+        verify(futureExecutionRepository, never()).save(any());
+    }
+
+    @Test
+    void recoverStaleLeases_skipsItem_whenRenewedSinceTheScan() {
+        FutureExecutionDocument stale = makeExec("exec-renewed", "agent-r", ExecStatus.RUNNING);
+        stale.setLeaseUntil(Instant.now().minusSeconds(60));
+        when(futureExecutionRepository.findByLeaseUntilLessThanAndExecStatusInAndPartitionIn(any(), any(), any()))
+                .thenReturn(List.of(stale));
+        when(futureExecutionRepository.findByExecStatusAndPartitionInAndScheduledAtLessThanEqualOrderByPriorityDescScheduledAtAsc(
+                any(), any(), any())).thenReturn(List.of());
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(FutureExecutionDocument.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        service.pollAndExecute();
+
+        verify(futureExecutionRepository, never()).save(any());
+        verify(agentLoop, never()).startAsync(any());
     }
 
     // ------------------------------------------------------------------
@@ -99,20 +177,46 @@ class ExecutionEngineServiceTest {
         FutureExecutionDocument readyItem = makeExec("exec-ready", "agent-busy", ExecStatus.READY);
         readyItem.setScheduledAt(Instant.now().minusSeconds(10));
 
-        FutureExecutionDocument runningItem = makeExec("exec-running", "agent-busy", ExecStatus.RUNNING);
-
-        when(futureExecutionRepository.findByLeaseUntilLessThanAndExecStatusIn(any(), any()))
+        when(futureExecutionRepository.findByLeaseUntilLessThanAndExecStatusInAndPartitionIn(any(), any(), any()))
                 .thenReturn(List.of());
-        when(futureExecutionRepository.findByExecStatusAndScheduledAtLessThanEqualOrderByPriorityDescScheduledAtAsc(
-                eq(ExecStatus.READY), any()))
+        when(futureExecutionRepository.findByExecStatusAndPartitionInAndScheduledAtLessThanEqualOrderByPriorityDescScheduledAtAsc(
+                eq(ExecStatus.READY), any(), any()))
                 .thenReturn(List.of(readyItem));
-        when(futureExecutionRepository.findByAgentIdAndExecStatus("agent-busy", ExecStatus.RUNNING))
-                .thenReturn(List.of(runningItem));
+        when(futureExecutionRepository.countActiveByAgent())
+                .thenReturn(List.of(new AgentExecutionCount("agent-busy", 1)));
 
         service.pollAndExecute();
 
         // Should not try to claim — already at max concurrency
-        verify(futureExecutionRepository, never()).findById("exec-ready");
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void pollAndExecute_honoursMaxConcurrentFromPolicy() {
+        FutureExecutionDocument first = makeExec("exec-1", "agent-wide", ExecStatus.READY);
+        FutureExecutionDocument second = makeExec("exec-2", "agent-wide", ExecStatus.READY);
+        FutureExecutionDocument third = makeExec("exec-3", "agent-wide", ExecStatus.READY);
+        for (FutureExecutionDocument exec : List.of(first, second, third)) {
+            exec.setMaxConcurrent(3);
+            exec.setScheduledAt(Instant.now().minusSeconds(10));
+        }
+
+        when(futureExecutionRepository.findByLeaseUntilLessThanAndExecStatusInAndPartitionIn(any(), any(), any()))
+                .thenReturn(List.of());
+        when(futureExecutionRepository.findByExecStatusAndPartitionInAndScheduledAtLessThanEqualOrderByPriorityDescScheduledAtAsc(
+                eq(ExecStatus.READY), any(), any()))
+                .thenReturn(List.of(first, second, third));
+        when(futureExecutionRepository.countActiveByAgent())
+                .thenReturn(List.of(new AgentExecutionCount("agent-wide", 1)));
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(FutureExecutionDocument.class)))
+                .thenAnswer(inv -> makeExec("claimed", "agent-wide", ExecStatus.PENDING));
+
+        service.pollAndExecute();
+
+        // One already active + two claimed fills the three slots; the third item waits
+        verify(mongoTemplate, times(2)).findAndModify(any(Query.class), any(Update.class),
+                any(FindAndModifyOptions.class), eq(FutureExecutionDocument.class));
     }
 
     // ------------------------------------------------------------------
@@ -123,25 +227,41 @@ class ExecutionEngineServiceTest {
     void pollAndExecute_claimsReadyItem_whenNoConcurrencyConflict() {
         FutureExecutionDocument readyItem = makeExec("exec-claim", "agent-free", ExecStatus.READY);
         readyItem.setScheduledAt(Instant.now().minusSeconds(10));
+        FutureExecutionDocument claimed = makeExec("exec-claim", "agent-free", ExecStatus.PENDING);
+        claimed.setLockOwner("this-instance");
+        claimed.setClaimToken("token-claim");
 
-        when(futureExecutionRepository.findByLeaseUntilLessThanAndExecStatusIn(any(), any()))
+        when(futureExecutionRepository.findByLeaseUntilLessThanAndExecStatusInAndPartitionIn(any(), any(), any()))
                 .thenReturn(List.of());
-        when(futureExecutionRepository.findByExecStatusAndScheduledAtLessThanEqualOrderByPriorityDescScheduledAtAsc(
-                eq(ExecStatus.READY), any()))
+        when(futureExecutionRepository.findByExecStatusAndPartitionInAndScheduledAtLessThanEqualOrderByPriorityDescScheduledAtAsc(
+                eq(ExecStatus.READY), any(), any()))
                 .thenReturn(List.of(readyItem));
-        when(futureExecutionRepository.findByAgentIdAndExecStatus("agent-free", ExecStatus.RUNNING))
-                .thenReturn(List.of());
-        when(futureExecutionRepository.findById("exec-claim"))
-                .thenReturn(Optional.of(readyItem));
-        when(futureExecutionRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        when(futureExecutionRepository.countActiveByAgent()).thenReturn(List.of());
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(FutureExecutionDocument.class)))
+                .thenReturn(claimed);
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(FutureExecutionDocument.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
 
         service.pollAndExecute();
 
-        // Verify the claim read + save happened
-        verify(futureExecutionRepository).findById("exec-claim");
-        verify(futureExecutionRepository, atLeastOnce()).save(any());
-        // After claim, the item's lockOwner must be set
-        assertThat(readyItem.getLockOwner()).isNotNull();
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).findAndModify(query.capture(), update.capture(),
+                any(FindAndModifyOptions.class), eq(FutureExecutionDocument.class));
+        // Compare-and-set: only a READY document can be claimed
+        assertThat(query.getValue().getQueryObject().get("_id")).isEqualTo("exec-claim");
+        assertThat(query.getValue().getQueryObject().get("execStatus")).isEqualTo(ExecStatus.READY);
+        Document set = (Document) update.getValue().getUpdateObject().get("$set");
+        assertThat(set.get("execStatus")).isEqualTo(ExecStatus.PENDING);
+        assertThat(set.get("slot")).isEqualTo(0);
+        assertThat(set.get("lockOwner")).isNotNull();
+        assertThat(set.get("claimToken")).isNotNull();
+        assertThat(set.get("leaseUntil")).isNotNull();
+        // The claimed document, not the stale candidate, is what gets executed
+        verify(leaseHeartbeatService, timeout(2000)).startHeartbeat(eq("exec-claim"), any(), eq("token-claim"));
+        assertThat(claimed.getExecStatus()).isEqualTo(ExecStatus.RUNNING);
+        verify(futureExecutionRepository, never()).findById(any());
     }
 
     @Test
@@ -149,23 +269,103 @@ class ExecutionEngineServiceTest {
         FutureExecutionDocument readyItem = makeExec("exec-race", "agent-race", ExecStatus.READY);
         readyItem.setScheduledAt(Instant.now().minusSeconds(10));
 
-        // By the time we findById, someone else has claimed it
-        FutureExecutionDocument alreadyClaimed = makeExec("exec-race", "agent-race", ExecStatus.PENDING);
-
-        when(futureExecutionRepository.findByLeaseUntilLessThanAndExecStatusIn(any(), any()))
+        when(futureExecutionRepository.findByLeaseUntilLessThanAndExecStatusInAndPartitionIn(any(), any(), any()))
                 .thenReturn(List.of());
-        when(futureExecutionRepository.findByExecStatusAndScheduledAtLessThanEqualOrderByPriorityDescScheduledAtAsc(
-                eq(ExecStatus.READY), any()))
+        when(futureExecutionRepository.findByExecStatusAndPartitionInAndScheduledAtLessThanEqualOrderByPriorityDescScheduledAtAsc(
+                eq(ExecStatus.READY), any(), any()))
                 .thenReturn(List.of(readyItem));
-        when(futureExecutionRepository.findByAgentIdAndExecStatus("agent-race", ExecStatus.RUNNING))
-                .thenReturn(List.of());
-        when(futureExecutionRepository.findById("exec-race"))
-                .thenReturn(Optional.of(alreadyClaimed));
+        when(futureExecutionRepository.countActiveByAgent()).thenReturn(List.of());
+        // Another instance moved it out of READY first, so the conditional update matches nothing
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(FutureExecutionDocument.class)))
+                .thenReturn(null);
 
         service.pollAndExecute();
 
-        // Should not save (claim rejected because status != READY)
         verify(futureExecutionRepository, never()).save(any());
+        verify(agentLoop, never()).startAsync(any());
+    }
+
+    @Test
+    void claimedItem_isNotStarted_whenOwnershipLostBeforeRunning() {
+        FutureExecutionDocument item = makeExec("exec-stolen", "agent-x", ExecStatus.READY);
+        item.setScheduledAt(Instant.now());
+        FutureExecutionDocument claimed = makeExec("exec-stolen", "agent-x", ExecStatus.PENDING);
+        claimed.setClaimToken("token-first");
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(FutureExecutionDocument.class)))
+                .thenReturn(claimed);
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(FutureExecutionDocument.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        assertThat(service.dispatch(item)).isTrue();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, timeout(2000)).updateFirst(query.capture(), any(Update.class),
+                eq(FutureExecutionDocument.class));
+        // Fenced on this claim's token, so a later re-claim by the same node does not match
+        assertThat(query.getValue().getQueryObject().get("claimToken")).isEqualTo("token-first");
+        assertThat(query.getValue().getQueryObject()).doesNotContainKey("lockOwner");
+        verify(leaseHeartbeatService, after(200).never()).startHeartbeat(any(), any(), any());
+        verify(agentLoop, never()).startAsync(any());
+    }
+
+    // ------------------------------------------------------------------
+    // Event-driven dispatch
+    // ------------------------------------------------------------------
+
+    @Test
+    void dispatch_leavesItemReady_whenAgentAtCapacity() {
+        FutureExecutionDocument item = makeExec("exec-wait", "agent-full", ExecStatus.READY);
+        item.setMaxConcurrent(2);
+        when(mongoTemplate.find(any(Query.class), eq(FutureExecutionDocument.class)))
+                .thenReturn(List.of(slotHolder(0), slotHolder(1)));
+
+        assertThat(service.dispatch(item)).isFalse();
+        verify(mongoTemplate, never()).findAndModify(any(Query.class), any(Update.class),
+                any(FindAndModifyOptions.class), eq(FutureExecutionDocument.class));
+    }
+
+    @Test
+    void dispatch_takesNextSlot_whenConcurrentClaimWinsTheFirst() {
+        FutureExecutionDocument item = makeExec("exec-race", "agent-busy", ExecStatus.READY);
+        item.setScheduledAt(Instant.now());
+        item.setMaxConcurrent(2);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(FutureExecutionDocument.class)))
+                .thenThrow(new DuplicateKeyException("E11000 agent_slot_idx"))
+                .thenReturn(makeExec("exec-race", "agent-busy", ExecStatus.PENDING));
+
+        assertThat(service.dispatch(item)).isTrue();
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(2)).findAndModify(any(Query.class), update.capture(),
+                any(FindAndModifyOptions.class), eq(FutureExecutionDocument.class));
+        assertThat(update.getAllValues()).extracting(u -> ((Document) u.getUpdateObject().get("$set")).get("slot"))
+                .containsExactly(0, 1);
+    }
+
+    @Test
+    void dispatch_givesUp_whenEverySlotIsTakenConcurrently() {
+        FutureExecutionDocument item = makeExec("exec-lost", "agent-busy", ExecStatus.READY);
+        item.setScheduledAt(Instant.now());
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(FutureExecutionDocument.class)))
+                .thenThrow(new DuplicateKeyException("E11000 agent_slot_idx"));
+
+        assertThat(service.dispatch(item)).isFalse();
+        verify(agentLoop, never()).startAsync(any());
+    }
+
+    @Test
+    void dispatch_claimsItem_whenSlotFree() {
+        FutureExecutionDocument item = makeExec("exec-go", "agent-open", ExecStatus.READY);
+        item.setScheduledAt(Instant.now());
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(FutureExecutionDocument.class)))
+                .thenReturn(makeExec("exec-go", "agent-open", ExecStatus.PENDING));
+
+        assertThat(service.dispatch(item)).isTrue();
     }
 
     // ------------------------------------------------------------------
@@ -174,10 +374,10 @@ class ExecutionEngineServiceTest {
 
     @Test
     void pollAndExecute_noReadyItems_doesNothing() {
-        when(futureExecutionRepository.findByLeaseUntilLessThanAndExecStatusIn(any(), any()))
+        when(futureExecutionRepository.findByLeaseUntilLessThanAndExecStatusInAndPartitionIn(any(), any(), any()))
                 .thenReturn(List.of());
-        when(futureExecutionRepository.findByExecStatusAndScheduledAtLessThanEqualOrderByPriorityDescScheduledAtAsc(
-                any(), any())).thenReturn(List.of());
+        when(futureExecutionRepository.findByExecStatusAndPartitionInAndScheduledAtLessThanEqualOrderByPriorityDescScheduledAtAsc(
+                any(), any(), any())).thenReturn(List.of());
 
         service.pollAndExecute();
 
@@ -199,4 +399,10 @@ class ExecutionEngineServiceTest {
         doc.setLastUpdatedAt(Instant.now());
         return doc;
     }
+
+    private static FutureExecutionDocument slotHolder(int slot) {
+        FutureExecutionDocument doc = new FutureExecutionDocument();
+        doc.setSlot(slot);
+        return doc;
+    }
 }
@@ -0,0 +1,84 @@
+package io.github.drompincen.javaclawv1.runtime.scheduler;
+
+import com.mongodb.client.result.UpdateResult;
+import io.github.drompincen.javaclawv1.persistence.document.FutureExecutionDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class LeaseHeartbeatServiceTest {
+
+    private MongoTemplate mongoTemplate;
+    private LeaseHeartbeatService service;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        service = new LeaseHeartbeatService(mongoTemplate, new MockEnvironment());
+    }
+
+    @Test
+    void renewsAllHeldLeasesWithOneUpdate() {
+        ExecutionLease a = service.startHeartbeat("exec-a", "node-1", "token-a");
+        ExecutionLease b = service.startHeartbeat("exec-b", "node-1", "token-b");
+        ExecutionLease c = service.startHeartbeat("exec-c", "node-1", "token-c");
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(FutureExecutionDocument.class)))
+                .thenReturn(UpdateResult.acknowledged(3, 3L, null));
+
+        service.renewAll();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateMulti(query.capture(), update.capture(), eq(FutureExecutionDocument.class));
+        Document criteria = query.getValue().getQueryObject();
+        assertThat((List<Object>) ((Document) criteria.get("_id")).get("$in"))
+                .containsExactlyInAnyOrder("exec-a", "exec-b", "exec-c");
+        // Fenced on the claim token, not the node: a re-claim on this same node must not match
+        assertThat(criteria).doesNotContainKey("lockOwner");
+        assertThat((List<Object>) ((Document) criteria.get("claimToken")).get("$in"))
+                .containsExactlyInAnyOrder("token-a", "token-b", "token-c");
+        assertThat(((Document) update.getValue().getUpdateObject().get("$set")).get("leaseUntil")).isNotNull();
+        verify(mongoTemplate, never()).find(any(Query.class), eq(FutureExecutionDocument.class));
+        assertThat(List.of(a, b, c)).noneMatch(ExecutionLease::isLost);
+    }
+
+    @Test
+    void marksTakenOverLeasesLost() {
+        ExecutionLease kept = service.startHeartbeat("exec-kept", "node-1", "token-kept");
+        ExecutionLease taken = service.startHeartbeat("exec-taken", "node-1", "token-taken");
+        FutureExecutionDocument stillOwned = new FutureExecutionDocument();
+        stillOwned.setExecutionId("exec-kept");
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(FutureExecutionDocument.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        when(mongoTemplate.find(any(Query.class), eq(FutureExecutionDocument.class)))
+                .thenReturn(List.of(stillOwned));
+
+        service.renewAll();
+
+        assertThat(kept.isLost()).isFalse();
+        assertThat(taken.isLost()).isTrue();
+        assertThat(service.activeCount()).isEqualTo(1);
+    }
+
+    @Test
+    void stoppedLeasesAreNotRenewed() {
+        service.startHeartbeat("exec-done", "node-1", "token-done");
+        service.stopHeartbeat("exec-done");
+
+        service.renewAll();
+
+        verifyNoInteractions(mongoTemplate);
+    }
+}
@@ -0,0 +1,106 @@
+package io.github.drompincen.javaclawv1.runtime.scheduler;
+
+import io.github.drompincen.javaclawv1.persistence.document.AgentScheduleDocument;
+import io.github.drompincen.javaclawv1.persistence.document.FutureExecutionDocument;
+import io.github.drompincen.javaclawv1.persistence.repository.AgentScheduleRepository;
+import io.github.drompincen.javaclawv1.persistence.repository.FutureExecutionRepository;
+import io.github.drompincen.javaclawv1.protocol.api.ScheduleType;
+import io.github.drompincen.javaclawv1.runtime.agent.llm.TestMongoConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Planning benchmark against a real (embedded) MongoDB: 10k schedules are planned over a
+ * two-day horizon in one bulk pass, a second pass must be a no-op, and bumping every
+ * schedule's version to new times must prune the obsolete slots in the same pass. Runs only
+ * under {@code -Pperf}.
+ */
+@Tag("perf")
+@DataMongoTest
+@ActiveProfiles("test")
+@ContextConfiguration(classes = TestMongoConfiguration.class)
+class SchedulePlannerBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(SchedulePlannerBenchmarkTest.class);
+
+    private static final int SCHEDULES = 10_000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private SchedulePlannerService planner;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate.dropCollection(FutureExecutionDocument.class);
+        mongoTemplate.indexOps(FutureExecutionDocument.class).ensureIndex(new Index("idempotencyKey", Sort.Direction.ASC).unique());
+        planner = new SchedulePlannerService(mock(AgentScheduleRepository.class), mock(FutureExecutionRepository.class),
+                new SchedulerMembershipService(mock(MongoTemplate.class), new MockEnvironment()), mongoTemplate,
+                new MockEnvironment().withProperty("javaclaw.scheduler.planning-horizon-days", "2"));
+    }
+
+    @Test
+    void plansTenThousandSchedulesInOneBulkPerPass() {
+        List<AgentScheduleDocument> schedules = schedules(1, List.of("06:00", "12:00", "18:00", "23:59"));
+
+        long t0 = System.nanoTime();
+        planner.planAndPersist(schedules);
+        long firstMs = (System.nanoTime() - t0) / 1_000_000;
+        long planned = mongoTemplate.count(new Query(), FutureExecutionDocument.class);
+
+        t0 = System.nanoTime();
+        planner.planAndPersist(schedules);
+        long secondMs = (System.nanoTime() - t0) / 1_000_000;
+
+        log.info("{} schedules: {} slots planned in {} ms, idempotent re-plan in {} ms",
+                SCHEDULES, planned, firstMs, secondMs);
+        // Tomorrow's four slots are always in the future; today's depend on the clock
+        assertThat(planned).isGreaterThanOrEqualTo(SCHEDULES * 4L);
+        assertThat(mongoTemplate.count(new Query(), FutureExecutionDocument.class)).isEqualTo(planned);
+
+        // New version with different times: every old future slot goes, the new ones come in
+        planner.planAndPersist(schedules(2, List.of("07:30")));
+        Instant now = Instant.now();
+        assertThat(mongoTemplate.count(Query.query(Criteria.where("createdFromScheduleVersion").is(1L)
+                .and("scheduledAt").gte(now)), FutureExecutionDocument.class)).isZero();
+        assertThat(mongoTemplate.count(Query.query(Criteria.where("createdFromScheduleVersion").is(2L)),
+                FutureExecutionDocument.class)).isGreaterThanOrEqualTo(SCHEDULES);
+    }
+
+    private static List<AgentScheduleDocument> schedules(long version, List<String> times) {
+        List<AgentScheduleDocument> schedules = new ArrayList<>(SCHEDULES);
+        for (int i = 0; i < SCHEDULES; i++) {
+            AgentScheduleDocument schedule = new AgentScheduleDocument();
+            schedule.setScheduleId("sched-" + i);
+            schedule.setAgentId("agent-" + i);
+            schedule.setProjectId("project-" + (i % 50));
+            schedule.setEnabled(true);
+            schedule.setTimezone("UTC");
+            schedule.setScheduleType(ScheduleType.FIXED_TIMES);
+            schedule.setTimesOfDay(times);
+            schedule.setVersion(version);
+            schedules.add(schedule);
+        }
+        return schedules;
+    }
+}
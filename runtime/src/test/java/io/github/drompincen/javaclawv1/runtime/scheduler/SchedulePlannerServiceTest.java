@@ -1,11 +1,13 @@
 package io.github.drompincen.javaclawv1.runtime.scheduler;
 
+import com.mongodb.bulk.BulkWriteResult;
 import io.github.drompincen.javaclawv1.persistence.document.AgentScheduleDocument;
 import io.github.drompincen.javaclawv1.persistence.document.FutureExecutionDocument;
 import io.github.drompincen.javaclawv1.persistence.repository.AgentScheduleRepository;
 import io.github.drompincen.javaclawv1.persistence.repository.FutureExecutionRepository;
 import io.github.drompincen.javaclawv1.protocol.api.ExecStatus;
 import io.github.drompincen.javaclawv1.protocol.api.ScheduleType;
+import org.bson.Document;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -15,6 +17,11 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mock.env.MockEnvironment;
 
 import java.time.*;
 import java.time.format.DateTimeFormatter;
@@ -22,7 +29,6 @@ import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -30,16 +36,22 @@ import static org.mockito.Mockito.*;
 @MockitoSettings(strictness = Strictness.LENIENT)
 class SchedulePlannerServiceTest {
 
+    private static final DateTimeFormatter DATE_KEY_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
     @Mock private AgentScheduleRepository scheduleRepository;
     @Mock private FutureExecutionRepository futureExecutionRepository;
+    @Mock private MongoTemplate mongoTemplate;
     @Captor private ArgumentCaptor<FutureExecutionDocument> execCaptor;
 
+    private BulkOperations bulk;
     private SchedulePlannerService service;
 
     @BeforeEach
     void setUp() {
-        service = new SchedulePlannerService(scheduleRepository, futureExecutionRepository);
-        when(futureExecutionRepository.existsByIdempotencyKey(anyString())).thenReturn(false);
+        bulk = mock(BulkOperations.class, RETURNS_SELF);
+        when(bulk.execute()).thenReturn(BulkWriteResult.acknowledged(0, 0, 0, 0, List.of(), List.of()));
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(FutureExecutionDocument.class))).thenReturn(bulk);
+        service = planner(new SchedulerMembershipService(mock(MongoTemplate.class), new MockEnvironment()), 1);
         when(futureExecutionRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
     }
 
@@ -48,39 +60,29 @@ class SchedulePlannerServiceTest {
     // ------------------------------------------------------------------
 
     @Test
-    void pastSlots_areSkipped_nothingSaved() {
+    void pastSlots_areSkipped_nothingPlanned() {
         // FIXED_TIMES at 01:00 UTC — guaranteed past
-        AgentScheduleDocument fixedPast = makeSchedule("s1", "agent-a",
-                ScheduleType.FIXED_TIMES, null, List.of("01:00"), null);
-        service.generateFutureExecutions(fixedPast);
-        verify(futureExecutionRepository, never()).save(any());
-
+        assertThat(plan(makeSchedule("s1", "agent-a", ScheduleType.FIXED_TIMES, null, List.of("01:00"), null))).isEmpty();
         // CRON for 00:01 every day — also always past
-        AgentScheduleDocument cronPast = makeSchedule("s2", "agent-b",
-                ScheduleType.CRON, "0 1 0 * * *", null, null);
-        service.generateFutureExecutions(cronPast);
-        verify(futureExecutionRepository, never()).save(any());
-
+        assertThat(plan(makeSchedule("s2", "agent-b", ScheduleType.CRON, "0 1 0 * * *", null, null))).isEmpty();
         // INTERVAL with 1440-min (once a day at midnight) — past
-        AgentScheduleDocument intervalPast = makeSchedule("s3", "agent-c",
-                ScheduleType.INTERVAL, null, null, 1440);
-        service.generateFutureExecutions(intervalPast);
-        verify(futureExecutionRepository, never()).save(any());
+        assertThat(plan(makeSchedule("s3", "agent-c", ScheduleType.INTERVAL, null, null, 1440))).isEmpty();
+
+        service.generateFutureExecutions(makeSchedule("s1", "agent-a", ScheduleType.FIXED_TIMES, null, List.of("01:00"), null));
+        verify(bulk, never()).upsert(any(Query.class), any(Update.class));
     }
 
     @Test
     void mixedSlots_onlyFutureOnesCreated() {
         // 01:00 is past, 23:59 is future
-        AgentScheduleDocument schedule = makeSchedule("sched-mix", "mix-agent",
-                ScheduleType.FIXED_TIMES, null, List.of("01:00", "23:59"), null);
-
-        service.generateFutureExecutions(schedule);
-
-        verify(futureExecutionRepository, times(1)).save(execCaptor.capture());
-        FutureExecutionDocument saved = execCaptor.getValue();
-        assertThat(saved.getPlannedHour()).isEqualTo(23);
-        assertThat(saved.getPlannedMinute()).isEqualTo(59);
-        assertThat(saved.getScheduledAt()).isAfter(Instant.now());
+        List<FutureExecutionDocument> planned = plan(makeSchedule("sched-mix", "mix-agent",
+                ScheduleType.FIXED_TIMES, null, List.of("01:00", "23:59"), null));
+
+        assertThat(planned).hasSize(1);
+        FutureExecutionDocument slot = planned.get(0);
+        assertThat(slot.getPlannedHour()).isEqualTo(23);
+        assertThat(slot.getPlannedMinute()).isEqualTo(59);
+        assertThat(slot.getScheduledAt()).isAfter(Instant.now());
     }
 
     /**
@@ -97,8 +99,8 @@ class SchedulePlannerServiceTest {
             service.generateFutureExecutions(schedule);
         }
 
-        // 09:00 UTC is always in the past — nothing should be saved for any agent
-        verify(futureExecutionRepository, never()).save(any());
+        // 09:00 UTC is always in the past — nothing should be upserted for any agent
+        verify(bulk, never()).upsert(any(Query.class), any(Update.class));
     }
 
     // ------------------------------------------------------------------
@@ -110,6 +112,7 @@ class SchedulePlannerServiceTest {
         AgentScheduleDocument schedule = makeSchedule("sched-fields", "field-agent",
                 ScheduleType.FIXED_TIMES, null, List.of("23:57"), null);
         schedule.setProjectId("proj-123");
+        schedule.setVersion(4);
 
         AgentScheduleDocument.ExecutorPolicy policy = new AgentScheduleDocument.ExecutorPolicy();
         policy.setPriority(8);
@@ -117,41 +120,86 @@ class SchedulePlannerServiceTest {
         policy.setRetryBackoffMs(30000);
         schedule.setExecutorPolicy(policy);
 
-        service.generateFutureExecutions(schedule);
+        List<FutureExecutionDocument> planned = plan(schedule);
+
+        assertThat(planned).hasSize(1);
+        FutureExecutionDocument slot = planned.get(0);
+        assertThat(slot.getAgentId()).isEqualTo("field-agent");
+        assertThat(slot.getProjectId()).isEqualTo("proj-123");
+        assertThat(slot.getExecStatus()).isEqualTo(ExecStatus.READY);
+        assertThat(slot.getScheduledAt()).isAfter(Instant.now());
+        assertThat(slot.getPriority()).isEqualTo(8);
+        assertThat(slot.getMaxAttempts()).isEqualTo(5);
+        assertThat(slot.getRetryBackoffMs()).isEqualTo(30000);
+        assertThat(slot.getScheduleId()).isEqualTo("sched-fields");
+        assertThat(slot.getCreatedFromScheduleVersion()).isEqualTo(4);
+        assertThat(slot.isImmediate()).isFalse();
+        assertThat(slot.getPlannedHour()).isEqualTo(23);
+        assertThat(slot.getIdempotencyKey()).contains("field-agent");
+    }
 
-        verify(futureExecutionRepository).save(execCaptor.capture());
-        FutureExecutionDocument saved = execCaptor.getValue();
-        assertThat(saved.getAgentId()).isEqualTo("field-agent");
-        assertThat(saved.getProjectId()).isEqualTo("proj-123");
-        assertThat(saved.getExecStatus()).isEqualTo(ExecStatus.READY);
-        assertThat(saved.getScheduledAt()).isAfter(Instant.now());
-        assertThat(saved.getPriority()).isEqualTo(8);
-        assertThat(saved.getMaxAttempts()).isEqualTo(5);
-        assertThat(saved.getRetryBackoffMs()).isEqualTo(30000);
-        assertThat(saved.getScheduleId()).isEqualTo("sched-fields");
-        assertThat(saved.isImmediate()).isFalse();
-        assertThat(saved.getPlannedHour()).isEqualTo(23);
-        assertThat(saved.getIdempotencyKey()).contains("field-agent");
+    @Test
+    void horizon_plansEveryDayWithItsOwnDateKey() {
+        service = planner(new SchedulerMembershipService(mock(MongoTemplate.class), new MockEnvironment()), 3);
+        AgentScheduleDocument schedule = makeSchedule("sched-horizon", "horizon-agent",
+                ScheduleType.INTERVAL, null, null, 60);
+
+        List<FutureExecutionDocument> planned = plan(schedule);
+
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        assertThat(planned).hasSizeGreaterThanOrEqualTo(48);
+        assertThat(planned).extracting(FutureExecutionDocument::getDateKey)
+                .contains(today.plusDays(1).format(DATE_KEY_FMT), today.plusDays(2).format(DATE_KEY_FMT))
+                .doesNotContain(today.plusDays(3).format(DATE_KEY_FMT));
+        assertThat(planned).extracting(FutureExecutionDocument::getIdempotencyKey).doesNotHaveDuplicates();
     }
 
     // ------------------------------------------------------------------
-    // Idempotency, schedule types, immediate execution
+    // Persistence: one bulk of upserts plus a prune
     // ------------------------------------------------------------------
 
     @Test
-    void duplicateIdempotencyKey_isSkipped() {
-        when(futureExecutionRepository.existsByIdempotencyKey(anyString())).thenReturn(true);
-        AgentScheduleDocument schedule = makeSchedule("sched-dup", "dup-agent",
-                ScheduleType.FIXED_TIMES, null, List.of("23:56"), null);
+    void slots_areUpsertedByIdempotencyKeyInOneBulk() {
+        AgentScheduleDocument schedule = makeSchedule("sched-bulk", "bulk-agent",
+                ScheduleType.FIXED_TIMES, null, List.of("23:56", "23:58"), null);
+
         service.generateFutureExecutions(schedule);
-        verify(futureExecutionRepository, never()).save(any());
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).bulkOps(BulkOperations.BulkMode.UNORDERED, FutureExecutionDocument.class);
+        verify(bulk, times(2)).upsert(query.capture(), update.capture());
+        verify(bulk).execute();
+        assertThat(query.getAllValues()).allSatisfy(q ->
+                assertThat(q.getQueryObject().getString("idempotencyKey")).contains("bulk-agent"));
+        Document insertOnly = (Document) update.getValue().getUpdateObject().get("$setOnInsert");
+        assertThat(insertOnly.get("execStatus")).isEqualTo(ExecStatus.READY);
+        assertThat(insertOnly).containsKey("_id");
+        verifyNoInteractions(futureExecutionRepository);
+    }
+
+    @Test
+    void obsoleteSlotsFromOlderVersions_arePrunedInSamePass() {
+        AgentScheduleDocument schedule = makeSchedule("sched-prune", "prune-agent",
+                ScheduleType.FIXED_TIMES, null, List.of("23:54"), null);
+        schedule.setVersion(7);
+
+        service.generateFutureExecutions(schedule);
+
+        ArgumentCaptor<Query> prune = ArgumentCaptor.forClass(Query.class);
+        verify(bulk).remove(prune.capture());
+        verify(bulk).execute();
+        Document criteria = prune.getValue().getQueryObject();
+        assertThat(criteria.get("scheduleId")).isEqualTo("sched-prune");
+        assertThat(criteria.get("execStatus")).isEqualTo(ExecStatus.READY);
+        assertThat(((Document) criteria.get("createdFromScheduleVersion")).get("$lt")).isEqualTo(7L);
+        assertThat((List<Object>) ((Document) criteria.get("idempotencyKey")).get("$nin")).hasSize(1);
     }
 
     @Test
     void nullAndImmediateScheduleTypes_produceNoExecutions() {
-        service.generateFutureExecutions(makeSchedule("s1", "a1", null, null, null, null));
-        service.generateFutureExecutions(makeSchedule("s2", "a2", ScheduleType.IMMEDIATE, null, null, null));
-        verify(futureExecutionRepository, never()).save(any());
+        assertThat(plan(makeSchedule("s1", "a1", null, null, null, null))).isEmpty();
+        assertThat(plan(makeSchedule("s2", "a2", ScheduleType.IMMEDIATE, null, null, null))).isEmpty();
     }
 
     @Test
@@ -190,6 +238,67 @@ class SchedulePlannerServiceTest {
 
         verify(futureExecutionRepository).save(execCaptor.capture());
         assertThat(execCaptor.getValue().getExecStatus()).isEqualTo(ExecStatus.CANCELLED);
+        verify(bulk, never()).execute();
+    }
+
+    @Test
+    void reconcile_plansAllChangedSchedulesInOneBulk() {
+        when(scheduleRepository.findByUpdatedAtGreaterThan(any())).thenReturn(List.of(
+                makeSchedule("s-1", "agent-1", ScheduleType.FIXED_TIMES, null, List.of("23:59"), null),
+                makeSchedule("s-2", "agent-2", ScheduleType.FIXED_TIMES, null, List.of("23:59"), null),
+                makeSchedule("s-3", "agent-3", ScheduleType.FIXED_TIMES, null, List.of("23:59"), null)));
+
+        service.reconcileSchedules();
+
+        verify(mongoTemplate, times(1)).bulkOps(any(BulkOperations.BulkMode.class), eq(FutureExecutionDocument.class));
+        verify(bulk, times(3)).remove(any(Query.class));
+        verify(bulk, times(1)).execute();
+    }
+
+    @Test
+    void reconcile_onlyPlansSchedulesInOwnedPartitions() {
+        SchedulerMembershipService membership = new SchedulerMembershipService(mock(MongoTemplate.class),
+                new MockEnvironment().withProperty("javaclaw.scheduler.node-id", "node-a"));
+        membership.updateMembers(List.of("node-a", "node-b"));
+        service = planner(membership, 1);
+
+        String mine = firstAgent(membership, true);
+        String theirs = firstAgent(membership, false);
+        when(scheduleRepository.findByUpdatedAtGreaterThan(any())).thenReturn(List.of(
+                makeSchedule("s-mine", mine, ScheduleType.FIXED_TIMES, null, List.of("23:59"), null),
+                makeSchedule("s-theirs", theirs, ScheduleType.FIXED_TIMES, null, List.of("23:59"), null)));
+
+        service.reconcileSchedules();
+
+        ArgumentCaptor<Query> prune = ArgumentCaptor.forClass(Query.class);
+        verify(bulk).remove(prune.capture());
+        assertThat(prune.getValue().getQueryObject().get("scheduleId")).isEqualTo("s-mine");
+        ArgumentCaptor<Query> upserts = ArgumentCaptor.forClass(Query.class);
+        verify(bulk, atMostOnce()).upsert(upserts.capture(), any(Update.class));
+        assertThat(upserts.getAllValues()).allSatisfy(q ->
+                assertThat(q.getQueryObject().getString("idempotencyKey")).doesNotContain(theirs + "|"));
+    }
+
+    @Test
+    void reconcile_rollsTheHorizonForward_onceTheTimezoneDateChanges() {
+        AgentScheduleDocument schedule = makeSchedule("sched-roll", "roll-agent",
+                ScheduleType.FIXED_TIMES, null, List.of("23:58"), null);
+        when(mongoTemplate.findDistinct(any(Query.class), eq("timezone"), eq(AgentScheduleDocument.class), eq(String.class)))
+                .thenReturn(List.of("UTC"));
+        when(scheduleRepository.findByEnabled(true)).thenReturn(List.of(schedule));
+
+        // First pass after a rebalance re-plans everything anyway, a same-day pass finds nothing to do
+        service.reconcileSchedules();
+        service.reconcileSchedules();
+        verify(futureExecutionRepository, never()).deleteByDateKeyAndExecStatusIn(any(), any());
+        verify(bulk, never()).execute();
+
+        service.plannedDay.put("UTC", LocalDate.now(ZoneOffset.UTC).minusDays(1));
+        service.reconcileSchedules();
+
+        verify(futureExecutionRepository).deleteByDateKeyAndExecStatusIn(any(), any());
+        verify(bulk).upsert(any(Query.class), any(Update.class));
+        verify(bulk).execute();
     }
 
     @Test
@@ -200,16 +309,31 @@ class SchedulePlannerServiceTest {
 
         service.rebuildDayPlan("UTC");
 
-        String yesterdayKey = LocalDate.now(ZoneId.of("UTC")).minusDays(1)
-                .format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+        String yesterdayKey = LocalDate.now(ZoneId.of("UTC")).minusDays(1).format(DATE_KEY_FMT);
         verify(futureExecutionRepository).deleteByDateKeyAndExecStatusIn(eq(yesterdayKey), any());
-        verify(futureExecutionRepository).save(any());
+        verify(bulk).upsert(any(Query.class), any(Update.class));
+        verify(bulk).execute();
     }
 
     // ------------------------------------------------------------------
     // Helpers
     // ------------------------------------------------------------------
 
+    private SchedulePlannerService planner(SchedulerMembershipService membership, int horizonDays) {
+        return new SchedulePlannerService(scheduleRepository, futureExecutionRepository, membership, mongoTemplate,
+                new MockEnvironment().withProperty("javaclaw.scheduler.planning-horizon-days", String.valueOf(horizonDays)));
+    }
+
+    private List<FutureExecutionDocument> plan(AgentScheduleDocument schedule) {
+        return service.planSlots(schedule, Instant.now());
+    }
+
+    private static String firstAgent(SchedulerMembershipService membership, boolean owned) {
+        for (int i = 0; ; i++) {
+            if (membership.owns("agent-" + i, null) == owned) return "agent-" + i;
+        }
+    }
+
     private static AgentScheduleDocument makeSchedule(String scheduleId, String agentId,
                                                        ScheduleType type, String cronExpr,
                                                        List<String> timesOfDay,
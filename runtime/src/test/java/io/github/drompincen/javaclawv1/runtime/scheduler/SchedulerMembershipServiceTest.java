@@ -0,0 +1,103 @@
+package io.github.drompincen.javaclawv1.runtime.scheduler;
+
+import io.github.drompincen.javaclawv1.persistence.document.SchedulerNodeDocument;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SchedulerMembershipServiceTest {
+
+    private static final int ALL = SchedulerMembershipService.PARTITION_COUNT;
+
+    @Test
+    void soloNodeOwnsEveryPartition() {
+        SchedulerMembershipService node = node("solo");
+
+        assertThat(node.ownedPartitions()).hasSize(ALL);
+        assertThat(node.owns("any-agent", null)).isTrue();
+        assertThat(node.generation()).isZero();
+    }
+
+    @Test
+    void liveNodesSplitPartitionsWithoutOverlap() {
+        List<String> members = List.of("node-a", "node-b", "node-c");
+        List<SchedulerMembershipService> nodes = new ArrayList<>();
+        for (String id : members) {
+            SchedulerMembershipService node = node(id);
+            node.updateMembers(members);
+            nodes.add(node);
+        }
+
+        Set<Integer> covered = new HashSet<>();
+        for (SchedulerMembershipService node : nodes) {
+            for (int p : node.ownedPartitions()) assertThat(covered.add(p)).as("partition %d owned twice", p).isTrue();
+            // 64 virtual nodes each keeps the split reasonably even
+            assertThat(node.ownedPartitions().size()).isBetween(ALL / 6, ALL / 2);
+        }
+        assertThat(covered).hasSize(ALL);
+    }
+
+    @Test
+    void leavingNodeOnlyMovesItsOwnPartitions() {
+        SchedulerMembershipService a = node("node-a");
+        a.updateMembers(List.of("node-a", "node-b", "node-c"));
+        Set<Integer> before = new HashSet<>(a.ownedPartitions());
+        long generation = a.generation();
+
+        a.updateMembers(List.of("node-a", "node-b"));
+
+        assertThat(a.ownedPartitions()).containsAll(before);
+        assertThat(a.ownedPartitions().size()).isGreaterThan(before.size());
+        assertThat(a.generation()).isEqualTo(generation + 1);
+
+        a.updateMembers(List.of("node-b", "node-a"));
+        assertThat(a.generation()).isEqualTo(generation + 1);
+    }
+
+    @Test
+    void heartbeatRebalancesFromLiveRows() {
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.find(any(Query.class), eq(SchedulerNodeDocument.class)))
+                .thenReturn(List.of(row("node-a"), row("node-b")));
+        SchedulerMembershipService a = new SchedulerMembershipService(mongoTemplate,
+                new MockEnvironment().withProperty("javaclaw.scheduler.node-id", "node-a"));
+
+        a.heartbeat();
+
+        assertThat(a.members()).containsExactly("node-a", "node-b");
+        assertThat(a.ownedPartitions().size()).isLessThan(ALL);
+    }
+
+    @Test
+    void partitionOfIsStableAndInRange() {
+        int p = SchedulerMembershipService.partitionOf("reconcile-agent", "proj-1");
+
+        assertThat(p).isBetween(0, ALL - 1);
+        assertThat(SchedulerMembershipService.partitionOf("reconcile-agent", "proj-1")).isEqualTo(p);
+        assertThat(SchedulerMembershipService.partitionOf("reconcile-agent", null))
+                .isEqualTo(SchedulerMembershipService.partitionOf("reconcile-agent", "GLOBAL"));
+    }
+
+    private static SchedulerMembershipService node(String id) {
+        return new SchedulerMembershipService(mock(MongoTemplate.class),
+                new MockEnvironment().withProperty("javaclaw.scheduler.node-id", id));
+    }
+
+    private static SchedulerNodeDocument row(String id) {
+        SchedulerNodeDocument doc = new SchedulerNodeDocument();
+        doc.setNodeId(id);
+        return doc;
+    }
+}
@@ -0,0 +1,155 @@
+package io.github.drompincen.javaclawv1.runtime.scheduler;
+
+import io.github.drompincen.javaclawv1.persistence.document.FutureExecutionDocument;
+import io.github.drompincen.javaclawv1.persistence.document.SchedulerNodeDocument;
+import io.github.drompincen.javaclawv1.protocol.api.ExecStatus;
+import io.github.drompincen.javaclawv1.runtime.agent.llm.TestMongoConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Several scheduler nodes sharing one (embedded) MongoDB: membership must split the due
+ * executions into disjoint per-node shares that shrink as nodes join, and every execution
+ * must be claimed exactly once when all nodes drain their partitions in parallel.
+ */
+@DataMongoTest
+@ActiveProfiles("test")
+@ContextConfiguration(classes = TestMongoConfiguration.class)
+class SchedulerPartitionScalingTest {
+
+    private static final Logger log = LoggerFactory.getLogger(SchedulerPartitionScalingTest.class);
+
+    private static final int EXECUTIONS = 2_000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    void clean() {
+        mongoTemplate.dropCollection(SchedulerNodeDocument.class);
+        mongoTemplate.dropCollection(FutureExecutionDocument.class);
+        List<FutureExecutionDocument> docs = new ArrayList<>();
+        Instant due = Instant.now().minusSeconds(5);
+        for (int i = 0; i < EXECUTIONS; i++) {
+            FutureExecutionDocument exec = new FutureExecutionDocument();
+            exec.setExecutionId("exec-" + i);
+            exec.setIdempotencyKey("key-" + i);
+            exec.setAgentId("agent-" + (i % 40));
+            exec.setProjectId("project-" + (i % 25));
+            exec.setPartition(SchedulerMembershipService.partitionOf(exec.getAgentId(), exec.getProjectId()));
+            exec.setExecStatus(ExecStatus.READY);
+            exec.setScheduledAt(due);
+            docs.add(exec);
+        }
+        mongoTemplate.insertAll(docs);
+    }
+
+    @Test
+    void perNodeShareShrinksAsNodesJoinAndClaimsStayExclusive() throws Exception {
+        int previousLargest = EXECUTIONS;
+        for (int nodeCount : new int[]{1, 2, 4}) {
+            mongoTemplate.dropCollection(SchedulerNodeDocument.class);
+            List<SchedulerMembershipService> nodes = join(nodeCount);
+
+            int total = 0;
+            int largest = 0;
+            for (SchedulerMembershipService node : nodes) {
+                int share = (int) mongoTemplate.count(ownedDue(node), FutureExecutionDocument.class);
+                total += share;
+                largest = Math.max(largest, share);
+            }
+            log.info("{} nodes: largest per-node share {} of {}", nodeCount, largest, EXECUTIONS);
+
+            assertThat(total).isEqualTo(EXECUTIONS);
+            // Per-node work scales ~1/N; allow for hash imbalance across 1000 agent/project keys
+            assertThat(largest).isLessThanOrEqualTo((int) (EXECUTIONS * 1.6 / nodeCount));
+            assertThat(largest).isLessThanOrEqualTo(previousLargest);
+            previousLargest = largest;
+        }
+
+        List<SchedulerMembershipService> nodes = join(4);
+        ExecutorService pool = Executors.newFixedThreadPool(nodes.size());
+        List<Future<List<String>>> claims = new ArrayList<>();
+        for (SchedulerMembershipService node : nodes) {
+            claims.add(pool.submit(() -> drain(node)));
+        }
+        Set<String> claimed = new HashSet<>();
+        for (Future<List<String>> future : claims) {
+            for (String id : future.get()) assertThat(claimed.add(id)).as("%s claimed twice", id).isTrue();
+        }
+        pool.shutdown();
+        assertThat(claimed).hasSize(EXECUTIONS);
+    }
+
+    @Test
+    void leavingNodeHandsItsPartitionsToSurvivors() {
+        List<SchedulerMembershipService> nodes = join(3);
+        SchedulerMembershipService leaver = nodes.get(2);
+        leaver.leave();
+
+        for (SchedulerMembershipService node : nodes.subList(0, 2)) node.heartbeat();
+
+        Set<Integer> covered = new HashSet<>();
+        for (SchedulerMembershipService node : nodes.subList(0, 2)) {
+            assertThat(node.members()).hasSize(2);
+            covered.addAll(node.ownedPartitions());
+        }
+        assertThat(covered).hasSize(SchedulerMembershipService.PARTITION_COUNT);
+    }
+
+    private List<SchedulerMembershipService> join(int count) {
+        List<SchedulerMembershipService> nodes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            nodes.add(new SchedulerMembershipService(mongoTemplate,
+                    new MockEnvironment().withProperty("javaclaw.scheduler.node-id", "node-" + i)));
+        }
+        // Two rounds: the first registers everyone, the second sees the full member set
+        for (int round = 0; round < 2; round++) {
+            for (SchedulerMembershipService node : nodes) node.heartbeat();
+        }
+        return nodes;
+    }
+
+    private static Query ownedDue(SchedulerMembershipService node) {
+        return Query.query(Criteria.where("execStatus").is(ExecStatus.READY)
+                .and("partition").in(node.ownedPartitions())
+                .and("scheduledAt").lte(Instant.now()));
+    }
+
+    private List<String> drain(SchedulerMembershipService node) {
+        List<String> claimed = new ArrayList<>();
+        while (true) {
+            FutureExecutionDocument exec = mongoTemplate.findAndModify(
+                    ownedDue(node).with(Sort.by("scheduledAt")),
+                    new Update().set("execStatus", ExecStatus.PENDING).set("lockOwner", node.nodeId()),
+                    FindAndModifyOptions.options().returnNew(true),
+                    FutureExecutionDocument.class);
+            if (exec == null) return claimed;
+            claimed.add(exec.getExecutionId());
+        }
+    }
+}
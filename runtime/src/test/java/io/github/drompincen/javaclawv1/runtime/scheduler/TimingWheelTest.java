@@ -0,0 +1,96 @@
+package io.github.drompincen.javaclawv1.runtime.scheduler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimingWheelTest {
+
+    private static final long TICK = 10;
+
+    @Test
+    void firesOnFirstTickAtOrAfterDueTime() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 2, 3, 0);
+        wheel.schedule("a", 25, "a");
+
+        assertThat(wheel.advance(20)).isEmpty();
+        assertThat(wheel.advance(29)).isEmpty();
+        assertThat(wheel.advance(30)).containsExactly("a");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void alreadyDueTimersComeBackOnNextAdvance() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 2, 3, 1_000);
+
+        assertThat(wheel.schedule("late", 500, "late")).isTrue();
+        assertThat(wheel.schedule("later", 2_000, "later")).isFalse();
+        assertThat(wheel.advance(1_000)).containsExactly("late");
+    }
+
+    @Test
+    void cascadesThroughLevelsAndOverflow() {
+        // 4 slots x 3 levels = 64 ticks before overflow
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 2, 3, 0);
+        wheel.schedule("level1", 130, "level1");
+        wheel.schedule("level2", 470, "level2");
+        wheel.schedule("overflow", 2_000, "overflow");
+
+        List<String> fired = new ArrayList<>();
+        for (long now = 0; now <= 2_000; now += TICK) {
+            for (String key : wheel.advance(now)) fired.add(key + "@" + now);
+        }
+
+        assertThat(fired).containsExactly("level1@130", "level2@470", "overflow@2000");
+    }
+
+    @Test
+    void rescheduleAndCancelReplaceTheTimer() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 2, 3, 0);
+        wheel.schedule("a", 50, "first");
+        wheel.schedule("a", 300, "second");
+        wheel.schedule("b", 60, "b");
+        assertThat(wheel.cancel("b")).isTrue();
+        assertThat(wheel.cancel("b")).isFalse();
+
+        assertThat(wheel.advance(200)).isEmpty();
+        assertThat(wheel.advance(300)).containsExactly("second");
+    }
+
+    @Test
+    void largeJumpsFireEverythingDueExactlyOnce() {
+        TimingWheel<Long> wheel = new TimingWheel<>(TICK, 3, 2, 0);
+        Random random = new Random(42);
+        List<Long> dues = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            long due = random.nextInt(20_000);
+            dues.add(due);
+            wheel.schedule("t" + i, due, due);
+        }
+
+        List<Long> fired = new ArrayList<>();
+        for (long now = 0; now <= 20_000; now += 1 + random.nextInt(700)) {
+            for (Long due : wheel.advance(now)) {
+                assertThat(due).isLessThanOrEqualTo(now);
+                fired.add(due);
+            }
+        }
+        fired.addAll(wheel.advance(20_000));
+
+        assertThat(fired).containsExactlyInAnyOrderElementsOf(dues);
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void idleWheelJumpsToPresent() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 2, 2, 0);
+        assertThat(wheel.advance(Long.MAX_VALUE / 4)).isEmpty();
+
+        wheel.schedule("a", Long.MAX_VALUE / 4 + 15, "a");
+        assertThat(wheel.advance(Long.MAX_VALUE / 4 + 20)).containsExactly("a");
+    }
+}
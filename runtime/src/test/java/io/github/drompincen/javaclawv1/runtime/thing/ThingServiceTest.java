@@ -0,0 +1,188 @@
+package io.github.drompincen.javaclawv1.runtime.thing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.result.DeleteResult;
+import io.github.drompincen.javaclawv1.persistence.document.ThingDocument;
+import io.github.drompincen.javaclawv1.persistence.repository.ThingRepository;
+import io.github.drompincen.javaclawv1.protocol.api.ThingCategory;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ThingServiceTest {
+
+    private ThingRepository thingRepository;
+    private MongoTemplate mongoTemplate;
+    private ThingService service;
+
+    @BeforeEach
+    void setUp() {
+        thingRepository = mock(ThingRepository.class);
+        mongoTemplate = mock(MongoTemplate.class);
+        service = new ThingService(thingRepository, mongoTemplate, new ObjectMapper());
+        when(thingRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+    }
+
+    @Test
+    void saveMaintainsNormalizedIdentityKeys() {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("title", "  Fix   Login\tBug ");
+        payload.put("status", "OPEN");
+
+        ThingDocument saved = service.createThing("proj-1", ThingCategory.TICKET, payload);
+        assertThat(saved.getIdentityKeys()).containsExactly("title:fix login bug");
+
+        saved = service.mergePayload(saved, Map.of("title", "Fix logout bug", "name", "Logout"));
+        assertThat(saved.getIdentityKeys()).containsExactly("name:logout", "title:fix logout bug");
+    }
+
+    @Test
+    void identityLookupsAreIndexedEqualityMatches() {
+        service.findByProjectCategoryAndTitleIgnoreCase("proj-1", ThingCategory.TICKET, "FIX  login bug");
+        service.findByProjectCategoryAndNameIgnoreCase("proj-1", ThingCategory.PHASE, "Design");
+        service.findByProjectCategoryAndPayloadFieldIgnoreCase("proj-1", ThingCategory.OBJECTIVE, "outcome", "Ship It");
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(3)).findOne(queries.capture(), eq(ThingDocument.class));
+        assertThat(queries.getAllValues()).extracting(q -> q.getQueryObject().get("identityKeys"))
+                .containsExactly("title:fix login bug", "name:design", "outcome:ship it");
+        assertThat(queries.getAllValues()).allSatisfy(q ->
+                assertThat(q.getQueryObject()).containsKeys("projectId", "thingCategory").doesNotContainKey("payload.title"));
+    }
+
+    @Test
+    void nonIdentityFieldFallsBackToRegex() {
+        service.findByProjectCategoryAndPayloadFieldIgnoreCase("proj-1", ThingCategory.LINK, "url", "https://x.io");
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).findOne(query.capture(), eq(ThingDocument.class));
+        Document criteria = query.getValue().getQueryObject();
+        assertThat(criteria).containsKey("payload.url").doesNotContainKey("identityKeys");
+    }
+
+    @Test
+    void backfillWritesKeysForLegacyThingsInBulk() {
+        ThingDocument legacy = new ThingDocument();
+        legacy.setId("thing-1");
+        legacy.setPayload(new LinkedHashMap<>(Map.of("name", "Alice  Smith")));
+        BulkOperations bulk = mock(BulkOperations.class, RETURNS_SELF);
+        when(mongoTemplate.stream(any(Query.class), eq(ThingDocument.class))).thenReturn(Stream.of(legacy));
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(ThingDocument.class))).thenReturn(bulk);
+
+        assertThat(service.backfillIdentityKeys()).isEqualTo(1);
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(bulk).updateOne(any(Query.class), update.capture());
+        verify(bulk).execute();
+        assertThat(((Document) update.getValue().getUpdateObject().get("$set")).get("identityKeys"))
+                .isEqualTo(List.of("name:alice smith"));
+    }
+
+    @Test
+    void saveAllInsertsNewAndReplacesExistingInOneBulk() {
+        BulkOperations bulk = mockBulk();
+        ThingDocument fresh = thing(null, "title", "New ticket");
+        ThingDocument stored = thing("thing-9", "title", "Old ticket");
+
+        List<ThingWriteResult> results = service.saveAll(List.of(fresh, stored));
+
+        verify(bulk).insert(fresh);
+        verify(bulk).replaceOne(any(Query.class), eq(stored), any(FindAndReplaceOptions.class));
+        verify(bulk, times(1)).execute();
+        assertThat(results).extracting(ThingWriteResult::index).containsExactly(0, 1);
+        assertThat(results.get(0).id()).isEqualTo(fresh.getId()).isNotNull();
+        assertThat(results.get(0).inserted()).isTrue();
+        assertThat(results.get(1).inserted()).isFalse();
+        assertThat(results).allMatch(ThingWriteResult::ok);
+        assertThat(fresh.getIdentityKeys()).containsExactly("title:new ticket");
+        verify(thingRepository, never()).save(any());
+    }
+
+    @Test
+    void saveAllReportsPerItemFailures() {
+        BulkOperations bulk = mockBulk();
+        BulkWriteError duplicate = new BulkWriteError(11000, "duplicate key", new BsonDocument(), 1);
+        when(bulk.execute()).thenThrow(new BulkOperationException("partial failure",
+                new MongoBulkWriteException(BulkWriteResult.acknowledged(1, 0, 0, 0, List.of(), List.of()),
+                        List.of(duplicate), null, new ServerAddress(), Set.of())));
+
+        List<ThingWriteResult> results = service.saveAll(List.of(thing(null, "title", "a"), thing(null, "title", "b")));
+
+        assertThat(results.get(0).ok()).isTrue();
+        assertThat(results.get(0).inserted()).isTrue();
+        assertThat(results.get(1).error()).contains("duplicate key");
+        assertThat(results.get(1).inserted()).isFalse();
+    }
+
+    @Test
+    void upsertAllByIdentityMergesIntoExistingAndDedupesWithinBatch() {
+        BulkOperations bulk = mockBulk();
+        ThingDocument existing = thing("ticket-1", "title", "[JC-1] Login bug");
+        existing.getPayload().put("assignee", "alice");
+        existing.refreshIdentityKeys();
+        when(mongoTemplate.find(any(Query.class), eq(ThingDocument.class))).thenReturn(List.of(existing));
+
+        List<ThingWriteResult> results = service.upsertAllByIdentity("proj-1", ThingCategory.TICKET, "title", List.of(
+                new LinkedHashMap<>(Map.of("title", "[JC-1] login BUG", "status", "DONE")),
+                new LinkedHashMap<>(Map.of("title", "[JC-2] Signup", "status", "TODO")),
+                new LinkedHashMap<>(Map.of("title", "[JC-2]  signup", "priority", "HIGH"))));
+
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(ThingDocument.class));
+        verify(bulk, times(1)).execute();
+        verify(bulk).replaceOne(any(Query.class), eq(existing), any(FindAndReplaceOptions.class));
+        verify(bulk, times(1)).insert(any(ThingDocument.class));
+        assertThat(existing.getPayload()).containsEntry("status", "DONE").containsEntry("assignee", "alice");
+        assertThat(results).extracting(ThingWriteResult::id)
+                .containsExactly("ticket-1", results.get(1).id(), results.get(1).id());
+        assertThat(results.get(1).inserted()).isTrue();
+    }
+
+    @Test
+    void deleteAllByIdsIsOneQuery() {
+        when(mongoTemplate.remove(any(Query.class), eq(ThingDocument.class))).thenReturn(DeleteResult.acknowledged(3));
+
+        assertThat(service.deleteAllByIds(List.of("a", "b", "c"))).isEqualTo(3);
+        assertThat(service.deleteAllByIds(List.of())).isZero();
+
+        verify(mongoTemplate, times(1)).remove(any(Query.class), eq(ThingDocument.class));
+    }
+
+    private BulkOperations mockBulk() {
+        BulkOperations bulk = mock(BulkOperations.class, RETURNS_SELF);
+        when(bulk.execute()).thenReturn(BulkWriteResult.acknowledged(0, 0, 0, 0, List.of(), List.of()));
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(ThingDocument.class))).thenReturn(bulk);
+        return bulk;
+    }
+
+    private static ThingDocument thing(String id, String field, String value) {
+        ThingDocument thing = new ThingDocument();
+        thing.setId(id);
+        thing.setProjectId("proj-1");
+        thing.setThingCategory(ThingCategory.TICKET);
+        thing.setPayload(new LinkedHashMap<>(Map.of(field, value)));
+        return thing;
+    }
+}
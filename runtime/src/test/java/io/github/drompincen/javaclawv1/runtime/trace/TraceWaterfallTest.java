@@ -0,0 +1,81 @@
+package io.github.drompincen.javaclawv1.runtime.trace;
+
+import io.github.drompincen.javaclawv1.persistence.document.SpanDocument;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TraceWaterfallTest {
+
+    private static final Instant T0 = Instant.parse("2025-01-15T10:00:00Z");
+
+    @Test
+    void criticalPathFollowsLastFinishingChildren() {
+        // pipeline 0-100: triage 0-20, generalist 20-80 (llm 20-50, tool 50-60, llm 60-80), resource 80-100
+        // plus an overlapping side span 10-30 that never gates anything
+        List<SpanDocument> spans = List.of(
+                span("root", null, "pipeline", 0, 100),
+                span("triage", "root", "phase", 0, 20),
+                span("side", "root", "phase", 10, 30),
+                span("gen", "root", "phase", 20, 80),
+                span("llm1", "gen", "llm", 20, 50),
+                span("tool", "gen", "tool", 50, 60),
+                span("llm2", "gen", "llm", 60, 80),
+                span("res", "root", "phase", 80, 100));
+
+        TraceWaterfall.View view = TraceWaterfall.build("t1", spans);
+
+        assertThat(view.durationMs()).isEqualTo(100);
+        assertThat(view.criticalPath()).containsExactly("root", "res", "gen", "llm2", "tool", "llm1", "triage");
+        assertThat(view.criticalMsByKind()).containsEntry("llm", 50L).containsEntry("tool", 10L);
+        assertThat(view.rows()).extracting(TraceWaterfall.Row::spanId)
+                .containsExactly("root", "triage", "side", "gen", "llm1", "tool", "llm2", "res");
+        assertThat(view.rows().get(4).depth()).isEqualTo(2);
+        assertThat(view.rows().get(4).offsetMs()).isEqualTo(20);
+        assertThat(view.rows().get(2).critical()).isFalse();
+    }
+
+    @Test
+    void orphanedSpansAreShownAsRoots() {
+        TraceWaterfall.View view = TraceWaterfall.build("t2", List.of(
+                span("run", "missing-phase", "agent_run", 5, 15)));
+
+        assertThat(view.rows()).hasSize(1);
+        assertThat(view.rows().get(0).depth()).isZero();
+        assertThat(view.criticalPath()).containsExactly("run");
+    }
+
+    @Test
+    void otlpExportUsesHexIdsAndNanoTimestamps() {
+        SpanDocument s = span("00f067aa0ba902b7", null, "pipeline", 0, 10);
+        s.setTraceId("4bf92f35-77b3-4da6-a3ce-929d0e0e4736");
+        s.setError(true);
+        s.setErrorMessage("boom");
+
+        Map<String, Object> export = OtlpJson.export(List.of(s));
+
+        String json = export.toString();
+        assertThat(json).contains("traceId=4bf92f3577b34da6a3ce929d0e0e4736");
+        assertThat(json).contains("spanId=00f067aa0ba902b7");
+        assertThat(json).contains("startTimeUnixNano=" + T0.getEpochSecond() * 1_000_000_000L);
+        assertThat(json).contains("code=2");
+        assertThat(OtlpJson.hexId("not-hex", 16)).hasSize(16).matches("[0-9a-f]+");
+    }
+
+    private static SpanDocument span(String id, String parent, String kind, long startMs, long endMs) {
+        SpanDocument s = new SpanDocument();
+        s.setSpanId(id);
+        s.setTraceId("t");
+        s.setParentSpanId(parent);
+        s.setName(kind + " " + id);
+        s.setKind(kind);
+        s.setStartTime(T0.plusMillis(startMs));
+        s.setEndTime(T0.plusMillis(endMs));
+        s.setDurationMs(endMs - startMs);
+        return s;
+    }
+}
@@ -0,0 +1,112 @@
+package io.github.drompincen.javaclawv1.runtime.trace;
+
+import io.github.drompincen.javaclawv1.persistence.document.SpanDocument;
+import io.github.drompincen.javaclawv1.persistence.repository.SpanRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TracerTest {
+
+    @Mock private SpanRepository spanRepository;
+
+    private Tracer tracer;
+
+    @BeforeEach
+    void setUp() {
+        tracer = new Tracer(spanRepository, new MockEnvironment());
+    }
+
+    @Test
+    void nestedSpansShareTraceAndRestoreParent() {
+        try (Span root = tracer.startTrace("pipeline-1", "intake pipeline", SpanKind.PIPELINE).project("p1")) {
+            try (Span phase = tracer.startSpan("phase triage", SpanKind.PHASE)) {
+                assertThat(tracer.current()).isSameAs(phase);
+                assertThat(phase.traceId()).isEqualTo("pipeline-1");
+                assertThat(phase.parentSpanId()).isEqualTo(root.spanId());
+                assertThat(phase.projectId()).isEqualTo("p1");
+            }
+            assertThat(tracer.current()).isSameAs(root);
+        }
+        assertThat(tracer.current()).isNull();
+
+        List<SpanDocument> written = flushed();
+        assertThat(written).extracting(SpanDocument::getName).containsExactly("phase triage", "intake pipeline");
+        assertThat(written.get(0).getKind()).isEqualTo("phase");
+        assertThat(written.get(1).getParentSpanId()).isNull();
+        assertThat(written.get(1).getExpiresAt()).isAfter(written.get(1).getStartTime());
+    }
+
+    @Test
+    void traceContinuesAcrossSessionMetadata() throws Exception {
+        Map<String, String> metadata;
+        String phaseSpanId;
+        try (Span root = tracer.startTrace("pipeline-2", "intake pipeline", SpanKind.PIPELINE);
+             Span phase = tracer.startSpan("phase generalist", SpanKind.PHASE)) {
+            metadata = new HashMap<>(Tracer.propagationMetadata(phase));
+            phaseSpanId = phase.spanId();
+        }
+
+        // Another thread picks the session up, as the agent loop does
+        Span[] run = new Span[1];
+        Thread worker = new Thread(() -> {
+            try (Span s = tracer.continueTrace(metadata, "agent run generalist", SpanKind.AGENT_RUN)) {
+                run[0] = s;
+            }
+        });
+        worker.start();
+        worker.join();
+
+        assertThat(run[0].traceId()).isEqualTo("pipeline-2");
+        assertThat(run[0].parentSpanId()).isEqualTo(phaseSpanId);
+    }
+
+    @Test
+    void spansWithoutParentDoNotRecord() {
+        try (Span orphan = tracer.startSpan("tool read_file", SpanKind.TOOL)) {
+            orphan.attr("tool", "read_file");
+            assertThat(orphan.isRecording()).isFalse();
+        }
+        tracer.flush();
+
+        verifyNoInteractions(spanRepository);
+        assertThat(tracer.current()).isNull();
+    }
+
+    @Test
+    void disabledTracingRecordsNothing() {
+        Tracer disabled = new Tracer(spanRepository,
+                new MockEnvironment().withProperty("javaclaw.tracing.enabled", "false"));
+        try (Span root = disabled.startTrace(null, "agent run", SpanKind.AGENT_RUN);
+             Span child = disabled.startSpan("llm", SpanKind.LLM)) {
+            assertThat(child.isRecording()).isFalse();
+            assertThat(Tracer.propagationMetadata(root)).isEmpty();
+        }
+        disabled.flush();
+
+        verifyNoInteractions(spanRepository);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<SpanDocument> flushed() {
+        ArgumentCaptor<Iterable<SpanDocument>> captor = ArgumentCaptor.forClass(Iterable.class);
+        tracer.flush();
+        verify(spanRepository).saveAll(captor.capture());
+        List<SpanDocument> out = new ArrayList<>();
+        captor.getValue().forEach(out::add);
+        return out;
+    }
+}
@@ -0,0 +1,291 @@
+package io.github.drompincen.javaclawv1.runtime.upload;
+
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import io.github.drompincen.javaclawv1.persistence.document.BlobDocument;
+import io.github.drompincen.javaclawv1.persistence.document.MessageDocument;
+import io.github.drompincen.javaclawv1.persistence.document.ThingDocument;
+import io.github.drompincen.javaclawv1.persistence.document.UploadSessionDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class BlobStoreTest {
+
+    @TempDir
+    Path root;
+
+    private MongoTemplate mongoTemplate;
+    private final Map<String, UploadSessionDocument> sessions = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.insert(any(UploadSessionDocument.class))).thenAnswer(inv -> {
+            UploadSessionDocument session = inv.getArgument(0);
+            sessions.put(session.getUploadSessionId(), session);
+            return session;
+        });
+        when(mongoTemplate.findById(anyString(), eq(UploadSessionDocument.class)))
+                .thenAnswer(inv -> sessions.get(inv.<String>getArgument(0)));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(UploadSessionDocument.class)))
+                .thenAnswer(inv -> {
+                    Document query = inv.<Query>getArgument(0).getQueryObject();
+                    UploadSessionDocument session = sessions.get(query.getString("_id"));
+                    if (session == null || session.getReceivedBytes() != ((Number) query.get("receivedBytes")).longValue()) {
+                        return UpdateResult.acknowledged(0, 0L, null);
+                    }
+                    Document set = (Document) inv.<Update>getArgument(1).getUpdateObject().get("$set");
+                    session.setReceivedBytes(((Number) set.get("receivedBytes")).longValue());
+                    return UpdateResult.acknowledged(1, 1L, null);
+                });
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(BlobDocument.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+    }
+
+    @Test
+    void identicalContentIsStoredOnce() throws Exception {
+        BlobStore store = store();
+
+        BlobStore.StoredBlob first = store.store(stream("same bytes"));
+        BlobStore.StoredBlob second = store.store(stream("same bytes"));
+
+        assertThat(second.sha256()).isEqualTo(first.sha256()).isEqualTo(sha256("same bytes"));
+        assertThat(second.path()).isEqualTo(first.path());
+        assertThat(Files.readString(first.path())).isEqualTo("same bytes");
+        try (var parts = Files.list(root.resolve("parts"))) {
+            assertThat(parts).isEmpty();
+        }
+    }
+
+    @Test
+    void chunkedUploadResumesOnAnotherInstanceAndHashesWholeContent() throws Exception {
+        String content = "0123456789".repeat(10_000);
+        UploadSessionDocument session = store().begin("proj-1", "export.csv", "text/csv", content.length(), null);
+
+        assertThat(store().append(session.getUploadSessionId(), 0, stream(content.substring(0, 40_000)))).isEqualTo(40_000);
+        // a fresh instance has no running digest and rebuilds it from the part file
+        BlobStore restarted = store();
+        assertThat(restarted.append(session.getUploadSessionId(), 40_000, stream(content.substring(40_000))))
+                .isEqualTo(content.length());
+        BlobStore.StoredBlob blob = restarted.complete(session.getUploadSessionId());
+
+        assertThat(blob.sha256()).isEqualTo(sha256(content));
+        assertThat(Files.readString(blob.path())).isEqualTo(content);
+    }
+
+    @Test
+    void chunkAtWrongOffsetReportsWhereToResume() throws Exception {
+        BlobStore store = store();
+        UploadSessionDocument session = store.begin("proj-1", "a.txt", null, 10, null);
+        store.append(session.getUploadSessionId(), 0, stream("abcd"));
+
+        assertThatThrownBy(() -> store.append(session.getUploadSessionId(), 2, stream("cdef")))
+                .isInstanceOfSatisfying(BlobStore.OffsetMismatchException.class,
+                        e -> assertThat(e.expectedOffset()).isEqualTo(4));
+        assertThatThrownBy(() -> store.append(session.getUploadSessionId(), 4, stream("efghijklmnop")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(store.append(session.getUploadSessionId(), 4, stream("efghij"))).isEqualTo(10);
+        assertThat(Files.readString(store.complete(session.getUploadSessionId()).path())).isEqualTo("abcdefghij");
+    }
+
+    @Test
+    void checksumMismatchRejectsTheUpload() throws Exception {
+        BlobStore store = store();
+        UploadSessionDocument session = store.begin("proj-1", "a.txt", null, 3, sha256("xyz"));
+        store.append(session.getUploadSessionId(), 0, stream("abc"));
+
+        assertThatThrownBy(() -> store.complete(session.getUploadSessionId()))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("Checksum mismatch");
+        assertThat(Files.exists(store.blobPath(sha256("abc")))).isFalse();
+    }
+
+    @Test
+    void attachGivesEachUploadItsOwnNamedFile() throws Exception {
+        BlobStore store = store();
+        BlobStore.StoredBlob blob = store.store(stream("a,b\n1,2\n"));
+
+        Path link = store.attach(blob.sha256(), "proj-1", "export.csv");
+
+        assertThat(link.getParent()).isEqualTo(root.resolve("proj-1"));
+        assertThat(link.getFileName().toString()).endsWith("-export.csv");
+        assertThat(Files.readString(link)).isEqualTo("a,b\n1,2\n");
+        verify(mongoTemplate).updateFirst(any(Query.class), any(Update.class), eq(BlobDocument.class));
+    }
+
+    @Test
+    void attachRefusesABlobBeingCollected() throws Exception {
+        BlobStore store = store();
+        BlobStore.StoredBlob blob = store.store(stream("collected"));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(BlobDocument.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        assertThatThrownBy(() -> store.attach(blob.sha256(), "proj-1", "late.txt"))
+                .isInstanceOf(java.io.IOException.class).hasMessageContaining("no longer stored");
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).updateFirst(query.capture(), any(Update.class), eq(BlobDocument.class));
+        assertThat(query.getValue().getQueryObject()).containsKey("collectingAt");
+        assertThat(Files.exists(root.resolve("proj-1"))).isTrue();
+        try (var files = Files.list(root.resolve("proj-1"))) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void commitWaitsForAnInFlightCollectionAndRestoresTheBytes() throws Exception {
+        BlobStore store = store();
+        BlobStore.StoredBlob first = store.store(stream("recycled"));
+        // The second commit finds the document marked for collection; the collector deletes the file meanwhile
+        when(mongoTemplate.upsert(any(Query.class), any(Update.class), eq(BlobDocument.class)))
+                .thenAnswer(inv -> {
+                    Files.deleteIfExists(first.path());
+                    throw new DuplicateKeyException("E11000 duplicate key");
+                })
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        BlobStore.StoredBlob second = store.store(stream("recycled"));
+
+        assertThat(Files.readString(second.path())).isEqualTo("recycled");
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(3)).upsert(query.capture(), any(Update.class), eq(BlobDocument.class));
+        assertThat(query.getValue().getQueryObject()).containsKey("collectingAt");
+    }
+
+    @Test
+    void garbageCollectionDeletesOnlyUnreferencedBlobs() throws Exception {
+        BlobStore store = store();
+        BlobStore.StoredBlob orphan = store.store(stream("orphan"));
+        Path orphanLink = store.attach(orphan.sha256(), "proj-1", "old.txt");
+        BlobStore.StoredBlob stillUsed = store.store(stream("still used"));
+        when(mongoTemplate.find(any(Query.class), eq(BlobDocument.class)))
+                .thenReturn(List.of(blob(orphan.sha256(), orphanLink), blob(stillUsed.sha256(), null)));
+        when(mongoTemplate.count(any(Query.class), eq(ThingDocument.class))).thenAnswer(inv ->
+                inv.<Query>getArgument(0).getQueryObject().get("payload.blobId").equals(stillUsed.sha256()) ? 2L : 0L);
+        when(mongoTemplate.remove(any(Query.class), eq(BlobDocument.class))).thenReturn(DeleteResult.acknowledged(1));
+
+        assertThat(store.collectGarbage()).isEqualTo(1);
+
+        assertThat(Files.exists(orphan.path())).isFalse();
+        assertThat(Files.exists(orphanLink)).isFalse();
+        assertThat(Files.exists(stillUsed.path())).isTrue();
+        verify(mongoTemplate, times(1)).remove(any(Query.class), eq(BlobDocument.class));
+        // The orphan is marked before its files go, and only a marked document is removed
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, atLeastOnce()).updateFirst(any(Query.class), update.capture(), eq(BlobDocument.class));
+        assertThat(update.getAllValues()).anySatisfy(u ->
+                assertThat((Document) u.getUpdateObject().get("$set")).containsKey("collectingAt"));
+    }
+
+    @Test
+    void garbageCollectionSkipsBlobsReferencedSinceTheScan() throws Exception {
+        BlobStore store = store();
+        BlobStore.StoredBlob blob = store.store(stream("just attached"));
+        when(mongoTemplate.find(any(Query.class), eq(BlobDocument.class))).thenReturn(List.of(blob(blob.sha256(), null)));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(BlobDocument.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        assertThat(store.collectGarbage()).isZero();
+
+        assertThat(Files.exists(blob.path())).isTrue();
+        verify(mongoTemplate, never()).remove(any(Query.class), eq(BlobDocument.class));
+    }
+
+    @Test
+    void garbageCollectionDropsDigestsOfExpiredSessions() throws Exception {
+        BlobStore store = store();
+        UploadSessionDocument live = store.begin("proj-1", "a.txt", null, 10, null);
+        UploadSessionDocument expired = store.begin("proj-1", "b.txt", null, 10, null);
+        store.append(live.getUploadSessionId(), 0, stream("abc"));
+        store.append(expired.getUploadSessionId(), 0, stream("abc"));
+        sessions.remove(expired.getUploadSessionId());   // TTL index removed it
+        when(mongoTemplate.find(any(Query.class), eq(UploadSessionDocument.class))).thenReturn(List.of(live));
+        when(mongoTemplate.find(any(Query.class), eq(BlobDocument.class))).thenReturn(List.of());
+
+        store.collectGarbage();
+
+        assertThat(store.trackedParts()).isEqualTo(1);
+        assertThatThrownBy(() -> store.append(expired.getUploadSessionId(), 3, stream("d")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(store.trackedParts()).isEqualTo(1);
+    }
+
+    @Test
+    void messageImagesCountAsReferencesSoCollectionNeverScansMessages() throws Exception {
+        BlobStore store = store();
+        BlobStore.StoredBlob image = store.store(stream("png bytes"));
+
+        store.retain(image.sha256());
+        store.release(image.sha256());
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(2)).updateFirst(query.capture(), update.capture(), eq(BlobDocument.class));
+        assertThat(query.getAllValues().get(0).getQueryObject()).containsKey("collectingAt");
+        assertThat(update.getAllValues())
+                .extracting(u -> ((Document) u.getUpdateObject().get("$inc")).get("refCount"))
+                .containsExactly(1, -1);
+
+        when(mongoTemplate.find(any(Query.class), eq(BlobDocument.class))).thenReturn(List.of(blob(image.sha256(), null)));
+        when(mongoTemplate.remove(any(Query.class), eq(BlobDocument.class))).thenReturn(DeleteResult.acknowledged(1));
+        assertThat(store.collectGarbage()).isEqualTo(1);
+        verify(mongoTemplate, never()).exists(any(Query.class), eq(MessageDocument.class));
+    }
+
+    @Test
+    void retainRefusesABlobBeingCollected() throws Exception {
+        BlobStore store = store();
+        BlobStore.StoredBlob image = store.store(stream("collected image"));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(BlobDocument.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        assertThatThrownBy(() -> store.retain(image.sha256()))
+                .isInstanceOf(java.io.IOException.class).hasMessageContaining("no longer stored");
+    }
+
+    private BlobStore store() {
+        return new BlobStore(mongoTemplate, new MockEnvironment().withProperty("javaclaw.uploads.dir", root.toString()));
+    }
+
+    private static BlobDocument blob(String sha256, Path link) {
+        BlobDocument blob = new BlobDocument();
+        blob.setSha256(sha256);
+        blob.setRefCount(0);
+        blob.setUpdatedAt(Instant.EPOCH);
+        blob.setLinks(link != null ? List.of(link.toString()) : null);
+        return blob;
+    }
+
+    private static ByteArrayInputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String sha256(String text) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,173 @@
+package io.github.drompincen.javaclawv1.runtime.upload;
+
+import com.mongodb.client.result.UpdateResult;
+import io.github.drompincen.javaclawv1.persistence.document.BlobDocument;
+import io.github.drompincen.javaclawv1.persistence.document.MessageDocument;
+import io.github.drompincen.javaclawv1.protocol.api.SendMessageRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.model.Media;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mock.env.MockEnvironment;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ImagePartStoreTest {
+
+    @TempDir
+    Path root;
+
+    private MockEnvironment env;
+    private BlobStore blobStore;
+
+    @BeforeEach
+    void setUp() {
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.upsert(any(Query.class), any(Update.class), eq(BlobDocument.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(BlobDocument.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        env = new MockEnvironment().withProperty("javaclaw.uploads.dir", root.toString());
+        blobStore = spy(new BlobStore(mongoTemplate, env));
+    }
+
+    @Test
+    void imageDataMovesToBlobStoreAndTextStaysInline() throws Exception {
+        ImagePartStore store = new ImagePartStore(blobStore, env);
+        byte[] png = png(40, 30);
+
+        List<MessageDocument.ContentPart> parts = store.store(List.of(
+                new SendMessageRequest.ContentPart("text", "what is this?", null, null),
+                new SendMessageRequest.ContentPart("image", null, "image/png", Base64.getEncoder().encodeToString(png))));
+
+        assertThat(parts.get(0).getText()).isEqualTo("what is this?");
+        MessageDocument.ContentPart image = parts.get(1);
+        assertThat(image.getData()).isNull();
+        assertThat(image.getBlobId()).hasSize(64);
+        assertThat(Files.readAllBytes(blobStore.blobPath(image.getBlobId()))).isEqualTo(png);
+    }
+
+    @Test
+    void eachStoredImageHoldsAReferenceUntilItsMessageIsReleased() throws Exception {
+        ImagePartStore store = new ImagePartStore(blobStore, env);
+        MessageDocument message = new MessageDocument();
+        message.setParts(store.store(List.of(
+                new SendMessageRequest.ContentPart("text", "two screenshots", null, null),
+                new SendMessageRequest.ContentPart("image", null, "image/png", Base64.getEncoder().encodeToString(png(20, 10))),
+                new SendMessageRequest.ContentPart("image", null, "image/png", Base64.getEncoder().encodeToString(png(10, 20))))));
+        String first = message.getParts().get(1).getBlobId();
+        String second = message.getParts().get(2).getBlobId();
+        verify(blobStore).retain(first);
+        verify(blobStore).retain(second);
+
+        store.release(List.of(message));
+
+        verify(blobStore).release(first);
+        verify(blobStore).release(second);
+    }
+
+    @Test
+    void imagesOverThePixelCapAreRejectedFromTheirHeader() throws Exception {
+        env.setProperty("javaclaw.images.max-pixels", "10000");
+        ImagePartStore store = new ImagePartStore(blobStore, env);
+
+        assertThatThrownBy(() -> store.store(List.of(new SendMessageRequest.ContentPart(
+                "image", null, "image/png", Base64.getEncoder().encodeToString(png(200, 100))))))
+                .isInstanceOf(ImagePartStore.ImageTooLargeException.class)
+                .hasMessageContaining("200x100");
+        verify(blobStore, never()).store(any());
+    }
+
+    @Test
+    void muchLargerImagesAreSubsampledDownToTheLimit() throws Exception {
+        env.setProperty("javaclaw.images.max-long-edge", "100");
+        ImagePartStore store = new ImagePartStore(blobStore, env);
+
+        BufferedImage stored = ImageIO.read(new ByteArrayInputStream(store.fit(png(1050, 300), "image/png")));
+
+        assertThat(stored.getWidth()).isEqualTo(100);
+        assertThat(stored.getHeight()).isEqualTo(29);
+    }
+
+    @Test
+    void oversizedImagesAreDownscaledToTheLongEdgeLimit() throws Exception {
+        env.setProperty("javaclaw.images.max-long-edge", "100");
+        ImagePartStore store = new ImagePartStore(blobStore, env);
+
+        MessageDocument.ContentPart image = store.store(List.of(new SendMessageRequest.ContentPart(
+                "image", null, "image/png", Base64.getEncoder().encodeToString(png(400, 200))))).get(0);
+
+        BufferedImage stored = ImageIO.read(blobStore.blobPath(image.getBlobId()).toFile());
+        assertThat(stored.getWidth()).isEqualTo(100);
+        assertThat(stored.getHeight()).isEqualTo(50);
+    }
+
+    @Test
+    void downscalingCanBeTurnedOff() throws Exception {
+        env.setProperty("javaclaw.images.max-long-edge", "100");
+        env.setProperty("javaclaw.images.downscale", "false");
+        byte[] png = png(400, 200);
+
+        assertThat(new ImagePartStore(blobStore, env).fit(png, "image/png")).isEqualTo(png);
+    }
+
+    @Test
+    void decodedMediaIsCachedByContentHash() throws Exception {
+        ImagePartStore store = new ImagePartStore(blobStore, env);
+        String sha = blobStore.store(new ByteArrayInputStream(png(10, 10))).sha256();
+
+        Media first = store.media(sha, "image/png");
+        Media second = store.media(sha, "image/png");
+
+        assertThat(second).isSameAs(first);
+        verify(blobStore, times(1)).read(sha);
+    }
+
+    @Test
+    void mediaCacheIsBoundedByBytes() throws Exception {
+        env.setProperty("javaclaw.images.media-cache-mb", "0");
+        ImagePartStore store = new ImagePartStore(blobStore, env);
+        String sha = blobStore.store(new ByteArrayInputStream(png(10, 10))).sha256();
+
+        store.media(sha, "image/png");
+        store.media(sha, "image/png");
+
+        verify(blobStore, times(2)).read(sha);
+    }
+
+    @Test
+    void malformedBase64IsRejected() {
+        ImagePartStore store = new ImagePartStore(blobStore, env);
+
+        assertThatThrownBy(() -> store.store(List.of(
+                new SendMessageRequest.ContentPart("image", null, "image/png", "not base64!"))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Image data must be base64");
+    }
+
+    private static byte[] png(int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) image.setRGB(x, y, (x * 7 + y * 13) & 0xffffff);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -101,7 +101,7 @@ public class CreateReminderTool implements Tool {
         if (triggerAtStr != null && !triggerAtStr.isBlank()) {
             try {
                 Instant triggerAt = Instant.parse(triggerAtStr);
-                payload.put("triggerAt", triggerAt.toString());
+                payload.put("triggerAt", triggerAt);
             } catch (Exception e) {
                 return ToolResult.failure("Invalid triggerAt format. Use ISO-8601 (e.g., 2026-03-01T10:00:00Z)");
             }
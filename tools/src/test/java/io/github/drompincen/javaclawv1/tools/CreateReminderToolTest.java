@@ -109,7 +109,8 @@ class CreateReminderToolTest {
         verify(thingService).createThing(eq("proj-1"), eq(ThingCategory.REMINDER), payloadCaptor.capture());
         Map<String, Object> payload = payloadCaptor.getValue();
         assertThat(payload.get("message")).isEqualTo("Review sprint goals");
-        assertThat(payload.get("triggerAt")).isNotNull();
+        // Stored as a date so the reminder engine's range queries match it
+        assertThat(payload.get("triggerAt")).isEqualTo(Instant.parse("2026-03-01T10:00:00Z"));
         assertThat(payload.get("triggered")).isEqualTo(false);
     }
 